@@ -0,0 +1,390 @@
+package mil.nga.bundler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.PropertyLoader;
+import mil.nga.bundler.exceptions.PropertiesNotLoadedException;
+import mil.nga.bundler.interfaces.BundlerConstantsI;
+
+/**
+ * Class providing typed access to the properties that control the
+ * behavior of the metrics collector.  All of the properties are optional.
+ * If a property is not defined, or cannot be parsed, the default value
+ * defined in <code>BundlerConstantsI</code> is used.
+ *
+ * @author L. Craig Carpenter
+ */
+public class CollectorConfig
+        extends PropertyLoader
+        implements BundlerConstantsI {
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    static final Logger LOGGER = LoggerFactory.getLogger(
+            CollectorConfig.class);
+
+    /**
+     * Default constructor
+     */
+    private CollectorConfig() {
+        super(PROPERTY_FILE_NAME);
+    }
+
+    /**
+     * Return a singleton instance to the CollectorConfig object.
+     * @return The CollectorConfig
+     */
+    public static CollectorConfig getInstance() {
+        return CollectorConfigHolder.getSingleton();
+    }
+
+    /**
+     * Retrieve the value of an integer property.  The default value is
+     * returned if the property is not defined, cannot be parsed, or is less
+     * than the supplied minimum.
+     *
+     * @param key The property to look up.
+     * @param defaultValue Value to return if the property is not usable.
+     * @param minimum The minimum acceptable value.
+     * @return The property value.
+     */
+    protected int getIntProperty(String key, int defaultValue, int minimum) {
+
+        int value = defaultValue;
+
+        try {
+            String prop = getProperty(key);
+            if ((prop != null) && (!prop.trim().isEmpty())) {
+                value = Integer.parseInt(prop.trim());
+                if (value < minimum) {
+                    LOGGER.warn("Value for property [ "
+                            + key
+                            + " ] is below the minimum allowed [ "
+                            + minimum
+                            + " ].  Using default value [ "
+                            + defaultValue
+                            + " ].");
+                    value = defaultValue;
+                }
+            }
+        }
+        catch (NumberFormatException nfe) {
+            LOGGER.warn("Unable to parse the value for property [ "
+                    + key
+                    + " ].  Using default value [ "
+                    + defaultValue
+                    + " ].");
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Using default value [ "
+                    + defaultValue
+                    + " ] for property [ "
+                    + key
+                    + " ].");
+        }
+        return value;
+    }
+
+    /**
+     * Retrieve the value of a boolean property.  The default value is
+     * returned if the property is not defined.
+     *
+     * @param key The property to look up.
+     * @param defaultValue Value to return if the property is not defined.
+     * @return The property value.
+     */
+    protected boolean getBooleanProperty(String key, boolean defaultValue) {
+
+        boolean value = defaultValue;
+
+        try {
+            String prop = getProperty(key);
+            if ((prop != null) && (!prop.trim().isEmpty())) {
+                value = Boolean.parseBoolean(prop.trim());
+            }
+        }
+        catch (PropertiesNotLoadedException pnle) {
+            LOGGER.warn("An unexpected PropertiesNotLoadedException "
+                    + "was encountered.  Please ensure the application "
+                    + "is properly configured.  Using default value [ "
+                    + defaultValue
+                    + " ] for property [ "
+                    + key
+                    + " ].");
+        }
+        return value;
+    }
+
+    /**
+     * Getter method for the number of metrics records to insert per JDBC
+     * batch.
+     *
+     * @return The JDBC batch size.
+     */
+    public int getBatchSize() {
+        return getIntProperty(
+                METRICS_BATCH_SIZE_PROPERTY,
+                DEFAULT_METRICS_BATCH_SIZE,
+                1);
+    }
+
+    /**
+     * Getter method for the number of jobs the collector will process 
+     * concurrently.
+     *
+     * @return The collector concurrency.
+     */
+    public int getConcurrency() {
+        return getIntProperty(
+                METRICS_CONCURRENCY_PROPERTY,
+                DEFAULT_METRICS_CONCURRENCY,
+                1);
+    }
+
+    /**
+     * Getter method for the maximum number of jobs that may be in-flight 
+     * (i.e. submitted but not yet written to the database) during a 
+     * parallel collection run.
+     *
+     * @return The maximum number of in-flight jobs.
+     */
+    public int getMaxInFlight() {
+        return getIntProperty(
+                METRICS_MAX_IN_FLIGHT_PROPERTY,
+                DEFAULT_METRICS_MAX_IN_FLIGHT,
+                1);
+    }
+
+    /**
+     * Determine whether the collector should only process jobs that
+     * completed after the persisted checkpoint.
+     *
+     * @return True if incremental collection is enabled.
+     */
+    public boolean isIncremental() {
+        return getBooleanProperty(
+                METRICS_INCREMENTAL_PROPERTY,
+                DEFAULT_METRICS_INCREMENTAL);
+    }
+
+    /**
+     * Getter method for the distance the incremental checkpoint is held 
+     * behind the current time.
+     *
+     * @return The checkpoint lag in seconds.
+     */
+    public int getCheckpointLag() {
+        return getIntProperty(
+                METRICS_CHECKPOINT_LAG_PROPERTY,
+                DEFAULT_METRICS_CHECKPOINT_LAG,
+                0);
+    }
+
+    /**
+     * Getter method for the interval between the full reconciliation runs
+     * started by the collection timer.
+     *
+     * @return The reconciliation interval in hours.  0 disables the 
+     * periodic reconciliation.
+     */
+    public int getReconcileInterval() {
+        return getIntProperty(
+                METRICS_RECONCILE_INTERVAL_PROPERTY,
+                DEFAULT_METRICS_RECONCILE_INTERVAL,
+                0);
+    }
+
+    /**
+     * Getter method for the time-to-live of the collection lease.
+     *
+     * @return The lease time-to-live in seconds.
+     */
+    public int getLeaseTTL() {
+        return getIntProperty(
+                METRICS_LEASE_TTL_PROPERTY,
+                DEFAULT_METRICS_LEASE_TTL,
+                30);
+    }
+
+    /**
+     * Getter method for the maximum rate at which a historical backfill 
+     * writes metrics records.
+     *
+     * @return The maximum number of rows per second.  0 disables 
+     * throttling.
+     */
+    public int getBackfillMaxRowsPerSecond() {
+        return getIntProperty(
+                METRICS_BACKFILL_MAX_ROWS_PER_SECOND_PROPERTY,
+                DEFAULT_METRICS_BACKFILL_MAX_ROWS_PER_SECOND,
+                0);
+    }
+
+    /**
+     * Getter method for the size of the time slices a historical backfill 
+     * is split into.
+     *
+     * @return The slice size in hours.
+     */
+    public int getBackfillSliceHours() {
+        return getIntProperty(
+                METRICS_BACKFILL_SLICE_HOURS_PROPERTY,
+                DEFAULT_METRICS_BACKFILL_SLICE_HOURS,
+                1);
+    }
+
+    /**
+     * Getter method for the number of hash partitions full collection runs
+     * are split into.
+     *
+     * @return The number of partitions.  1 disables partitioning.
+     */
+    public int getPartitions() {
+        return getIntProperty(
+                METRICS_PARTITIONS_PROPERTY,
+                DEFAULT_METRICS_PARTITIONS,
+                1);
+    }
+
+    /**
+     * Getter method for the delay before the first retry of a job whose
+     * metrics record could not be written.
+     *
+     * @return The base retry delay in minutes.
+     */
+    public int getRetryBaseDelay() {
+        return getIntProperty(
+                METRICS_RETRY_BASE_DELAY_PROPERTY,
+                DEFAULT_METRICS_RETRY_BASE_DELAY,
+                1);
+    }
+
+    /**
+     * Getter method for the number of failed attempts after which a job 
+     * is no longer retried.
+     *
+     * @return The maximum number of attempts.
+     */
+    public int getRetryMaxAttempts() {
+        return getIntProperty(
+                METRICS_RETRY_MAX_ATTEMPTS_PROPERTY,
+                DEFAULT_METRICS_RETRY_MAX_ATTEMPTS,
+                1);
+    }
+
+    /**
+     * Getter method for the upper bound of the delay between retries.
+     *
+     * @return The maximum retry delay in minutes.
+     */
+    public int getRetryMaxDelay() {
+        return getIntProperty(
+                METRICS_RETRY_MAX_DELAY_PROPERTY,
+                DEFAULT_METRICS_RETRY_MAX_DELAY,
+                1);
+    }
+
+    /**
+     * Getter method for the interval between scheduled collection runs.
+     *
+     * @return The schedule interval in minutes.
+     */
+    public int getScheduleInterval() {
+        return getIntProperty(
+                METRICS_SCHEDULE_INTERVAL_PROPERTY,
+                DEFAULT_METRICS_SCHEDULE_INTERVAL,
+                1);
+    }
+
+    /**
+     * Getter method for the longest interval the adaptive schedule may 
+     * use.
+     *
+     * @return The maximum schedule interval in minutes.
+     */
+    public int getScheduleMaxInterval() {
+        return getIntProperty(
+                METRICS_SCHEDULE_MAX_INTERVAL_PROPERTY,
+                DEFAULT_METRICS_SCHEDULE_MAX_INTERVAL,
+                1);
+    }
+
+    /**
+     * Getter method for the shortest interval the adaptive schedule may 
+     * use.
+     *
+     * @return The minimum schedule interval in minutes.
+     */
+    public int getScheduleMinInterval() {
+        return getIntProperty(
+                METRICS_SCHEDULE_MIN_INTERVAL_PROPERTY,
+                DEFAULT_METRICS_SCHEDULE_MIN_INTERVAL,
+                1);
+    }
+
+    /**
+     * Getter method determining whether the in-memory columnar store is 
+     * enabled.
+     *
+     * @return True if the columnar store may be loaded.
+     */
+    public boolean isColumnarStoreEnabled() {
+        return getBooleanProperty(
+                METRICS_COLUMNAR_STORE_PROPERTY,
+                DEFAULT_METRICS_COLUMNAR_STORE);
+    }
+
+    /**
+     * Getter method for the age after which the columnar store is 
+     * reloaded.
+     *
+     * @return The reload interval in minutes.  0 disables the periodic 
+     * reload.
+     */
+    public int getColumnarReloadInterval() {
+        return getIntProperty(
+                METRICS_COLUMNAR_RELOAD_INTERVAL_PROPERTY,
+                DEFAULT_METRICS_COLUMNAR_RELOAD_INTERVAL,
+                0);
+    }
+
+    /**
+     * Getter method determining whether the adaptive schedule is enabled.
+     *
+     * @return True if the schedule interval adapts to the backlog.
+     */
+    public boolean isScheduleAdaptive() {
+        return getBooleanProperty(
+                METRICS_SCHEDULE_ADAPTIVE_PROPERTY,
+                DEFAULT_METRICS_SCHEDULE_ADAPTIVE);
+    }
+
+    /**
+     * Static inner class used to construct the Singleton object.  This
+     * class exploits that fact that inner classes are not loaded until they
+     * referenced therefore enforcing thread safety without the performance
+     * hit imposed by the use of the "synchronized" keyword.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class CollectorConfigHolder {
+
+        /**
+         * Reference to the Singleton instance of the CollectorConfig
+         */
+        private static CollectorConfig _instance = new CollectorConfig();
+
+        /**
+         * Accessor method for the singleton instance of the CollectorConfig.
+         *
+         * @return The singleton instance of the CollectorConfig.
+         */
+        public static CollectorConfig getSingleton() {
+            return _instance;
+        }
+    }
+}
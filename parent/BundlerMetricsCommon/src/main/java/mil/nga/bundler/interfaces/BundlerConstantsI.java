@@ -127,7 +127,263 @@ public interface BundlerConstantsI {
     public static final String UNIVERSAL_DATE_STRING = "yyyy/MM/dd HH:mm:ss:SSS";
     
     /**
-     * The name of the destination queue on which Archiver jobs will be 
+     * Property defining the number of metrics records that will be sent to
+     * the database in a single JDBC batch (and committed together).
+     */
+    public static final String METRICS_BATCH_SIZE_PROPERTY =
+            "bundler.metrics.batch_size";
+
+    /**
+     * Default number of metrics records inserted per JDBC batch.
+     */
+    public static final int DEFAULT_METRICS_BATCH_SIZE = 500;
+    
+    /**
+     * Property defining the number of jobs that will be loaded and processed
+     * concurrently by the metrics collector.  A value of 1 disables the 
+     * parallel collection mode.
+     */
+    public static final String METRICS_CONCURRENCY_PROPERTY = 
+            "bundler.metrics.concurrency";
+    
+    /**
+     * Default number of jobs processed concurrently by the metrics collector.
+     */
+    public static final int DEFAULT_METRICS_CONCURRENCY = 4;
+    
+    /**
+     * Property defining the maximum number of jobs that may be submitted to
+     * the executor (or waiting to be written) at any one time during a 
+     * parallel collection run.
+     */
+    public static final String METRICS_MAX_IN_FLIGHT_PROPERTY = 
+            "bundler.metrics.max_in_flight";
+    
+    /**
+     * Default maximum number of in-flight jobs during a parallel collection
+     * run.
+     */
+    public static final int DEFAULT_METRICS_MAX_IN_FLIGHT = 1000;
+    
+    /**
+     * Property controlling whether the metrics collector only considers jobs
+     * that completed after the persisted checkpoint (true) or performs a 
+     * full scan of the JOBS table on every run (false).
+     */
+    public static final String METRICS_INCREMENTAL_PROPERTY = 
+            "bundler.metrics.incremental";
+    
+    /**
+     * By default the metrics collector runs incrementally.
+     */
+    public static final boolean DEFAULT_METRICS_INCREMENTAL = true;
+    
+    /**
+     * Property defining how far (in seconds) the incremental checkpoint 
+     * is held behind the current time.  Jobs that complete within the lag
+     * are re-scanned by the next incremental run, so a job whose row 
+     * becomes visible after later jobs have been collected is not skipped.
+     */
+    public static final String METRICS_CHECKPOINT_LAG_PROPERTY = 
+            "bundler.metrics.checkpoint_lag";
+    
+    /**
+     * Default checkpoint lag (in seconds).
+     */
+    public static final int DEFAULT_METRICS_CHECKPOINT_LAG = 300;
+    
+    /**
+     * Property defining the interval (in hours) between the full 
+     * reconciliation runs started by the collection timer in place of an
+     * incremental run.  0 disables the periodic reconciliation.
+     */
+    public static final String METRICS_RECONCILE_INTERVAL_PROPERTY = 
+            "bundler.metrics.reconcile_interval";
+    
+    /**
+     * Default interval (in hours) between full reconciliation runs.
+     */
+    public static final int DEFAULT_METRICS_RECONCILE_INTERVAL = 24;
+    
+    /**
+     * Name of the checkpoint record maintained by the incremental metrics
+     * collector.
+     */
+    public static final String METRICS_CHECKPOINT_NAME = "JOB_METRICS";
+    
+    /**
+     * Name of the lease record that must be held by a node in order to 
+     * execute a metrics collection run.
+     */
+    public static final String METRICS_LEASE_NAME = "JOB_METRICS_COLLECTOR";
+    
+    /**
+     * Property defining how long (in seconds) the collection lease is valid
+     * without being renewed.  If the node holding the lease dies, another 
+     * node may take the lease over once it expires.
+     */
+    public static final String METRICS_LEASE_TTL_PROPERTY = 
+            "bundler.metrics.lease_ttl";
+    
+    /**
+     * Default collection lease time-to-live (in seconds).
+     */
+    public static final int DEFAULT_METRICS_LEASE_TTL = 300;
+
+    /**
+     * Property defining the number of hash partitions full (reconciliation)
+     * collection runs are split into.  Partitions are claimed by any node 
+     * in the cluster so the work is shared between the nodes.  A value of 
+     * 1 disables partitioning.
+     */
+    public static final String METRICS_PARTITIONS_PROPERTY = 
+            "bundler.metrics.partitions";
+    
+    /**
+     * Default number of collection partitions.
+     */
+    public static final int DEFAULT_METRICS_PARTITIONS = 16;
+
+    /**
+     * Name of the lease record that must be held by a node in order to 
+     * execute a historical backfill.  Backfills use their own lease so that
+     * a long-running backfill does not block scheduled collection runs.
+     */
+    public static final String METRICS_BACKFILL_LEASE_NAME = 
+            "JOB_METRICS_BACKFILL";
+    
+    /**
+     * Prefix applied to the names of the checkpoint records maintained by
+     * historical backfills.  The remainder of the name identifies the time
+     * range being backfilled.
+     */
+    public static final String METRICS_BACKFILL_CHECKPOINT_PREFIX = 
+            "BACKFILL_";
+    
+    /**
+     * Property defining the size (in hours) of the time slices a historical
+     * backfill is split into.  A checkpoint is written after each slice.
+     */
+    public static final String METRICS_BACKFILL_SLICE_HOURS_PROPERTY = 
+            "bundler.metrics.backfill_slice_hours";
+    
+    /**
+     * Default backfill slice size (in hours).
+     */
+    public static final int DEFAULT_METRICS_BACKFILL_SLICE_HOURS = 24;
+    
+    /**
+     * Property defining the maximum rate (in rows per second) at which a 
+     * historical backfill writes metrics records.  A value of 0 disables 
+     * throttling.
+     */
+    public static final String METRICS_BACKFILL_MAX_ROWS_PER_SECOND_PROPERTY = 
+            "bundler.metrics.backfill_max_rows_per_second";
+    
+    /**
+     * Default maximum backfill write rate (rows per second).
+     */
+    public static final int DEFAULT_METRICS_BACKFILL_MAX_ROWS_PER_SECOND = 100;
+
+    /**
+     * Property defining the interval (in minutes) between scheduled 
+     * collection runs.
+     */
+    public static final String METRICS_SCHEDULE_INTERVAL_PROPERTY = 
+            "bundler.metrics.schedule_interval";
+    
+    /**
+     * Default interval (in minutes) between scheduled collection runs.
+     */
+    public static final int DEFAULT_METRICS_SCHEDULE_INTERVAL = 60;
+    
+    /**
+     * Property enabling the adaptive schedule.  If enabled, the interval
+     * between scheduled collection runs is shortened when the previous run
+     * found a large backlog and lengthened when it found no work.
+     */
+    public static final String METRICS_SCHEDULE_ADAPTIVE_PROPERTY = 
+            "bundler.metrics.schedule_adaptive";
+    
+    /**
+     * Default adaptive schedule setting.
+     */
+    public static final boolean DEFAULT_METRICS_SCHEDULE_ADAPTIVE = false;
+    
+    /**
+     * Properties defining the bounds (in minutes) of the interval used by 
+     * the adaptive schedule.
+     */
+    public static final String METRICS_SCHEDULE_MIN_INTERVAL_PROPERTY = 
+            "bundler.metrics.schedule_min_interval";
+    public static final String METRICS_SCHEDULE_MAX_INTERVAL_PROPERTY = 
+            "bundler.metrics.schedule_max_interval";
+    
+    /**
+     * Default bounds (in minutes) of the adaptive schedule interval.
+     */
+    public static final int DEFAULT_METRICS_SCHEDULE_MIN_INTERVAL = 5;
+    public static final int DEFAULT_METRICS_SCHEDULE_MAX_INTERVAL = 120;
+    
+    /**
+     * Property enabling the in-memory columnar copy of the job metrics 
+     * records used for ad hoc analytical scans.  The store is loaded from 
+     * the database on first use and requires roughly 70 bytes of heap per
+     * job.
+     */
+    public static final String METRICS_COLUMNAR_STORE_PROPERTY = 
+            "bundler.metrics.columnar_store";
+    
+    /**
+     * Default columnar store setting.
+     */
+    public static final boolean DEFAULT_METRICS_COLUMNAR_STORE = false;
+    
+    /**
+     * Property defining the age (in minutes) after which the columnar store
+     * is reloaded from the database.  The store only sees the records 
+     * inserted by its own node, so the reload picks up the records written
+     * by the other nodes in the cluster.  0 disables the periodic reload.
+     */
+    public static final String METRICS_COLUMNAR_RELOAD_INTERVAL_PROPERTY = 
+            "bundler.metrics.columnar_reload_interval";
+    
+    /**
+     * Default columnar store reload interval (in minutes).
+     */
+    public static final int DEFAULT_METRICS_COLUMNAR_RELOAD_INTERVAL = 60;
+
+    /**
+     * Property defining the number of failed attempts to write the metrics
+     * record for a job after which the job is moved to the dead-letter 
+     * state and no longer retried.
+     */
+    public static final String METRICS_RETRY_MAX_ATTEMPTS_PROPERTY = 
+            "bundler.metrics.retry_max_attempts";
+    
+    /**
+     * Default maximum number of failed attempts.
+     */
+    public static final int DEFAULT_METRICS_RETRY_MAX_ATTEMPTS = 5;
+    
+    /**
+     * Properties defining the delay (in minutes) before the first retry of
+     * a failed job, and the upper bound of the delay.  The delay doubles 
+     * after each failed attempt.
+     */
+    public static final String METRICS_RETRY_BASE_DELAY_PROPERTY = 
+            "bundler.metrics.retry_base_delay";
+    public static final String METRICS_RETRY_MAX_DELAY_PROPERTY = 
+            "bundler.metrics.retry_max_delay";
+    
+    /**
+     * Default retry delay bounds (in minutes).
+     */
+    public static final int DEFAULT_METRICS_RETRY_BASE_DELAY = 60;
+    public static final int DEFAULT_METRICS_RETRY_MAX_DELAY = 1440;
+
+    /**
+     * The name of the destination queue on which Archiver jobs will be
      * placed.
      */
     public static final String ARCHIVER_DEST_Q = "queue/ArchiverMessageQ";
@@ -140,4 +396,20 @@ public interface BundlerConstantsI {
     public static final String TRACKER_DEST_Q = "queue/TrackerMessageQ";
     //public static final String TRACKER_DEST_Q = "queue/TrackerMessageQ_TEST";
     
+    /**
+     * The name of the topic on which job-completion notifications are 
+     * published.  The metrics application subscribes to this topic (rather 
+     * than consuming from the point-to-point tracker queue) so that it does
+     * not compete with the tracker for messages.
+     */
+    public static final String JOB_COMPLETION_TOPIC = 
+            "topic/JobCompletionTopic";
+    
+    /**
+     * The name of the shared durable subscription used by the metrics 
+     * application (on every node) to receive job-completion notifications.
+     */
+    public static final String METRICS_SUBSCRIPTION_NAME = 
+            "BundlerMetricsSubscription";
+    
 }
@@ -11,6 +11,7 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 import mil.nga.bundler.types.ArchiveType;
@@ -24,7 +25,8 @@ import mil.nga.bundler.types.JobStateType;
  * @author L. Craig Carpenter
  */
 @Entity
-@Table(name="BUNDLER_JOB_METRICS")
+@Table(name="BUNDLER_JOB_METRICS",
+       indexes={ @Index(name="JOB_METRICS_START_TIME_IDX", columnList="START_TIME, JOB_ID") })
 public class BundlerJobMetrics implements Serializable {
 
     /**
@@ -0,0 +1,223 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Persisted high-water mark used by the incremental metrics collector.  The
+ * checkpoint records the END_TIME and JOB_ID of the last job for which a
+ * metrics record was committed.  Jobs are processed in
+ * (END_TIME, JOB_ID) order so the next collection run only needs to
+ * consider jobs that sort after the checkpoint.
+ *
+ * Note: This class contains the persistence annotations but we don't actually
+ * use hibernate.  They were left in in order to ensure the container builds the
+ * target table.
+ *
+ * @author L. Craig Carpenter
+ */
+@Entity
+@Table(name="BUNDLER_METRICS_CHECKPOINT")
+public class CollectionCheckpoint implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = 2925706160846152190L;
+
+    /**
+     * String to use to output dates in String format for logging purposes.
+     */
+    private static final String DATE_STRING = "yyyy/MM/dd HH:mm:ss:SSS";
+
+    /**
+     * The name of the checkpoint (primary key).
+     */
+    @Id
+    @Column(name="CHECKPOINT_NAME")
+    private String name;
+
+    /**
+     * END_TIME of the last job processed.
+     */
+    @Column(name="END_TIME")
+    private long endTime = 0L;
+
+    /**
+     * JOB_ID of the last job processed.  Used to break ties between jobs
+     * with identical END_TIME values.
+     */
+    @Column(name="JOB_ID")
+    private String jobID = "";
+
+    /**
+     * The time the checkpoint was last advanced.
+     */
+    @Column(name="LAST_UPDATE")
+    private long lastUpdate = 0L;
+
+    /**
+     * Default no-arg constructor required by hibernate.
+     */
+    public CollectionCheckpoint() {}
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public CollectionCheckpoint(CollectionCheckpointBuilder builder) {
+        endTime    = builder.endTime;
+        jobID      = builder.jobID;
+        lastUpdate = builder.lastUpdate;
+        name       = builder.name;
+    }
+
+    /**
+     * Getter method for the END_TIME of the last job processed.
+     * @return The END_TIME of the last job processed.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Getter method for the JOB_ID of the last job processed.
+     * @return The JOB_ID of the last job processed.
+     */
+    public String getJobID() {
+        return jobID;
+    }
+
+    /**
+     * Getter method for the time the checkpoint was last advanced.
+     * @return The time the checkpoint was last advanced.
+     */
+    public long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    /**
+     * Getter method for the name of the checkpoint.
+     * @return The checkpoint name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        DateFormat df = new SimpleDateFormat(DATE_STRING);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Checkpoint => [ ");
+        sb.append(getName());
+        sb.append(" ], End Time => [ ");
+        sb.append(getEndTime());
+        sb.append(" ], Job ID => [ ");
+        sb.append(getJobID());
+        sb.append(" ], Last Update => [ ");
+        sb.append(df.format(new Date(getLastUpdate())));
+        sb.append(" ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * CollectionCheckpoint objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class CollectionCheckpointBuilder {
+
+        private long   endTime    = 0L;
+        private String jobID      = "";
+        private long   lastUpdate = System.currentTimeMillis();
+        private String name;
+
+        /**
+         * Method used to actually construct the CollectionCheckpoint object.
+         * @return A constructed and validated CollectionCheckpoint object.
+         */
+        public CollectionCheckpoint build() throws IllegalStateException {
+            CollectionCheckpoint object = new CollectionCheckpoint(this);
+            validateCollectionCheckpointObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the END_TIME of the last job processed.
+         *
+         * @param value The END_TIME of the last job processed.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionCheckpointBuilder endTime(long value) {
+            endTime = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the JOB_ID of the last job processed.
+         *
+         * @param value The JOB_ID of the last job processed.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionCheckpointBuilder jobID(String value) {
+            if (value == null) {
+                jobID = "";
+            }
+            else {
+                jobID = value;
+            }
+            return this;
+        }
+
+        /**
+         * Setter method for the time the checkpoint was last advanced.
+         *
+         * @param value The time the checkpoint was last advanced.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionCheckpointBuilder lastUpdate(long value) {
+            lastUpdate = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the name of the checkpoint.
+         *
+         * @param value The checkpoint name.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionCheckpointBuilder name(String value) {
+            name = value;
+            return this;
+        }
+
+        /**
+         * Validate that all required fields are populated.
+         *
+         * @param object The CollectionCheckpoint object to validate.
+         * @throws IllegalStateException Thrown if any of the required fields
+         * are not populated.
+         */
+        private void validateCollectionCheckpointObject(
+                CollectionCheckpoint object) throws IllegalStateException {
+            if ((object.getName() == null) || (object.getName().isEmpty())) {
+                throw new IllegalStateException("Invalid value for "
+                        + "CHECKPOINT_NAME.  Value is [ "
+                        + object.getName()
+                        + " ].");
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Lease record used to ensure that only one node in the cluster executes a
+ * metrics collection run at any one time.  The lease identifies the run
+ * currently holding it and the time at which it expires.  The holder is
+ * expected to renew the lease while the run is executing.  If the holder
+ * dies, the lease expires and may be taken over by another node.
+ *
+ * Note: This class contains the persistence annotations but we don't actually
+ * use hibernate.  They were left in in order to ensure the container builds the
+ * target table.
+ *
+ * @author L. Craig Carpenter
+ */
+@Entity
+@Table(name="BUNDLER_METRICS_LEASE")
+public class CollectionLease implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -3158842066934129715L;
+
+    /**
+     * String to use to output dates in String format for logging purposes.
+     */
+    private static final String DATE_STRING = "yyyy/MM/dd HH:mm:ss:SSS";
+
+    /**
+     * The name of the lease (primary key).
+     */
+    @Id
+    @Column(name="LEASE_NAME")
+    private String name;
+
+    /**
+     * The time the lease was acquired by the current holder.
+     */
+    @Column(name="ACQUIRED")
+    private long acquired = 0L;
+
+    /**
+     * The time at which the lease expires unless renewed.
+     */
+    @Column(name="EXPIRES")
+    private long expires = 0L;
+
+    /**
+     * The server (JVM) on which the current holder is executing.
+     */
+    @Column(name="OWNER")
+    private String owner = "";
+
+    /**
+     * The ID of the collection run holding the lease.
+     */
+    @Column(name="RUN_ID")
+    private String runID = "";
+
+    /**
+     * Default no-arg constructor required by hibernate.
+     */
+    public CollectionLease() {}
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public CollectionLease(CollectionLeaseBuilder builder) {
+        acquired = builder.acquired;
+        expires  = builder.expires;
+        name     = builder.name;
+        owner    = builder.owner;
+        runID    = builder.runID;
+    }
+
+    /**
+     * Getter method for the time the lease was acquired.
+     * @return The time the lease was acquired.
+     */
+    public long getAcquired() {
+        return acquired;
+    }
+
+    /**
+     * Getter method for the time at which the lease expires.
+     * @return The lease expiration time.
+     */
+    public long getExpires() {
+        return expires;
+    }
+
+    /**
+     * Getter method for the name of the lease.
+     * @return The lease name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter method for the server on which the holder is executing.
+     * @return The lease owner.
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Getter method for the ID of the run holding the lease.
+     * @return The run ID.
+     */
+    public String getRunID() {
+        return runID;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        DateFormat df = new SimpleDateFormat(DATE_STRING);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Lease => [ ");
+        sb.append(getName());
+        sb.append(" ], Run ID => [ ");
+        sb.append(getRunID());
+        sb.append(" ], Owner => [ ");
+        sb.append(getOwner());
+        sb.append(" ], Acquired => [ ");
+        sb.append(df.format(new Date(getAcquired())));
+        sb.append(" ], Expires => [ ");
+        sb.append(df.format(new Date(getExpires())));
+        sb.append(" ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * CollectionLease objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class CollectionLeaseBuilder {
+
+        private long   acquired = 0L;
+        private long   expires  = 0L;
+        private String name;
+        private String owner    = "";
+        private String runID    = "";
+
+        /**
+         * Method used to actually construct the CollectionLease object.
+         * @return A constructed and validated CollectionLease object.
+         */
+        public CollectionLease build() throws IllegalStateException {
+            CollectionLease object = new CollectionLease(this);
+            validateCollectionLeaseObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the time the lease was acquired.
+         *
+         * @param value The time the lease was acquired.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionLeaseBuilder acquired(long value) {
+            acquired = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the time at which the lease expires.
+         *
+         * @param value The lease expiration time.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionLeaseBuilder expires(long value) {
+            expires = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the name of the lease.
+         *
+         * @param value The lease name.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionLeaseBuilder name(String value) {
+            name = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the server on which the holder is executing.
+         *
+         * @param value The lease owner.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionLeaseBuilder owner(String value) {
+            if (value == null) {
+                owner = "";
+            }
+            else {
+                owner = value;
+            }
+            return this;
+        }
+
+        /**
+         * Setter method for the ID of the run holding the lease.
+         *
+         * @param value The run ID.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionLeaseBuilder runID(String value) {
+            if (value == null) {
+                runID = "";
+            }
+            else {
+                runID = value;
+            }
+            return this;
+        }
+
+        /**
+         * Validate that all required fields are populated.
+         *
+         * @param object The CollectionLease object to validate.
+         * @throws IllegalStateException Thrown if any of the required fields
+         * are not populated.
+         */
+        private void validateCollectionLeaseObject(
+                CollectionLease object) throws IllegalStateException {
+            if ((object.getName() == null) || (object.getName().isEmpty())) {
+                throw new IllegalStateException("Invalid value for "
+                        + "LEASE_NAME.  Value is [ "
+                        + object.getName()
+                        + " ].");
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import mil.nga.bundler.types.PartitionStateType;
+
+/**
+ * Claim record for a single hash partition of a cluster-wide metrics 
+ * collection run.  The node holding the collection lease creates one record
+ * per partition when the run starts.  Any node in the cluster may then 
+ * claim a pending partition (or steal a partition whose claim has expired)
+ * and process the jobs that hash to it.
+ *
+ * Note: This class contains the persistence annotations but we don't actually
+ * use hibernate.  They were left in in order to ensure the container builds the
+ * target table.
+ *
+ * @author L. Craig Carpenter
+ */
+@Entity
+@Table(name="BUNDLER_METRICS_PARTITION")
+public class CollectionPartition implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = 7421305968215530771L;
+
+    /**
+     * The primary key (RUN_ID and PARTITION_ID combined).
+     */
+    @Id
+    @Column(name="PARTITION_KEY")
+    private String key;
+
+    /**
+     * The time at which the current claim expires unless renewed.
+     */
+    @Column(name="EXPIRES")
+    private long expires = 0L;
+
+    /**
+     * The number of jobs processed from the partition.
+     */
+    @Column(name="JOBS_PROCESSED")
+    private long jobsProcessed = 0L;
+
+    /**
+     * The server (JVM) that currently holds (or completed) the partition.
+     */
+    @Column(name="OWNER")
+    private String owner = "";
+
+    /**
+     * The partition number (0 to NUM_PARTITIONS - 1).
+     */
+    @Column(name="PARTITION_ID")
+    private int partition = 0;
+
+    /**
+     * The total number of partitions in the run.
+     */
+    @Column(name="NUM_PARTITIONS")
+    private int partitions = 1;
+
+    /**
+     * The ID of the collection run the partition belongs to.
+     */
+    @Column(name="RUN_ID")
+    private String runID;
+
+    /**
+     * The state of the partition.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name="PARTITION_STATE")
+    private PartitionStateType state = PartitionStateType.PENDING;
+
+    /**
+     * Default no-arg constructor required by hibernate.
+     */
+    public CollectionPartition() {}
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public CollectionPartition(CollectionPartitionBuilder builder) {
+        expires       = builder.expires;
+        jobsProcessed = builder.jobsProcessed;
+        owner         = builder.owner;
+        partition     = builder.partition;
+        partitions    = builder.partitions;
+        runID         = builder.runID;
+        state         = builder.state;
+        key           = getKey(runID, partition);
+    }
+
+    /**
+     * Build the primary key associated with a partition of a run.
+     *
+     * @param runID The run ID.
+     * @param partition The partition number.
+     * @return The primary key.
+     */
+    public static String getKey(String runID, int partition) {
+        return runID + "_" + partition;
+    }
+
+    /**
+     * Getter method for the time at which the current claim expires.
+     * @return The claim expiration time.
+     */
+    public long getExpires() {
+        return expires;
+    }
+
+    /**
+     * Getter method for the number of jobs processed from the partition.
+     * @return The number of jobs processed.
+     */
+    public long getJobsProcessed() {
+        return jobsProcessed;
+    }
+
+    /**
+     * Getter method for the primary key.
+     * @return The primary key.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Getter method for the server holding the partition.
+     * @return The partition owner.
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Getter method for the partition number.
+     * @return The partition number.
+     */
+    public int getPartition() {
+        return partition;
+    }
+
+    /**
+     * Getter method for the total number of partitions in the run.
+     * @return The number of partitions.
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Getter method for the ID of the run the partition belongs to.
+     * @return The run ID.
+     */
+    public String getRunID() {
+        return runID;
+    }
+
+    /**
+     * Getter method for the state of the partition.
+     * @return The partition state.
+     */
+    public PartitionStateType getState() {
+        return state;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Run ID => [ ");
+        sb.append(getRunID());
+        sb.append(" ], Partition => [ ");
+        sb.append(getPartition());
+        sb.append(" / ");
+        sb.append(getPartitions());
+        sb.append(" ], State => [ ");
+        sb.append(getState());
+        sb.append(" ], Owner => [ ");
+        sb.append(getOwner());
+        sb.append(" ], Jobs Processed => [ ");
+        sb.append(getJobsProcessed());
+        sb.append(" ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * CollectionPartition objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class CollectionPartitionBuilder {
+
+        private long               expires       = 0L;
+        private long               jobsProcessed = 0L;
+        private String             owner         = "";
+        private int                partition     = 0;
+        private int                partitions    = 1;
+        private String             runID;
+        private PartitionStateType state         = PartitionStateType.PENDING;
+
+        /**
+         * Method used to actually construct the CollectionPartition object.
+         * @return A constructed and validated CollectionPartition object.
+         */
+        public CollectionPartition build() throws IllegalStateException {
+            CollectionPartition object = new CollectionPartition(this);
+            validateCollectionPartitionObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the time at which the current claim expires.
+         *
+         * @param value The claim expiration time.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionPartitionBuilder expires(long value) {
+            expires = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of jobs processed from the partition.
+         *
+         * @param value The number of jobs processed.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionPartitionBuilder jobsProcessed(long value) {
+            jobsProcessed = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the server holding the partition.
+         *
+         * @param value The partition owner.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionPartitionBuilder owner(String value) {
+            if (value == null) {
+                owner = "";
+            }
+            else {
+                owner = value;
+            }
+            return this;
+        }
+
+        /**
+         * Setter method for the partition number.
+         *
+         * @param value The partition number.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionPartitionBuilder partition(int value) {
+            partition = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the total number of partitions in the run.
+         *
+         * @param value The number of partitions.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionPartitionBuilder partitions(int value) {
+            partitions = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the ID of the run the partition belongs to.
+         *
+         * @param value The run ID.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionPartitionBuilder runID(String value) {
+            runID = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the state of the partition.
+         *
+         * @param value The partition state.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionPartitionBuilder state(PartitionStateType value) {
+            state = value;
+            return this;
+        }
+
+        /**
+         * Validate that all required fields are populated.
+         *
+         * @param object The CollectionPartition object to validate.
+         * @throws IllegalStateException Thrown if any of the required fields
+         * are not populated.
+         */
+        private void validateCollectionPartitionObject(
+                CollectionPartition object) throws IllegalStateException {
+            if ((object.getRunID() == null) || (object.getRunID().isEmpty())) {
+                throw new IllegalStateException("Invalid value for "
+                        + "RUN_ID.  Value is [ "
+                        + object.getRunID()
+                        + " ].");
+            }
+            if ((object.getPartition() < 0) || 
+                    (object.getPartition() >= object.getPartitions())) {
+                throw new IllegalStateException("Invalid value for "
+                        + "PARTITION_ID.  Value is [ "
+                        + object.getPartition()
+                        + " ] and NUM_PARTITIONS is [ "
+                        + object.getPartitions()
+                        + " ].");
+            }
+            if (object.getState() == null) {
+                throw new IllegalStateException("Invalid value for "
+                        + "PARTITION_STATE.  Value is null.");
+            }
+        }
+    }
+}
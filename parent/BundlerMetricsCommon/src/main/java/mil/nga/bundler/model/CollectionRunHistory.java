@@ -0,0 +1,656 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import mil.nga.bundler.types.CollectionRunStateType;
+
+/**
+ * History record written at the end of each metrics collection run.  In
+ * addition to the job and row counts, the record holds the time spent in
+ * each stage of the run (discovery, load, compute and insert) so that
+ * growth in the cost of collection can be tracked over time and attributed
+ * to a particular stage.
+ *
+ * Note: This class contains the persistence annotations but we don't actually
+ * use hibernate.  They were left in in order to ensure the container builds
+ * the
+ * target table.
+ *
+ * @author L. Craig Carpenter
+ */
+@Entity
+@Table(name="BUNDLER_METRICS_RUN_HISTORY")
+public class CollectionRunHistory implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -2270863457015281236L;
+
+    /**
+     * String to use to output dates in String format for logging purposes.
+     */
+    private static final String DATE_STRING = "yyyy/MM/dd HH:mm:ss:SSS";
+
+    /**
+     * The ID of the collection run (primary key).
+     */
+    @Id
+    @Column(name="RUN_ID")
+    private String runID;
+
+    /**
+     * The time spent computing metrics records.
+     */
+    @Column(name="COMPUTE_TIME")
+    private long computeTime = 0L;
+
+    /**
+     * The number of jobs processed concurrently.
+     */
+    @Column(name="CONCURRENCY")
+    private int concurrency = 1;
+
+    /**
+     * The time spent determining which jobs need to be processed.
+     */
+    @Column(name="DISCOVERY_TIME")
+    private long discoveryTime = 0L;
+
+    /**
+     * The time the run completed.
+     */
+    @Column(name="END_TIME")
+    private long endTime = 0L;
+
+    /**
+     * The time spent inserting metrics records.
+     */
+    @Column(name="INSERT_TIME")
+    private long insertTime = 0L;
+
+    /**
+     * The number of jobs loaded and processed.
+     */
+    @Column(name="JOBS_PROCESSED")
+    private long jobsProcessed = 0L;
+
+    /**
+     * The number of candidate jobs found by the run.
+     */
+    @Column(name="JOBS_SCANNED")
+    private long jobsScanned = 0L;
+
+    /**
+     * The number of jobs that did not result in a metrics record.
+     */
+    @Column(name="JOBS_SKIPPED")
+    private long jobsSkipped = 0L;
+
+    /**
+     * The time spent loading jobs from the database.
+     */
+    @Column(name="LOAD_TIME")
+    private long loadTime = 0L;
+
+    /**
+     * The maximum time required to load and process a single job.
+     */
+    @Column(name="MAX_JOB_LATENCY")
+    private long maxJobLatency = 0L;
+
+    /**
+     * The collection mode (e.g. incremental or full).
+     */
+    @Column(name="RUN_MODE")
+    private String mode = "";
+
+    /**
+     * The server (JVM) on which the run executed.
+     */
+    @Column(name="OWNER")
+    private String owner = "";
+
+    /**
+     * The number of metrics records that could not be written.
+     */
+    @Column(name="ROWS_FAILED")
+    private long rowsFailed = 0L;
+
+    /**
+     * The number of metrics records written.
+     */
+    @Column(name="ROWS_INSERTED")
+    private long rowsInserted = 0L;
+
+    /**
+     * The time the run started.
+     */
+    @Column(name="START_TIME")
+    private long startTime = 0L;
+
+    /**
+     * The final state of the run.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name="RUN_STATE")
+    private CollectionRunStateType state = CollectionRunStateType.COMPLETE;
+
+    /**
+     * Default no-arg constructor required by hibernate.
+     */
+    public CollectionRunHistory() {}
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public CollectionRunHistory(CollectionRunHistoryBuilder builder) {
+        computeTime   = builder.computeTime;
+        concurrency   = builder.concurrency;
+        discoveryTime = builder.discoveryTime;
+        endTime       = builder.endTime;
+        insertTime    = builder.insertTime;
+        jobsProcessed = builder.jobsProcessed;
+        jobsScanned   = builder.jobsScanned;
+        jobsSkipped   = builder.jobsSkipped;
+        loadTime      = builder.loadTime;
+        maxJobLatency = builder.maxJobLatency;
+        mode          = builder.mode;
+        owner         = builder.owner;
+        rowsFailed    = builder.rowsFailed;
+        rowsInserted  = builder.rowsInserted;
+        runID         = builder.runID;
+        startTime     = builder.startTime;
+        state         = builder.state;
+    }
+
+    /**
+     * Getter method for the time spent computing metrics records.
+     * @return The compute time in milliseconds.
+     */
+    public long getComputeTime() {
+        return computeTime;
+    }
+
+    /**
+     * Getter method for the number of jobs processed concurrently.
+     * @return The concurrency used for the run.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Getter method for the time spent determining which jobs need to be
+     * processed.
+     * @return The discovery time in milliseconds.
+     */
+    public long getDiscoveryTime() {
+        return discoveryTime;
+    }
+
+    /**
+     * Getter method for the elapsed time of the run.
+     * @return The elapsed time in milliseconds.
+     */
+    public long getElapsedTime() {
+        return endTime - startTime;
+    }
+
+    /**
+     * Getter method for the time the run completed.
+     * @return The time the run completed.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Getter method for the time spent inserting metrics records.
+     * @return The insert time in milliseconds.
+     */
+    public long getInsertTime() {
+        return insertTime;
+    }
+
+    /**
+     * Getter method for the number of jobs loaded and processed.
+     * @return The number of jobs processed.
+     */
+    public long getJobsProcessed() {
+        return jobsProcessed;
+    }
+
+    /**
+     * Getter method for the number of candidate jobs found by the run.
+     * @return The number of jobs scanned.
+     */
+    public long getJobsScanned() {
+        return jobsScanned;
+    }
+
+    /**
+     * Getter method for the number of jobs that did not result in a metrics
+     * record.
+     * @return The number of jobs skipped.
+     */
+    public long getJobsSkipped() {
+        return jobsSkipped;
+    }
+
+    /**
+     * Getter method for the time spent loading jobs from the database.
+     * @return The load time in milliseconds.
+     */
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * Getter method for the maximum time required to load and process a
+     * single job.
+     * @return The maximum per-job latency in milliseconds.
+     */
+    public long getMaxJobLatency() {
+        return maxJobLatency;
+    }
+
+    /**
+     * Getter method for the collection mode (e.g. incremental or full).
+     * @return The collection mode.
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Getter method for the server on which the run executed.
+     * @return The run owner.
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Getter method for the number of metrics records that could not be
+     * written.
+     * @return The number of failed rows.
+     */
+    public long getRowsFailed() {
+        return rowsFailed;
+    }
+
+    /**
+     * Getter method for the number of metrics records written.
+     * @return The number of inserted rows.
+     */
+    public long getRowsInserted() {
+        return rowsInserted;
+    }
+
+    /**
+     * Getter method for the ID of the collection run.
+     * @return The run ID.
+     */
+    public String getRunID() {
+        return runID;
+    }
+
+    /**
+     * Getter method for the time the run started.
+     * @return The time the run started.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Getter method for the final state of the run.
+     * @return The run state.
+     */
+    public CollectionRunStateType getState() {
+        return state;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        DateFormat df = new SimpleDateFormat(DATE_STRING);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Run ID => [ ");
+        sb.append(getRunID());
+        sb.append(" ], Mode => [ ");
+        sb.append(getMode());
+        sb.append(" ], State => [ ");
+        sb.append(getState());
+        sb.append(" ], Owner => [ ");
+        sb.append(getOwner());
+        sb.append(" ], Start Time => [ ");
+        sb.append(df.format(new Date(getStartTime())));
+        sb.append(" ], Elapsed Time => [ ");
+        sb.append(getElapsedTime());
+        sb.append(" ms ], Discovery Time => [ ");
+        sb.append(getDiscoveryTime());
+        sb.append(" ms ], Load Time => [ ");
+        sb.append(getLoadTime());
+        sb.append(" ms ], Compute Time => [ ");
+        sb.append(getComputeTime());
+        sb.append(" ms ], Insert Time => [ ");
+        sb.append(getInsertTime());
+        sb.append(" ms ], Jobs Scanned => [ ");
+        sb.append(getJobsScanned());
+        sb.append(" ], Jobs Skipped => [ ");
+        sb.append(getJobsSkipped());
+        sb.append(" ], Rows Inserted => [ ");
+        sb.append(getRowsInserted());
+        sb.append(" ], Rows Failed => [ ");
+        sb.append(getRowsFailed());
+        sb.append(" ], Max Job Latency => [ ");
+        sb.append(getMaxJobLatency());
+        sb.append(" ms ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * CollectionRunHistory objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class CollectionRunHistoryBuilder {
+
+        private long                   computeTime   = 0L;
+        private int                    concurrency   = 1;
+        private long                   discoveryTime = 0L;
+        private long                   endTime       = 0L;
+        private long                   insertTime    = 0L;
+        private long                   jobsProcessed = 0L;
+        private long                   jobsScanned   = 0L;
+        private long                   jobsSkipped   = 0L;
+        private long                   loadTime      = 0L;
+        private long                   maxJobLatency = 0L;
+        private String                 mode          = "";
+        private String                 owner         = "";
+        private long                   rowsFailed    = 0L;
+        private long                   rowsInserted  = 0L;
+        private String                 runID;
+        private long                   startTime     = 0L;
+        private CollectionRunStateType state         = CollectionRunStateType.COMPLETE;
+
+        /**
+         * Method used to actually construct the CollectionRunHistory object.
+         * @return A constructed and validated CollectionRunHistory object.
+         */
+        public CollectionRunHistory build() throws IllegalStateException {
+            CollectionRunHistory object = new CollectionRunHistory(this);
+            validateCollectionRunHistoryObject(object);
+            return object;
+        }
+
+        /**
+         * Populate the builder from the statistics accumulated by a
+         * collection run.
+         *
+         * @param value The run statistics.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder statistics(
+                CollectionRunStatistics value) {
+            if (value != null) {
+                computeTime   = value.getComputeTime();
+                concurrency   = value.getConcurrency();
+                discoveryTime = value.getDiscoveryTime();
+                endTime       = value.getEndTime();
+                insertTime    = value.getInsertTime();
+                jobsProcessed = value.getJobsProcessed();
+                jobsScanned   = value.getJobsDiscovered();
+                jobsSkipped   = value.getJobsSkipped();
+                loadTime      = value.getLoadTime();
+                maxJobLatency = value.getMaxJobLatency();
+                rowsFailed    = value.getRowsFailed();
+                rowsInserted  = value.getRowsInserted();
+                startTime     = value.getStartTime();
+                state         = value.getState();
+                mode(value.getMode());
+                runID(value.getRunID());
+            }
+            return this;
+        }
+
+        /**
+         * Setter method for the time spent computing metrics records.
+         *
+         * @param value The compute time in milliseconds.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder computeTime(long value) {
+            computeTime = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of jobs processed concurrently.
+         *
+         * @param value The concurrency used for the run.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder concurrency(int value) {
+            concurrency = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the time spent determining which jobs need to be
+         * processed.
+         *
+         * @param value The discovery time in milliseconds.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder discoveryTime(long value) {
+            discoveryTime = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the time the run completed.
+         *
+         * @param value The time the run completed.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder endTime(long value) {
+            endTime = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the time spent inserting metrics records.
+         *
+         * @param value The insert time in milliseconds.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder insertTime(long value) {
+            insertTime = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of jobs loaded and processed.
+         *
+         * @param value The number of jobs processed.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder jobsProcessed(long value) {
+            jobsProcessed = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of candidate jobs found by the run.
+         *
+         * @param value The number of jobs scanned.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder jobsScanned(long value) {
+            jobsScanned = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of jobs that did not result in a
+         * metrics record.
+         *
+         * @param value The number of jobs skipped.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder jobsSkipped(long value) {
+            jobsSkipped = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the time spent loading jobs from the database.
+         *
+         * @param value The load time in milliseconds.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder loadTime(long value) {
+            loadTime = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the maximum time required to load and process a
+         * single job.
+         *
+         * @param value The maximum per-job latency in milliseconds.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder maxJobLatency(long value) {
+            maxJobLatency = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the collection mode (e.g. incremental or full).
+         *
+         * @param value The collection mode.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder mode(String value) {
+            if (value == null) {
+                mode = "";
+            }
+            else {
+                mode = value;
+            }
+            return this;
+        }
+
+        /**
+         * Setter method for the server on which the run executed.
+         *
+         * @param value The run owner.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder owner(String value) {
+            if (value == null) {
+                owner = "";
+            }
+            else {
+                owner = value;
+            }
+            return this;
+        }
+
+        /**
+         * Setter method for the number of metrics records that could not be
+         * written.
+         *
+         * @param value The number of failed rows.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder rowsFailed(long value) {
+            rowsFailed = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of metrics records written.
+         *
+         * @param value The number of inserted rows.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder rowsInserted(long value) {
+            rowsInserted = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the ID of the collection run.
+         *
+         * @param value The run ID.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder runID(String value) {
+            runID = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the time the run started.
+         *
+         * @param value The time the run started.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder startTime(long value) {
+            startTime = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the final state of the run.
+         *
+         * @param value The run state.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionRunHistoryBuilder state(CollectionRunStateType value) {
+            state = value;
+            return this;
+        }
+
+        /**
+         * Validate that all required fields are populated.
+         *
+         * @param object The CollectionRunHistory object to validate.
+         * @throws IllegalStateException Thrown if any of the required fields
+         * are not populated.
+         */
+        private void validateCollectionRunHistoryObject(
+                CollectionRunHistory object) throws IllegalStateException {
+            if ((object.getRunID() == null) || (object.getRunID().isEmpty())) {
+                throw new IllegalStateException("Invalid value for "
+                        + "RUN_ID.  Value is [ "
+                        + object.getRunID()
+                        + " ].");
+            }
+            if (object.getState() == null) {
+                throw new IllegalStateException("Invalid value for "
+                        + "RUN_STATE.  Value is [ null ].");
+            }
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+import java.text.DecimalFormat;
+
+import mil.nga.bundler.types.CollectionRunStateType;
+
+/**
+ * Simple object used to accumulate statistics associated with a single
+ * execution of the metrics collection process.  The statistics are only 
+ * updated by the thread coordinating the collection run.  The fields are 
+ * volatile so that progress may be safely reported by other threads while
+ * the run is executing.
+ *
+ * The time spent in each stage of the run (discovery of the candidate 
+ * jobs, loading the jobs, computing the metrics, and inserting the 
+ * metrics records) is accumulated separately.  When jobs are loaded 
+ * concurrently the load and compute times are the sum over all of the 
+ * workers and may therefore exceed the elapsed time of the run.
+ *
+ * @author L. Craig Carpenter
+ */
+public class CollectionRunStatistics implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -6181027472870925431L;
+
+    private volatile long                   computeTime     = 0L;
+    private volatile int                    concurrency     = 1;
+    private volatile long                   discoveryTime   = 0L;
+    private volatile long                   endTime         = 0L;
+    private volatile long                   insertTime      = 0L;
+    private volatile long                   jobsDiscovered  = 0L;
+    private volatile long                   jobsProcessed   = 0L;
+    private volatile long                   jobsSkipped     = 0L;
+    private volatile long                   loadTime        = 0L;
+    private volatile long                   maxJobLatency   = 0L;
+    private volatile String                 mode            = "";
+    private volatile long                   rowsFailed      = 0L;
+    private volatile long                   rowsInserted    = 0L;
+    private volatile String                 runID           = "";
+    private volatile long                   startTime       = System.currentTimeMillis();
+    private volatile CollectionRunStateType state           = CollectionRunStateType.NOT_STARTED;
+    private volatile long                   totalJobLatency = 0L;
+
+    /**
+     * Default constructor.
+     */
+    public CollectionRunStatistics() { }
+
+    /**
+     * Constructor used when the run is tracked by ID.
+     *
+     * @param runID The unique ID assigned to the run.
+     */
+    public CollectionRunStatistics(String runID) {
+        this.runID = runID;
+    }
+
+    /**
+     * Record the time required to load and process a single job.
+     *
+     * @param latency The time (in milliseconds) required to process the job.
+     */
+    public void addJobLatency(long latency) {
+        jobsProcessed++;
+        totalJobLatency += latency;
+        if (latency > maxJobLatency) {
+            maxJobLatency = latency;
+        }
+    }
+
+    /**
+     * Record time spent computing metrics records.
+     *
+     * @param value The time in milliseconds.
+     */
+    public void addComputeTime(long value) {
+        computeTime += value;
+    }
+
+    /**
+     * Record time spent determining which jobs need to be processed.
+     *
+     * @param value The time in milliseconds.
+     */
+    public void addDiscoveryTime(long value) {
+        discoveryTime += value;
+    }
+
+    /**
+     * Record time spent inserting metrics records.
+     *
+     * @param value The time in milliseconds.
+     */
+    public void addInsertTime(long value) {
+        insertTime += value;
+    }
+
+    /**
+     * Record time spent loading jobs from the database.
+     *
+     * @param value The time in milliseconds.
+     */
+    public void addLoadTime(long value) {
+        loadTime += value;
+    }
+
+    /**
+     * Record the outcome of a batch write.
+     *
+     * @param inserted The number of rows inserted.
+     * @param failed The number of rows that could not be inserted.
+     */
+    public void addWriteResults(long inserted, long failed) {
+        rowsInserted += inserted;
+        rowsFailed   += failed;
+    }
+
+    /**
+     * Mark the collection run as complete.
+     */
+    public void complete() {
+        endTime = System.currentTimeMillis();
+        if (state != CollectionRunStateType.ERROR) {
+            state = CollectionRunStateType.COMPLETE;
+        }
+    }
+
+    /**
+     * Mark the collection run as started.
+     *
+     * @param value The collection mode (e.g. incremental or full).
+     */
+    public void start(String value) {
+        mode      = value;
+        startTime = System.currentTimeMillis();
+        state     = CollectionRunStateType.RUNNING;
+    }
+
+    /**
+     * Increment the number of jobs that were processed but did not result
+     * in a metrics record (e.g. the job was not in a terminal state).
+     */
+    public void incrementJobsSkipped() {
+        jobsSkipped++;
+    }
+
+    /**
+     * Getter method for the average time required to load and process a
+     * single job.
+     * @return The average per-job latency in milliseconds.
+     */
+    public double getAverageJobLatency() {
+        double average = 0.0;
+        if (jobsProcessed > 0) {
+            average = (double)totalJobLatency / (double)jobsProcessed;
+        }
+        return average;
+    }
+
+    /**
+     * Getter method for the time spent computing metrics records.
+     * @return The compute time in milliseconds.
+     */
+    public long getComputeTime() {
+        return computeTime;
+    }
+
+    /**
+     * Getter method for the number of jobs processed concurrently.
+     * @return The concurrency used for the run.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Getter method for the time spent determining which jobs need to be
+     * processed.
+     * @return The discovery time in milliseconds.
+     */
+    public long getDiscoveryTime() {
+        return discoveryTime;
+    }
+
+    /**
+     * Getter method for the elapsed time of the run.  If the run has not
+     * completed the time elapsed so far is returned.
+     * @return The elapsed time in milliseconds.
+     */
+    public long getElapsedTime() {
+        long end = endTime;
+        if (end == 0L) {
+            end = System.currentTimeMillis();
+        }
+        return end - startTime;
+    }
+
+    /**
+     * Getter method for the time the run completed.  This value will be zero
+     * until the run is complete.
+     * @return The time the run completed.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Getter method for the time spent inserting metrics records.
+     * @return The insert time in milliseconds.
+     */
+    public long getInsertTime() {
+        return insertTime;
+    }
+
+    /**
+     * Getter method for the number of jobs requiring metrics collection.
+     * @return The number of candidate jobs.
+     */
+    public long getJobsDiscovered() {
+        return jobsDiscovered;
+    }
+
+    /**
+     * Getter method for the number of jobs that were loaded and processed.
+     * @return The number of jobs processed.
+     */
+    public long getJobsProcessed() {
+        return jobsProcessed;
+    }
+
+    /**
+     * Getter method for the number of jobs that did not result in a metrics
+     * record.
+     * @return The number of jobs skipped.
+     */
+    public long getJobsSkipped() {
+        return jobsSkipped;
+    }
+
+    /**
+     * Getter method for the time spent loading jobs from the database.
+     * @return The load time in milliseconds.
+     */
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * Getter method for the collection mode (e.g. incremental or full).
+     * @return The collection mode.
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Getter method for the maximum time required to load and process a
+     * single job.
+     * @return The maximum per-job latency in milliseconds.
+     */
+    public long getMaxJobLatency() {
+        return maxJobLatency;
+    }
+
+    /**
+     * Getter method for the number of metrics records that could not be
+     * inserted.
+     * @return The number of failed rows.
+     */
+    public long getRowsFailed() {
+        return rowsFailed;
+    }
+
+    /**
+     * Getter method for the number of metrics records inserted.
+     * @return The number of inserted rows.
+     */
+    public long getRowsInserted() {
+        return rowsInserted;
+    }
+
+    /**
+     * Calculate the rate at which metrics records were written.
+     * @return The number of rows inserted per second.
+     */
+    public double getRowsPerSecond() {
+        double rate    = 0.0;
+        long   elapsed = getElapsedTime();
+        if (elapsed > 0) {
+            rate = (double)rowsInserted * 1000.0 / (double)elapsed;
+        }
+        return rate;
+    }
+
+    /**
+     * Getter method for the unique ID assigned to the run.
+     * @return The run ID.
+     */
+    public String getRunID() {
+        return runID;
+    }
+
+    /**
+     * Getter method for the current state of the run.
+     * @return The run state.
+     */
+    public CollectionRunStateType getState() {
+        return state;
+    }
+
+    /**
+     * Getter method for the time the run started.
+     * @return The time the run started.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Calculate the throughput of the run.
+     * @return The number of jobs processed per second.
+     */
+    public double getThroughput() {
+        double throughput = 0.0;
+        long   elapsed    = getElapsedTime();
+        if (elapsed > 0) {
+            throughput = (double)jobsProcessed * 1000.0 / (double)elapsed;
+        }
+        return throughput;
+    }
+
+    /**
+     * Setter method for the number of jobs processed concurrently.
+     * @param value The concurrency used for the run.
+     */
+    public void setConcurrency(int value) {
+        concurrency = value;
+    }
+
+    /**
+     * Setter method for the current state of the run.
+     * @param value The run state.
+     */
+    public void setState(CollectionRunStateType value) {
+        state = value;
+    }
+
+    /**
+     * Setter method for the number of jobs requiring metrics collection.
+     * @param value The number of candidate jobs.
+     */
+    public void setJobsDiscovered(long value) {
+        jobsDiscovered = value;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        DecimalFormat formatter = new DecimalFormat("#0.00");
+        StringBuilder sb = new StringBuilder();
+        sb.append("Run ID => [ ");
+        sb.append(getRunID());
+        sb.append(" ], State => [ ");
+        sb.append(getState());
+        sb.append(" ], Mode => [ ");
+        sb.append(getMode());
+        sb.append(" ], Concurrency => [ ");
+        sb.append(getConcurrency());
+        sb.append(" ], Jobs Discovered => [ ");
+        sb.append(getJobsDiscovered());
+        sb.append(" ], Jobs Processed => [ ");
+        sb.append(getJobsProcessed());
+        sb.append(" ], Jobs Skipped => [ ");
+        sb.append(getJobsSkipped());
+        sb.append(" ], Rows Inserted => [ ");
+        sb.append(getRowsInserted());
+        sb.append(" ], Rows Failed => [ ");
+        sb.append(getRowsFailed());
+        sb.append(" ], Elapsed Time => [ ");
+        sb.append(getElapsedTime());
+        sb.append(" ms ], Throughput => [ ");
+        sb.append(formatter.format(getThroughput()));
+        sb.append(" jobs/sec ], Row Rate => [ ");
+        sb.append(formatter.format(getRowsPerSecond()));
+        sb.append(" rows/sec ], Avg Job Latency => [ ");
+        sb.append(formatter.format(getAverageJobLatency()));
+        sb.append(" ms ], Max Job Latency => [ ");
+        sb.append(getMaxJobLatency());
+        sb.append(" ms ], Discovery Time => [ ");
+        sb.append(getDiscoveryTime());
+        sb.append(" ms ], Load Time => [ ");
+        sb.append(getLoadTime());
+        sb.append(" ms ], Compute Time => [ ");
+        sb.append(getComputeTime());
+        sb.append(" ms ], Insert Time => [ ");
+        sb.append(getInsertTime());
+        sb.append(" ms ].");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,288 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Simple object describing the current state of the metrics collection
+ * schedule on a single node.  Returned to clients querying (or changing)
+ * the schedule at runtime.  Each node holds its own schedule, so the 
+ * object carries the name of the node it describes.
+ *
+ * @author L. Craig Carpenter
+ */
+public class CollectionSchedule implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = 4418760258313094507L;
+
+    /**
+     * String to use to output dates in String format for logging purposes.
+     */
+    private static final String DATE_STRING = "yyyy/MM/dd HH:mm:ss:SSS";
+
+    private final boolean adaptive;
+    private final int     baseInterval;
+    private final int     currentInterval;
+    private final String  lastRunID;
+    private final int     maxInterval;
+    private final int     minInterval;
+    private final long    nextTimeout;
+    private final String  node;
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public CollectionSchedule(CollectionScheduleBuilder builder) {
+        adaptive        = builder.adaptive;
+        baseInterval    = builder.baseInterval;
+        currentInterval = builder.currentInterval;
+        lastRunID       = builder.lastRunID;
+        maxInterval     = builder.maxInterval;
+        minInterval     = builder.minInterval;
+        nextTimeout     = builder.nextTimeout;
+        node            = builder.node;
+    }
+
+    /**
+     * Getter method for the configured interval between runs.
+     * @return The configured interval in minutes.
+     */
+    public int getBaseInterval() {
+        return baseInterval;
+    }
+
+    /**
+     * Getter method for the interval currently in use.  This will differ
+     * from the configured interval if the adaptive schedule is enabled.
+     * @return The current interval in minutes.
+     */
+    public int getCurrentInterval() {
+        return currentInterval;
+    }
+
+    /**
+     * Getter method for the ID of the last scheduled run.
+     * @return The ID of the last scheduled run.
+     */
+    public String getLastRunID() {
+        return lastRunID;
+    }
+
+    /**
+     * Getter method for the longest interval the adaptive schedule may use.
+     * @return The maximum interval in minutes.
+     */
+    public int getMaxInterval() {
+        return maxInterval;
+    }
+
+    /**
+     * Getter method for the shortest interval the adaptive schedule may use.
+     * @return The minimum interval in minutes.
+     */
+    public int getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * Getter method for the time at which the next run is scheduled.
+     * @return The time of the next run, 0 if no run is scheduled.
+     */
+    public long getNextTimeout() {
+        return nextTimeout;
+    }
+
+    /**
+     * Getter method for the node the schedule belongs to.
+     * @return The node name (<code>server@host</code>).
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * Getter method determining whether the adaptive schedule is enabled.
+     * @return True if the interval adapts to the backlog.
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        DateFormat df = new SimpleDateFormat(DATE_STRING);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Node => [ ");
+        sb.append(getNode());
+        sb.append(" ], Adaptive => [ ");
+        sb.append(isAdaptive());
+        sb.append(" ], Base Interval => [ ");
+        sb.append(getBaseInterval());
+        sb.append(" min ], Current Interval => [ ");
+        sb.append(getCurrentInterval());
+        sb.append(" min ], Min Interval => [ ");
+        sb.append(getMinInterval());
+        sb.append(" min ], Max Interval => [ ");
+        sb.append(getMaxInterval());
+        sb.append(" min ], Next Timeout => [ ");
+        sb.append(getNextTimeout() > 0 ?
+                df.format(new Date(getNextTimeout())) : "none");
+        sb.append(" ], Last Run ID => [ ");
+        sb.append(getLastRunID());
+        sb.append(" ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * CollectionSchedule objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class CollectionScheduleBuilder {
+
+        private boolean adaptive        = false;
+        private int     baseInterval    = 0;
+        private int     currentInterval = 0;
+        private String  lastRunID       = "";
+        private int     maxInterval     = 0;
+        private int     minInterval     = 0;
+        private long    nextTimeout     = 0L;
+        private String  node;
+
+        /**
+         * Method used to actually construct the CollectionSchedule object.
+         * @return A constructed and validated CollectionSchedule object.
+         */
+        public CollectionSchedule build() throws IllegalStateException {
+            CollectionSchedule object = new CollectionSchedule(this);
+            validateCollectionScheduleObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the adaptive schedule flag.
+         *
+         * @param value True if the interval adapts to the backlog.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionScheduleBuilder adaptive(boolean value) {
+            adaptive = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the configured interval between runs.
+         *
+         * @param value The configured interval in minutes.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionScheduleBuilder baseInterval(int value) {
+            baseInterval = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the interval currently in use.
+         *
+         * @param value The current interval in minutes.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionScheduleBuilder currentInterval(int value) {
+            currentInterval = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the ID of the last scheduled run.
+         *
+         * @param value The ID of the last scheduled run.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionScheduleBuilder lastRunID(String value) {
+            if (value == null) {
+                lastRunID = "";
+            }
+            else {
+                lastRunID = value;
+            }
+            return this;
+        }
+
+        /**
+         * Setter method for the longest interval the adaptive schedule may
+         * use.
+         *
+         * @param value The maximum interval in minutes.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionScheduleBuilder maxInterval(int value) {
+            maxInterval = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the shortest interval the adaptive schedule may
+         * use.
+         *
+         * @param value The minimum interval in minutes.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionScheduleBuilder minInterval(int value) {
+            minInterval = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the time at which the next run is scheduled.
+         *
+         * @param value The time of the next run.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionScheduleBuilder nextTimeout(long value) {
+            nextTimeout = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the node the schedule belongs to.
+         *
+         * @param value The node name.
+         * @return Reference to the parent builder object.
+         */
+        public CollectionScheduleBuilder node(String value) {
+            node = value;
+            return this;
+        }
+
+        /**
+         * Validate that the intervals are consistent.
+         *
+         * @param object The CollectionSchedule object to validate.
+         * @throws IllegalStateException Thrown if any of the intervals are
+         * invalid.
+         */
+        private void validateCollectionScheduleObject(
+                CollectionSchedule object) throws IllegalStateException {
+            if ((object.getMinInterval() < 1) ||
+                    (object.getMaxInterval() < object.getMinInterval())) {
+                throw new IllegalStateException("Invalid schedule interval "
+                        + "bounds.  Min [ "
+                        + object.getMinInterval()
+                        + " ], max [ "
+                        + object.getMaxInterval()
+                        + " ].");
+            }
+        }
+    }
+}
@@ -20,7 +20,8 @@ import mil.nga.bundler.types.JobStateType;
  * Dealing with the normalized JobMetrics class was too much of a pain.
  */
 @Entity
-@Table(name="JOBS")
+@Table(name="JOBS",
+       indexes={ @Index(name="JOBS_END_TIME_IDX", columnList="END_TIME, JOB_ID") })
 public class Job implements Serializable {
     
     /**
@@ -0,0 +1,412 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+
+import mil.nga.bundler.types.ArchiveType;
+import mil.nga.bundler.types.JobStateType;
+
+/**
+ * Lightweight, read-only projection of a bundler job containing the
+ * information from the JOBS table along with the aggregate information
+ * (archive count and total compressed size) calculated from the
+ * ARCHIVE_JOBS table.  This is everything required to calculate a
+ * <code>BundlerJobMetrics</code> record without materializing the
+ * individual <code>Archive</code> and <code>FileEntry</code> objects
+ * associated with the job.
+ *
+ * @author L. Craig Carpenter
+ */
+public class JobSummary implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -3021850287351974136L;
+
+    private final long         archiveCount;
+    private final long         archiveSize;
+    private final ArchiveType  archiveType;
+    private final long         endTime;
+    private final String       jobID;
+    private final JobStateType jobState;
+    private final int          numArchives;
+    private final int          numArchivesComplete;
+    private final long         numFiles;
+    private final long         numFilesComplete;
+    private final long         startTime;
+    private final long         totalCompressedSize;
+    private final long         totalSize;
+    private final String       userName;
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    protected JobSummary(JobSummaryBuilder builder) {
+        archiveCount        = builder.archiveCount;
+        archiveSize         = builder.archiveSize;
+        archiveType         = builder.archiveType;
+        endTime             = builder.endTime;
+        jobID               = builder.jobID;
+        jobState            = builder.jobState;
+        numArchives         = builder.numArchives;
+        numArchivesComplete = builder.numArchivesComplete;
+        numFiles            = builder.numFiles;
+        numFilesComplete    = builder.numFilesComplete;
+        startTime           = builder.startTime;
+        totalCompressedSize = builder.totalCompressedSize;
+        totalSize           = builder.totalSize;
+        userName            = builder.userName;
+    }
+
+    /**
+     * Getter method for the number of ARCHIVE_JOBS records actually
+     * associated with the job.
+     * @return The number of archive records found for the job.
+     */
+    public long getArchiveCount() {
+        return archiveCount;
+    }
+
+    /**
+     * Getter method for the target size associated with each individual
+     * archive.
+     * @return The target size for each individual archive.
+     */
+    public long getArchiveSize() {
+        return archiveSize;
+    }
+
+    /**
+     * Getter method for the type of output archive created by the job.
+     * @return The archive type
+     * @see mil.nga.bundler.types.ArchiveType
+     */
+    public ArchiveType getArchiveType() {
+        return archiveType;
+    }
+
+    /**
+     * Getter method for the time the job completed.  This value will be
+     * zero until the job is complete.
+     * @return The time the job completed.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Getter method for the primary key (i.e. JOB_ID).
+     * @return The primary key (i.e. JOB_ID).
+     */
+    public String getJobID() {
+        return jobID;
+    }
+
+    /**
+     * Getter method for the current state of the job.
+     * @return The current state of the job.
+     */
+    public JobStateType getState() {
+        return jobState;
+    }
+
+    /**
+     * Getter method for total number of archives in the job.
+     * @return Total number of archives in the job.
+     */
+    public int getNumArchives() {
+        return numArchives;
+    }
+
+    /**
+     * Getter method for total number of archives in the job that have
+     * completed processing.
+     * @return Total number of archives in the job that have completed
+     * processing.
+     */
+    public int getNumArchivesComplete() {
+        return numArchivesComplete;
+    }
+
+    /**
+     * Getter method for total number of files in the job.
+     * @return Total number of files in the job.
+     */
+    public long getNumFiles() {
+        return numFiles;
+    }
+
+    /**
+     * Getter method for total number of files in the job that have completed
+     * processing.
+     * @return Total number of files in the job that have completed
+     * processing.
+     */
+    public long getNumFilesComplete() {
+        return numFilesComplete;
+    }
+
+    /**
+     * Getter method for the time when the job started.
+     * @return The time the job started.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Getter method for the summation of the compressed sizes of each
+     * individual archive associated with the job.
+     * @return Total compressed size of the job.
+     */
+    public long getTotalCompressedSize() {
+        return totalCompressedSize;
+    }
+
+    /**
+     * Getter method for total (uncompressed) size of the job.
+     * @return Total size of the job.
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Getter method for the username who submitted the job
+     * @return The user name.
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Job ID => [ ");
+        sb.append(getJobID());
+        sb.append(" ], Job State => [ ");
+        sb.append(getState());
+        sb.append(" ], Archive Count => [ ");
+        sb.append(getArchiveCount());
+        sb.append(" ], Total Size => [ ");
+        sb.append(getTotalSize());
+        sb.append(" ], Total Compressed Size => [ ");
+        sb.append(getTotalCompressedSize());
+        sb.append(" ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * JobSummary objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class JobSummaryBuilder {
+
+        private long         archiveCount;
+        private long         archiveSize;
+        private ArchiveType  archiveType;
+        private long         endTime;
+        private String       jobID;
+        private JobStateType jobState;
+        private int          numArchives;
+        private int          numArchivesComplete;
+        private long         numFiles;
+        private long         numFilesComplete;
+        private long         startTime;
+        private long         totalCompressedSize;
+        private long         totalSize;
+        private String       userName;
+
+        /**
+         * Method used to actually construct the JobSummary object.
+         * @return A constructed and validated JobSummary object.
+         */
+        public JobSummary build() throws IllegalStateException {
+            JobSummary object = new JobSummary(this);
+            validateJobSummaryObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the number of archive records associated with
+         * the job.
+         *
+         * @param value The number of archive records found.
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder archiveCount(long value) {
+            archiveCount = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the target size associated with each individual
+         * archive.
+         *
+         * @param value The size of the archive requested by the user.
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder archiveSize(long value) {
+            archiveSize = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the type of output archive created by the job.
+         *
+         * @param value The type of archive specified by the caller.
+         * @return Reference to the parent builder object.
+         * @see mil.nga.bundler.types.ArchiveType
+         */
+        public JobSummaryBuilder archiveType(ArchiveType value) {
+            archiveType = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the time the job completed.
+         *
+         * @param value The job completion time.
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder endTime(long value) {
+            endTime = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the job ID.
+         *
+         * @param value the job ID
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder jobID(String value) {
+            jobID = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the job state.
+         *
+         * @param value the job state
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder jobState(JobStateType value) {
+            jobState = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the total number of archives in the job.
+         *
+         * @param value The number of archives to be generated.
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder numArchives(int value) {
+            numArchives = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of archives that completed
+         * processing.
+         *
+         * @param value The number of archives processed.
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder numArchivesComplete(int value) {
+            numArchivesComplete = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the total number of files in the job.
+         *
+         * @param value the number of files to be processed.
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder numFiles(long value) {
+            numFiles = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of files that completed processing.
+         *
+         * @param value the number of files processed.
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder numFilesComplete(long value) {
+            numFilesComplete = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the time the job started.
+         *
+         * @param value the job start time.
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder startTime(long value) {
+            startTime = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the summation of the individual archive sizes.
+         *
+         * @param value the compressed size
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder totalCompressedSize(long value) {
+            totalCompressedSize = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the total (uncompressed) size of the job.
+         *
+         * @param value the total (uncompressed) size of the job.
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder totalSize(long value) {
+            totalSize = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the username who submitted the job
+         *
+         * @param value the user name
+         * @return Reference to the parent builder object.
+         */
+        public JobSummaryBuilder userName(String value) {
+            userName = value;
+            return this;
+        }
+
+        /**
+         * Validate that all required fields are populated.
+         *
+         * @param object The JobSummary object to validate.
+         * @throws IllegalStateException Thrown if any of the required fields
+         * are not populated.
+         */
+        private void validateJobSummaryObject(JobSummary object)
+                throws IllegalStateException {
+            if ((object.getJobID() == null) || (object.getJobID().isEmpty())) {
+                throw new IllegalStateException("Invalid value for JOB_ID.  "
+                        + "Value is [ "
+                        + object.getJobID()
+                        + " ].");
+            }
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Simple object containing the aggregate statistics calculated for a
+ * single group of job metrics records.  The group is identified by the
+ * value of each of the requested dimensions and (optionally) the start of
+ * the time bucket.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MetricsAggregate implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = 7790528419466214617L;
+
+    private final double              avg;
+    private final long                bucket;
+    private final long                count;
+    private final Map<String, String> groups;
+    private final double              max;
+    private final String              measure;
+    private final double              min;
+    private final double              p50;
+    private final double              p90;
+    private final double              p95;
+    private final double              p99;
+    private final double              p999;
+    private final double              sum;
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public MetricsAggregate(MetricsAggregateBuilder builder) {
+        avg     = builder.avg;
+        bucket  = builder.bucket;
+        count   = builder.count;
+        groups  = builder.groups;
+        max     = builder.max;
+        measure = builder.measure;
+        min     = builder.min;
+        p50     = builder.p50;
+        p90     = builder.p90;
+        p95     = builder.p95;
+        p99     = builder.p99;
+        p999    = builder.p999;
+        sum     = builder.sum;
+    }
+
+    /**
+     * Getter method for the mean of the measure.
+     * @return The mean.
+     */
+    public double getAvg() {
+        return avg;
+    }
+
+    /**
+     * Getter method for the start of the time bucket.
+     * @return The start of the bucket (milliseconds since the epoch), 0 if
+     * the records were not bucketed by time.
+     */
+    public long getBucket() {
+        return bucket;
+    }
+
+    /**
+     * Getter method for the number of records in the group.
+     * @return The number of records.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Getter method for the values of the dimensions identifying the group.
+     * @return Map of dimension to value.
+     */
+    public Map<String, String> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Getter method for the maximum of the measure.
+     * @return The maximum.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Getter method for the measure the statistics were calculated for.
+     * @return The measure.
+     */
+    public String getMeasure() {
+        return measure;
+    }
+
+    /**
+     * Getter method for the minimum of the measure.
+     * @return The minimum.
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Getter method for the median of the measure.
+     * @return The 50th percentile.
+     */
+    public double getP50() {
+        return p50;
+    }
+
+    /**
+     * Getter method for the 90th percentile of the measure.
+     * @return The 90th percentile.
+     */
+    public double getP90() {
+        return p90;
+    }
+
+    /**
+     * Getter method for the 95th percentile of the measure.
+     * @return The 95th percentile.
+     */
+    public double getP95() {
+        return p95;
+    }
+
+    /**
+     * Getter method for the 99th percentile of the measure.
+     * @return The 99th percentile.
+     */
+    public double getP99() {
+        return p99;
+    }
+
+    /**
+     * Getter method for the 99.9th percentile of the measure.
+     * @return The 99.9th percentile.
+     */
+    public double getP999() {
+        return p999;
+    }
+
+    /**
+     * Getter method for the sum of the measure.
+     * @return The sum.
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Measure => [ ");
+        sb.append(getMeasure());
+        sb.append(" ], Groups => [ ");
+        sb.append(getGroups());
+        sb.append(" ], Bucket => [ ");
+        sb.append(getBucket());
+        sb.append(" ], Count => [ ");
+        sb.append(getCount());
+        sb.append(" ], Sum => [ ");
+        sb.append(getSum());
+        sb.append(" ], Avg => [ ");
+        sb.append(getAvg());
+        sb.append(" ], Min => [ ");
+        sb.append(getMin());
+        sb.append(" ], Max => [ ");
+        sb.append(getMax());
+        sb.append(" ], P50 => [ ");
+        sb.append(getP50());
+        sb.append(" ], P90 => [ ");
+        sb.append(getP90());
+        sb.append(" ], P95 => [ ");
+        sb.append(getP95());
+        sb.append(" ], P99 => [ ");
+        sb.append(getP99());
+        sb.append(" ], P999 => [ ");
+        sb.append(getP999());
+        sb.append(" ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * MetricsAggregate objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class MetricsAggregateBuilder {
+
+        private double              avg     = 0.0;
+        private long                bucket  = 0L;
+        private long                count   = 0L;
+        private Map<String, String> groups  =
+                new LinkedHashMap<String, String>();
+        private double              max     = 0.0;
+        private String              measure;
+        private double              min     = 0.0;
+        private double              p50     = 0.0;
+        private double              p90     = 0.0;
+        private double              p95     = 0.0;
+        private double              p99     = 0.0;
+        private double              p999    = 0.0;
+        private double              sum     = 0.0;
+
+        /**
+         * Method used to actually construct the MetricsAggregate object.
+         * @return A constructed and validated MetricsAggregate object.
+         */
+        public MetricsAggregate build() throws IllegalStateException {
+            MetricsAggregate object = new MetricsAggregate(this);
+            validateMetricsAggregateObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the mean of the measure.
+         *
+         * @param value The mean.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder avg(double value) {
+            avg = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the start of the time bucket.
+         *
+         * @param value The start of the bucket.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder bucket(long value) {
+            bucket = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of records in the group.
+         *
+         * @param value The number of records.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder count(long value) {
+            count = value;
+            return this;
+        }
+
+        /**
+         * Add the value of a single dimension identifying the group.
+         *
+         * @param dimension The dimension.
+         * @param value The value of the dimension.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder group(String dimension, String value) {
+            groups.put(dimension, value);
+            return this;
+        }
+
+        /**
+         * Setter method for the maximum of the measure.
+         *
+         * @param value The maximum.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder max(double value) {
+            max = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the measure the statistics were calculated for.
+         *
+         * @param value The measure.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder measure(String value) {
+            measure = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the minimum of the measure.
+         *
+         * @param value The minimum.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder min(double value) {
+            min = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the median of the measure.
+         *
+         * @param value The 50th percentile.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder p50(double value) {
+            p50 = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the 90th percentile of the measure.
+         *
+         * @param value The 90th percentile.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder p90(double value) {
+            p90 = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the 95th percentile of the measure.
+         *
+         * @param value The 95th percentile.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder p95(double value) {
+            p95 = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the 99th percentile of the measure.
+         *
+         * @param value The 99th percentile.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder p99(double value) {
+            p99 = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the 99.9th percentile of the measure.
+         *
+         * @param value The 99.9th percentile.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder p999(double value) {
+            p999 = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the sum of the measure.
+         *
+         * @param value The sum.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsAggregateBuilder sum(double value) {
+            sum = value;
+            return this;
+        }
+
+        /**
+         * Validate that the measure is populated.
+         *
+         * @param object The MetricsAggregate object to validate.
+         * @throws IllegalStateException Thrown if the measure is not
+         * populated.
+         */
+        private void validateMetricsAggregateObject(
+                MetricsAggregate object) throws IllegalStateException {
+            if ((object.getMeasure() == null) ||
+                    (object.getMeasure().isEmpty())) {
+                throw new IllegalStateException("Invalid value for "
+                        + "measure.  Value is [ "
+                        + object.getMeasure()
+                        + " ].");
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import mil.nga.bundler.types.MetricsMeasureType;
+import mil.nga.bundler.types.TimeBucketType;
+
+/**
+ * Serialized histogram of a single measure (elapsed time or throughput)
+ * for the jobs started within a single hourly or daily time bucket with a
+ * single archive type and job state.  The histograms are mergeable, so
+ * percentiles over any range of buckets (and any combination of archive
+ * types and job states) are calculated by merging the stored histograms
+ * rather than by reading the raw records.
+ *
+ * Note: This class contains the persistence annotations but we don't actually
+ * use hibernate.  They were left in in order to ensure the container builds the
+ * target table.
+ *
+ * @author L. Craig Carpenter
+ */
+@Entity
+@Table(name="BUNDLER_METRICS_HISTOGRAM")
+public class MetricsHistogram implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = 4435170821396802417L;
+
+    /**
+     * Key uniquely identifying the histogram (primary key).
+     */
+    @Id
+    @Column(name="HISTOGRAM_KEY")
+    private String key;
+
+    /**
+     * The archive type (text value) of the jobs.
+     */
+    @Column(name="ARCHIVE_TYPE")
+    private String archiveType;
+
+    /**
+     * The start of the time bucket (milliseconds since the epoch).
+     */
+    @Column(name="BUCKET_START")
+    private long bucket = 0L;
+
+    /**
+     * The width of the time bucket (HOUR or DAY).
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name="GRANULARITY")
+    private TimeBucketType granularity;
+
+    /**
+     * The serialized histogram.
+     */
+    @Lob
+    @Column(name="HISTOGRAM")
+    private byte[] histogram;
+
+    /**
+     * The number of values recorded in the histogram.
+     */
+    @Column(name="JOB_COUNT")
+    private long jobCount = 0L;
+
+    /**
+     * The job state (text value) of the jobs.
+     */
+    @Column(name="JOB_STATE")
+    private String jobState;
+
+    /**
+     * The measure recorded in the histogram.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name="MEASURE")
+    private MetricsMeasureType measure;
+
+    /**
+     * Default no-arg constructor required by hibernate.
+     */
+    public MetricsHistogram() {}
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public MetricsHistogram(MetricsHistogramBuilder builder) {
+        archiveType = builder.archiveType;
+        bucket      = builder.bucket;
+        granularity = builder.granularity;
+        histogram   = builder.histogram;
+        jobCount    = builder.jobCount;
+        jobState    = builder.jobState;
+        measure     = builder.measure;
+        key         = getKey(granularity, bucket, archiveType, jobState, measure);
+    }
+
+    /**
+     * Construct the key identifying a histogram.
+     *
+     * @param granularity The width of the time bucket.
+     * @param bucket The start of the time bucket.
+     * @param archiveType The archive type.
+     * @param jobState The job state.
+     * @param measure The measure.
+     * @return The histogram key.
+     */
+    public static String getKey(
+            TimeBucketType     granularity,
+            long               bucket,
+            String             archiveType,
+            String             jobState,
+            MetricsMeasureType measure) {
+        return (granularity == null ? null : granularity.name())
+                + ":"
+                + bucket
+                + ":"
+                + archiveType
+                + ":"
+                + jobState
+                + ":"
+                + (measure == null ? null : measure.name());
+    }
+
+    /**
+     * Getter method for the archive type.
+     * @return The archive type.
+     */
+    public String getArchiveType() {
+        return archiveType;
+    }
+
+    /**
+     * Getter method for the start of the time bucket.
+     * @return The start of the bucket (milliseconds since the epoch).
+     */
+    public long getBucket() {
+        return bucket;
+    }
+
+    /**
+     * Getter method for the width of the time bucket.
+     * @return The granularity.
+     */
+    public TimeBucketType getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Getter method for the serialized histogram.
+     * @return The serialized histogram.
+     */
+    public byte[] getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Getter method for the number of values recorded.
+     * @return The number of values.
+     */
+    public long getJobCount() {
+        return jobCount;
+    }
+
+    /**
+     * Getter method for the job state.
+     * @return The job state.
+     */
+    public String getJobState() {
+        return jobState;
+    }
+
+    /**
+     * Getter method for the histogram key.
+     * @return The key.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Getter method for the measure.
+     * @return The measure.
+     */
+    public MetricsMeasureType getMeasure() {
+        return measure;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Key => [ ");
+        sb.append(getKey());
+        sb.append(" ], Job Count => [ ");
+        sb.append(getJobCount());
+        sb.append(" ], Size => [ ");
+        sb.append(getHistogram() == null ? 0 : getHistogram().length);
+        sb.append(" ] bytes.");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * MetricsHistogram objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class MetricsHistogramBuilder {
+
+        private String             archiveType;
+        private long               bucket      = 0L;
+        private TimeBucketType     granularity;
+        private byte[]             histogram;
+        private long               jobCount    = 0L;
+        private String             jobState;
+        private MetricsMeasureType measure;
+
+        /**
+         * Method used to actually construct the MetricsHistogram object.
+         * @return A constructed and validated MetricsHistogram object.
+         */
+        public MetricsHistogram build() throws IllegalStateException {
+            MetricsHistogram object = new MetricsHistogram(this);
+            validateMetricsHistogramObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the archive type.
+         *
+         * @param value The archive type.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsHistogramBuilder archiveType(String value) {
+            archiveType = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the start of the time bucket.
+         *
+         * @param value The start of the bucket.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsHistogramBuilder bucket(long value) {
+            bucket = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the width of the time bucket.
+         *
+         * @param value The granularity.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsHistogramBuilder granularity(TimeBucketType value) {
+            granularity = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the serialized histogram.
+         *
+         * @param value The serialized histogram.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsHistogramBuilder histogram(byte[] value) {
+            histogram = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of values recorded.
+         *
+         * @param value The number of values.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsHistogramBuilder jobCount(long value) {
+            jobCount = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the job state.
+         *
+         * @param value The job state.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsHistogramBuilder jobState(String value) {
+            jobState = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the measure.
+         *
+         * @param value The measure.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsHistogramBuilder measure(MetricsMeasureType value) {
+            measure = value;
+            return this;
+        }
+
+        /**
+         * Validate that all required fields are populated.
+         *
+         * @param object The MetricsHistogram object to validate.
+         * @throws IllegalStateException Thrown if any of the required fields
+         * are not populated.
+         */
+        private void validateMetricsHistogramObject(
+                MetricsHistogram object) throws IllegalStateException {
+            if (object.getGranularity() == null) {
+                throw new IllegalStateException("Invalid value for "
+                        + "GRANULARITY.  Value is null.");
+            }
+            if (object.getMeasure() == null) {
+                throw new IllegalStateException("Invalid value for "
+                        + "MEASURE.  Value is null.");
+            }
+            if ((object.getHistogram() == null) ||
+                    (object.getHistogram().length == 0)) {
+                throw new IllegalStateException("Invalid value for "
+                        + "HISTOGRAM.  Value is empty.");
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simple object containing a single page of job metrics records along with
+ * the opaque token used to request the following page.  Returned to 
+ * clients paging through large result sets.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MetricsPage implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -1602846313735640352L;
+
+    private final String                  nextToken;
+    private final List<BundlerJobMetrics> records;
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public MetricsPage(MetricsPageBuilder builder) {
+        nextToken = builder.nextToken;
+        records   = builder.records;
+    }
+
+    /**
+     * Getter method for the token identifying the following page.
+     * @return The continuation token, or null if this is the last page.
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    /**
+     * Getter method for the records in the page.
+     * @return The records in the page.
+     */
+    public List<BundlerJobMetrics> getRecords() {
+        return records;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Records => [ ");
+        sb.append(getRecords().size());
+        sb.append(" ], Next Token => [ ");
+        sb.append(getNextToken());
+        sb.append(" ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * MetricsPage objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class MetricsPageBuilder {
+
+        private String                  nextToken = null;
+        private List<BundlerJobMetrics> records   = 
+                new ArrayList<BundlerJobMetrics>();
+
+        /**
+         * Method used to actually construct the MetricsPage object.
+         * @return A constructed and validated MetricsPage object.
+         */
+        public MetricsPage build() throws IllegalStateException {
+            MetricsPage object = new MetricsPage(this);
+            validateMetricsPageObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the token identifying the following page.
+         *
+         * @param value The continuation token (null if this is the last 
+         * page).
+         * @return Reference to the parent builder object.
+         */
+        public MetricsPageBuilder nextToken(String value) {
+            nextToken = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the records in the page.
+         *
+         * @param value The records in the page.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsPageBuilder records(List<BundlerJobMetrics> value) {
+            records = value;
+            return this;
+        }
+
+        /**
+         * Validate that the record list is populated.
+         *
+         * @param object The MetricsPage object to validate.
+         * @throws IllegalStateException Thrown if the record list is null.
+         */
+        private void validateMetricsPageObject(
+                MetricsPage object) throws IllegalStateException {
+            if (object.getRecords() == null) {
+                throw new IllegalStateException("Invalid value for "
+                        + "records.  Value is null.");
+            }
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import mil.nga.bundler.types.RetryStateType;
+
+/**
+ * Record tracking a job whose metrics record could not be written to the 
+ * data store.  Jobs in the <code>RETRY</code> state are not reconsidered by
+ * the collector until <code>NEXT_ATTEMPT</code> has passed, and the delay 
+ * between attempts grows exponentially.  Once the maximum number of 
+ * attempts has been reached the job is moved to the <code>DEAD</code> 
+ * state and is ignored until an operator resets it.
+ *
+ * Note: This class contains the persistence annotations but we don't actually
+ * use hibernate.  They were left in in order to ensure the container builds the
+ * target table.
+ *
+ * @author L. Craig Carpenter
+ */
+@Entity
+@Table(name="BUNDLER_METRICS_RETRY")
+public class MetricsRetry implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -3217459946420587121L;
+
+    /**
+     * String to use to output dates in String format for logging purposes.
+     */
+    private static final String DATE_STRING = "yyyy/MM/dd HH:mm:ss:SSS";
+
+    /**
+     * The ID of the failed job (primary key).
+     */
+    @Id
+    @Column(name="JOB_ID")
+    private String jobID;
+
+    /**
+     * The number of failed attempts.
+     */
+    @Column(name="ATTEMPTS")
+    private int attempts = 0;
+
+    /**
+     * The time of the first failed attempt.
+     */
+    @Column(name="FIRST_FAILURE")
+    private long firstFailure = 0L;
+
+    /**
+     * The time of the most recent failed attempt.
+     */
+    @Column(name="LAST_ATTEMPT")
+    private long lastAttempt = 0L;
+
+    /**
+     * The error message associated with the most recent failed attempt.
+     */
+    @Column(name="LAST_ERROR", length=1024)
+    private String lastError = "";
+
+    /**
+     * The earliest time at which the job will be reconsidered.
+     */
+    @Column(name="NEXT_ATTEMPT")
+    private long nextAttempt = 0L;
+
+    /**
+     * Whether the job will be retried or has been abandoned.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name="RETRY_STATE")
+    private RetryStateType state = RetryStateType.RETRY;
+
+    /**
+     * Default no-arg constructor required by hibernate.
+     */
+    public MetricsRetry() {}
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public MetricsRetry(MetricsRetryBuilder builder) {
+        attempts     = builder.attempts;
+        firstFailure = builder.firstFailure;
+        jobID        = builder.jobID;
+        lastAttempt  = builder.lastAttempt;
+        lastError    = builder.lastError;
+        nextAttempt  = builder.nextAttempt;
+        state        = builder.state;
+    }
+
+    /**
+     * Getter method for the number of failed attempts.
+     * @return The number of failed attempts.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Getter method for the time of the first failed attempt.
+     * @return The time of the first failed attempt.
+     */
+    public long getFirstFailure() {
+        return firstFailure;
+    }
+
+    /**
+     * Getter method for the ID of the failed job.
+     * @return The job ID.
+     */
+    public String getJobID() {
+        return jobID;
+    }
+
+    /**
+     * Getter method for the time of the most recent failed attempt.
+     * @return The time of the most recent failed attempt.
+     */
+    public long getLastAttempt() {
+        return lastAttempt;
+    }
+
+    /**
+     * Getter method for the error message of the most recent failed 
+     * attempt.
+     * @return The most recent error message.
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Getter method for the earliest time at which the job will be 
+     * reconsidered.
+     * @return The time of the next attempt.
+     */
+    public long getNextAttempt() {
+        return nextAttempt;
+    }
+
+    /**
+     * Getter method for the retry state.
+     * @return The retry state.
+     */
+    public RetryStateType getState() {
+        return state;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        DateFormat df = new SimpleDateFormat(DATE_STRING);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Job ID => [ ");
+        sb.append(getJobID());
+        sb.append(" ], State => [ ");
+        sb.append(getState().getText());
+        sb.append(" ], Attempts => [ ");
+        sb.append(getAttempts());
+        sb.append(" ], First Failure => [ ");
+        sb.append(df.format(new Date(getFirstFailure())));
+        sb.append(" ], Last Attempt => [ ");
+        sb.append(df.format(new Date(getLastAttempt())));
+        sb.append(" ], Next Attempt => [ ");
+        sb.append(df.format(new Date(getNextAttempt())));
+        sb.append(" ], Last Error => [ ");
+        sb.append(getLastError());
+        sb.append(" ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * MetricsRetry objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class MetricsRetryBuilder {
+
+        private int            attempts     = 0;
+        private long           firstFailure = 0L;
+        private String         jobID;
+        private long           lastAttempt  = 0L;
+        private String         lastError    = "";
+        private long           nextAttempt  = 0L;
+        private RetryStateType state        = RetryStateType.RETRY;
+
+        /**
+         * Method used to actually construct the MetricsRetry object.
+         * @return A constructed and validated MetricsRetry object.
+         */
+        public MetricsRetry build() throws IllegalStateException {
+            MetricsRetry object = new MetricsRetry(this);
+            validateMetricsRetryObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the number of failed attempts.
+         *
+         * @param value The number of failed attempts.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRetryBuilder attempts(int value) {
+            attempts = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the time of the first failed attempt.
+         *
+         * @param value The time of the first failed attempt.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRetryBuilder firstFailure(long value) {
+            firstFailure = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the ID of the failed job.
+         *
+         * @param value The job ID.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRetryBuilder jobID(String value) {
+            jobID = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the time of the most recent failed attempt.
+         *
+         * @param value The time of the most recent failed attempt.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRetryBuilder lastAttempt(long value) {
+            lastAttempt = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the error message of the most recent failed
+         * attempt.
+         *
+         * @param value The most recent error message.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRetryBuilder lastError(String value) {
+            if (value == null) {
+                lastError = "";
+            }
+            else {
+                lastError = value;
+            }
+            return this;
+        }
+
+        /**
+         * Setter method for the earliest time at which the job will be
+         * reconsidered.
+         *
+         * @param value The time of the next attempt.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRetryBuilder nextAttempt(long value) {
+            nextAttempt = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the retry state.
+         *
+         * @param value The retry state.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRetryBuilder state(RetryStateType value) {
+            state = value;
+            return this;
+        }
+
+        /**
+         * Validate that all required fields are populated.
+         *
+         * @param object The MetricsRetry object to validate.
+         * @throws IllegalStateException Thrown if any of the required fields
+         * are not populated.
+         */
+        private void validateMetricsRetryObject(
+                MetricsRetry object) throws IllegalStateException {
+            if ((object.getJobID() == null) || (object.getJobID().isEmpty())) {
+                throw new IllegalStateException("Invalid value for "
+                        + "JOB_ID.  Value is [ "
+                        + object.getJobID()
+                        + " ].");
+            }
+            if (object.getState() == null) {
+                throw new IllegalStateException("Invalid value for "
+                        + "RETRY_STATE.  Value is null.");
+            }
+        }
+    }
+}
@@ -0,0 +1,624 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+import mil.nga.bundler.types.TimeBucketType;
+
+/**
+ * Pre-aggregated summary of the job metrics records started within a
+ * single hourly or daily time bucket by a single user, with a single
+ * archive type and job state.  The rollup rows are maintained by the
+ * collector in the same transaction as the raw records so long-range trend
+ * queries can be answered from one row per bucket and group rather than
+ * one row per job.
+ *
+ * The compression percentage is only accumulated for jobs that produced
+ * output, so <code>COMPRESSION_COUNT</code> may be less than
+ * <code>JOB_COUNT</code>.
+ *
+ * Note: This class contains the persistence annotations but we don't actually
+ * use hibernate.  They were left in in order to ensure the container builds the
+ * target table.
+ *
+ * @author L. Craig Carpenter
+ */
+@Entity
+@IdClass(MetricsRollupKey.class)
+@Table(name="BUNDLER_METRICS_ROLLUP")
+public class MetricsRollup implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = 2874915570320046158L;
+
+    /**
+     * The width of the time bucket (HOUR or DAY).
+     */
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name="GRANULARITY")
+    private TimeBucketType granularity;
+
+    /**
+     * The start of the time bucket (milliseconds since the epoch).
+     */
+    @Id
+    @Column(name="BUCKET_START")
+    private long bucket = 0L;
+
+    /**
+     * The user who submitted the jobs.
+     */
+    @Id
+    @Column(name="USER_NAME")
+    private String userName;
+
+    /**
+     * The archive type (text value) of the jobs.
+     */
+    @Id
+    @Column(name="ARCHIVE_TYPE")
+    private String archiveType;
+
+    /**
+     * The job state (text value) of the jobs.
+     */
+    @Id
+    @Column(name="JOB_STATE")
+    private String jobState;
+
+    /**
+     * The number of jobs summarized.
+     */
+    @Column(name="JOB_COUNT")
+    private long jobCount = 0L;
+
+    /**
+     * The sum, minimum and maximum of the elapsed time.
+     */
+    @Column(name="ELAPSED_TIME_SUM")
+    private long elapsedTimeSum = 0L;
+    @Column(name="ELAPSED_TIME_MIN")
+    private long elapsedTimeMin = 0L;
+    @Column(name="ELAPSED_TIME_MAX")
+    private long elapsedTimeMax = 0L;
+
+    /**
+     * The sum, minimum and maximum of the total size.
+     */
+    @Column(name="TOTAL_SIZE_SUM")
+    private long totalSizeSum = 0L;
+    @Column(name="TOTAL_SIZE_MIN")
+    private long totalSizeMin = 0L;
+    @Column(name="TOTAL_SIZE_MAX")
+    private long totalSizeMax = 0L;
+
+    /**
+     * The sum, minimum and maximum of the total compressed size.
+     */
+    @Column(name="COMPRESSED_SIZE_SUM")
+    private long compressedSizeSum = 0L;
+    @Column(name="COMPRESSED_SIZE_MIN")
+    private long compressedSizeMin = 0L;
+    @Column(name="COMPRESSED_SIZE_MAX")
+    private long compressedSizeMax = 0L;
+
+    /**
+     * The number of jobs contributing to the compression percentage, and
+     * the sum, minimum and maximum of the compression percentage.
+     */
+    @Column(name="COMPRESSION_COUNT")
+    private long compressionCount = 0L;
+    @Column(name="COMPRESSION_SUM")
+    private double compressionSum = 0.0;
+    @Column(name="COMPRESSION_MIN")
+    private double compressionMin = 0.0;
+    @Column(name="COMPRESSION_MAX")
+    private double compressionMax = 0.0;
+
+    /**
+     * Default no-arg constructor required by hibernate.
+     */
+    public MetricsRollup() {}
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public MetricsRollup(MetricsRollupBuilder builder) {
+        archiveType       = builder.archiveType;
+        bucket            = builder.bucket;
+        compressedSizeMax = builder.compressedSizeMax;
+        compressedSizeMin = builder.compressedSizeMin;
+        compressedSizeSum = builder.compressedSizeSum;
+        compressionCount  = builder.compressionCount;
+        compressionMax    = builder.compressionMax;
+        compressionMin    = builder.compressionMin;
+        compressionSum    = builder.compressionSum;
+        elapsedTimeMax    = builder.elapsedTimeMax;
+        elapsedTimeMin    = builder.elapsedTimeMin;
+        elapsedTimeSum    = builder.elapsedTimeSum;
+        granularity       = builder.granularity;
+        jobCount          = builder.jobCount;
+        jobState          = builder.jobState;
+        totalSizeMax      = builder.totalSizeMax;
+        totalSizeMin      = builder.totalSizeMin;
+        totalSizeSum      = builder.totalSizeSum;
+        userName          = builder.userName;
+    }
+
+    /**
+     * Getter method for the archive type.
+     * @return The archive type (null if not grouped by archive type).
+     */
+    public String getArchiveType() {
+        return archiveType;
+    }
+
+    /**
+     * Getter method for the start of the time bucket.
+     * @return The start of the bucket (milliseconds since the epoch).
+     */
+    public long getBucket() {
+        return bucket;
+    }
+
+    /**
+     * Getter method for the maximum compressed size.
+     * @return The maximum compressed size.
+     */
+    public long getCompressedSizeMax() {
+        return compressedSizeMax;
+    }
+
+    /**
+     * Getter method for the minimum compressed size.
+     * @return The minimum compressed size.
+     */
+    public long getCompressedSizeMin() {
+        return compressedSizeMin;
+    }
+
+    /**
+     * Getter method for the sum of the compressed size.
+     * @return The sum of the compressed size.
+     */
+    public long getCompressedSizeSum() {
+        return compressedSizeSum;
+    }
+
+    /**
+     * Getter method for the number of jobs contributing to the compression
+     * percentage.
+     * @return The number of jobs that produced output.
+     */
+    public long getCompressionCount() {
+        return compressionCount;
+    }
+
+    /**
+     * Getter method for the maximum compression percentage.
+     * @return The maximum compression percentage.
+     */
+    public double getCompressionMax() {
+        return compressionMax;
+    }
+
+    /**
+     * Getter method for the minimum compression percentage.
+     * @return The minimum compression percentage.
+     */
+    public double getCompressionMin() {
+        return compressionMin;
+    }
+
+    /**
+     * Getter method for the sum of the compression percentage.
+     * @return The sum of the compression percentage.
+     */
+    public double getCompressionSum() {
+        return compressionSum;
+    }
+
+    /**
+     * Getter method for the maximum elapsed time.
+     * @return The maximum elapsed time.
+     */
+    public long getElapsedTimeMax() {
+        return elapsedTimeMax;
+    }
+
+    /**
+     * Getter method for the minimum elapsed time.
+     * @return The minimum elapsed time.
+     */
+    public long getElapsedTimeMin() {
+        return elapsedTimeMin;
+    }
+
+    /**
+     * Getter method for the sum of the elapsed time.
+     * @return The sum of the elapsed time.
+     */
+    public long getElapsedTimeSum() {
+        return elapsedTimeSum;
+    }
+
+    /**
+     * Getter method for the width of the time bucket.
+     * @return The granularity.
+     */
+    public TimeBucketType getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Getter method for the number of jobs summarized.
+     * @return The number of jobs.
+     */
+    public long getJobCount() {
+        return jobCount;
+    }
+
+    /**
+     * Getter method for the job state.
+     * @return The job state (null if not grouped by job state).
+     */
+    public String getJobState() {
+        return jobState;
+    }
+
+    /**
+     * Getter method for the maximum total size.
+     * @return The maximum total size.
+     */
+    public long getTotalSizeMax() {
+        return totalSizeMax;
+    }
+
+    /**
+     * Getter method for the minimum total size.
+     * @return The minimum total size.
+     */
+    public long getTotalSizeMin() {
+        return totalSizeMin;
+    }
+
+    /**
+     * Getter method for the sum of the total size.
+     * @return The sum of the total size.
+     */
+    public long getTotalSizeSum() {
+        return totalSizeSum;
+    }
+
+    /**
+     * Getter method for the user name.
+     * @return The user name (null if not grouped by user).
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Granularity => [ ");
+        sb.append(getGranularity());
+        sb.append(" ], Bucket => [ ");
+        sb.append(getBucket());
+        sb.append(" ], User => [ ");
+        sb.append(getUserName());
+        sb.append(" ], Archive Type => [ ");
+        sb.append(getArchiveType());
+        sb.append(" ], Job State => [ ");
+        sb.append(getJobState());
+        sb.append(" ], Job Count => [ ");
+        sb.append(getJobCount());
+        sb.append(" ], Elapsed Time (sum/min/max) => [ ");
+        sb.append(getElapsedTimeSum());
+        sb.append(" / ");
+        sb.append(getElapsedTimeMin());
+        sb.append(" / ");
+        sb.append(getElapsedTimeMax());
+        sb.append(" ], Total Size (sum/min/max) => [ ");
+        sb.append(getTotalSizeSum());
+        sb.append(" / ");
+        sb.append(getTotalSizeMin());
+        sb.append(" / ");
+        sb.append(getTotalSizeMax());
+        sb.append(" ], Compressed Size (sum/min/max) => [ ");
+        sb.append(getCompressedSizeSum());
+        sb.append(" / ");
+        sb.append(getCompressedSizeMin());
+        sb.append(" / ");
+        sb.append(getCompressedSizeMax());
+        sb.append(" ], Compression (count/sum/min/max) => [ ");
+        sb.append(getCompressionCount());
+        sb.append(" / ");
+        sb.append(getCompressionSum());
+        sb.append(" / ");
+        sb.append(getCompressionMin());
+        sb.append(" / ");
+        sb.append(getCompressionMax());
+        sb.append(" ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * MetricsRollup objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class MetricsRollupBuilder {
+
+        private String         archiveType;
+        private long           bucket            = 0L;
+        private long           compressedSizeMax = 0L;
+        private long           compressedSizeMin = 0L;
+        private long           compressedSizeSum = 0L;
+        private long           compressionCount  = 0L;
+        private double         compressionMax    = 0.0;
+        private double         compressionMin    = 0.0;
+        private double         compressionSum    = 0.0;
+        private long           elapsedTimeMax    = 0L;
+        private long           elapsedTimeMin    = 0L;
+        private long           elapsedTimeSum    = 0L;
+        private TimeBucketType granularity;
+        private long           jobCount          = 0L;
+        private String         jobState;
+        private long           totalSizeMax      = 0L;
+        private long           totalSizeMin      = 0L;
+        private long           totalSizeSum      = 0L;
+        private String         userName;
+
+        /**
+         * Method used to actually construct the MetricsRollup object.
+         * @return A constructed and validated MetricsRollup object.
+         */
+        public MetricsRollup build() throws IllegalStateException {
+            MetricsRollup object = new MetricsRollup(this);
+            validateMetricsRollupObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the archive type.
+         *
+         * @param value The archive type.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder archiveType(String value) {
+            archiveType = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the start of the time bucket.
+         *
+         * @param value The start of the bucket.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder bucket(long value) {
+            bucket = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the maximum compressed size.
+         *
+         * @param value The maximum compressed size.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder compressedSizeMax(long value) {
+            compressedSizeMax = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the minimum compressed size.
+         *
+         * @param value The minimum compressed size.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder compressedSizeMin(long value) {
+            compressedSizeMin = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the sum of the compressed size.
+         *
+         * @param value The sum of the compressed size.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder compressedSizeSum(long value) {
+            compressedSizeSum = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of jobs contributing to the
+         * compression percentage.
+         *
+         * @param value The number of jobs that produced output.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder compressionCount(long value) {
+            compressionCount = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the maximum compression percentage.
+         *
+         * @param value The maximum compression percentage.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder compressionMax(double value) {
+            compressionMax = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the minimum compression percentage.
+         *
+         * @param value The minimum compression percentage.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder compressionMin(double value) {
+            compressionMin = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the sum of the compression percentage.
+         *
+         * @param value The sum of the compression percentage.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder compressionSum(double value) {
+            compressionSum = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the maximum elapsed time.
+         *
+         * @param value The maximum elapsed time.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder elapsedTimeMax(long value) {
+            elapsedTimeMax = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the minimum elapsed time.
+         *
+         * @param value The minimum elapsed time.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder elapsedTimeMin(long value) {
+            elapsedTimeMin = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the sum of the elapsed time.
+         *
+         * @param value The sum of the elapsed time.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder elapsedTimeSum(long value) {
+            elapsedTimeSum = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the width of the time bucket.
+         *
+         * @param value The granularity.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder granularity(TimeBucketType value) {
+            granularity = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of jobs summarized.
+         *
+         * @param value The number of jobs.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder jobCount(long value) {
+            jobCount = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the job state.
+         *
+         * @param value The job state.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder jobState(String value) {
+            jobState = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the maximum total size.
+         *
+         * @param value The maximum total size.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder totalSizeMax(long value) {
+            totalSizeMax = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the minimum total size.
+         *
+         * @param value The minimum total size.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder totalSizeMin(long value) {
+            totalSizeMin = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the sum of the total size.
+         *
+         * @param value The sum of the total size.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder totalSizeSum(long value) {
+            totalSizeSum = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the user name.
+         *
+         * @param value The user name.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsRollupBuilder userName(String value) {
+            userName = value;
+            return this;
+        }
+
+        /**
+         * Validate that the granularity is populated.
+         *
+         * @param object The MetricsRollup object to validate.
+         * @throws IllegalStateException Thrown if the granularity is not
+         * populated.
+         */
+        private void validateMetricsRollupObject(
+                MetricsRollup object) throws IllegalStateException {
+            if (object.getGranularity() == null) {
+                throw new IllegalStateException("Invalid value for "
+                        + "GRANULARITY.  Value is null.");
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+
+import mil.nga.bundler.types.TimeBucketType;
+
+/**
+ * Composite primary key of the <code>MetricsRollup</code> table.  A rollup
+ * row is identified by the width and start of its time bucket along with
+ * the user, archive type and job state of the jobs it summarizes.  The key
+ * is also used by the collector to combine the records in a batch before
+ * they are applied to the rollup table.
+ *
+ * Keys are ordered by granularity, bucket, user, archive type and job
+ * state so that concurrent writers always update the rollup rows in the
+ * same order.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MetricsRollupKey
+        implements Serializable, Comparable<MetricsRollupKey> {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -5541902170684253382L;
+
+    private TimeBucketType granularity;
+    private long           bucket;
+    private String         userName;
+    private String         archiveType;
+    private String         jobState;
+
+    /**
+     * Default no-arg constructor required by hibernate.
+     */
+    public MetricsRollupKey() {}
+
+    /**
+     * Constructor setting all of the key fields.
+     *
+     * @param granularity The width of the time bucket.
+     * @param bucket The start of the time bucket (milliseconds since the
+     * epoch).
+     * @param userName The user who submitted the jobs.
+     * @param archiveType The archive type (text value).
+     * @param jobState The job state (text value).
+     */
+    public MetricsRollupKey(
+            TimeBucketType granularity,
+            long           bucket,
+            String         userName,
+            String         archiveType,
+            String         jobState) {
+        this.granularity = granularity;
+        this.bucket      = bucket;
+        this.userName    = userName;
+        this.archiveType = archiveType;
+        this.jobState    = jobState;
+    }
+
+    /**
+     * Getter method for the archive type.
+     * @return The archive type.
+     */
+    public String getArchiveType() {
+        return archiveType;
+    }
+
+    /**
+     * Getter method for the start of the time bucket.
+     * @return The start of the bucket (milliseconds since the epoch).
+     */
+    public long getBucket() {
+        return bucket;
+    }
+
+    /**
+     * Getter method for the width of the time bucket.
+     * @return The granularity.
+     */
+    public TimeBucketType getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Getter method for the job state.
+     * @return The job state.
+     */
+    public String getJobState() {
+        return jobState;
+    }
+
+    /**
+     * Getter method for the user name.
+     * @return The user name.
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * Order keys by granularity, bucket, user, archive type and job state.
+     */
+    @Override
+    public int compareTo(MetricsRollupKey other) {
+        int result = compare(granularity, other.granularity);
+        if (result == 0) {
+            result = Long.compare(bucket, other.bucket);
+        }
+        if (result == 0) {
+            result = compare(userName, other.userName);
+        }
+        if (result == 0) {
+            result = compare(archiveType, other.archiveType);
+        }
+        if (result == 0) {
+            result = compare(jobState, other.jobState);
+        }
+        return result;
+    }
+
+    /**
+     * Null-safe comparison of two key fields.  Null sorts first.
+     *
+     * @param a The first value.
+     * @param b The second value.
+     * @return Negative, zero or positive as a is less than, equal to or
+     * greater than b.
+     */
+    private static <T extends Comparable<T>> int compare(T a, T b) {
+        int result = 0;
+        if (a == null) {
+            result = (b == null) ? 0 : -1;
+        }
+        else if (b == null) {
+            result = 1;
+        }
+        else {
+            result = a.compareTo(b);
+        }
+        return result;
+    }
+
+    /**
+     * Two keys are equal if all of the key fields are equal.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        boolean result = false;
+        if (this == obj) {
+            result = true;
+        }
+        else if (obj instanceof MetricsRollupKey) {
+            result = (compareTo((MetricsRollupKey)obj) == 0);
+        }
+        return result;
+    }
+
+    /**
+     * Hash code calculated over all of the key fields.
+     */
+    @Override
+    public int hashCode() {
+        int result = (granularity == null) ? 0 : granularity.hashCode();
+        result = 31 * result + Long.hashCode(bucket);
+        result = 31 * result + ((userName == null) ? 0 : userName.hashCode());
+        result = 31 * result +
+                ((archiveType == null) ? 0 : archiveType.hashCode());
+        result = 31 * result + ((jobState == null) ? 0 : jobState.hashCode());
+        return result;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Granularity => [ ");
+        sb.append(getGranularity());
+        sb.append(" ], Bucket => [ ");
+        sb.append(getBucket());
+        sb.append(" ], User => [ ");
+        sb.append(getUserName());
+        sb.append(" ], Archive Type => [ ");
+        sb.append(getArchiveType());
+        sb.append(" ], Job State => [ ");
+        sb.append(getJobState());
+        sb.append(" ].");
+        return sb.toString();
+    }
+}
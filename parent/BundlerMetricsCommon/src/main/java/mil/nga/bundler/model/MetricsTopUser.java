@@ -0,0 +1,367 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import mil.nga.bundler.types.TopUserMeasureType;
+
+/**
+ * A single counter from the bounded-memory summary of the heaviest users
+ * (by bytes, job count or elapsed time) observed by one node over one
+ * day.  Each node saves every counter of its summaries so they can be
+ * restored after a restart and merged with those of the other nodes.
+ *
+ * The estimate is an upper bound on the user's actual value and the
+ * estimate minus the error is a lower bound.  Users not in the summary
+ * have a value no greater than the floor.
+ *
+ * Note: This class contains the persistence annotations but we don't actually
+ * use hibernate.  They were left in in order to ensure the container builds the
+ * target table.
+ *
+ * @author L. Craig Carpenter
+ */
+@Entity
+@Table(name="BUNDLER_METRICS_TOP_USER")
+public class MetricsTopUser implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -2861193350471255043L;
+
+    /**
+     * Key uniquely identifying the counter (primary key).
+     */
+    @Id
+    @Column(name="TOP_USER_KEY")
+    private String key;
+
+    /**
+     * The start of the day (milliseconds since the epoch, UTC).
+     */
+    @Column(name="DAY_START")
+    private long dayStart = 0L;
+
+    /**
+     * The maximum amount by which the estimate exceeds the actual value.
+     */
+    @Column(name="ESTIMATE_ERROR")
+    private long error = 0L;
+
+    /**
+     * The estimated value for the user.
+     */
+    @Column(name="ESTIMATE")
+    private long estimate = 0L;
+
+    /**
+     * The upper bound on the value of any user not in the summary.
+     */
+    @Column(name="FLOOR_VALUE")
+    private long floor = 0L;
+
+    /**
+     * The node that maintained the summary (null for merged results).
+     */
+    @Column(name="HOST_NAME")
+    private String hostName;
+
+    /**
+     * The measure by which the users are ranked.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name="MEASURE")
+    private TopUserMeasureType measure;
+
+    /**
+     * The total of the measure over all users.
+     */
+    @Column(name="MEASURE_TOTAL")
+    private long total = 0L;
+
+    /**
+     * The user name.
+     */
+    @Column(name="USER_NAME")
+    private String userName;
+
+    /**
+     * Default no-arg constructor required by hibernate.
+     */
+    public MetricsTopUser() {}
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public MetricsTopUser(MetricsTopUserBuilder builder) {
+        dayStart = builder.dayStart;
+        error    = builder.error;
+        estimate = builder.estimate;
+        floor    = builder.floor;
+        hostName = builder.hostName;
+        measure  = builder.measure;
+        total    = builder.total;
+        userName = builder.userName;
+        key      = getKey(dayStart, measure, hostName, userName);
+    }
+
+    /**
+     * Construct the key identifying a counter.
+     *
+     * @param dayStart The start of the day.
+     * @param measure The measure.
+     * @param hostName The node name.
+     * @param userName The user name.
+     * @return The counter key.
+     */
+    public static String getKey(
+            long               dayStart,
+            TopUserMeasureType measure,
+            String             hostName,
+            String             userName) {
+        return dayStart
+                + ":"
+                + (measure == null ? null : measure.name())
+                + ":"
+                + hostName
+                + ":"
+                + userName;
+    }
+
+    /**
+     * Getter method for the start of the day.
+     * @return The start of the day (milliseconds since the epoch).
+     */
+    public long getDayStart() {
+        return dayStart;
+    }
+
+    /**
+     * Getter method for the maximum overestimate.
+     * @return The error.
+     */
+    public long getError() {
+        return error;
+    }
+
+    /**
+     * Getter method for the estimated value.
+     * @return The estimate.
+     */
+    public long getEstimate() {
+        return estimate;
+    }
+
+    /**
+     * Getter method for the upper bound on users not in the summary.
+     * @return The floor.
+     */
+    public long getFloor() {
+        return floor;
+    }
+
+    /**
+     * Getter method for the node name.
+     * @return The host name.
+     */
+    public String getHostName() {
+        return hostName;
+    }
+
+    /**
+     * Getter method for the counter key.
+     * @return The key.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Getter method for the measure.
+     * @return The measure.
+     */
+    public TopUserMeasureType getMeasure() {
+        return measure;
+    }
+
+    /**
+     * Getter method for the total over all users.
+     * @return The total.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Getter method for the user name.
+     * @return The user name.
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Key => [ ");
+        sb.append(getKey());
+        sb.append(" ], Estimate => [ ");
+        sb.append(getEstimate());
+        sb.append(" ], Error => [ ");
+        sb.append(getError());
+        sb.append(" ], Floor => [ ");
+        sb.append(getFloor());
+        sb.append(" ], Total => [ ");
+        sb.append(getTotal());
+        sb.append(" ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * MetricsTopUser objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class MetricsTopUserBuilder {
+
+        private long               dayStart = 0L;
+        private long               error    = 0L;
+        private long               estimate = 0L;
+        private long               floor    = 0L;
+        private String             hostName;
+        private TopUserMeasureType measure;
+        private long               total    = 0L;
+        private String             userName;
+
+        /**
+         * Method used to actually construct the MetricsTopUser object.
+         * @return A constructed and validated MetricsTopUser object.
+         */
+        public MetricsTopUser build() throws IllegalStateException {
+            MetricsTopUser object = new MetricsTopUser(this);
+            validateMetricsTopUserObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the start of the day.
+         *
+         * @param value The start of the day.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsTopUserBuilder dayStart(long value) {
+            dayStart = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the maximum overestimate.
+         *
+         * @param value The error.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsTopUserBuilder error(long value) {
+            error = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the estimated value.
+         *
+         * @param value The estimate.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsTopUserBuilder estimate(long value) {
+            estimate = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the upper bound on users not in the summary.
+         *
+         * @param value The floor.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsTopUserBuilder floor(long value) {
+            floor = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the node name.
+         *
+         * @param value The host name.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsTopUserBuilder hostName(String value) {
+            hostName = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the measure.
+         *
+         * @param value The measure.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsTopUserBuilder measure(TopUserMeasureType value) {
+            measure = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the total over all users.
+         *
+         * @param value The total.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsTopUserBuilder total(long value) {
+            total = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the user name.
+         *
+         * @param value The user name.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsTopUserBuilder userName(String value) {
+            userName = value;
+            return this;
+        }
+
+        /**
+         * Validate that all required fields are populated.
+         *
+         * @param object The MetricsTopUser object to validate.
+         * @throws IllegalStateException Thrown if any of the required fields
+         * are not populated.
+         */
+        private void validateMetricsTopUserObject(
+                MetricsTopUser object) throws IllegalStateException {
+            if (object.getMeasure() == null) {
+                throw new IllegalStateException("Invalid value for "
+                        + "MEASURE.  Value is null.");
+            }
+            if ((object.getUserName() == null) ||
+                    (object.getUserName().isEmpty())) {
+                throw new IllegalStateException("Invalid value for "
+                        + "USER_NAME.  Value is empty.");
+            }
+        }
+    }
+}
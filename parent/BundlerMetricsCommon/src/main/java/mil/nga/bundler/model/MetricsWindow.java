@@ -0,0 +1,406 @@
+package mil.nga.bundler.model;
+
+import java.io.Serializable;
+
+/**
+ * Simple object containing a snapshot of the live statistics maintained
+ * in memory for a single sliding window (e.g. the last five minutes).  The
+ * rates and averages are derived from the raw totals when requested.
+ * The windows are held separately by each node and only count the jobs
+ * that node recorded, so each snapshot carries the name of the node it
+ * was taken on.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MetricsWindow implements Serializable {
+
+    /**
+     * Eclipse-generated serialVersionUID
+     */
+    private static final long serialVersionUID = -1945285312201733610L;
+
+    private final long   elapsedTime;
+    private final long   end;
+    private final long   errors;
+    private final long   jobs;
+    private final long   maxElapsedTime;
+    private final String name;
+    private final String node;
+    private final long   p50;
+    private final long   p90;
+    private final long   p99;
+    private final long   start;
+    private final long   totalSize;
+
+    /**
+     * Constructor used to build an object from the specified
+     * builder.
+     * @param builder The builder object.
+     */
+    public MetricsWindow(MetricsWindowBuilder builder) {
+        elapsedTime    = builder.elapsedTime;
+        end            = builder.end;
+        errors         = builder.errors;
+        jobs           = builder.jobs;
+        maxElapsedTime = builder.maxElapsedTime;
+        name           = builder.name;
+        node           = builder.node;
+        p50            = builder.p50;
+        p90            = builder.p90;
+        p99            = builder.p99;
+        start          = builder.start;
+        totalSize      = builder.totalSize;
+    }
+
+    /**
+     * Getter method for the mean elapsed time of the jobs in the window.
+     * @return The mean elapsed time (0 if the window is empty).
+     */
+    public double getAvgElapsedTime() {
+        return (jobs > 0) ? ((double)elapsedTime / (double)jobs) : 0.0;
+    }
+
+    /**
+     * Getter method for the number of bytes bundled per second.
+     * @return The bytes per second over the window.
+     */
+    public double getBytesPerSecond() {
+        return perSecond(totalSize);
+    }
+
+    /**
+     * Getter method for the total elapsed time of the jobs in the window.
+     * @return The total elapsed time.
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Getter method for the end of the window.
+     * @return The end of the window (milliseconds since the epoch).
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Getter method for the fraction of jobs that ended in error.
+     * @return The error rate (0 if the window is empty).
+     */
+    public double getErrorRate() {
+        return (jobs > 0) ? ((double)errors / (double)jobs) : 0.0;
+    }
+
+    /**
+     * Getter method for the number of jobs that ended in error.
+     * @return The number of failed jobs.
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Getter method for the number of jobs completed within the window.
+     * @return The number of jobs.
+     */
+    public long getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Getter method for the number of jobs completed per second.
+     * @return The jobs per second over the window.
+     */
+    public double getJobsPerSecond() {
+        return perSecond(jobs);
+    }
+
+    /**
+     * Getter method for the maximum elapsed time.
+     * @return The maximum elapsed time.
+     */
+    public long getMaxElapsedTime() {
+        return maxElapsedTime;
+    }
+
+    /**
+     * Getter method for the name of the window (e.g. 5m).
+     * @return The window name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter method for the node that took the snapshot.
+     * @return The node name (<code>server@host</code>).
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * Getter method for the approximate median elapsed time.
+     * @return The 50th percentile.
+     */
+    public long getP50() {
+        return p50;
+    }
+
+    /**
+     * Getter method for the approximate 90th percentile elapsed time.
+     * @return The 90th percentile.
+     */
+    public long getP90() {
+        return p90;
+    }
+
+    /**
+     * Getter method for the approximate 99th percentile elapsed time.
+     * @return The 99th percentile.
+     */
+    public long getP99() {
+        return p99;
+    }
+
+    /**
+     * Getter method for the start of the window.
+     * @return The start of the window (milliseconds since the epoch).
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Getter method for the number of bytes bundled within the window.
+     * @return The total size of the jobs.
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Convert the input total to a rate over the length of the window.
+     *
+     * @param total The total.
+     * @return The rate per second.
+     */
+    private double perSecond(long total) {
+        return (end > start) ?
+                ((double)total * 1000.0 / (double)(end - start)) : 0.0;
+    }
+
+    /**
+     * Convert the object to string representation for logging purposes.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Window => [ ");
+        sb.append(getName());
+        sb.append(" ], Node => [ ");
+        sb.append(getNode());
+        sb.append(" ], Start => [ ");
+        sb.append(getStart());
+        sb.append(" ], End => [ ");
+        sb.append(getEnd());
+        sb.append(" ], Jobs => [ ");
+        sb.append(getJobs());
+        sb.append(" ], Errors => [ ");
+        sb.append(getErrors());
+        sb.append(" ], Total Size => [ ");
+        sb.append(getTotalSize());
+        sb.append(" ], Max Elapsed => [ ");
+        sb.append(getMaxElapsedTime());
+        sb.append(" ], P50 => [ ");
+        sb.append(getP50());
+        sb.append(" ], P90 => [ ");
+        sb.append(getP90());
+        sb.append(" ], P99 => [ ");
+        sb.append(getP99());
+        sb.append(" ].");
+        return sb.toString();
+    }
+
+    /**
+     * Class implementing the Builder creation pattern for new
+     * MetricsWindow objects.
+     *
+     * @author L. Craig Carpenter
+     */
+    public static class MetricsWindowBuilder {
+
+        private long   elapsedTime    = 0L;
+        private long   end            = 0L;
+        private long   errors         = 0L;
+        private long   jobs           = 0L;
+        private long   maxElapsedTime = 0L;
+        private String name;
+        private String node;
+        private long   p50            = 0L;
+        private long   p90            = 0L;
+        private long   p99            = 0L;
+        private long   start          = 0L;
+        private long   totalSize      = 0L;
+
+        /**
+         * Method used to actually construct the MetricsWindow object.
+         * @return A constructed and validated MetricsWindow object.
+         */
+        public MetricsWindow build() throws IllegalStateException {
+            MetricsWindow object = new MetricsWindow(this);
+            validateMetricsWindowObject(object);
+            return object;
+        }
+
+        /**
+         * Setter method for the total elapsed time.
+         *
+         * @param value The total elapsed time.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder elapsedTime(long value) {
+            elapsedTime = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the end of the window.
+         *
+         * @param value The end of the window.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder end(long value) {
+            end = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of jobs that ended in error.
+         *
+         * @param value The number of failed jobs.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder errors(long value) {
+            errors = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of jobs completed.
+         *
+         * @param value The number of jobs.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder jobs(long value) {
+            jobs = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the maximum elapsed time.
+         *
+         * @param value The maximum elapsed time.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder maxElapsedTime(long value) {
+            maxElapsedTime = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the name of the window.
+         *
+         * @param value The window name.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder name(String value) {
+            name = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the node that took the snapshot.
+         *
+         * @param value The node name.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder node(String value) {
+            node = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the median elapsed time.
+         *
+         * @param value The 50th percentile.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder p50(long value) {
+            p50 = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the 90th percentile elapsed time.
+         *
+         * @param value The 90th percentile.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder p90(long value) {
+            p90 = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the 99th percentile elapsed time.
+         *
+         * @param value The 99th percentile.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder p99(long value) {
+            p99 = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the start of the window.
+         *
+         * @param value The start of the window.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder start(long value) {
+            start = value;
+            return this;
+        }
+
+        /**
+         * Setter method for the number of bytes bundled.
+         *
+         * @param value The total size of the jobs.
+         * @return Reference to the parent builder object.
+         */
+        public MetricsWindowBuilder totalSize(long value) {
+            totalSize = value;
+            return this;
+        }
+
+        /**
+         * Validate that the window name is populated.
+         *
+         * @param object The MetricsWindow object to validate.
+         * @throws IllegalStateException Thrown if the name is not
+         * populated.
+         */
+        private void validateMetricsWindowObject(
+                MetricsWindow object) throws IllegalStateException {
+            if ((object.getName() == null) || (object.getName().isEmpty())) {
+                throw new IllegalStateException("Invalid value for "
+                        + "name.  Value is [ "
+                        + object.getName()
+                        + " ].");
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package mil.nga.bundler.types;
+
+/**
+ * Enumeration type identifying the dimensions by which the job metrics 
+ * records may be grouped when calculating aggregate statistics.
+ *  
+ * @author L. Craig Carpenter
+ */
+public enum AggregateDimensionType {
+    USER_NAME("user"),
+    ARCHIVE_TYPE("archive_type"),
+    JOB_STATE("job_state");
+    
+    /**
+     * The text field.
+     */
+    private final String text;
+    
+    /**
+     * Default constructor
+     * @param text Text associated with the enumeration value.
+     */
+    private AggregateDimensionType(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * Getter method for the text associated with the enumeration value.
+     * 
+     * @return The text associated with the instanced enumeration type.
+     */
+    public String getText() {
+        return this.text;
+    }
+    
+    /**
+     * Convert an input String to it's associated enumeration type.  The 
+     * comparison is case-insensitive and accepts either the text or the 
+     * name of the enumeration value.
+     * 
+     * @param text Input text information
+     * @return The matching enumeration value, or null if the input does 
+     * not match any of the values.
+     */
+    public static AggregateDimensionType fromString(String text) {
+        if (text != null) {
+            for (AggregateDimensionType type : AggregateDimensionType.values()) {
+                if ((text.trim().equalsIgnoreCase(type.getText())) || 
+                        (text.trim().equalsIgnoreCase(type.name()))) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+}
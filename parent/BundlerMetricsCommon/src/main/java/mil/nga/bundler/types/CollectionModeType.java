@@ -0,0 +1,44 @@
+package mil.nga.bundler.types;
+
+/**
+ * Enumeration type identifying the mode of a metrics collection run.
+ * <ul>
+ * <li>INCREMENTAL - Only jobs completed after the persisted checkpoint are
+ * processed.</li>
+ * <li>FULL - Every job without a metrics record is processed.</li>
+ * <li>RECOLLECT - Every job completed after a given time is processed and
+ * any existing metrics records are refreshed.</li>
+ * <li>BACKFILL - Every job started within a given time range is processed
+ * in time slices and any existing metrics records are refreshed.</li>
+ * </ul>
+ *  
+ * @author L. Craig Carpenter
+ */
+public enum CollectionModeType {
+    INCREMENTAL("incremental"),
+    FULL("full"),
+    RECOLLECT("recollect"),
+    BACKFILL("backfill");
+    
+    /**
+     * The text field.
+     */
+    private final String text;
+    
+    /**
+     * Default constructor
+     * @param text Text associated with the enumeration value.
+     */
+    private CollectionModeType(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * Getter method for the text associated with the enumeration value.
+     * 
+     * @return The text associated with the instanced enumeration type.
+     */
+    public String getText() {
+        return this.text;
+    }
+}
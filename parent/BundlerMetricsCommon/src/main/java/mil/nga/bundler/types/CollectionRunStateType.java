@@ -0,0 +1,35 @@
+package mil.nga.bundler.types;
+
+/**
+ * Enumeration type identifying the status of a metrics collection run.
+ *  
+ * @author L. Craig Carpenter
+ */
+public enum CollectionRunStateType {
+    NOT_STARTED("not_started"),
+    RUNNING("running"),
+    COMPLETE("complete"),
+    ERROR("error");
+    
+    /**
+     * The text field.
+     */
+    private final String text;
+    
+    /**
+     * Default constructor
+     * @param text Text associated with the enumeration value.
+     */
+    private CollectionRunStateType(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * Getter method for the text associated with the enumeration value.
+     * 
+     * @return The text associated with the instanced enumeration type.
+     */
+    public String getText() {
+        return this.text;
+    }
+}
@@ -0,0 +1,58 @@
+package mil.nga.bundler.types;
+
+/**
+ * Enumeration type identifying the job metrics values for which aggregate 
+ * statistics may be calculated.
+ *  
+ * @author L. Craig Carpenter
+ */
+public enum MetricsMeasureType {
+    ELAPSED_TIME("elapsed_time"),
+    TOTAL_SIZE("total_size"),
+    TOTAL_COMPRESSED_SIZE("total_compressed_size"),
+    COMPRESSION_PERCENTAGE("compression_percentage"),
+    THROUGHPUT("throughput");
+    
+    /**
+     * The text field.
+     */
+    private final String text;
+    
+    /**
+     * Default constructor
+     * @param text Text associated with the enumeration value.
+     */
+    private MetricsMeasureType(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * Getter method for the text associated with the enumeration value.
+     * 
+     * @return The text associated with the instanced enumeration type.
+     */
+    public String getText() {
+        return this.text;
+    }
+    
+    /**
+     * Convert an input String to it's associated enumeration type.  The 
+     * comparison is case-insensitive and accepts either the text or the 
+     * name of the enumeration value.
+     * 
+     * @param text Input text information
+     * @return The matching enumeration value, or null if the input does 
+     * not match any of the values.
+     */
+    public static MetricsMeasureType fromString(String text) {
+        if (text != null) {
+            for (MetricsMeasureType type : MetricsMeasureType.values()) {
+                if ((text.trim().equalsIgnoreCase(type.getText())) || 
+                        (text.trim().equalsIgnoreCase(type.name()))) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+package mil.nga.bundler.types;
+
+/**
+ * Enumeration type identifying the status of a single partition of a 
+ * cluster-wide metrics collection run.
+ *  
+ * @author L. Craig Carpenter
+ */
+public enum PartitionStateType {
+    PENDING("pending"),
+    CLAIMED("claimed"),
+    COMPLETE("complete");
+    
+    /**
+     * The text field.
+     */
+    private final String text;
+    
+    /**
+     * Default constructor
+     * @param text Text associated with the enumeration value.
+     */
+    private PartitionStateType(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * Getter method for the text associated with the enumeration value.
+     * 
+     * @return The text associated with the instanced enumeration type.
+     */
+    public String getText() {
+        return this.text;
+    }
+}
@@ -0,0 +1,34 @@
+package mil.nga.bundler.types;
+
+/**
+ * Enumeration type identifying the status of a job whose metrics record 
+ * could not be written to the data store.
+ *  
+ * @author L. Craig Carpenter
+ */
+public enum RetryStateType {
+    RETRY("retry"),
+    DEAD("dead");
+    
+    /**
+     * The text field.
+     */
+    private final String text;
+    
+    /**
+     * Default constructor
+     * @param text Text associated with the enumeration value.
+     */
+    private RetryStateType(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * Getter method for the text associated with the enumeration value.
+     * 
+     * @return The text associated with the instanced enumeration type.
+     */
+    public String getText() {
+        return this.text;
+    }
+}
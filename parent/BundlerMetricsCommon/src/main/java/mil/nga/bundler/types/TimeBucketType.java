@@ -0,0 +1,57 @@
+package mil.nga.bundler.types;
+
+/**
+ * Enumeration type identifying the width of the time buckets into which 
+ * the job metrics records may be grouped (by START_TIME, in UTC) when 
+ * calculating aggregate statistics.  Weekly buckets start on Monday.
+ *  
+ * @author L. Craig Carpenter
+ */
+public enum TimeBucketType {
+    HOUR("hour"),
+    DAY("day"),
+    WEEK("week");
+    
+    /**
+     * The text field.
+     */
+    private final String text;
+    
+    /**
+     * Default constructor
+     * @param text Text associated with the enumeration value.
+     */
+    private TimeBucketType(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * Getter method for the text associated with the enumeration value.
+     * 
+     * @return The text associated with the instanced enumeration type.
+     */
+    public String getText() {
+        return this.text;
+    }
+    
+    /**
+     * Convert an input String to it's associated enumeration type.  The 
+     * comparison is case-insensitive and accepts either the text or the 
+     * name of the enumeration value.
+     * 
+     * @param text Input text information
+     * @return The matching enumeration value, or null if the input does 
+     * not match any of the values.
+     */
+    public static TimeBucketType fromString(String text) {
+        if (text != null) {
+            for (TimeBucketType type : TimeBucketType.values()) {
+                if ((text.trim().equalsIgnoreCase(type.getText())) || 
+                        (text.trim().equalsIgnoreCase(type.name()))) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,56 @@
+package mil.nga.bundler.types;
+
+/**
+ * Enumeration type identifying the job metrics values by which the 
+ * heaviest users are ranked.
+ *  
+ * @author L. Craig Carpenter
+ */
+public enum TopUserMeasureType {
+    BYTES("bytes"),
+    JOBS("jobs"),
+    ELAPSED_TIME("elapsed_time");
+    
+    /**
+     * The text field.
+     */
+    private final String text;
+    
+    /**
+     * Default constructor
+     * @param text Text associated with the enumeration value.
+     */
+    private TopUserMeasureType(String text) {
+        this.text = text;
+    }
+    
+    /**
+     * Getter method for the text associated with the enumeration value.
+     * 
+     * @return The text associated with the instanced enumeration type.
+     */
+    public String getText() {
+        return this.text;
+    }
+    
+    /**
+     * Convert an input String to it's associated enumeration type.  The 
+     * comparison is case-insensitive and accepts either the text or the 
+     * name of the enumeration value.
+     * 
+     * @param text Input text information
+     * @return The matching enumeration value, or null if the input does 
+     * not match any of the values.
+     */
+    public static TopUserMeasureType fromString(String text) {
+        if (text != null) {
+            for (TopUserMeasureType type : TopUserMeasureType.values()) {
+                if ((text.trim().equalsIgnoreCase(type.getText())) || 
+                        (text.trim().equalsIgnoreCase(type.name()))) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+}
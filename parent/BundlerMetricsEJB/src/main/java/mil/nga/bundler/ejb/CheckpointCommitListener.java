@@ -0,0 +1,159 @@
+package mil.nga.bundler.ejb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import mil.nga.bundler.ejb.interfaces.BatchCommitListenerI;
+import mil.nga.bundler.ejb.jdbc.JDBCCheckpointService;
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.CollectionCheckpoint;
+
+/**
+ * Commit listener used to advance a collection checkpoint in the same
+ * transaction as the metrics records it describes.  The checkpoint is moved
+ * to the greatest (END_TIME, JOB_ID) position found in each committed batch
+ * and is never moved backwards.  The END_TIME of a job is not stored in the
+ * metrics record, but it is recovered as START_TIME plus ELAPSED_TIME.
+ * 
+ * The checkpoint is never moved past the configured limit.  END_TIME is 
+ * assigned when a job finishes rather than when its row is committed, so
+ * a job may become visible after jobs with a later END_TIME.  Holding the
+ * checkpoint back leaves such jobs in range of the next run.
+ *
+ * @author L. Craig Carpenter
+ */
+public class CheckpointCommitListener implements BatchCommitListenerI {
+
+    /**
+     * The name of the checkpoint to advance.
+     */
+    private final String name;
+
+    /**
+     * Reference to the JDBCCheckpointService session bean.
+     */
+    private final JDBCCheckpointService checkpointService;
+
+    /**
+     * The latest END_TIME the checkpoint may be moved to.
+     */
+    private final long limit;
+
+    /**
+     * The current checkpoint position.
+     */
+    private long   endTime;
+    private String jobID;
+
+    /**
+     * Constructor.
+     *
+     * @param checkpointService Reference to the JDBCCheckpointService bean.
+     * @param name The name of the checkpoint to advance.
+     * @param endTime The END_TIME of the current checkpoint position.
+     * @param jobID The JOB_ID of the current checkpoint position.
+     * @param limit The latest END_TIME the checkpoint may be moved to.
+     */
+    public CheckpointCommitListener(
+            JDBCCheckpointService checkpointService,
+            String                name,
+            long                  endTime,
+            String                jobID,
+            long                  limit) {
+        this.checkpointService = checkpointService;
+        this.name              = name;
+        this.limit             = limit;
+        this.endTime           = endTime;
+        this.jobID             = (jobID == null ? "" : jobID);
+    }
+
+    /**
+     * Determine whether the input position sorts after the current
+     * checkpoint position without passing the limit.
+     *
+     * @param time The END_TIME of the candidate position.
+     * @param id The JOB_ID of the candidate position.
+     * @return True if the checkpoint may be moved to the candidate position.
+     */
+    private boolean isAfter(long time, String id) {
+        return (time <= limit) && 
+               ((time > endTime) ||
+                ((time == endTime) && (id != null) && (id.compareTo(jobID) > 0)));
+    }
+
+    /**
+     * Advance the checkpoint to the last record in the committed batch 
+     * that does not pass the limit.
+     */
+    @Override
+    public void beforeCommit(
+            Connection conn,
+            List<BundlerJobMetrics> committed) throws SQLException {
+
+        boolean advanced = false;
+
+        if (committed != null) {
+            for (BundlerJobMetrics metrics : committed) {
+                long time = metrics.getStartTime() + metrics.getElapsedTime();
+                if (isAfter(time, metrics.getJobID())) {
+                    endTime  = time;
+                    jobID    = metrics.getJobID();
+                    advanced = true;
+                }
+            }
+        }
+        if (advanced) {
+            checkpointService.update(
+                    conn,
+                    new CollectionCheckpoint.CollectionCheckpointBuilder()
+                        .name(name)
+                        .endTime(endTime)
+                        .jobID(jobID)
+                        .build());
+        }
+    }
+
+    /**
+     * Advance the checkpoint to the input position in its own transaction.
+     * This is used to move the checkpoint past jobs that already have a 
+     * metrics record (i.e. written by another path), which are never part
+     * of a committed batch.  The checkpoint is never moved backwards or 
+     * past the limit.
+     *
+     * @param time The END_TIME of the new position.
+     * @param id The JOB_ID of the new position.
+     * @return True if the checkpoint was advanced.
+     */
+    public boolean advance(long time, String id) {
+        boolean advanced = false;
+        if ((isAfter(time, id)) && 
+                (checkpointService.update(
+                        new CollectionCheckpoint.CollectionCheckpointBuilder()
+                            .name(name)
+                            .endTime(time)
+                            .jobID(id)
+                            .build()))) {
+            endTime  = time;
+            jobID    = id;
+            advanced = true;
+        }
+        return advanced;
+    }
+
+    /**
+     * Getter method for the END_TIME of the current checkpoint position.
+     * @return The END_TIME of the current checkpoint position.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Getter method for the JOB_ID of the current checkpoint position.
+     * @return The JOB_ID of the current checkpoint position.
+     */
+    public String getJobID() {
+        return jobID;
+    }
+}
@@ -0,0 +1,109 @@
+package mil.nga.bundler.ejb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.model.CollectionRunStatistics;
+
+/**
+ * In-memory registry of recent metrics collection runs.  Runs started 
+ * asynchronously are registered by ID before they begin executing so that
+ * clients can poll for progress while the run is underway.  Only the most 
+ * recent runs are retained.
+ *
+ * @author L. Craig Carpenter
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class CollectionRunRegistry {
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            CollectionRunRegistry.class);
+
+    /**
+     * The maximum number of runs retained by the registry.
+     */
+    public static final int MAX_RUNS = 50;
+
+    /**
+     * The registered runs keyed by run ID in the order they were started.
+     */
+    private final Map<String, CollectionRunStatistics> runs = 
+            new LinkedHashMap<String, CollectionRunStatistics>() {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, CollectionRunStatistics> eldest) {
+                    return size() > MAX_RUNS;
+                }
+            };
+
+    /**
+     * Default constructor.
+     */
+    public CollectionRunRegistry() { }
+
+    /**
+     * Retrieve the statistics associated with the input run ID.
+     *
+     * @param runID The run ID.
+     * @return The run statistics, or null if the run is not known.
+     */
+    public CollectionRunStatistics get(String runID) {
+        CollectionRunStatistics stats = null;
+        if (runID != null) {
+            synchronized (runs) {
+                stats = runs.get(runID);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Retrieve the statistics associated with all of the retained runs,
+     * most recent first.
+     *
+     * @return The run statistics.
+     */
+    public List<CollectionRunStatistics> getRuns() {
+        List<CollectionRunStatistics> list = null;
+        synchronized (runs) {
+            list = new ArrayList<CollectionRunStatistics>(runs.values());
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+    /**
+     * Add the input run to the registry.
+     *
+     * @param stats The statistics object that will be updated by the run.
+     */
+    public void register(CollectionRunStatistics stats) {
+        if ((stats != null) && (stats.getRunID() != null)) {
+            synchronized (runs) {
+                runs.put(stats.getRunID(), stats);
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Collection run [ "
+                        + stats.getRunID()
+                        + " ] registered.");
+            }
+        }
+    }
+}
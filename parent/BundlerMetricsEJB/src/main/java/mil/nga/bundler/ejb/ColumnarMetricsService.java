@@ -0,0 +1,376 @@
+package mil.nga.bundler.ejb;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.CollectorConfig;
+import mil.nga.bundler.ejb.exceptions.EJBLookupException;
+import mil.nga.bundler.ejb.interfaces.MetricsRowHandlerI;
+import mil.nga.bundler.ejb.jdbc.JDBCJobMetricsService;
+import mil.nga.bundler.ejb.jdbc.JDBCMetricsAggregateService;
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.MetricsAggregate;
+import mil.nga.bundler.stats.ColumnarMetricsStore;
+import mil.nga.bundler.types.AggregateDimensionType;
+import mil.nga.bundler.types.ArchiveType;
+import mil.nga.bundler.types.JobStateType;
+import mil.nga.bundler.types.MetricsMeasureType;
+import mil.nga.bundler.types.TimeBucketType;
+
+/**
+ * Holds the optional in-memory columnar copy of the job metrics records
+ * (see <code>ColumnarMetricsStore</code>).  The store is only maintained if
+ * <code>bundler.metrics.columnar_store</code> is enabled.  It is loaded
+ * from the database in the background the first time it is queried (or
+ * on demand via <code>load()</code>), after which the collector appends
+ * each metrics record it inserts.
+ *
+ * The store is local to each node.  Only the records inserted by this 
+ * node are appended, so records written by the other nodes in the cluster
+ * only appear once the store is reloaded.  The store is reloaded in the 
+ * background when it is queried after it has reached the configured 
+ * reload interval (<code>bundler.metrics.columnar_reload_interval</code>),
+ * so scans reflect the records written by other nodes within that 
+ * interval.
+ *
+ * Records appended while a load is in progress are held aside and added
+ * once the load completes, unless the load already read them.  (A record
+ * the load reads between its commit and its append is counted twice 
+ * until the next reload.)  Records 
+ * refreshed rather than inserted (e.g. by a recollection run or a 
+ * backfill) cannot be applied in place, so writers call 
+ * <code>invalidate()</code> and the store is reloaded in the background 
+ * the next time it is queried.
+ *
+ * @author L. Craig Carpenter
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ColumnarMetricsService {
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            ColumnarMetricsService.class);
+
+    /**
+     * Container-injected EJB reference.
+     */
+    @EJB
+    JDBCJobMetricsService metricsService;
+
+    /**
+     * Container-managed executor used for background loads.
+     */
+    @Resource
+    ManagedExecutorService executor;
+
+    /**
+     * Flag ensuring only one load runs at a time.
+     */
+    private final AtomicBoolean loading = new AtomicBoolean(false);
+
+    /**
+     * Records appended while a load is in progress, by job ID.  Null when
+     * no load is in progress.  Guarded by the bean monitor.
+     */
+    private Map<String, BundlerJobMetrics> pending = null;
+
+    /**
+     * The loaded store (null until the first load completes).
+     */
+    private volatile ColumnarMetricsStore store = null;
+
+    /**
+     * The time at which the loaded store was read from the database.
+     */
+    private volatile long loadTime = 0L;
+
+    /**
+     * Set when records are refreshed in the database after the current 
+     * load started reading them.
+     */
+    private final AtomicBoolean stale = new AtomicBoolean(false);
+
+    /**
+     * Default constructor.
+     */
+    public ColumnarMetricsService() { }
+
+    /**
+     * Private method used to obtain a reference to the target EJB.
+     * @return Reference to the JDBCJobMetricsService EJB.
+     */
+    private JDBCJobMetricsService getJDBCJobMetricsService()
+            throws EJBLookupException {
+
+        if (metricsService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCJobMetricsService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            metricsService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCJobMetricsService();
+        }
+        return metricsService;
+    }
+
+    /**
+     * Determine whether the columnar store is enabled.
+     *
+     * @return True if the store may be loaded.
+     */
+    public boolean isEnabled() {
+        return CollectorConfig.getInstance().isColumnarStoreEnabled();
+    }
+
+    /**
+     * Mark the store out of date.  Called after metrics records have been
+     * refreshed in place in the database, which cannot be applied to the 
+     * store.  The store is reloaded the next time it is queried.
+     */
+    public void invalidate() {
+        stale.set(true);
+    }
+
+    /**
+     * Determine whether the store should be (re)loaded: it has not been 
+     * loaded, it was invalidated, or it is older than the reload interval.
+     *
+     * @param current The current store.
+     * @return True if a background load should be started.
+     */
+    private boolean isReloadDue(ColumnarMetricsStore current) {
+        int interval = CollectorConfig.getInstance()
+                .getColumnarReloadInterval();
+        return (current == null) || 
+               (stale.get()) || 
+               ((interval > 0) && 
+                (System.currentTimeMillis() - loadTime >= interval * 60000L));
+    }
+
+    /**
+     * Get the loaded store.  If the store is enabled but has not been
+     * loaded (or is due to be reloaded), a background load is started.  
+     * The current store continues to serve queries until the load 
+     * completes.
+     *
+     * @return The store, or null if it is not (yet) available.
+     */
+    public ColumnarMetricsStore getStore() {
+        ColumnarMetricsStore current = store;
+        if ((isEnabled()) && (!loading.get()) && (isReloadDue(current))) {
+            if (executor != null) {
+                try {
+                    executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            load();
+                        }
+                    });
+                }
+                catch (RejectedExecutionException ree) {
+                    LOGGER.warn("Background load of the columnar store "
+                            + "was rejected.  Error message [ "
+                            + ree.getMessage()
+                            + " ].");
+                }
+            }
+            else {
+                LOGGER.warn("ManagedExecutorService not injected by the "
+                        + "container.  The columnar store must be loaded "
+                        + "explicitly.");
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Load (or reload) the store from the database.  The existing store,
+     * if any, continues to serve queries until the load completes, and is
+     * kept if the records could not be read.
+     *
+     * @return The number of records loaded, or -1 if the store is disabled,
+     * a load is already in progress, or the load failed.
+     */
+    public long load() {
+
+        long count = -1L;
+        long start = System.currentTimeMillis();
+
+        if (!isEnabled()) {
+            LOGGER.warn("The columnar store is not enabled.  Set [ "
+                    + CollectorConfig.METRICS_COLUMNAR_STORE_PROPERTY
+                    + " ] to enable it.");
+        }
+        else if (loading.compareAndSet(false, true)) {
+            final ColumnarMetricsStore           loaded = new ColumnarMetricsStore();
+            final Map<String, BundlerJobMetrics> held   =
+                    new ConcurrentHashMap<String, BundlerJobMetrics>();
+            final Set<String>                    jobIDs = new HashSet<String>();
+            try {
+                synchronized (this) {
+                    pending = held;
+                }
+                // Refreshes made from here on are read by this load.
+                stale.set(false);
+                long readTime = System.currentTimeMillis();
+                getJDBCJobMetricsService().streamJobMetricsByDate(
+                        Long.MIN_VALUE,
+                        Long.MAX_VALUE,
+                        new MetricsRowHandlerI() {
+                            @Override
+                            public void handle(BundlerJobMetrics record) {
+                                loaded.append(record);
+                                // Only the records that are also held 
+                                // need to be remembered.
+                                if (held.containsKey(record.getJobID())) {
+                                    jobIDs.add(record.getJobID());
+                                }
+                            }
+                        });
+                synchronized (this) {
+                    // Records appended during the load may also have been
+                    // read by it, so only those it did not read are added.
+                    for (BundlerJobMetrics record : held.values()) {
+                        if (!jobIDs.contains(record.getJobID())) {
+                            loaded.append(record);
+                        }
+                    }
+                    pending  = null;
+                    store    = loaded;
+                    loadTime = readTime;
+                }
+                count = loaded.size();
+                LOGGER.info("Columnar store loaded with [ "
+                        + count
+                        + " ] records for [ "
+                        + loaded.getUserCount()
+                        + " ] users (approximately [ "
+                        + (loaded.getHeapBytes() >> 20)
+                        + " ] MB) in [ "
+                        + (System.currentTimeMillis() - start)
+                        + " ] ms.");
+            }
+            catch (IOException ioe) {
+                LOGGER.error("Unable to read the job metrics records.  The "
+                        + "columnar store was not "
+                        + (store == null ? "loaded" : "reloaded")
+                        + ".  Error message [ "
+                        + ioe.getMessage()
+                        + " ].");
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].  The columnar store was not loaded.");
+            }
+            finally {
+                synchronized (this) {
+                    pending = null;
+                }
+                loading.set(false);
+            }
+        }
+        else {
+            LOGGER.warn("A load of the columnar store is already in "
+                    + "progress.");
+        }
+        return count;
+    }
+
+    /**
+     * Append newly inserted metrics records to the store.  Records are
+     * ignored if the store has not been loaded (they will be read by the
+     * load).
+     *
+     * @param metrics The metrics records.
+     */
+    public synchronized void append(List<BundlerJobMetrics> metrics) {
+        if (metrics != null) {
+            for (BundlerJobMetrics record : metrics) {
+                if (pending != null) {
+                    pending.put(record.getJobID(), record);
+                }
+                else if (store != null) {
+                    store.append(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculate aggregate statistics from the store (see
+     * <code>ColumnarMetricsStore.aggregate()</code>).
+     *
+     * @param startTime The start of the range (inclusive).
+     * @param endTime The end of the range (exclusive).
+     * @param userName Only include this user (null for all users).
+     * @param archiveType Only include this archive type (null for all).
+     * @param jobState Only include this job state (null for all).
+     * @param measure The value to aggregate.
+     * @param dimensions The dimensions to group by (may be empty).
+     * @param bucket The width of the time buckets to group by (may be
+     * null).
+     * @return The aggregates, or null if the store is not available.
+     */
+    public List<MetricsAggregate> aggregate(
+            long                         startTime,
+            long                         endTime,
+            String                       userName,
+            ArchiveType                  archiveType,
+            JobStateType                 jobState,
+            MetricsMeasureType           measure,
+            List<AggregateDimensionType> dimensions,
+            TimeBucketType               bucket) {
+
+        List<MetricsAggregate> aggregates = null;
+        ColumnarMetricsStore   current    = getStore();
+        long                   start      = System.currentTimeMillis();
+
+        if (current != null) {
+            aggregates = current.aggregate(
+                    startTime,
+                    endTime,
+                    userName,
+                    archiveType,
+                    jobState,
+                    measure,
+                    dimensions,
+                    bucket,
+                    JDBCMetricsAggregateService.MAX_GROUPS);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Columnar scan of [ "
+                        + current.size()
+                        + " ] records produced [ "
+                        + aggregates.size()
+                        + " ] groups in [ "
+                        + (System.currentTimeMillis() - start)
+                        + " ] ms.");
+            }
+        }
+        return aggregates;
+    }
+}
@@ -20,9 +20,19 @@ import org.slf4j.LoggerFactory;
 import mil.nga.bundler.ejb.exceptions.EJBLookupException;
 import mil.nga.bundler.ejb.interfaces.JobMetricsCollectorI;
 import mil.nga.bundler.ejb.jdbc.JDBCArchiveService;
+import mil.nga.bundler.ejb.jdbc.JDBCCheckpointService;
 import mil.nga.bundler.ejb.jdbc.JDBCFileService;
 import mil.nga.bundler.ejb.jdbc.JDBCJobMetricsService;
 import mil.nga.bundler.ejb.jdbc.JDBCJobService;
+import mil.nga.bundler.ejb.jdbc.JDBCLeaseService;
+import mil.nga.bundler.ejb.jdbc.JDBCMetricsAggregateService;
+import mil.nga.bundler.ejb.jdbc.JDBCMetricsHistogramService;
+import mil.nga.bundler.ejb.jdbc.JDBCMetricsRollupService;
+import mil.nga.bundler.ejb.jdbc.JDBCPartitionService;
+import mil.nga.bundler.ejb.jdbc.JDBCRetryService;
+import mil.nga.bundler.ejb.jdbc.JDBCRunHistoryService;
+import mil.nga.bundler.ejb.jdbc.JDBCTopUserService;
+import mil.nga.util.HostNameUtils;
 
 /**
  * Convenience class used by the Web tier to look up EJB references within
@@ -246,6 +256,146 @@ public class EJBClientUtilities {
         return EJBClientUtilitiesHolder.getSingleton();
     } 
 
+    /**
+     * Utility method used to look up the CollectionRunRegistry singleton.  
+     * 
+     * @return The CollectionRunRegistry bean.
+     */
+    public CollectionRunRegistry getCollectionRunRegistry() 
+            throws EJBLookupException {
+        
+        CollectionRunRegistry service = null;
+        Object                ejb     = getEJB(CollectionRunRegistry.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.CollectionRunRegistry) {
+                service = (CollectionRunRegistry)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(CollectionRunRegistry.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        CollectionRunRegistry.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(CollectionRunRegistry.class)
+                    + " ].",
+                    CollectionRunRegistry.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the ColumnarMetricsService singleton.  
+     * 
+     * @return The ColumnarMetricsService bean.
+     */
+    public ColumnarMetricsService getColumnarMetricsService() 
+            throws EJBLookupException {
+        
+        ColumnarMetricsService service = null;
+        Object                 ejb     = getEJB(ColumnarMetricsService.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.ColumnarMetricsService) {
+                service = (ColumnarMetricsService)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(ColumnarMetricsService.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        ColumnarMetricsService.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(ColumnarMetricsService.class)
+                    + " ].",
+                    ColumnarMetricsService.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the LiveMetricsService singleton.  
+     * 
+     * @return The LiveMetricsService bean.
+     */
+    public LiveMetricsService getLiveMetricsService() 
+            throws EJBLookupException {
+        
+        LiveMetricsService service = null;
+        Object             ejb     = getEJB(LiveMetricsService.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.LiveMetricsService) {
+                service = (LiveMetricsService)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(LiveMetricsService.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        LiveMetricsService.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(LiveMetricsService.class)
+                    + " ].",
+                    LiveMetricsService.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the TopUserTracker singleton.  
+     * 
+     * @return The TopUserTracker bean.
+     */
+    public TopUserTracker getTopUserTracker() 
+            throws EJBLookupException {
+        
+        TopUserTracker service = null;
+        Object         ejb     = getEJB(TopUserTracker.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.TopUserTracker) {
+                service = (TopUserTracker)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(TopUserTracker.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        TopUserTracker.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(TopUserTracker.class)
+                    + " ].",
+                    TopUserTracker.class.getName());
+        }
+        return service;
+    }
+    
     /**
      * Utility method used to look up the JDBCArchiveService interface.  
      * This method is only called by the web tier.
@@ -282,6 +432,42 @@ public class EJBClientUtilities {
         return service;
     }
     
+    /**
+     * Utility method used to look up the JDBCCheckpointService interface.  
+     * 
+     * @return The JDBCCheckpointService interface, or null if we couldn't 
+     * look it up.
+     */
+    public JDBCCheckpointService getJDBCCheckpointService() 
+            throws EJBLookupException {
+        
+        JDBCCheckpointService service = null;
+        Object                ejb     = getEJB(JDBCCheckpointService.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.jdbc.JDBCCheckpointService) {
+                service = (JDBCCheckpointService)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(JDBCCheckpointService.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        JDBCCheckpointService.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(JDBCCheckpointService.class)
+                    + " ].",
+                    JDBCCheckpointService.class.getName());
+        }
+        return service;
+    }
+    
     /**
      * Utility method used to look up the JDBCFileService interface.  
      * This method is only called by the web tier.
@@ -392,6 +578,366 @@ public class EJBClientUtilities {
         return service;
     }
     
+    /**
+     * Utility method used to look up the JDBCLeaseService interface.  
+     * 
+     * @return The JDBCLeaseService interface, or null if we couldn't 
+     * look it up.
+     */
+    public JDBCLeaseService getJDBCLeaseService() 
+            throws EJBLookupException {
+        
+        JDBCLeaseService service = null;
+        Object           ejb     = getEJB(JDBCLeaseService.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.jdbc.JDBCLeaseService) {
+                service = (JDBCLeaseService)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(JDBCLeaseService.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        JDBCLeaseService.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(JDBCLeaseService.class)
+                    + " ].",
+                    JDBCLeaseService.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the JDBCPartitionService interface.  
+     * 
+     * @return The JDBCPartitionService interface, or null if we couldn't 
+     * look it up.
+     */
+    public JDBCPartitionService getJDBCPartitionService() 
+            throws EJBLookupException {
+        
+        JDBCPartitionService service = null;
+        Object               ejb     = getEJB(JDBCPartitionService.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.jdbc.JDBCPartitionService) {
+                service = (JDBCPartitionService)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(JDBCPartitionService.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        JDBCPartitionService.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(JDBCPartitionService.class)
+                    + " ].",
+                    JDBCPartitionService.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the JDBCRunHistoryService interface.  
+     * 
+     * @return The JDBCRunHistoryService interface, or null if we couldn't 
+     * look it up.
+     */
+    public JDBCRunHistoryService getJDBCRunHistoryService() 
+            throws EJBLookupException {
+        
+        JDBCRunHistoryService service = null;
+        Object                ejb     = getEJB(JDBCRunHistoryService.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.jdbc.JDBCRunHistoryService) {
+                service = (JDBCRunHistoryService)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(JDBCRunHistoryService.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        JDBCRunHistoryService.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(JDBCRunHistoryService.class)
+                    + " ].",
+                    JDBCRunHistoryService.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the JDBCRetryService interface.  
+     * 
+     * @return The JDBCRetryService interface, or null if we couldn't 
+     * look it up.
+     */
+    public JDBCRetryService getJDBCRetryService() 
+            throws EJBLookupException {
+        
+        JDBCRetryService service = null;
+        Object           ejb     = getEJB(JDBCRetryService.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.jdbc.JDBCRetryService) {
+                service = (JDBCRetryService)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(JDBCRetryService.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        JDBCRetryService.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(JDBCRetryService.class)
+                    + " ].",
+                    JDBCRetryService.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the JDBCMetricsAggregateService interface.  
+     * 
+     * @return The JDBCMetricsAggregateService interface, or null if we couldn't 
+     * look it up.
+     */
+    public JDBCMetricsAggregateService getJDBCMetricsAggregateService() 
+            throws EJBLookupException {
+        
+        JDBCMetricsAggregateService service = null;
+        Object                      ejb     = getEJB(JDBCMetricsAggregateService.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.jdbc.JDBCMetricsAggregateService) {
+                service = (JDBCMetricsAggregateService)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(JDBCMetricsAggregateService.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        JDBCMetricsAggregateService.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(JDBCMetricsAggregateService.class)
+                    + " ].",
+                    JDBCMetricsAggregateService.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the JDBCMetricsHistogramService interface.  
+     * 
+     * @return The JDBCMetricsHistogramService interface, or null if we couldn't 
+     * look it up.
+     */
+    public JDBCMetricsHistogramService getJDBCMetricsHistogramService() 
+            throws EJBLookupException {
+        
+        JDBCMetricsHistogramService service = null;
+        Object                      ejb     = getEJB(JDBCMetricsHistogramService.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.jdbc.JDBCMetricsHistogramService) {
+                service = (JDBCMetricsHistogramService)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(JDBCMetricsHistogramService.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        JDBCMetricsHistogramService.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(JDBCMetricsHistogramService.class)
+                    + " ].",
+                    JDBCMetricsHistogramService.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the JDBCMetricsRollupService interface.  
+     * 
+     * @return The JDBCMetricsRollupService interface, or null if we couldn't 
+     * look it up.
+     */
+    public JDBCMetricsRollupService getJDBCMetricsRollupService() 
+            throws EJBLookupException {
+        
+        JDBCMetricsRollupService service = null;
+        Object                   ejb     = getEJB(JDBCMetricsRollupService.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.jdbc.JDBCMetricsRollupService) {
+                service = (JDBCMetricsRollupService)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(JDBCMetricsRollupService.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        JDBCMetricsRollupService.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(JDBCMetricsRollupService.class)
+                    + " ].",
+                    JDBCMetricsRollupService.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the JDBCTopUserService interface.  
+     * 
+     * @return The JDBCTopUserService interface, or null if we couldn't 
+     * look it up.
+     */
+    public JDBCTopUserService getJDBCTopUserService() 
+            throws EJBLookupException {
+        
+        JDBCTopUserService service = null;
+        Object             ejb     = getEJB(JDBCTopUserService.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.jdbc.JDBCTopUserService) {
+                service = (JDBCTopUserService)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(JDBCTopUserService.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        JDBCTopUserService.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(JDBCTopUserService.class)
+                    + " ].",
+                    JDBCTopUserService.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the JobMetricsBackfill interface.  
+     * 
+     * @return The JobMetricsBackfill interface, or null if we couldn't 
+     * look it up.
+     */
+    public JobMetricsBackfill getJobMetricsBackfill() 
+            throws EJBLookupException {
+        
+        JobMetricsBackfill service = null;
+        Object             ejb     = getEJB(JobMetricsBackfill.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.JobMetricsBackfill) {
+                service = (JobMetricsBackfill)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(JobMetricsBackfill.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        JobMetricsBackfill.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(JobMetricsBackfill.class)
+                    + " ].",
+                    JobMetricsBackfill.class.getName());
+        }
+        return service;
+    }
+    
+    /**
+     * Utility method used to look up the JobMetricsCollectorTimer interface.  
+     * 
+     * @return The JobMetricsCollectorTimer interface, or null if we couldn't 
+     * look it up.
+     */
+    public JobMetricsCollectorTimer getJobMetricsCollectorTimer() 
+            throws EJBLookupException {
+        
+        JobMetricsCollectorTimer service = null;
+        Object                   ejb     = getEJB(JobMetricsCollectorTimer.class);
+        
+        if (ejb != null) {
+            if (ejb instanceof mil.nga.bundler.ejb.JobMetricsCollectorTimer) {
+                service = (JobMetricsCollectorTimer)ejb;
+            }
+            else {
+                throw new EJBLookupException("Unable to look up EJB [ "
+                        + getJNDIName(JobMetricsCollectorTimer.class)
+                        + " ] returned reference was the wrong type.  "
+                        + "Type returned [ "
+                        + ejb.getClass().getCanonicalName()
+                        + " ].",
+                        JobMetricsCollectorTimer.class.getName());
+            }
+        }
+        else {
+            throw new EJBLookupException(
+                    "Unable to look up Object [ "
+                    + getJNDIName(JobMetricsCollectorTimer.class)
+                    + " ].",
+                    JobMetricsCollectorTimer.class.getName());
+        }
+        return service;
+    }
+    
     /**
      * Utility method used to look up the JobMetricsCollector interface.  
      * This method is only called by the web tier.
@@ -485,6 +1031,18 @@ public class EJBClientUtilities {
         return serverName;
     }
 
+    /**
+     * Identify this node in the cluster.  The host name alone is not 
+     * enough, as more than one server instance may run on a host.  Used to
+     * record the owner of leases, run history and per-node summaries.
+     * 
+     * @return The server name and host name of this node 
+     * (<code>server@host</code>).
+     */
+    public String getNodeName() {
+        return getServerName() + "@" + HostNameUtils.getHostName();
+    }
+
     /**
      * Static inner class used to construct the Singleton object.  This class
      * exploits the fact that classes are not loaded until they are referenced
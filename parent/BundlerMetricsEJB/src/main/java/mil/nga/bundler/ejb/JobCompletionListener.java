@@ -0,0 +1,201 @@
+package mil.nga.bundler.ejb;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.TextMessage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.ejb.exceptions.EJBLookupException;
+import mil.nga.bundler.ejb.interfaces.JobMetricsCollectorI;
+import mil.nga.bundler.interfaces.BundlerConstantsI;
+
+/**
+ * Message-driven bean providing near-real-time metrics collection.  The
+ * bean holds a shared durable subscription to the job-completion topic and
+ * computes the metrics record for the job identified in each notification
+ * as soon as it arrives.  The subscription is shared (and no client ID is
+ * set) so the bean can be deployed on every node in the cluster: each
+ * notification is delivered to one node, rather than the second node's
+ * connection being rejected for reusing the client ID.  Notifications
+ * that are missed are picked up by the scheduled collection runs.
+ *
+ * Note: nothing publishes to the job-completion topic yet.  Until the 
+ * bundler publishes a notification as each job completes, this bean
+ * receives no messages and metrics are collected by the scheduled runs 
+ * alone (see <code>JobMetricsCollectorTimer</code>).
+ *
+ * The job ID is extracted from the notification using the first of the
+ * following that is available:
+ * <ul>
+ * <li>A <code>job_id</code> (or <code>JOB_ID</code>) message property.</li>
+ * <li>A <code>job_id</code> entry in a <code>MapMessage</code>.</li>
+ * <li>A <code>"job_id"</code> field in a JSON <code>TextMessage</code>
+ * body.</li>
+ * <li>The entire body of a plain <code>TextMessage</code>.</li>
+ * </ul>
+ *
+ * @author L. Craig Carpenter
+ */
+@MessageDriven(
+    activationConfig = {
+        @ActivationConfigProperty(
+                propertyName  = "destinationType",
+                propertyValue = "javax.jms.Topic"),
+        @ActivationConfigProperty(
+                propertyName  = "destination",
+                propertyValue = BundlerConstantsI.JOB_COMPLETION_TOPIC),
+        @ActivationConfigProperty(
+                propertyName  = "subscriptionDurability",
+                propertyValue = "Durable"),
+        @ActivationConfigProperty(
+                propertyName  = "subscriptionName",
+                propertyValue = BundlerConstantsI.METRICS_SUBSCRIPTION_NAME),
+        @ActivationConfigProperty(
+                propertyName  = "shareSubscriptions",
+                propertyValue = "true"),
+        @ActivationConfigProperty(
+                propertyName  = "acknowledgeMode",
+                propertyValue = "Auto-acknowledge")
+    })
+public class JobCompletionListener implements MessageListener {
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JobCompletionListener.class);
+
+    /**
+     * Name of the message property/field containing the job ID.
+     */
+    private static final String JOB_ID_FIELD = "job_id";
+
+    /**
+     * Pattern used to pull the job ID out of a JSON message body.
+     */
+    private static final Pattern JOB_ID_PATTERN = Pattern.compile(
+            "\"job_id\"\\s*:\\s*\"([^\"]+)\"",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Container-injected reference to the metrics collector.
+     */
+    @EJB
+    JobMetricsCollectorI metricsCollector;
+
+    /**
+     * Default constructor.
+     */
+    public JobCompletionListener() { }
+
+    /**
+     * Private method used to obtain a reference to the target EJB.
+     *
+     * @return Reference to the JobMetricsCollectorI interface.
+     */
+    private JobMetricsCollectorI getJobMetricsCollector()
+            throws EJBLookupException {
+
+        if (metricsCollector == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JobMetricsCollectorI.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+
+            metricsCollector = EJBClientUtilities
+                    .getInstance()
+                    .getJobMetricsCollector();
+        }
+        return metricsCollector;
+    }
+
+    /**
+     * Extract the job ID from the input notification.
+     *
+     * @param message The job-completion notification.
+     * @return The job ID, or null if it could not be determined.
+     * @throws JMSException Thrown if the message cannot be read.
+     */
+    private String getJobID(Message message) throws JMSException {
+
+        String jobID = message.getStringProperty(JOB_ID_FIELD);
+        if ((jobID == null) || (jobID.trim().isEmpty())) {
+            jobID = message.getStringProperty(JOB_ID_FIELD.toUpperCase());
+        }
+        if ((jobID == null) || (jobID.trim().isEmpty())) {
+            if (message instanceof MapMessage) {
+                jobID = ((MapMessage)message).getString(JOB_ID_FIELD);
+            }
+            else if (message instanceof TextMessage) {
+                String text = ((TextMessage)message).getText();
+                if (text != null) {
+                    Matcher matcher = JOB_ID_PATTERN.matcher(text);
+                    if (matcher.find()) {
+                        jobID = matcher.group(1);
+                    }
+                    else if (!text.trim().startsWith("{")) {
+                        jobID = text;
+                    }
+                }
+            }
+        }
+        if (jobID != null) {
+            jobID = jobID.trim();
+            if (jobID.isEmpty()) {
+                jobID = null;
+            }
+        }
+        return jobID;
+    }
+
+    /**
+     * Called by the container when a job-completion notification arrives.
+     * Exceptions are logged and not re-thrown.  Any job that is missed
+     * will be picked up by the next scheduled collection run.
+     *
+     * @param message The job-completion notification.
+     */
+    @Override
+    public void onMessage(Message message) {
+        try {
+            String jobID = getJobID(message);
+            if (jobID != null) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Received job-completion notification for "
+                            + "job ID [ "
+                            + jobID
+                            + " ].");
+                }
+                getJobMetricsCollector().collectMetrics(jobID);
+            }
+            else {
+                LOGGER.warn("Unable to determine the job ID from "
+                        + "notification [ "
+                        + message.getJMSMessageID()
+                        + " ].  Message will be ignored.");
+            }
+        }
+        catch (JMSException je) {
+            LOGGER.error("Unexpected JMSException raised while processing "
+                    + "a job-completion notification.  Error message [ "
+                    + je.getMessage()
+                    + " ].");
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  Notification will not be processed.");
+        }
+    }
+}
@@ -0,0 +1,784 @@
+package mil.nga.bundler.ejb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import javax.annotation.Resource;
+import javax.ejb.Asynchronous;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.CollectorConfig;
+import mil.nga.bundler.ejb.exceptions.ClaimLostException;
+import mil.nga.bundler.ejb.exceptions.EJBLookupException;
+import mil.nga.bundler.ejb.jdbc.JDBCCheckpointService;
+import mil.nga.bundler.ejb.jdbc.JDBCJobMetricsService;
+import mil.nga.bundler.ejb.jdbc.JDBCJobService;
+import mil.nga.bundler.ejb.jdbc.JDBCLeaseService;
+import mil.nga.bundler.ejb.jdbc.JDBCRetryService;
+import mil.nga.bundler.ejb.jdbc.JDBCRunHistoryService;
+import mil.nga.bundler.interfaces.BundlerConstantsI;
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.CollectionCheckpoint;
+import mil.nga.bundler.model.CollectionRunHistory;
+import mil.nga.bundler.model.CollectionRunStatistics;
+import mil.nga.bundler.model.JobSummary;
+import mil.nga.bundler.types.CollectionModeType;
+import mil.nga.bundler.types.CollectionRunStateType;
+
+/**
+ * Session bean used to rebuild the metrics records for a historical time
+ * range (e.g. after a change to the metrics schema).  The range is split
+ * into fixed-size time slices and the jobs started within each slice
+ * (i.e. <code>JDBCJobService.getJobsByDate()</code> semantics) are
+ * processed in turn.  Existing metrics records are refreshed in place.
+ *
+ * A checkpoint identifying the end of the last completed slice is written
+ * after each slice so a backfill that fails (or whose node dies) can be
+ * resumed by requesting the same range again.  Because the metrics records
+ * are upserted, a slice that was partially written before a failure is
+ * simply processed again.
+ *
+ * The backfill shares the JobTracker datasource with the live bundler so
+ * it is deliberately gentle on the database.  Jobs are processed
+ * sequentially (so the backfill holds at most one pooled connection at a
+ * time) and the write rate is throttled to the configured maximum number
+ * of rows per second.  Only one backfill may execute in the cluster at a
+ * time, but it uses its own lease so scheduled collection runs continue
+ * while it executes.
+ *
+ * @author L. Craig Carpenter
+ */
+@Stateless
+@LocalBean
+public class JobMetricsBackfill implements BundlerConstantsI {
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JobMetricsBackfill.class);
+
+    /**
+     * Number of milliseconds in an hour.
+     */
+    private static final long MILLIS_PER_HOUR = 3600000L;
+
+    /**
+     * Container-injected reference to the JDBCJobMetricsService session bean.
+     */
+    @EJB
+    JDBCJobMetricsService metricsService;
+
+    /**
+     * Container-injected reference to the JDBCJobService session bean.
+     */
+    @EJB
+    JDBCJobService jobService;
+
+    /**
+     * Container-injected reference to the JDBCCheckpointService session bean.
+     */
+    @EJB
+    JDBCCheckpointService checkpointService;
+
+    /**
+     * Container-injected reference to the JDBCLeaseService session bean.
+     */
+    @EJB
+    JDBCLeaseService leaseService;
+
+    /**
+     * Container-injected reference to the JDBCRunHistoryService session bean.
+     */
+    @EJB
+    JDBCRunHistoryService historyService;
+
+    /**
+     * Container-injected reference to the JDBCRetryService session bean.
+     */
+    @EJB
+    JDBCRetryService retryService;
+
+    /**
+     * Container-injected reference to the collection run registry.
+     */
+    @EJB
+    CollectionRunRegistry runRegistry;
+
+    /**
+     * Container-injected reference to the columnar metrics store.
+     */
+    @EJB
+    ColumnarMetricsService columnarStore;
+
+    /**
+     * Container-injected session context used to obtain a reference to
+     * this bean through which asynchronous methods may be invoked.
+     */
+    @Resource
+    SessionContext context;
+
+    /**
+     * Default constructor.
+     */
+    public JobMetricsBackfill() { }
+
+    /**
+     * Private method used to obtain a reference to the target EJB.
+     * @return Reference to the JDBCJobService EJB.
+     */
+    private JDBCJobService getJDBCJobService()
+            throws EJBLookupException {
+
+        if (jobService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCJobService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+
+            jobService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCJobService();
+        }
+        return jobService;
+    }
+
+    /**
+     * Private method used to obtain a reference to the target EJB.
+     * @return Reference to the JDBCJobMetricsService EJB.
+     */
+    private JDBCJobMetricsService getJDBCJobMetricsService()
+            throws EJBLookupException {
+
+        if (metricsService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCJobMetricsService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+
+            metricsService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCJobMetricsService();
+        }
+        return metricsService;
+    }
+
+    /**
+     * Private method used to obtain a reference to the columnar metrics 
+     * store.  The store is optional, so null is returned if it cannot be 
+     * obtained.
+     * @return Reference to the ColumnarMetricsService EJB, or null.
+     */
+    private ColumnarMetricsService getColumnarMetricsService() {
+
+        if (columnarStore == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + ColumnarMetricsService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            try {
+                columnarStore = EJBClientUtilities
+                        .getInstance()
+                        .getColumnarMetricsService();
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.warn("Unable to obtain a reference to [ "
+                        + ele.getEJBName()
+                        + " ].  The columnar store will not be updated.");
+            }
+        }
+        return columnarStore;
+    }
+
+    /**
+     * Private method used to obtain a reference to the target EJB.
+     * @return Reference to the JDBCCheckpointService EJB.
+     */
+    private JDBCCheckpointService getJDBCCheckpointService()
+            throws EJBLookupException {
+
+        if (checkpointService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCCheckpointService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+
+            checkpointService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCCheckpointService();
+        }
+        return checkpointService;
+    }
+
+    /**
+     * Private method used to obtain a reference to the target EJB.
+     * @return Reference to the JDBCLeaseService EJB.
+     */
+    private JDBCLeaseService getJDBCLeaseService()
+            throws EJBLookupException {
+
+        if (leaseService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCLeaseService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+
+            leaseService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCLeaseService();
+        }
+        return leaseService;
+    }
+
+    /**
+     * Private method used to obtain a reference to the target EJB.
+     * @return Reference to the JDBCRunHistoryService EJB.
+     */
+    private JDBCRunHistoryService getJDBCRunHistoryService()
+            throws EJBLookupException {
+
+        if (historyService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCRunHistoryService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+
+            historyService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCRunHistoryService();
+        }
+        return historyService;
+    }
+
+    /**
+     * Private method used to obtain a reference to the target EJB.
+     * @return Reference to the JDBCRetryService EJB.
+     */
+    private JDBCRetryService getJDBCRetryService()
+            throws EJBLookupException {
+
+        if (retryService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCRetryService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+
+            retryService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCRetryService();
+        }
+        return retryService;
+    }
+
+    /**
+     * Record the history of a completed run.  Failure to record the
+     * history does not affect the run.
+     *
+     * @param stats The statistics for the completed run.
+     */
+    private void recordHistory(CollectionRunStatistics stats) {
+        try {
+            getJDBCRunHistoryService().insert(
+                    new CollectionRunHistory.CollectionRunHistoryBuilder()
+                        .statistics(stats)
+                        .owner(getOwner())
+                        .build());
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.warn("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  History of run [ "
+                    + stats.getRunID()
+                    + " ] will not be recorded.");
+        }
+    }
+
+    /**
+     * Private method used to obtain a reference to the target EJB.
+     * @return Reference to the CollectionRunRegistry EJB.
+     */
+    private CollectionRunRegistry getCollectionRunRegistry()
+            throws EJBLookupException {
+
+        if (runRegistry == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + CollectionRunRegistry.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+
+            runRegistry = EJBClientUtilities
+                    .getInstance()
+                    .getCollectionRunRegistry();
+        }
+        return runRegistry;
+    }
+
+    /**
+     * Construct the name of the checkpoint used to track the progress of a
+     * backfill over the input range.
+     *
+     * @param startTime The start of the backfill range.
+     * @param endTime The end of the backfill range.
+     * @return The checkpoint name.
+     */
+    public static String getCheckpointName(long startTime, long endTime) {
+        return METRICS_BACKFILL_CHECKPOINT_PREFIX
+                + Long.toString(startTime)
+                + "_"
+                + Long.toString(endTime);
+    }
+
+    /**
+     * Identify this node when acquiring the backfill lease.
+     *
+     * @return The server name and host name of this node.
+     */
+    private String getOwner() {
+        return EJBClientUtilities.getInstance().getNodeName();
+    }
+
+    /**
+     * Determine where a backfill of the input range should begin.  If a
+     * previous backfill of the same range did not complete, the backfill
+     * resumes after the last completed slice.  Otherwise the backfill
+     * starts at the beginning of the range.
+     *
+     * @param startTime The start of the backfill range.
+     * @param endTime The end of the backfill range.
+     * @return The time at which the backfill should begin.
+     */
+    private long getResumePosition(long startTime, long endTime)
+            throws EJBLookupException {
+
+        long                 position   = startTime;
+        CollectionCheckpoint checkpoint = getJDBCCheckpointService()
+                .getCheckpoint(getCheckpointName(startTime, endTime));
+
+        if ((checkpoint != null) &&
+                (checkpoint.getEndTime() > startTime) &&
+                (checkpoint.getEndTime() < endTime)) {
+            position = checkpoint.getEndTime();
+            LOGGER.info("Resuming backfill of range [ "
+                    + startTime
+                    + " - "
+                    + endTime
+                    + " ] at [ "
+                    + position
+                    + " ].");
+        }
+        return position;
+    }
+
+    /**
+     * Throttle the backfill such that the write rate of each batch does 
+     * not exceed the configured maximum.  The rate is enforced per batch 
+     * rather than averaged over the whole backfill, so time spent on 
+     * empty (or sparse) slices does not build up credit that would allow
+     * an unthrottled burst later.  The lease is renewed after sleeping.
+     *
+     * @param maxRowsPerSecond The maximum write rate (0 disables
+     * throttling).
+     * @param rows The number of rows written by the batch.
+     * @param batchStart The time the batch started.
+     * @param lease The lease held by the backfill.
+     * @param stats The statistics for the backfill.
+     * @return True if the backfill should continue.
+     */
+    private boolean throttle(
+            int                     maxRowsPerSecond,
+            long                    rows,
+            long                    batchStart,
+            RenewableCommitListener lease,
+            CollectionRunStatistics stats) {
+
+        if ((maxRowsPerSecond > 0) && (rows > 0)) {
+            long target  = rows * 1000L / maxRowsPerSecond;
+            long elapsed = System.currentTimeMillis() - batchStart;
+            if (target > elapsed) {
+                try {
+                    Thread.sleep(target - elapsed);
+                }
+                catch (InterruptedException ie) {
+                    LOGGER.warn("Backfill [ "
+                            + stats.getRunID()
+                            + " ] was interrupted.");
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return (!Thread.currentThread().isInterrupted()) && (lease.renew());
+    }
+
+    /**
+     * Process the jobs started within a single time slice.  The job
+     * summaries are bulk loaded one batch at a time and the resulting
+     * metrics records are upserted as a single batch.  The rollup buckets
+     * touched by the slice are recalculated once, after the last batch.
+     *
+     * @param sliceStart The start of the slice (inclusive).
+     * @param sliceEnd The end of the slice (exclusive).
+     * @param config The collector configuration.
+     * @param lease The lease held by the backfill.
+     * @param stats The statistics for the backfill.
+     * @return True if every job in the slice was processed.
+     */
+    private boolean backfillSlice(
+            long                    sliceStart,
+            long                    sliceEnd,
+            CollectorConfig         config,
+            RenewableCommitListener lease,
+            CollectionRunStatistics stats) throws EJBLookupException {
+
+        int          batchSize = config.getBatchSize();
+        int          maxRate   = config.getBackfillMaxRowsPerSecond();
+        boolean      proceed   = true;
+        long         start     = System.currentTimeMillis();
+        Set<Long>    hours     = new TreeSet<Long>();
+        List<String> jobIDs    = getJDBCJobService().getJobIDsByDate(
+                                    sliceStart, sliceEnd);
+        List<BundlerJobMetrics> pending =
+                new ArrayList<BundlerJobMetrics>(batchSize);
+
+        stats.addDiscoveryTime(System.currentTimeMillis() - start);
+        stats.setJobsDiscovered(stats.getJobsDiscovered() + jobIDs.size());
+        try {
+            for (int i = 0; (i < jobIDs.size()) && (proceed); i += batchSize) {
+
+                List<String> chunk = jobIDs.subList(
+                        i, Math.min(i + batchSize, jobIDs.size()));
+                long batchStart = System.currentTimeMillis();
+                int  rows       = 0;
+                start = batchStart;
+                List<JobSummary> summaries =
+                        getJDBCJobService().getJobSummaries(chunk);
+                long elapsed = System.currentTimeMillis() - start;
+                long latency = elapsed / Math.max(summaries.size(), 1);
+
+                stats.addLoadTime(elapsed);
+                start = System.currentTimeMillis();
+
+                for (JobSummary job : summaries) {
+                    stats.addJobLatency(latency);
+                    if (JobMetricsTask.isTerminal(job)) {
+                        pending.add(JobMetricsTask.getJobMetrics(job));
+                    }
+                    else {
+                        stats.incrementJobsSkipped();
+                    }
+                }
+                for (int missing = summaries.size(); missing < chunk.size(); missing++) {
+                    stats.incrementJobsSkipped();
+                }
+                stats.addComputeTime(System.currentTimeMillis() - start);
+
+                if (!pending.isEmpty()) {
+                    start = System.currentTimeMillis();
+                    rows  = pending.size();
+                    try {
+                        Map<String, String> failures = getJDBCJobMetricsService()
+                                .upsertAll(pending, pending.size(), lease, hours);
+                        stats.addInsertTime(System.currentTimeMillis() - start);
+                        for (Map.Entry<String, String> failure : failures.entrySet()) {
+                            LOGGER.error("Unable to write metrics record for job "
+                                    + "ID [ "
+                                    + failure.getKey()
+                                    + " ].  Error message [ "
+                                    + failure.getValue()
+                                    + " ].");
+                        }
+                        if (!failures.isEmpty()) {
+                            getJDBCRetryService().recordFailures(
+                                    failures,
+                                    config.getRetryBaseDelay(),
+                                    config.getRetryMaxDelay(),
+                                    config.getRetryMaxAttempts());
+                        }
+                        stats.addWriteResults(
+                                pending.size() - failures.size(),
+                                failures.size());
+                    }
+                    catch (ClaimLostException cle) {
+                        // The slice is not complete, so it will be processed 
+                        // again when the backfill is resumed.
+                        stats.addInsertTime(System.currentTimeMillis() - start);
+                        LOGGER.warn("Backfill [ "
+                                + stats.getRunID()
+                                + " ] lost its lease.  Error message [ "
+                                + cle.getMessage()
+                                + " ].");
+                    }
+                    pending.clear();
+                }
+                proceed = throttle(maxRate, rows, batchStart, lease, stats);
+            }
+        }
+        finally {
+            getJDBCJobMetricsService().refreshRollups(hours);
+        }
+        return proceed;
+    }
+
+    /**
+     * Execute a backfill, updating the supplied statistics object as the
+     * backfill progresses.  The caller must have already acquired the
+     * backfill lease on behalf of the run.  The lease is renewed as the
+     * backfill progresses and released when it completes.
+     *
+     * @param startTime The start of the backfill range (inclusive).
+     * @param endTime The end of the backfill range (exclusive).
+     * @param stats The statistics for the backfill.
+     * @return Statistics associated with the backfill.
+     */
+    private CollectionRunStatistics backfill(
+            long                    startTime,
+            long                    endTime,
+            CollectionRunStatistics stats) {
+
+        CollectorConfig     config    = CollectorConfig.getInstance();
+        LeaseCommitListener lease     = null;
+        long                sliceSize = config.getBackfillSliceHours()
+                                            * MILLIS_PER_HOUR;
+        String              name      = getCheckpointName(startTime, endTime);
+
+        stats.start(CollectionModeType.BACKFILL.getText());
+        try {
+            lease = new LeaseCommitListener(
+                    getJDBCLeaseService(),
+                    METRICS_BACKFILL_LEASE_NAME,
+                    stats.getRunID(),
+                    config.getLeaseTTL() * 1000L);
+
+            long    position = getResumePosition(startTime, endTime);
+            boolean proceed  = true;
+
+            LOGGER.info("Starting backfill of range [ "
+                    + position
+                    + " - "
+                    + endTime
+                    + " ] in slices of [ "
+                    + config.getBackfillSliceHours()
+                    + " ] hours.");
+            while ((position < endTime) && (proceed)) {
+
+                long sliceEnd = Math.min(position + sliceSize, endTime);
+                proceed = backfillSlice(position, sliceEnd, config, lease, stats);
+                if (proceed) {
+                    position = sliceEnd;
+                    getJDBCCheckpointService().update(
+                            new CollectionCheckpoint.CollectionCheckpointBuilder()
+                                .name(name)
+                                .endTime(position)
+                                .build());
+                }
+            }
+            if (position < endTime) {
+                LOGGER.error("Backfill [ "
+                        + stats.getRunID()
+                        + " ] stopped at [ "
+                        + position
+                        + " ].  Request the same range again to resume.");
+                stats.setState(CollectionRunStateType.ERROR);
+            }
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  Backfill will not be performed.");
+            stats.setState(CollectionRunStateType.ERROR);
+        }
+        catch (RuntimeException re) {
+            LOGGER.error("Unexpected exception raised during backfill.  "
+                    + "Error message [ "
+                    + re.getMessage()
+                    + " ].");
+            stats.setState(CollectionRunStateType.ERROR);
+        }
+        finally {
+            if ((lease != null) && (lease.isHeld())) {
+                releaseLease(stats.getRunID());
+            }
+            // The refreshed records cannot be applied to the columnar 
+            // store in place, so it is reloaded when next queried.
+            ColumnarMetricsService columnar = getColumnarMetricsService();
+            if ((columnar != null) && (columnar.isEnabled())) {
+                columnar.invalidate();
+            }
+        }
+
+        stats.complete();
+        recordHistory(stats);
+        LOGGER.info("Backfill completed.  Run statistics => [ "
+                + stats.toString()
+                + " ]");
+        return stats;
+    }
+
+    /**
+     * Release the cluster-wide backfill lease held by the input run.  If
+     * the lease cannot be released it expires after its time-to-live.
+     *
+     * @param runID The ID of the run holding the lease.
+     */
+    private void releaseLease(String runID) {
+        try {
+            getJDBCLeaseService().release(METRICS_BACKFILL_LEASE_NAME, runID);
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.warn("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  The lease held by backfill [ "
+                    + runID
+                    + " ] will expire after its time-to-live.");
+        }
+    }
+
+    /**
+     * Attempt to acquire the cluster-wide backfill lease on behalf of the
+     * input run (see <code>JDBCLeaseService.acquireOrJoin()</code>).
+     *
+     * @param stats The statistics for the run requesting the lease.
+     * @return The ID of the run holding the lease.  This will be the ID of
+     * the input run if the lease was acquired, the ID of the backfill
+     * already in progress if the lease is held elsewhere, or null if the
+     * lease could not be acquired for any other reason.
+     */
+    private String acquireLease(CollectionRunStatistics stats)
+            throws EJBLookupException {
+        return getJDBCLeaseService().acquireOrJoin(
+                METRICS_BACKFILL_LEASE_NAME,
+                stats.getRunID(),
+                getOwner(),
+                CollectorConfig.getInstance().getLeaseTTL() * 1000L);
+    }
+
+    /**
+     * Public entry point executing a backfill in the calling thread.  If a
+     * backfill is already in progress elsewhere in the cluster the
+     * returned statistics identify that backfill.
+     *
+     * @param startTime The start of the backfill range (inclusive,
+     * milliseconds since the epoch).
+     * @param endTime The end of the backfill range (exclusive,
+     * milliseconds since the epoch).
+     * @return Statistics associated with the backfill.
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public CollectionRunStatistics backfillMetrics(
+            long startTime,
+            long endTime) {
+
+        CollectionRunStatistics stats =
+                new CollectionRunStatistics(UUID.randomUUID().toString());
+
+        try {
+            String holder = acquireLease(stats);
+            if (stats.getRunID().equals(holder)) {
+                getCollectionRunRegistry().register(stats);
+                backfill(startTime, endTime, stats);
+            }
+            else {
+                if (holder != null) {
+                    stats = new CollectionRunStatistics(holder);
+                    stats.setState(CollectionRunStateType.RUNNING);
+                }
+                else {
+                    stats.setState(CollectionRunStateType.ERROR);
+                    stats.complete();
+                }
+            }
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  Backfill will not be performed.");
+            stats.setState(CollectionRunStateType.ERROR);
+            stats.complete();
+        }
+        return stats;
+    }
+
+    /**
+     * Asynchronous entry point executing a backfill that was registered by
+     * <code>startBackfill()</code>.  This method must be invoked through
+     * the container (i.e. via the business object) for the call to be
+     * asynchronous.  The backfill may run for hours and all of its 
+     * database work is committed through non-JTA connections, so it does 
+     * not execute within a container transaction (which would otherwise 
+     * hit the transaction timeout).
+     *
+     * @param startTime The start of the backfill range.
+     * @param endTime The end of the backfill range.
+     * @param stats The registered statistics for the backfill.
+     */
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void runBackfill(
+            long                    startTime,
+            long                    endTime,
+            CollectionRunStatistics stats) {
+        backfill(startTime, endTime, stats);
+    }
+
+    /**
+     * Public entry point starting a backfill in the background.  Progress
+     * can be obtained via <code>JobMetricsCollector.getCollectionRun()</code>
+     * on the node executing the backfill.
+     *
+     * @param startTime The start of the backfill range (inclusive,
+     * milliseconds since the epoch).
+     * @param endTime The end of the backfill range (exclusive,
+     * milliseconds since the epoch).
+     * @return The ID of the backfill started (or already in progress), null
+     * if the backfill could not be started.
+     */
+    public String startBackfill(long startTime, long endTime) {
+
+        String                  runID = null;
+        CollectionRunStatistics stats =
+                new CollectionRunStatistics(UUID.randomUUID().toString());
+
+        try {
+            runID = acquireLease(stats);
+            if (stats.getRunID().equals(runID)) {
+                getCollectionRunRegistry().register(stats);
+                if (context != null) {
+                    context.getBusinessObject(JobMetricsBackfill.class)
+                            .runBackfill(startTime, endTime, stats);
+                }
+                else {
+                    LOGGER.warn("SessionContext not injected by the "
+                            + "container.  Backfill [ "
+                            + runID
+                            + " ] will be executed synchronously.");
+                    backfill(startTime, endTime, stats);
+                }
+            }
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  Backfill will not be started.");
+        }
+        return runID;
+    }
+}
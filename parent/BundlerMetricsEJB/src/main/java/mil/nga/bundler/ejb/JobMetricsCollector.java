@@ -1,30 +1,71 @@
 package mil.nga.bundler.ejb;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
+import javax.annotation.Resource;
+import javax.ejb.Asynchronous;
 import javax.ejb.EJB;
 import javax.ejb.LocalBean;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import mil.nga.bundler.CollectorConfig;
+import mil.nga.bundler.ejb.exceptions.ClaimLostException;
 import mil.nga.bundler.ejb.exceptions.EJBLookupException;
+import mil.nga.bundler.ejb.interfaces.BatchCommitListenerI;
 import mil.nga.bundler.ejb.interfaces.JobMetricsCollectorI;
+import mil.nga.bundler.ejb.jdbc.JDBCCheckpointService;
 import mil.nga.bundler.ejb.jdbc.JDBCJobMetricsService;
 import mil.nga.bundler.ejb.jdbc.JDBCJobService;
-import mil.nga.bundler.model.Archive;
+import mil.nga.bundler.ejb.jdbc.JDBCLeaseService;
+import mil.nga.bundler.ejb.jdbc.JDBCRetryService;
+import mil.nga.bundler.ejb.jdbc.JDBCRunHistoryService;
+import mil.nga.bundler.ejb.jdbc.JDBCPartitionService;
+import mil.nga.bundler.interfaces.BundlerConstantsI;
 import mil.nga.bundler.model.BundlerJobMetrics;
-import mil.nga.bundler.model.Job;
-import mil.nga.bundler.types.JobStateType;
+import mil.nga.bundler.model.CollectionCheckpoint;
+import mil.nga.bundler.model.CollectionLease;
+import mil.nga.bundler.model.CollectionRunHistory;
+import mil.nga.bundler.model.CollectionPartition;
+import mil.nga.bundler.model.CollectionRunStatistics;
+import mil.nga.bundler.model.JobSummary;
+import mil.nga.bundler.types.CollectionModeType;
+import mil.nga.bundler.types.CollectionRunStateType;
+import mil.nga.bundler.types.PartitionStateType;
 
 /**
  * Session Bean implementation class JobMetricsCollector
+ * 
+ * Collection runs may take far longer than the container transaction 
+ * timeout and all of the database work is committed through non-JTA 
+ * connections, so the business methods do not execute within a container
+ * transaction.
  */
 @Stateless
 @LocalBean
-public class JobMetricsCollector implements JobMetricsCollectorI {
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class JobMetricsCollector 
+        implements JobMetricsCollectorI, BundlerConstantsI {
 
     /**
      * Set up the logging system for use throughout the class
@@ -32,6 +73,27 @@ public class JobMetricsCollector implements JobMetricsCollectorI {
     private static final Logger LOGGER = LoggerFactory.getLogger(
             JobMetricsCollector.class);
     
+    /**
+     * Time (in milliseconds) the run leader waits between checks on the 
+     * partitions claimed by other nodes.
+     */
+    private static final long PARTITION_POLL_INTERVAL = 5000L;
+    
+    /**
+     * Maximum time (in milliseconds) the run leader waits for the 
+     * partitions claimed by other nodes once no partitions are available 
+     * to it.  Partitions still running after this are finished by the 
+     * nodes that claimed them.
+     */
+    private static final long PARTITION_MAX_WAIT = 30L * 60000L;
+    
+    /**
+     * Number of times (and interval in milliseconds) a node joining a run 
+     * checks for the partitions to be created by the run leader.
+     */
+    private static final int  PARTITION_WAIT_ATTEMPTS = 5;
+    private static final long PARTITION_WAIT_INTERVAL = 2000L;
+    
     /**
      * Container-injected reference to the JDBCJobMetricsService session bean.
      */
@@ -44,93 +106,394 @@ public class JobMetricsCollector implements JobMetricsCollectorI {
     @EJB
     JDBCJobService jobService;
     
+    /**
+     * Container-injected reference to the JDBCCheckpointService session bean.
+     */
+    @EJB
+    JDBCCheckpointService checkpointService;
+    
+    /**
+     * Container-injected reference to the JDBCLeaseService session bean.
+     */
+    @EJB
+    JDBCLeaseService leaseService;
+    
+    /**
+     * Container-injected reference to the JDBCPartitionService session bean.
+     */
+    @EJB
+    JDBCPartitionService partitionService;
+    
+    /**
+     * Container-injected reference to the JDBCRunHistoryService session bean.
+     */
+    @EJB
+    JDBCRunHistoryService historyService;
+    
+    /**
+     * Container-injected reference to the JDBCRetryService session bean.
+     */
+    @EJB
+    JDBCRetryService retryService;
+    
+    /**
+     * Container-injected reference to the collection run registry.
+     */
+    @EJB
+    CollectionRunRegistry runRegistry;
+    
+    /**
+     * Container-injected reference to the live metrics windows.
+     */
+    @EJB
+    LiveMetricsService liveMetrics;
+    
+    /**
+     * Container-injected reference to the heavy-hitter user summaries.
+     */
+    @EJB
+    TopUserTracker topUsers;
+    
+    /**
+     * Container-injected reference to the columnar metrics store.
+     */
+    @EJB
+    ColumnarMetricsService columnarStore;
+    
+    /**
+     * Container-injected session context used to obtain a reference to 
+     * this bean through which asynchronous methods may be invoked.
+     */
+    @Resource
+    SessionContext context;
+    
+    /**
+     * Container-managed executor used for parallel metrics collection.
+     */
+    @Resource
+    ManagedExecutorService executor;
+    
     /**
      * Eclipse-generated default constructor. 
      */
     public JobMetricsCollector() { }
 
     /**
-     * Calculate the compression percentage.
-     * 
-     * @param totalSize The total size of the job.
-     * @param compressedSize The compressed size of the job.
-     * @return The amount of compression achieved.
+     * Private method used to obtain a reference to the target EJB.  
+     * @return Reference to the JobMetricsCollectorI interface, null if the 
+     * interface could not be looked up.
+     */
+    private JDBCJobService getJDBCJobService() 
+            throws EJBLookupException {
+        
+        if (jobService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCJobService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            
+            jobService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCJobService();
+        }
+        return jobService;
+    }
+    
+    /**
+     * Private method used to obtain a reference to the live metrics 
+     * windows.  The windows are used for monitoring only, so null is 
+     * returned if they cannot be obtained.
+     * @return Reference to the LiveMetricsService EJB, or null.
+     */
+    private LiveMetricsService getLiveMetricsService() {
+        
+        if (liveMetrics == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + LiveMetricsService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            try {
+                liveMetrics = EJBClientUtilities
+                        .getInstance()
+                        .getLiveMetricsService();
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.warn("Unable to obtain a reference to [ "
+                        + ele.getEJBName()
+                        + " ].  Live metrics will not be updated.");
+            }
+        }
+        return liveMetrics;
+    }
+    
+    /**
+     * Private method used to obtain a reference to the heavy-hitter user 
+     * summaries.  The summaries are used for reporting only, so null is 
+     * returned if they cannot be obtained.
+     * @return Reference to the TopUserTracker EJB, or null.
+     */
+    private TopUserTracker getTopUserTracker() {
+        
+        if (topUsers == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + TopUserTracker.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            try {
+                topUsers = EJBClientUtilities
+                        .getInstance()
+                        .getTopUserTracker();
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.warn("Unable to obtain a reference to [ "
+                        + ele.getEJBName()
+                        + " ].  Top user summaries will not be updated.");
+            }
+        }
+        return topUsers;
+    }
+    
+    /**
+     * Private method used to obtain a reference to the columnar metrics 
+     * store.  The store is optional, so null is returned if it cannot be 
+     * obtained.
+     * @return Reference to the ColumnarMetricsService EJB, or null.
      */
-    private double getCompressionPercentage(
-            long totalSize, 
-            long compressedSize) {
-        double ratio = 0.0;
-        if (totalSize > 0) {
-            if (compressedSize > 0) {
-                ratio = (double)(totalSize - compressedSize) /
-                        (double)totalSize;
+    private ColumnarMetricsService getColumnarMetricsService() {
+        
+        if (columnarStore == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + ColumnarMetricsService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            try {
+                columnarStore = EJBClientUtilities
+                        .getInstance()
+                        .getColumnarMetricsService();
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.warn("Unable to obtain a reference to [ "
+                        + ele.getEJBName()
+                        + " ].  The columnar store will not be updated.");
             }
         }
-        return ratio;
+        return columnarStore;
+    }
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * @return Reference to the CollectionRunRegistry EJB.
+     */
+    private CollectionRunRegistry getCollectionRunRegistry() 
+            throws EJBLookupException {
+        
+        if (runRegistry == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + CollectionRunRegistry.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            
+            runRegistry = EJBClientUtilities
+                    .getInstance()
+                    .getCollectionRunRegistry();
+        }
+        return runRegistry;
+    }
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * @return Reference to the JDBCCheckpointService EJB.
+     */
+    private JDBCCheckpointService getJDBCCheckpointService() 
+            throws EJBLookupException {
+        
+        if (checkpointService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCCheckpointService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            
+            checkpointService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCCheckpointService();
+        }
+        return checkpointService;
+    }
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * @return Reference to the JDBCPartitionService EJB.
+     */
+    private JDBCPartitionService getJDBCPartitionService() 
+            throws EJBLookupException {
+        
+        if (partitionService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCPartitionService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            
+            partitionService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCPartitionService();
+        }
+        return partitionService;
+    }
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * @return Reference to the JDBCRunHistoryService EJB.
+     */
+    private JDBCRunHistoryService getJDBCRunHistoryService() 
+            throws EJBLookupException {
+        
+        if (historyService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCRunHistoryService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            
+            historyService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCRunHistoryService();
+        }
+        return historyService;
     }
     
     /**
-     * Calculate the amount of time in milliseconds that the target Job 
-     * object required to complete.
+     * Record the history of a completed run.  Failure to record the 
+     * history does not affect the run.
      * 
-     * @param job The target Job.
-     * @return The elapsed time (in milliseconds)
+     * @param stats The statistics for the completed run.
      */
-    private long getElapsedTime(Job job) {
-        long elapsedTime = 0;
-        if (job != null) {
-            elapsedTime = job.getEndTime() - job.getStartTime();
+    private void recordHistory(CollectionRunStatistics stats) {
+        try {
+            getJDBCRunHistoryService().insert(
+                    new CollectionRunHistory.CollectionRunHistoryBuilder()
+                        .statistics(stats)
+                        .owner(getOwner())
+                        .build());
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.warn("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  History of run [ "
+                    + stats.getRunID()
+                    + " ] will not be recorded.");
+        }
+    }
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * @return Reference to the JDBCRetryService EJB.
+     */
+    private JDBCRetryService getJDBCRetryService() 
+            throws EJBLookupException {
+        
+        if (retryService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCRetryService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            
+            retryService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCRetryService();
+        }
+        return retryService;
+    }
+    
+    /**
+     * Record the jobs whose metrics record could not be written so that 
+     * they are retried with an increasing delay (and eventually abandoned)
+     * rather than being reloaded by every full collection run.
+     * 
+     * @param failures Map of job ID to the error message raised.
+     */
+    private void recordFailures(Map<String, String> failures) 
+            throws EJBLookupException {
+        if ((failures != null) && (!failures.isEmpty())) {
+            CollectorConfig config = CollectorConfig.getInstance();
+            getJDBCRetryService().recordFailures(
+                    failures, 
+                    config.getRetryBaseDelay(), 
+                    config.getRetryMaxDelay(), 
+                    config.getRetryMaxAttempts());
         }
-        return elapsedTime;
     }
     
     /**
-     * Build the metrics for a target job.
+     * Feed the metrics records that were inserted to the live metrics 
+     * windows, the top user summaries and the columnar store.  This is not 
+     * called for records that were refreshed rather than inserted, as they
+     * may already have been counted.
      * 
-     * @param job The target job.
-     * @return Metrics collected for the target job.
+     * @param records The metrics records written.
+     * @param failures Map of job ID to error message for each record that
+     * could not be written.
+     */
+    private void recordLiveMetrics(
+            List<BundlerJobMetrics> records, 
+            Map<String, String>     failures) {
+        List<BundlerJobMetrics> written  = new ArrayList<BundlerJobMetrics>();
+        LiveMetricsService      live     = getLiveMetricsService();
+        TopUserTracker          tracker  = getTopUserTracker();
+        ColumnarMetricsService  columnar = getColumnarMetricsService();
+        for (BundlerJobMetrics record : records) {
+            if (!failures.containsKey(record.getJobID())) {
+                written.add(record);
+            }
+        }
+        if (live != null) {
+            live.record(written);
+        }
+        if (tracker != null) {
+            tracker.record(written);
+        }
+        if ((columnar != null) && (columnar.isEnabled())) {
+            columnar.append(written);
+        }
+    }
+    
+    /**
+     * Mark the columnar store out of date after metrics records have been
+     * refreshed in place, which cannot be applied to the store.
      */
-    private BundlerJobMetrics getJobMetrics(Job job) {
-        return new BundlerJobMetrics.BundlerJobMetricsBuilder()
-                .archiveSize(job.getArchiveSize())
-                .archiveType(job.getArchiveType())
-                .compressionPercentage(getCompressionPercentage(
-                        job.getTotalSize(), 
-                        getTotalCompressedSize(job)))
-                .elapsedTime(getElapsedTime(job))
-                .jobID(job.getJobID())
-                .jobState(job.getState())
-                .numArchives(job.getNumArchives())
-                .numArchivesComplete(job.getNumArchivesComplete())
-                .numFiles(job.getNumFiles())
-                .numFilesComplete(job.getNumFilesComplete())
-                .startTime(job.getStartTime())
-                .totalCompressedSize(getTotalCompressedSize(job))
-                .totalSize(job.getTotalSize())
-                .userName(job.getUserName())
-                .build();
+    private void invalidateColumnarStore() {
+        ColumnarMetricsService columnar = getColumnarMetricsService();
+        if ((columnar != null) && (columnar.isEnabled())) {
+            columnar.invalidate();
+        }
     }
     
     /**
      * Private method used to obtain a reference to the target EJB.  
-     * @return Reference to the JobMetricsCollectorI interface, null if the 
-     * interface could not be looked up.
+     * @return Reference to the JDBCLeaseService EJB.
      */
-    private JDBCJobService getJDBCJobService() 
+    private JDBCLeaseService getJDBCLeaseService() 
             throws EJBLookupException {
         
-        if (jobService == null) {
+        if (leaseService == null) {
             LOGGER.warn("Application container failed to inject the "
                     + "reference to [ "
-                    + JDBCJobService.class.getName()
+                    + JDBCLeaseService.class.getName()
                     + " ].  Attempting to "
                     + "look it up via JNDI.");
             
-            jobService = EJBClientUtilities
+            leaseService = EJBClientUtilities
                     .getInstance()
-                    .getJDBCJobService();
+                    .getJDBCLeaseService();
         }
-        return jobService;
+        return leaseService;
     }
     
     /**
@@ -162,125 +525,1299 @@ public class JobMetricsCollector implements JobMetricsCollectorI {
      * @return A list of jobs that need a metrics record calculated.
      */
     private List<String> getJobs() throws EJBLookupException {
-        
-    	// The number of jobs in the current JOBS table is always going 
-    	// to be (far) fewer than the total number of jobs in the metrics
-    	// table.  Rather than select all jobs from the metrics and use
-    	// the collections class to get the disjoint set, just see if 
-    	// the job ID exists in the target
-    	if (LOGGER.isDebugEnabled()) {
-    		LOGGER.debug("Determining jobs that need a metrics record created.");
-    	}
-        List<String> currentJobs = getJDBCJobService().getJobIDs();
-        List<String> jobs        = new ArrayList<String>();
-        
-        if ((currentJobs != null) && (!currentJobs.isEmpty())) {
-        	for (String jobID : currentJobs) {
-	        	if (!getJDBCJobMetricsService().jobIDExists(jobID)) {
-	        		jobs.add(jobID);
-	        	}
-        	}
+
+        // Let the database calculate the disjoint set of job IDs (i.e.
+        // jobs in the JOBS table without a metrics record) in a single
+        // query rather than testing each job ID individually.
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Determining jobs that need a metrics record created.");
         }
-        else {
-            LOGGER.warn("Unable to select list of current jobs.  "
+        List<String> jobs = getJDBCJobMetricsService().getPendingJobIDs();
+
+        if (jobs == null) {
+            LOGGER.warn("Unable to select list of pending jobs.  "
                     + "The return list is null.");
+            jobs = new ArrayList<String>();
         }
         return jobs;
     }
     
     /**
-     * Calculate the total compressed size of the job.  This is calculated 
-     * using the summation of the compressed size for each individual archive.
+     * Record the result of a single task.  If the task produced a metrics
+     * record it is added to the pending list, which is flushed to the 
+     * database once the batch size is reached.
      * 
-     * @param job The target job.
-     * @return The summation of the compressed sizes for each individual 
-     * archive.
+     * @param result The task result.
+     * @param pending The accumulated metrics records.
+     * @param batchSize The number of records per batch.
+     * @param lease The lease held by the run.
+     * @param stats The statistics for the current run.
      */
-    private long getTotalCompressedSize(Job job) {
-        long compressedSize = 0L;
-        if (job != null) {
-            if ((job.getArchives() != null) && 
-                    (job.getArchives().size() > 0)) {
-                for (Archive archive : job.getArchives()) {
-                    compressedSize += archive.getSize();
-                }
+    private void record(
+            JobMetricsTask.Result   result, 
+            List<BundlerJobMetrics> pending, 
+            int                     batchSize, 
+            RenewableCommitListener lease,
+            CollectionRunStatistics stats) throws EJBLookupException {
+        stats.addJobLatency(result.getLatency());
+        stats.addLoadTime(result.getLatency() - result.getComputeTime());
+        stats.addComputeTime(result.getComputeTime());
+        if (result.getMetrics() != null) {
+            pending.add(result.getMetrics());
+            if (pending.size() >= batchSize) {
+                flush(pending, lease, stats);
             }
         }
-        return compressedSize;
+        else {
+            stats.incrementJobsSkipped();
+        }
     }
     
     /**
-     * Public entry point starting the metrics collection process.
+     * Wait for the task at the head of the in-flight queue to complete and
+     * record its result.  Tasks are always consumed in the order they were
+     * submitted so the metrics records are written in discovery order 
+     * regardless of the order in which the workers finish.
+     * 
+     * @param inFlight The queue of outstanding tasks.
+     * @param pending The accumulated metrics records.
+     * @param batchSize The number of records per batch.
+     * @param lease The lease held by the run.
+     * @param stats The statistics for the current run.
+     * @throws InterruptedException Thrown if the calling thread is 
+     * interrupted while waiting on the task.
      */
-    public void collectMetrics() {
+    private void drain(
+            Deque<Future<JobMetricsTask.Result>> inFlight, 
+            List<BundlerJobMetrics>              pending, 
+            int                                  batchSize, 
+            RenewableCommitListener              lease,
+            CollectionRunStatistics              stats) 
+                    throws EJBLookupException, InterruptedException {
         
-        int  counter   = 0;
-        long startTime = System.currentTimeMillis();
-        LOGGER.info("Starting bundler metrics collection...");
+        Future<JobMetricsTask.Result> head = inFlight.removeFirst();
         try {
-            
-            List<String> sourceList = getJobs();
-            if ((sourceList != null) && (!sourceList.isEmpty())) {
-                
-                LOGGER.info("Processing [ "
-                        + sourceList.size()
-                        + " ] jobs.");
-                
-                for (String jobID : sourceList) {
-                    
-                	LOGGER.info("Processing job ID [ " 
-                    		+ jobID
-                    		+ " ].");
-                    
-                    Job job = jobService.getMaterializedJob(jobID);
-                    
-                    LOGGER.info("Job retrieved in [ "
-                    		+ (System.currentTimeMillis() - startTime)
-                    		+ " ].");
-                    if (job != null) {
-                        
-                    	LOGGER.info("Job state [ "
-                    			+ job.getState().toString()
-                    			+ " ].");
-                        // Ensure that the job is in a "completed" state.
-                        if ((job.getState() == JobStateType.COMPLETE) ||
-                            (job.getState() == JobStateType.ERROR) || 
-                            (job.getState() == JobStateType.INVALID_REQUEST)) {
-                            
-                            BundlerJobMetrics metrics = getJobMetrics(job);
-                            //if (LOGGER.isDebugEnabled()) {
-                                LOGGER.info("Inserting metrics record => [ " 
-                                		+ metrics.toString()
-                                		);
-                            //}
-                            
-                            metricsService.insert(metrics);
-                            counter++;
-                            
-                        }
-                    }
-                    else {
-                        LOGGER.warn("Unable to find a job matching job ID [ "
-                                + jobID
-                                + " ].  Job object returned was null.");
-                    }
+            record(head.get(), pending, batchSize, lease, stats);
+        }
+        catch (ExecutionException ee) {
+            LOGGER.error("Unexpected exception raised while processing a "
+                    + "job.  Error message [ "
+                    + (ee.getCause() == null ? 
+                            ee.getMessage() : ee.getCause().getMessage())
+                    + " ].");
+            stats.incrementJobsSkipped();
+        }
+    }
+    
+    /**
+     * Send the accumulated metrics records to the database in a single 
+     * batched operation, invoking the supplied listener before each commit.
+     * 
+     * @param pending The accumulated metrics records.
+     * @param listener Optional commit listener (may be null).
+     * @param stats The statistics for the current run.
+     */
+    private void flush(
+            List<BundlerJobMetrics> pending, 
+            BatchCommitListenerI    listener,
+            CollectionRunStatistics stats) throws EJBLookupException {
+        flush(pending, listener, null, stats);
+    }
+    
+    /**
+     * Send the accumulated metrics records to the database in a single 
+     * batched operation, invoking the supplied listener before each commit.
+     * Records that could not be written are recorded in the retry store, 
+     * unless the write was abandoned because the claim on the work was 
+     * lost (the claim is then reported as lost by the listener and the 
+     * caller stops).
+     * 
+     * @param pending The accumulated metrics records.
+     * @param listener Optional commit listener (may be null).
+     * @param hours If not null, existing metrics records are refreshed and
+     * the hourly rollup bucket of each record written is added to the 
+     * set, so the caller can recalculate the buckets once at the end of 
+     * the run.  If null, the records are only inserted.
+     * @param stats The statistics for the current run.
+     */
+    private void flush(
+            List<BundlerJobMetrics> pending, 
+            BatchCommitListenerI    listener,
+            Set<Long>               hours,
+            CollectionRunStatistics stats) throws EJBLookupException {
+        
+        if ((pending != null) && (!pending.isEmpty())) {
+            long                start    = System.currentTimeMillis();
+            Map<String, String> failures = null;
+            boolean             upsert   = (hours != null);
+            try {
+                if (upsert) {
+                    failures = getJDBCJobMetricsService().upsertAll(
+                            pending, pending.size(), listener, hours);
+                }
+                else {
+                    failures = getJDBCJobMetricsService()
+                            .insertAll(pending, pending.size(), listener);
+                }
+                stats.addInsertTime(System.currentTimeMillis() - start);
+                for (Map.Entry<String, String> failure : failures.entrySet()) {
+                    LOGGER.error("Unable to insert metrics record for job ID [ "
+                            + failure.getKey()
+                            + " ].  Error message [ "
+                            + failure.getValue()
+                            + " ].");
                 }
+                recordFailures(failures);
+                if (!upsert) {
+                    recordLiveMetrics(pending, failures);
+                }
+                else {
+                    invalidateColumnarStore();
+                }
+                stats.addWriteResults(
+                        pending.size() - failures.size(), 
+                        failures.size());
             }
-            else {
-                LOGGER.info("There are no jobs requiring metrics collection.");
+            catch (ClaimLostException cle) {
+                // The records were not written, but they are not failures.
+                // The node now holding the claim will process them.
+                stats.addInsertTime(System.currentTimeMillis() - start);
+                LOGGER.warn("[ "
+                        + pending.size()
+                        + " ] metrics records were not written.  Error "
+                        + "message [ "
+                        + cle.getMessage()
+                        + " ].");
             }
+            pending.clear();
         }
-        catch (EJBLookupException ele) {
-            LOGGER.error("Unable to obtain a reference to [ "
-                    + ele.getEJBName()
-                    + " ].  Metrics collection operation will not be "
-                    + "performed.");
-        }
+    }
+    
+    /**
+     * Build the metrics records for a list of job summaries that were 
+     * loaded together, adding them to the pending list.  The summaries are
+     * loaded in a single query so the per-job latency recorded is the load
+     * time spread across the jobs loaded.  The load time is recorded 
+     * against the load stage of the run (for incremental runs the page 
+     * query both discovers and loads the jobs).
+     * 
+     * @param summaries The job summaries.
+     * @param elapsed The time required to load the summaries.
+     * @param pending The accumulated metrics records.
+     * @param stats The statistics for the current run.
+     */
+    private void addSummaries(
+            List<JobSummary>        summaries, 
+            long                    elapsed, 
+            List<BundlerJobMetrics> pending, 
+            CollectionRunStatistics stats) {
         
-        LOGGER.info("Metrics collection completed in [ "
-                + (System.currentTimeMillis() - startTime)
-                + " ] ms and processed [ "
-                + counter
-                + " ] jobs.");
+        stats.addLoadTime(elapsed);
+        if (!summaries.isEmpty()) {
+            long latency = elapsed / summaries.size();
+            long start   = System.currentTimeMillis();
+            for (JobSummary job : summaries) {
+                stats.addJobLatency(latency);
+                if (JobMetricsTask.isTerminal(job)) {
+                    pending.add(JobMetricsTask.getJobMetrics(job));
+                }
+                else {
+                    stats.incrementJobsSkipped();
+                }
+            }
+            stats.addComputeTime(System.currentTimeMillis() - start);
+        }
+    }
+    
+    /**
+     * Process the candidate jobs in the calling thread.  The job summaries 
+     * are bulk loaded one batch at a time using IN-list queries rather than
+     * one query per job.
+     * 
+     * @param jobIDs The candidate job IDs.
+     * @param batchSize The number of records per batch.
+     * @param lease The lease held by the run.
+     * @param stats The statistics for the current run.
+     */
+    private void collectSequential(
+            List<String>            jobIDs, 
+            int                     batchSize, 
+            RenewableCommitListener lease,
+            CollectionRunStatistics stats) throws EJBLookupException {
+        
+        List<BundlerJobMetrics> pending = 
+                new ArrayList<BundlerJobMetrics>(batchSize);
+        
+        for (int i = 0; (i < jobIDs.size()) && (lease.renew()); i += batchSize) {
+            
+            List<String> chunk = jobIDs.subList(
+                    i, Math.min(i + batchSize, jobIDs.size()));
+            long start = System.currentTimeMillis();
+            List<JobSummary> summaries = 
+                    getJDBCJobService().getJobSummaries(chunk);
+            
+            addSummaries(
+                    summaries, 
+                    System.currentTimeMillis() - start, 
+                    pending, 
+                    stats);
+            for (int missing = summaries.size(); missing < chunk.size(); missing++) {
+                stats.incrementJobsSkipped();
+            }
+            flush(pending, lease, stats);
+        }
+    }
+    
+    /**
+     * Fan the loading of the candidate jobs out across the container-managed
+     * executor.  At most <code>concurrency</code> tasks are executing at 
+     * any one time and at most <code>maxInFlight</code> tasks are 
+     * outstanding (i.e. submitted but not yet consumed by the writer).  The
+     * calling thread acts as the single writer, consuming results in 
+     * submission order and flushing them to the database in batches.
+     * 
+     * @param jobIDs The candidate job IDs.
+     * @param batchSize The number of records per batch.
+     * @param concurrency The maximum number of concurrently executing tasks.
+     * @param maxInFlight The maximum number of outstanding tasks.
+     * @param lease The lease held by the run.
+     * @param stats The statistics for the current run.
+     */
+    private void collectParallel(
+            List<String>            jobIDs, 
+            int                     batchSize, 
+            int                     concurrency, 
+            int                     maxInFlight,
+            RenewableCommitListener lease,
+            CollectionRunStatistics stats) throws EJBLookupException {
+        
+        final Semaphore  permits = new Semaphore(concurrency);
+        Iterator<String> iter    = jobIDs.iterator();
+        JDBCJobService   service = getJDBCJobService();
+        Deque<Future<JobMetricsTask.Result>> inFlight = 
+                new ArrayDeque<Future<JobMetricsTask.Result>>(maxInFlight);
+        List<BundlerJobMetrics> pending = 
+                new ArrayList<BundlerJobMetrics>(batchSize);
+        
+        try {
+            while ((iter.hasNext()) && (lease.renew())) {
+                
+                String jobID = iter.next();
+                
+                // Apply back-pressure if the writer has fallen behind.
+                while (inFlight.size() >= maxInFlight) {
+                    drain(inFlight, pending, batchSize, lease, stats);
+                }
+                
+                permits.acquire();
+                final JobMetricsTask task = new JobMetricsTask(service, jobID);
+                try {
+                    inFlight.addLast(executor.submit(
+                            new Callable<JobMetricsTask.Result>() {
+                                @Override
+                                public JobMetricsTask.Result call() {
+                                    try {
+                                        return task.call();
+                                    }
+                                    finally {
+                                        permits.release();
+                                    }
+                                }
+                            }));
+                }
+                catch (RejectedExecutionException ree) {
+                    permits.release();
+                    LOGGER.warn("Executor rejected the task for job ID [ "
+                            + jobID
+                            + " ].  Processing the job in the calling "
+                            + "thread.");
+                    record(task.call(), pending, batchSize, lease, stats);
+                }
+                
+                // Opportunistically consume any completed work.
+                while ((!inFlight.isEmpty()) && (inFlight.peekFirst().isDone())) {
+                    drain(inFlight, pending, batchSize, lease, stats);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                drain(inFlight, pending, batchSize, lease, stats);
+            }
+        }
+        catch (InterruptedException ie) {
+            LOGGER.warn("Metrics collection was interrupted.  [ "
+                    + inFlight.size()
+                    + " ] outstanding jobs will be cancelled.");
+            for (Future<JobMetricsTask.Result> future : inFlight) {
+                future.cancel(true);
+            }
+            inFlight.clear();
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            flush(pending, lease, stats);
+        }
+    }
+    
+    /**
+     * Process only those jobs that completed after the persisted checkpoint.
+     * Completed jobs are retrieved in pages ordered by (END_TIME, JOB_ID) 
+     * and each page is written as a single batch.  The checkpoint is 
+     * advanced in the same transaction as each committed batch so a failure
+     * part way through a run never skips (or re-processes) committed work.
+     * The page query only returns jobs without a metrics record, so once 
+     * the run has caught up (i.e. every job up to the last job that had 
+     * completed when the run started has a metrics or retry record) the 
+     * checkpoint is moved to that job.  This keeps the checkpoint moving 
+     * when the job-completion listener has already written the metrics of
+     * the new jobs, so each run only scans the jobs completed since the 
+     * previous run.
+     * The checkpoint is never moved past the configured lag behind the 
+     * current time.  A job's END_TIME is set when it finishes rather than 
+     * when its row is committed (and by the clock of the node that ran 
+     * it), so a job may become visible after later jobs have already been
+     * collected.  Jobs completed within the lag are still collected, but 
+     * they are scanned again by the next run, which picks up any job that
+     * was not yet visible.  Jobs that arrive later than the lag are left 
+     * for the periodic full reconciliation run.
+     * Records that fail to insert are recorded in the retry store and are
+     * retried by a later incremental run once their retry delay expires 
+     * (see <code>collectRetries()</code>).
+     * 
+     * @param config The collector configuration.
+     * @param lease The lease held by the run.
+     * @param stats The statistics for the current run.
+     */
+    private void collectIncremental(
+            CollectorConfig         config, 
+            RenewableCommitListener lease,
+            CollectionRunStatistics stats) throws EJBLookupException {
+        
+        int              batchSize  = config.getBatchSize();
+        long             endTime    = 0L;
+        String           jobID      = "";
+        long             limit      = System.currentTimeMillis() 
+                                          - (config.getCheckpointLag() * 1000L);
+        List<JobSummary> page       = null;
+        CollectionCheckpoint checkpoint = getJDBCCheckpointService()
+                .getCheckpoint(METRICS_CHECKPOINT_NAME);
+        
+        if (checkpoint != null) {
+            endTime = checkpoint.getEndTime();
+            jobID   = checkpoint.getJobID();
+        }
+        LOGGER.info("Collecting metrics for jobs completed after END_TIME [ "
+                + endTime
+                + " ] and JOB_ID [ "
+                + jobID
+                + " ].");
+        
+        CheckpointCommitListener listener = new CheckpointCommitListener(
+                getJDBCCheckpointService(), 
+                METRICS_CHECKPOINT_NAME, 
+                endTime, 
+                jobID,
+                limit);
+        lease.setDelegate(listener);
+        List<BundlerJobMetrics> pending = 
+                new ArrayList<BundlerJobMetrics>(batchSize);
+        
+        // The checkpoint is never moved past this position.
+        JobSummary horizon = getJDBCJobService().getLastCompletedJob(limit);
+        
+        do {
+            long start = System.currentTimeMillis();
+            page = getJDBCJobService().getCompletedJobSummaries(
+                    endTime, jobID, batchSize);
+            if (!page.isEmpty()) {
+                
+                stats.setJobsDiscovered(stats.getJobsDiscovered() + page.size());
+                addSummaries(
+                        page, 
+                        System.currentTimeMillis() - start, 
+                        pending, 
+                        stats);
+                flush(pending, lease, stats);
+                
+                JobSummary last = page.get(page.size() - 1);
+                endTime = last.getEndTime();
+                jobID   = last.getJobID();
+            }
+        } while ((page.size() >= batchSize) && (lease.renew()));
+        
+        if ((horizon != null) && 
+                (lease.renew()) && 
+                (getJDBCJobService().countPendingCompletedJobs(
+                        listener.getEndTime(), 
+                        listener.getJobID(), 
+                        horizon.getEndTime(), 
+                        horizon.getJobID()) == 0L) && 
+                (listener.advance(horizon.getEndTime(), horizon.getJobID()))) {
+            LOGGER.info("Checkpoint advanced past previously collected jobs "
+                    + "to END_TIME [ "
+                    + horizon.getEndTime()
+                    + " ] and JOB_ID [ "
+                    + horizon.getJobID()
+                    + " ].");
+        }
+    }
+    
+    /**
+     * Retry the jobs whose metrics record previously failed to insert and
+     * whose retry delay has expired.  Incremental runs never revisit a job
+     * once the checkpoint has passed it, so without this step a failed job
+     * would only be retried by a full reconciliation run.  Jobs that fail 
+     * again are pushed further into the future (and eventually moved to 
+     * the dead-letter state) by the retry store.  The checkpoint is not 
+     * modified.
+     * 
+     * @param config The collector configuration.
+     * @param lease The lease held by the run.
+     * @param stats The statistics for the current run.
+     */
+    private void collectRetries(
+            CollectorConfig         config, 
+            RenewableCommitListener lease,
+            CollectionRunStatistics stats) throws EJBLookupException {
+        
+        getJDBCRetryService().purgeResolved();
+        
+        long         start  = System.currentTimeMillis();
+        List<String> jobIDs = getJDBCRetryService().getDueJobIDs(start);
+        stats.addDiscoveryTime(System.currentTimeMillis() - start);
+        if (!jobIDs.isEmpty()) {
+            LOGGER.info("Retrying [ "
+                    + jobIDs.size()
+                    + " ] jobs whose metrics record could not previously "
+                    + "be written.");
+            stats.setJobsDiscovered(stats.getJobsDiscovered() + jobIDs.size());
+            // The retried jobs may sort anywhere relative to the checkpoint,
+            // so they must not move it.
+            lease.setDelegate(null);
+            collectSequential(jobIDs, config.getBatchSize(), lease, stats);
+        }
+    }
+    
+    /**
+     * Refresh the metrics of every job that completed at or after the input
+     * time.  Completed jobs are retrieved in pages ordered by 
+     * (END_TIME, JOB_ID) regardless of whether they already have a metrics
+     * record, and each page is written as a single batch of MERGE 
+     * statements so existing records are updated in place.  The rollup 
+     * buckets touched by the run are recalculated once, after the last 
+     * page has been written.  The checkpoint used by incremental 
+     * collection is not modified.
+     * 
+     * @param since Jobs with an END_TIME at or after this time are 
+     * processed.
+     * @param batchSize The number of jobs per page/batch.
+     * @param lease The lease held by the run.
+     * @param stats The statistics for the current run.
+     */
+    private void collectSince(
+            long                    since, 
+            int                     batchSize, 
+            RenewableCommitListener lease,
+            CollectionRunStatistics stats) throws EJBLookupException {
+        
+        long             endTime = Math.max(since - 1, 0L);
+        String           jobID   = "";
+        List<JobSummary> page    = null;
+        Set<Long>        hours   = new TreeSet<Long>();
+        List<BundlerJobMetrics> pending = 
+                new ArrayList<BundlerJobMetrics>(batchSize);
+        
+        LOGGER.info("Re-collecting metrics for jobs completed after [ "
+                + endTime
+                + " ].");
+        try {
+            do {
+                long start = System.currentTimeMillis();
+                page = getJDBCJobService().getCompletedJobSummaries(
+                        endTime, jobID, batchSize, false);
+                if (!page.isEmpty()) {
+                    
+                    stats.setJobsDiscovered(
+                            stats.getJobsDiscovered() + page.size());
+                    addSummaries(
+                            page, 
+                            System.currentTimeMillis() - start, 
+                            pending, 
+                            stats);
+                    flush(pending, lease, hours, stats);
+                    
+                    JobSummary last = page.get(page.size() - 1);
+                    endTime = last.getEndTime();
+                    jobID   = last.getJobID();
+                }
+            } while ((page.size() >= batchSize) && (lease.renew()));
+        }
+        finally {
+            getJDBCJobMetricsService().refreshRollups(hours);
+        }
+    }
+    
+    /**
+     * Process the input candidate jobs, fanning the work out across the 
+     * container-managed executor if a concurrency greater than one is 
+     * configured.
+     * 
+     * @param jobIDs The candidate job IDs.
+     * @param config The collector configuration.
+     * @param lease The claim held on the work.
+     * @param stats The statistics for the current run.
+     */
+    private void collectJobs(
+            List<String>            jobIDs, 
+            CollectorConfig         config, 
+            RenewableCommitListener lease,
+            CollectionRunStatistics stats) throws EJBLookupException {
+        
+        int batchSize   = config.getBatchSize();
+        int concurrency = config.getConcurrency();
+        
+        if ((concurrency > 1) && (executor == null)) {
+            LOGGER.warn("ManagedExecutorService not injected by the "
+                    + "container.  Jobs will be processed "
+                    + "sequentially.");
+            concurrency = 1;
+        }
+        stats.setConcurrency(concurrency);
+        
+        LOGGER.info("Processing [ "
+                + jobIDs.size()
+                + " ] jobs with concurrency [ "
+                + concurrency
+                + " ].");
+        
+        if (concurrency > 1) {
+            collectParallel(
+                    jobIDs, 
+                    batchSize, 
+                    concurrency, 
+                    Math.max(config.getMaxInFlight(), concurrency),
+                    lease,
+                    stats);
+        }
+        else {
+            collectSequential(jobIDs, batchSize, lease, stats);
+        }
+    }
+    
+    /**
+     * Process the pending jobs that hash to a single claimed partition.  
+     * The partition is marked complete once all of its jobs have been 
+     * processed, provided the claim was held throughout.
+     * 
+     * @param partition The claimed partition.
+     * @param delegate Optional listener to chain behind the partition claim
+     * (i.e. the collection lease when called by the run leader).
+     * @param config The collector configuration.
+     * @param stats The statistics for the current run.
+     */
+    private void collectPartition(
+            CollectionPartition     partition, 
+            RenewableCommitListener delegate, 
+            CollectorConfig         config, 
+            CollectionRunStatistics stats) throws EJBLookupException {
+        
+        long processed = stats.getJobsProcessed();
+        PartitionCommitListener claim = new PartitionCommitListener(
+                getJDBCPartitionService(), 
+                partition, 
+                config.getLeaseTTL() * 1000L);
+        claim.setDelegate(delegate);
+        
+        long start = System.currentTimeMillis();
+        List<String> jobIDs = getJDBCJobMetricsService().getPendingJobIDs(
+                partition.getPartition(), 
+                partition.getPartitions());
+        stats.addDiscoveryTime(System.currentTimeMillis() - start);
+        stats.setJobsDiscovered(stats.getJobsDiscovered() + jobIDs.size());
+        if (!jobIDs.isEmpty()) {
+            collectJobs(jobIDs, config, claim, stats);
+        }
+        if (claim.isHeld()) {
+            getJDBCPartitionService().complete(
+                    partition, 
+                    stats.getJobsProcessed() - processed);
+        }
+        else {
+            LOGGER.warn("Claim on partition [ "
+                    + partition.getKey()
+                    + " ] was lost.  The partition will be completed by "
+                    + "another node.");
+        }
+    }
+    
+    /**
+     * Claim and process partitions of the input run until no partitions are
+     * available.  Partitions that are pending are claimed first, after 
+     * which partitions whose claim has expired (i.e. the claiming node died
+     * or stalled) are stolen.
+     * 
+     * @param runID The ID of the partitioned run.
+     * @param delegate Optional listener to chain behind each partition claim.
+     * @param config The collector configuration.
+     * @param stats The statistics for the current run.
+     * @return The number of partitions processed.
+     */
+    private int collectPartitions(
+            String                  runID, 
+            RenewableCommitListener delegate, 
+            CollectorConfig         config, 
+            CollectionRunStatistics stats) throws EJBLookupException {
+        
+        int                 count     = 0;
+        CollectionPartition partition = null;
+        String              owner     = getParticipantID();
+        
+        do {
+            partition = getJDBCPartitionService().claim(
+                    runID, 
+                    owner, 
+                    config.getLeaseTTL() * 1000L);
+            if (partition != null) {
+                LOGGER.info("Processing partition [ "
+                        + partition.getPartition()
+                        + " / "
+                        + partition.getPartitions()
+                        + " ] of run [ "
+                        + runID
+                        + " ].");
+                collectPartition(partition, delegate, config, stats);
+                count++;
+            }
+        } while ((partition != null) && 
+                ((delegate == null) || (delegate.renew())));
+        return count;
+    }
+    
+    /**
+     * Split a full scan into hash partitions that may be claimed by any 
+     * node in the cluster.  The run leader (i.e. the holder of the 
+     * collection lease) creates the partitions and processes partitions 
+     * along with any other nodes that join the run.  Once no partitions are
+     * available the leader waits for the partitions claimed by other nodes
+     * to complete, stealing any whose claim expires.  The wait is bounded 
+     * (see <code>PARTITION_MAX_WAIT</code>) so a slow partition does not 
+     * hold the leader's thread and the collection lease indefinitely.
+     * 
+     * @param config The collector configuration.
+     * @param lease The collection lease held by the run.
+     * @param stats The statistics for the current run.
+     */
+    private void collectPartitioned(
+            CollectorConfig         config, 
+            RenewableCommitListener lease,
+            CollectionRunStatistics stats) throws EJBLookupException {
+        
+        boolean complete   = false;
+        int     partitions = config.getPartitions();
+        int     remaining  = 0;
+        long    deadline   = Long.MAX_VALUE;
+        
+        if (getJDBCPartitionService().create(stats.getRunID(), partitions)) {
+            LOGGER.info("Full collection run [ "
+                    + stats.getRunID()
+                    + " ] split into [ "
+                    + partitions
+                    + " ] partitions.");
+            while ((!complete) && (lease.renew())) {
+                collectPartitions(stats.getRunID(), lease, config, stats);
+                remaining = 0;
+                for (CollectionPartition partition : 
+                        getJDBCPartitionService().getPartitions(
+                                stats.getRunID())) {
+                    if (partition.getState() != PartitionStateType.COMPLETE) {
+                        remaining++;
+                    }
+                }
+                complete = (remaining == 0);
+                if ((!complete) && (deadline == Long.MAX_VALUE)) {
+                    deadline = System.currentTimeMillis() + PARTITION_MAX_WAIT;
+                }
+                if ((!complete) && (System.currentTimeMillis() >= deadline)) {
+                    LOGGER.warn("Stopped waiting on [ "
+                            + remaining
+                            + " ] partitions of run [ "
+                            + stats.getRunID()
+                            + " ] after [ "
+                            + (PARTITION_MAX_WAIT / 60000L)
+                            + " ] minutes.  They will be finished by the "
+                            + "nodes that claimed them.");
+                    complete = true;
+                }
+                else if (!complete) {
+                    try {
+                        Thread.sleep(PARTITION_POLL_INTERVAL);
+                    }
+                    catch (InterruptedException ie) {
+                        LOGGER.warn("Interrupted while waiting on the "
+                                + "partitions of run [ "
+                                + stats.getRunID()
+                                + " ].");
+                        Thread.currentThread().interrupt();
+                        complete = true;
+                    }
+                }
+            }
+        }
+        else {
+            LOGGER.error("Unable to create the partitions for run [ "
+                    + stats.getRunID()
+                    + " ].  Metrics collection will not be performed.");
+            stats.setState(CollectionRunStateType.ERROR);
+        }
+    }
+    
+    /**
+     * Perform a full scan of the JOBS table, processing every job that does
+     * not have a metrics record.  This is used when incremental collection 
+     * is disabled and as a periodic reconciliation sweep picking up any jobs
+     * missed by the incremental collector.  If more than one partition is
+     * configured the scan is shared with the other nodes in the cluster.  
+     * Jobs that previously failed to insert are only reconsidered once 
+     * their retry delay has expired.
+     * 
+     * @param config The collector configuration.
+     * @param lease The lease held by the run.
+     * @param stats The statistics for the current run.
+     */
+    private void collectAll(
+            CollectorConfig         config, 
+            RenewableCommitListener lease,
+            CollectionRunStatistics stats) throws EJBLookupException {
+        
+        getJDBCRetryService().purgeResolved();
+        if (config.getPartitions() > 1) {
+            collectPartitioned(config, lease, stats);
+        }
+        else {
+            long start = System.currentTimeMillis();
+            List<String> sourceList = getJobs();
+            stats.addDiscoveryTime(System.currentTimeMillis() - start);
+            stats.setJobsDiscovered(sourceList.size());
+            if (!sourceList.isEmpty()) {
+                collectJobs(sourceList, config, lease, stats);
+            }
+            else {
+                LOGGER.info("There are no jobs requiring metrics collection.");
+            }
+        }
+    }
+    
+    /**
+     * Participate in a partitioned run led by another node by claiming 
+     * and processing any available partitions.  If the run is not 
+     * partitioned (e.g. it is an incremental run) nothing is done.  When
+     * the caller itself triggered a full run, the leader may not have 
+     * created the partitions yet (e.g. the timer fired on every node at the
+     * same time) so the partitions are polled for briefly.  Otherwise they
+     * are checked once, so joining an incremental run costs a single query.
+     * 
+     * @param runID The ID of the run being joined.
+     * @param wait True if the partitions should be polled for.
+     */
+    private void joinPartitions(String runID, boolean wait) {
+        
+        CollectorConfig         config      = CollectorConfig.getInstance();
+        CollectionRunStatistics stats       = new CollectionRunStatistics(runID);
+        int                     attempts    = 0;
+        int                     maxAttempts = (wait ? PARTITION_WAIT_ATTEMPTS : 0);
+        
+        try {
+            boolean partitioned = 
+                    !getJDBCPartitionService().getPartitions(runID).isEmpty();
+            while ((!partitioned) && (attempts < maxAttempts)) {
+                attempts++;
+                Thread.sleep(PARTITION_WAIT_INTERVAL);
+                partitioned = 
+                        !getJDBCPartitionService().getPartitions(runID).isEmpty();
+            }
+            if (partitioned) {
+                stats.start("partition");
+                if (collectPartitions(runID, null, config, stats) > 0) {
+                    stats.complete();
+                    LOGGER.info("Finished processing partitions of run [ "
+                            + runID
+                            + " ].  Statistics for this node => [ "
+                            + stats.toString()
+                            + " ]");
+                }
+            }
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  Partitions of run [ "
+                    + runID
+                    + " ] will not be processed.");
+        }
+    }
+    
+    /**
+     * Determine the mode used by scheduled collection runs.
+     * 
+     * @return <code>INCREMENTAL</code> if incremental collection is enabled,
+     * <code>FULL</code> otherwise.
+     */
+    private CollectionModeType getDefaultMode() {
+        CollectionModeType mode = CollectionModeType.FULL;
+        if (CollectorConfig.getInstance().isIncremental()) {
+            mode = CollectionModeType.INCREMENTAL;
+        }
+        return mode;
+    }
+    
+    /**
+     * Identify a single participant in a partitioned run.  Each call 
+     * returns a new ID made up of the node owner and a random UUID, so two
+     * participants on the same node (e.g. the leader and a join triggered
+     * on the same server) never share a partition claim.  A participant 
+     * whose claim expired and was stolen therefore fails to renew it, even
+     * if the thief runs on the same node.
+     * 
+     * @return The participant ID.
+     */
+    private String getParticipantID() {
+        return getOwner() + "/" + UUID.randomUUID();
+    }
+    
+    /**
+     * Identify this node when acquiring leases and recording run history.
+     * 
+     * @return The server name and host name of this node.
+     */
+    private String getOwner() {
+        return EJBClientUtilities.getInstance().getNodeName();
+    }
+    
+    /**
+     * Attempt to acquire the cluster-wide collection lease on behalf of the
+     * input run (see <code>JDBCLeaseService.acquireOrJoin()</code>).
+     * 
+     * @param stats The statistics for the run requesting the lease.
+     * @return The ID of the run holding the lease.  This will be the ID of
+     * the input run if the lease was acquired, the ID of the run already in
+     * progress if the lease is held elsewhere, or null if the lease could 
+     * not be acquired for any other reason.
+     */
+    private String acquireLease(CollectionRunStatistics stats) 
+            throws EJBLookupException {
+        return getJDBCLeaseService().acquireOrJoin(
+                METRICS_LEASE_NAME, 
+                stats.getRunID(), 
+                getOwner(), 
+                CollectorConfig.getInstance().getLeaseTTL() * 1000L);
+    }
+    
+    /**
+     * Release the cluster-wide collection lease held by the input run.  If
+     * the lease cannot be released it expires after its time-to-live.
+     * 
+     * @param runID The ID of the run holding the lease.
+     */
+    private void releaseLease(String runID) {
+        try {
+            getJDBCLeaseService().release(METRICS_LEASE_NAME, runID);
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.warn("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  The lease held by run [ "
+                    + runID
+                    + " ] will expire after its time-to-live.");
+        }
+    }
+    
+    /**
+     * Build the statistics returned to a caller whose trigger overlapped 
+     * with a run already in progress.  If the run is executing on this node
+     * its live statistics are returned.
+     * 
+     * @param holder The ID of the run holding the lease.
+     * @return The statistics for the run in progress.
+     */
+    private CollectionRunStatistics getJoinedRun(String holder) 
+            throws EJBLookupException {
+        
+        CollectionRunStatistics stats = 
+                getCollectionRunRegistry().get(holder);
+        
+        if (stats == null) {
+            stats = new CollectionRunStatistics(holder);
+            stats.setState(CollectionRunStateType.RUNNING);
+        }
+        return stats;
+    }
+    
+    /**
+     * Execute a collection run, updating the supplied statistics object as
+     * the run progresses.  The caller must have already acquired the 
+     * collection lease on behalf of the run.  The lease is renewed as the 
+     * run progresses and released when the run completes.
+     * 
+     * @param mode The collection mode.
+     * @param since For <code>RECOLLECT</code> runs, jobs completed at or 
+     * after this time are processed.  Ignored otherwise.
+     * @param stats The statistics for the run.
+     * @return Statistics associated with the collection run.
+     */
+    private CollectionRunStatistics collect(
+            CollectionModeType      mode, 
+            long                    since, 
+            CollectionRunStatistics stats) {
+        
+        CollectorConfig     config = CollectorConfig.getInstance();
+        LeaseCommitListener lease  = null;
+        
+        stats.start(mode.getText());
+        LOGGER.info("Starting bundler metrics collection (" 
+                + stats.getMode()
+                + ")...");
+        try {
+            lease = new LeaseCommitListener(
+                    getJDBCLeaseService(), 
+                    METRICS_LEASE_NAME, 
+                    stats.getRunID(), 
+                    config.getLeaseTTL() * 1000L);
+            if (mode == CollectionModeType.INCREMENTAL) {
+                collectIncremental(config, lease, stats);
+                if (lease.renew()) {
+                    collectRetries(config, lease, stats);
+                }
+            }
+            else if (mode == CollectionModeType.RECOLLECT) {
+                collectSince(since, config.getBatchSize(), lease, stats);
+            }
+            else {
+                collectAll(config, lease, stats);
+            }
+            if (!lease.isHeld()) {
+                LOGGER.error("Metrics collection run [ "
+                        + stats.getRunID()
+                        + " ] lost the collection lease.  The run was "
+                        + "stopped.");
+                stats.setState(CollectionRunStateType.ERROR);
+            }
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  Metrics collection operation will not be "
+                    + "performed.");
+            stats.setState(CollectionRunStateType.ERROR);
+        }
+        catch (RuntimeException re) {
+            LOGGER.error("Unexpected exception raised during metrics "
+                    + "collection.  Error message [ "
+                    + re.getMessage()
+                    + " ].");
+            stats.setState(CollectionRunStateType.ERROR);
+        }
+        finally {
+            if ((lease != null) && (lease.isHeld())) {
+                releaseLease(stats.getRunID());
+            }
+        }
+        
+        stats.complete();
+        recordHistory(stats);
+        LOGGER.info("Metrics collection completed.  Run statistics => [ "
+                + stats.toString()
+                + " ]");
+        return stats;
+    }
+    
+    /**
+     * Execute a collection run in the calling thread.  If a run is already
+     * in progress elsewhere in the cluster the trigger joins that run and 
+     * its statistics are returned instead.
+     * 
+     * @param mode The collection mode.
+     * @param since For <code>RECOLLECT</code> runs, jobs completed at or 
+     * after this time are processed.  Ignored otherwise.
+     * @return Statistics associated with the collection run.
+     */
+    private CollectionRunStatistics collect(
+            CollectionModeType mode, 
+            long               since) {
+        
+        CollectionRunStatistics stats = 
+                new CollectionRunStatistics(UUID.randomUUID().toString());
+        
+        try {
+            String holder = acquireLease(stats);
+            if (stats.getRunID().equals(holder)) {
+                getCollectionRunRegistry().register(stats);
+                collect(mode, since, stats);
+            }
+            else if (holder != null) {
+                joinPartitions(holder, mode == CollectionModeType.FULL);
+                stats = getJoinedRun(holder);
+            }
+            else {
+                stats.setState(CollectionRunStateType.ERROR);
+                stats.complete();
+            }
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  Metrics collection operation will not be "
+                    + "performed.");
+            stats.setState(CollectionRunStateType.ERROR);
+            stats.complete();
+        }
+        return stats;
+    }
+    
+    /**
+     * Public entry point starting the metrics collection process.  If 
+     * incremental collection is enabled only the jobs that completed after 
+     * the persisted checkpoint are processed.  Otherwise a full scan is 
+     * performed (see <code>reconcileMetrics()</code>).
+     * 
+     * @return Statistics associated with the collection run.
+     */
+    public CollectionRunStatistics collectMetrics() {
+        return collect(getDefaultMode(), 0L);
+    }
+    
+    /**
+     * Public entry point used to collect the metrics for a single job as 
+     * soon as it completes (e.g. in response to a job-completion 
+     * notification).  If the job already has a metrics record, or is not 
+     * yet in a terminal state, no record is written.
+     * 
+     * @param jobID The ID of the job to process.
+     * @return True if a metrics record was written for the job.
+     */
+    public boolean collectMetrics(String jobID) {
+        
+        boolean inserted = false;
+        long    start    = System.currentTimeMillis();
+        
+        if ((jobID != null) && (!jobID.isEmpty())) {
+            try {
+                if (!getJDBCJobMetricsService().jobIDExists(jobID)) {
+                    JobMetricsTask.Result result = new JobMetricsTask(
+                            getJDBCJobService(), jobID).call();
+                    if (result.getMetrics() != null) {
+                        Map<String, String> failures = 
+                                getJDBCJobMetricsService().insertAll(
+                                        Collections.singletonList(
+                                                result.getMetrics()));
+                        inserted = failures.isEmpty();
+                        recordLiveMetrics(
+                                Collections.singletonList(result.getMetrics()), 
+                                failures);
+                        if (!inserted) {
+                            LOGGER.error("Unable to insert metrics record for "
+                                    + "job ID [ "
+                                    + jobID
+                                    + " ].  Error message [ "
+                                    + failures.get(jobID)
+                                    + " ].");
+                            recordFailures(failures);
+                        }
+                    }
+                }
+                else if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Metrics record already exists for job ID [ "
+                            + jobID
+                            + " ].");
+                }
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unable to obtain a reference to [ "
+                        + ele.getEJBName()
+                        + " ].  Metrics will not be collected for job ID [ "
+                        + jobID
+                        + " ].");
+            }
+        }
+        
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Metrics collection for job ID [ "
+                    + jobID
+                    + " ] completed in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.  Record inserted [ "
+                    + inserted
+                    + " ].");
+        }
+        return inserted;
+    }
+    
+    /**
+     * Public entry point starting a full metrics collection run.  Every
+     * job without a metrics record is processed regardless of the 
+     * checkpoint.  If a concurrency greater than one is configured, and the
+     * container supplied a <code>ManagedExecutorService</code>, the 
+     * candidate jobs are processed in parallel.
+     * 
+     * @return Statistics associated with the collection run.
+     */
+    public CollectionRunStatistics reconcileMetrics() {
+        return collect(CollectionModeType.FULL, 0L);
+    }
+    
+    /**
+     * Public entry point refreshing the metrics of every job that completed
+     * at or after the input time.  Jobs that already have a metrics record
+     * have that record updated in place, so refreshing (for example) a 
+     * day's metrics is a single pass over that day's jobs.
+     * 
+     * @param since Jobs with an END_TIME at or after this time (in 
+     * milliseconds since the epoch) are processed.
+     * @return Statistics associated with the collection run.
+     */
+    public CollectionRunStatistics recollectMetrics(long since) {
+        return collect(CollectionModeType.RECOLLECT, since);
+    }
+    
+    /**
+     * Asynchronous entry point executing a collection run that was 
+     * registered by <code>startCollection()</code>.  This method must be 
+     * invoked through the container (i.e. via the business object) for the
+     * call to be asynchronous.
+     * 
+     * @param mode The collection mode.
+     * @param since For <code>RECOLLECT</code> runs, jobs completed at or 
+     * after this time are processed.  Ignored otherwise.
+     * @param stats The registered statistics for the run.
+     */
+    @Asynchronous
+    public void runCollection(
+            CollectionModeType      mode, 
+            long                    since, 
+            CollectionRunStatistics stats) {
+        collect(mode, since, stats);
+    }
+    
+    /**
+     * Asynchronous entry point used to participate in a partitioned run 
+     * that is led by another node.
+     * 
+     * @param runID The ID of the run to join.
+     */
+    @Asynchronous
+    public void joinCollection(String runID) {
+        joinPartitions(runID, true);
+    }
+    
+    /**
+     * Start a collection run in the background.  If the collection lease is
+     * acquired the run is registered with the run registry and its ID 
+     * returned immediately.  If a run is already in progress (on this or any
+     * other node) the ID of that run is returned instead.  If the 
+     * asynchronous invocation cannot be made the run is executed in the 
+     * calling thread.
+     * 
+     * @param mode The collection mode.
+     * @param since For <code>RECOLLECT</code> runs, jobs completed at or 
+     * after this time are processed.  Ignored otherwise.
+     * @return The ID of the run started (or joined), null if the run could
+     * not be started.
+     */
+    private String start(CollectionModeType mode, long since) {
+        
+        String                  runID = null;
+        CollectionRunStatistics stats = 
+                new CollectionRunStatistics(UUID.randomUUID().toString());
+        
+        try {
+            runID = acquireLease(stats);
+            if (stats.getRunID().equals(runID)) {
+                getCollectionRunRegistry().register(stats);
+                if (context != null) {
+                    context.getBusinessObject(JobMetricsCollector.class)
+                            .runCollection(mode, since, stats);
+                }
+                else {
+                    LOGGER.warn("SessionContext not injected by the "
+                            + "container.  Collection run [ "
+                            + runID
+                            + " ] will be executed synchronously.");
+                    collect(mode, since, stats);
+                }
+            }
+            else if ((runID != null) && 
+                    (mode == CollectionModeType.FULL) && 
+                    (context != null)) {
+                context.getBusinessObject(JobMetricsCollector.class)
+                        .joinCollection(runID);
+            }
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  Collection run will not be started.");
+        }
+        return runID;
+    }
+    
+    /**
+     * Public entry point starting a collection run in the background.  
+     * Progress can be obtained via <code>getCollectionRun()</code>.
+     * 
+     * @param full True if a full reconciliation run should be performed, 
+     * false if the configured (i.e. incremental) mode should be used.
+     * @return The ID of the run started (or joined), null if the run could
+     * not be started.
+     */
+    public String startCollection(boolean full) {
+        return start(full ? CollectionModeType.FULL : getDefaultMode(), 0L);
+    }
+    
+    /**
+     * Public entry point starting a re-collection run in the background.  
+     * Progress can be obtained via <code>getCollectionRun()</code>.
+     * 
+     * @param since Jobs with an END_TIME at or after this time (in 
+     * milliseconds since the epoch) are processed.
+     * @return The ID of the run started (or joined), null if the run could
+     * not be started.
+     */
+    public String startRecollection(long since) {
+        return start(CollectionModeType.RECOLLECT, since);
+    }
+    
+    /**
+     * Retrieve the progress of a collection run started by 
+     * <code>startCollection()</code>.  Detailed progress is only available
+     * on the node executing the run.  If the run is executing on another 
+     * node only its ID and state are reported.
+     * 
+     * @param runID The ID of the run.
+     * @return The run statistics, null if the run is not known.
+     */
+    public CollectionRunStatistics getCollectionRun(String runID) {
+        
+        CollectionRunStatistics stats = null;
+        
+        try {
+            stats = getCollectionRunRegistry().get(runID);
+            if ((stats == null) && (runID != null)) {
+                // The run may be executing on another node in the cluster.
+                CollectionLease lease = getJDBCLeaseService().getLease(
+                        METRICS_LEASE_NAME);
+                if ((lease != null) && (runID.equals(lease.getRunID()))) {
+                    stats = getJoinedRun(runID);
+                }
+            }
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unable to obtain a reference to [ "
+                    + ele.getEJBName()
+                    + " ].  Run [ "
+                    + runID
+                    + " ] cannot be retrieved.");
+        }
+        return stats;
     }
 }
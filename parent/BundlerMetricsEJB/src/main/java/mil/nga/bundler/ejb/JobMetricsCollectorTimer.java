@@ -1,73 +1,156 @@
 package mil.nga.bundler.ejb;
 
 import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.EJB;
-import javax.ejb.Schedule;
-import javax.ejb.Stateless;
+import javax.ejb.LocalBean;
+import javax.ejb.NoSuchObjectLocalException;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
 import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import mil.nga.bundler.CollectorConfig;
 import mil.nga.bundler.ejb.EJBClientUtilities;
 import mil.nga.bundler.ejb.exceptions.EJBLookupException;
 import mil.nga.bundler.ejb.interfaces.JobMetricsCollectorI;
+import mil.nga.bundler.model.CollectionRunStatistics;
+import mil.nga.bundler.model.CollectionSchedule;
+import mil.nga.bundler.types.CollectionRunStateType;
 
 /**
- * Timer Bean implemented to collect the bundler per-job metrics.  This timer 
- * will fire every hour at 15 minutes after the hour.
- * 
+ * Timer Bean implemented to collect the bundler per-job metrics.  Each 
+ * run uses the default collection mode (normally incremental, i.e. only 
+ * the jobs completed since the persisted checkpoint are collected).  An 
+ * incremental run cannot see a job that becomes visible after the 
+ * checkpoint has passed it, so once every reconciliation interval the 
+ * timer performs a full reconciliation run in its place.  The timer fires
+ * on every node in the cluster, but only the node that acquires the 
+ * collection lease performs the run.  The remaining nodes join the run 
+ * already in progress.
+ *
+ * The interval between runs is read from <code>bundler.properties</code>
+ * and may be changed at runtime via <code>setSchedule()</code>.  A runtime
+ * change only applies to the node that receives it and is lost when the 
+ * application restarts; to change the schedule permanently (or on every 
+ * node) update the properties file.  Rather
+ * than firing at a fixed minute of every hour, the first run on each node
+ * is scheduled at a random offset within the interval and each subsequent
+ * run is scheduled one interval after the previous run completes.  This
+ * spreads the collection load across the interval (and across the nodes)
+ * instead of producing a cluster-wide spike at the top of the hour.
+ *
+ * If the adaptive schedule is enabled the interval is halved (down to the
+ * configured minimum) whenever a run finds at least a full batch of work,
+ * and doubled (up to the configured maximum) whenever a run finds no work.
+ *
  * @author L. Craig Carpenter
  */
-@Stateless
+@Singleton
+@Startup
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class JobMetricsCollectorTimer {
 
     /**
      * Set up the Log4j system for use throughout the class
-     */        
+     */
     private static Logger LOGGER = LoggerFactory.getLogger(
             JobMetricsCollectorTimer.class);
-    
+
+    /**
+     * Info string attached to the timers created by this bean.
+     */
+    private static final String TIMER_INFO = "JobMetricsCollectorTimer";
+
+    /**
+     * Number of milliseconds in a minute.
+     */
+    private static final long MILLIS_PER_MINUTE = 60000L;
+
     /**
      * Container-injected reference to the CleanupService object.
      */
     @EJB
     JobMetricsCollectorI metricsCollector;
-    
+
+    /**
+     * Container-injected timer service.
+     */
+    @Resource
+    TimerService timerService;
+
     /**
      * String to use to output dates in String format for logging purposes.
      */
     private static final String DATE_STRING = "yyyy/MM/dd HH:mm:ss:SSS";
-    
+
+    /**
+     * Flag used to ensure a timeout that overlaps with a run already
+     * executing on this node does not start a second run.
+     */
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /**
+     * The current schedule settings (intervals in minutes).  Guarded by
+     * the bean monitor.
+     */
+    private boolean adaptive;
+    private int     baseInterval;
+    private int     currentInterval;
+    private String  lastRunID = "";
+    private int     maxInterval;
+    private int     minInterval;
+
+    /**
+     * The time at which this node last started a full reconciliation run
+     * (or started up).  Only accessed by the thread holding the 
+     * <code>running</code> flag.
+     */
+    private volatile long lastReconcile;
+
     /**
-     * Default eclipse-generated constructor. 
+     * Default eclipse-generated constructor.
      */
     public JobMetricsCollectorTimer() { }
-	
+
     /**
-     * Private method used to obtain a reference to the target EJB.  
-     * 
-     * @return Reference to the JobMetricsCollectorI interface, null if the 
+     * Private method used to obtain a reference to the target EJB.
+     *
+     * @return Reference to the JobMetricsCollectorI interface, null if the
      * interface could not be looked up.
      */
-    private JobMetricsCollectorI getJobMetricsCollector() 
+    private JobMetricsCollectorI getJobMetricsCollector()
             throws EJBLookupException {
-        
+
         if (metricsCollector == null) {
             LOGGER.warn("Application container failed to inject the "
                     + "reference to [ "
                     + JobMetricsCollectorI.class.getName()
                     + " ].  Attempting to "
                     + "look it up via JNDI.");
-            
-            
+
+
             metricsCollector = EJBClientUtilities
                     .getInstance()
                     .getJobMetricsCollector();
-            
+
             // If it's still null, throw an exception to prevent NPE later.
             if (metricsCollector == null) {
                 throw new EJBLookupException(
@@ -79,39 +162,274 @@ public class JobMetricsCollectorTimer {
         }
         return metricsCollector;
     }
-    
+
+    /**
+     * Load the schedule from the properties file and schedule the first
+     * run at a random offset within the interval.
+     */
+    @PostConstruct
+    public synchronized void initialize() {
+
+        CollectorConfig config = CollectorConfig.getInstance();
+
+        adaptive        = config.isScheduleAdaptive();
+        baseInterval    = config.getScheduleInterval();
+        minInterval     = Math.min(config.getScheduleMinInterval(), baseInterval);
+        maxInterval     = Math.max(config.getScheduleMaxInterval(), baseInterval);
+        currentInterval = baseInterval;
+        lastReconcile   = System.currentTimeMillis();
+
+        schedule(ThreadLocalRandom.current().nextLong(
+                baseInterval * MILLIS_PER_MINUTE));
+    }
+
+    /**
+     * Cancel any outstanding timers when the application is undeployed.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        cancel();
+    }
+
+    /**
+     * Cancel all outstanding timers created by this bean.
+     */
+    private void cancel() {
+        if (timerService != null) {
+            for (Timer timer : timerService.getTimers()) {
+                try {
+                    timer.cancel();
+                }
+                catch (NoSuchObjectLocalException nsole) {
+                    // The timer expired or was cancelled concurrently.
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace any outstanding timer with one that fires after the input
+     * delay.  Timers are not persistent.  The schedule is re-established
+     * from the properties file each time the application starts.
+     *
+     * @param delay The delay (in milliseconds) before the next run.
+     */
+    private void schedule(long delay) {
+        if (timerService != null) {
+            cancel();
+            timerService.createSingleActionTimer(
+                    delay,
+                    new TimerConfig(TIMER_INFO, false));
+            if (LOGGER.isDebugEnabled()) {
+                DateFormat df = new SimpleDateFormat(DATE_STRING);
+                LOGGER.debug("Next metrics collection run scheduled for [ "
+                        + df.format(new Date(System.currentTimeMillis() + delay))
+                        + " ].");
+            }
+        }
+        else {
+            LOGGER.error("TimerService not injected by the container.  "
+                    + "Scheduled metrics collection is disabled.");
+        }
+    }
+
+    /**
+     * Calculate the interval to use after the input run.  The interval is
+     * only adjusted for runs executed (rather than joined) by this node.
+     *
+     * @param stats The statistics for the completed run.
+     * @param batchSize The number of jobs in a full batch.
+     * @return The interval (in minutes) to use before the next run.
+     */
+    private int getNextInterval(CollectionRunStatistics stats, int batchSize) {
+
+        int interval = currentInterval;
+
+        if (!adaptive) {
+            interval = baseInterval;
+        }
+        else if ((stats != null) &&
+                (stats.getState() == CollectionRunStateType.COMPLETE)) {
+            if (stats.getJobsDiscovered() >= batchSize) {
+                interval = Math.max(currentInterval / 2, minInterval);
+            }
+            else if (stats.getJobsDiscovered() == 0) {
+                interval = Math.min(currentInterval * 2, maxInterval);
+            }
+        }
+        if (interval != currentInterval) {
+            LOGGER.info("Metrics collection interval changed from [ "
+                    + currentInterval
+                    + " ] to [ "
+                    + interval
+                    + " ] minutes.");
+        }
+        return interval;
+    }
+
+    /**
+     * Build an object describing the current schedule.
+     *
+     * @return The current schedule.
+     */
+    public synchronized CollectionSchedule getSchedule() {
+
+        long nextTimeout = 0L;
+
+        if (timerService != null) {
+            for (Timer timer : timerService.getTimers()) {
+                try {
+                    nextTimeout = timer.getNextTimeout().getTime();
+                }
+                catch (NoSuchObjectLocalException nsole) {
+                    // The timer expired or was cancelled concurrently.
+                }
+            }
+        }
+        return new CollectionSchedule.CollectionScheduleBuilder()
+                    .adaptive(adaptive)
+                    .baseInterval(baseInterval)
+                    .currentInterval(currentInterval)
+                    .lastRunID(lastRunID)
+                    .maxInterval(maxInterval)
+                    .minInterval(minInterval)
+                    .nextTimeout(nextTimeout)
+                    .node(EJBClientUtilities.getInstance().getNodeName())
+                    .build();
+    }
+
+    /**
+     * Change the schedule at runtime.  The new interval takes effect
+     * immediately (i.e. the next run is scheduled one new interval from
+     * now).  The change applies to this node only and is not persisted:
+     * the other nodes keep their own schedules, and this node reverts to 
+     * the values in <code>bundler.properties</code> when it restarts.
+     *
+     * @param interval The interval between runs in minutes (values less
+     * than one leave the interval unchanged).
+     * @param adaptiveValue True if the interval should adapt to the
+     * backlog, null to leave the setting unchanged.
+     * @return The updated schedule.
+     */
+    public synchronized CollectionSchedule setSchedule(
+            int     interval,
+            Boolean adaptiveValue) {
+
+        if (interval > 0) {
+            baseInterval = interval;
+            minInterval  = Math.min(minInterval, baseInterval);
+            maxInterval  = Math.max(maxInterval, baseInterval);
+        }
+        if (adaptiveValue != null) {
+            adaptive = adaptiveValue.booleanValue();
+        }
+        currentInterval = baseInterval;
+        schedule(currentInterval * MILLIS_PER_MINUTE);
+
+        CollectionSchedule schedule = getSchedule();
+        LOGGER.info("Metrics collection schedule changed => [ "
+                + schedule.toString()
+                + " ]");
+        return schedule;
+    }
+
     /**
      * Entry point called by the application container to collect job
-     * metrics.  
-     * 
-     * Execute the timer once an hour at the 15-minute mark.
-     * 
+     * metrics.  A full reconciliation run is performed in place of the 
+     * default run once the reconciliation interval has elapsed since the 
+     * previous one.  The next run is scheduled once this run completes, so runs
+     * started by the timer never overlap on a single node.  The next run 
+     * is scheduled regardless of how this run ends, as the container 
+     * retries a failed single-action timeout at most once.  The run does 
+     * not execute within a container transaction (the collector manages 
+     * its own non-JTA transactions), so a long run can neither hit the 
+     * transaction timeout nor roll back the creation of the next timer.
+     *
      * @param t Container injected Timer object.
      */
-	@SuppressWarnings("unused")
-    @Schedule(second="0", minute="15", hour="*", dayOfWeek="*",
-    dayOfMonth="*", month="*", year="*", info="JobMetricsCollectorTimer")
-    private void scheduledTimeout(final Timer t) {
-	    
-	    DateFormat df = new SimpleDateFormat(DATE_STRING);
-        
-	    LOGGER.info("JobMetricsCollectorTimer launched at [ "
-                + df.format(new Date(System.currentTimeMillis()))
-                + " ].");
-	    
-	    try {
-	        getJobMetricsCollector().collectMetrics(); 
+    @Timeout
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void timeout(final Timer t) {
+
+	    DateFormat              df    = new SimpleDateFormat(DATE_STRING);
+	    CollectionRunStatistics stats = null;
+
+	    if (running.compareAndSet(false, true)) {
+	        LOGGER.info("JobMetricsCollectorTimer launched at [ "
+	                + df.format(new Date(System.currentTimeMillis()))
+	                + " ].");
+	        try {
+	            if (isReconcileDue()) {
+	                LOGGER.info("Performing periodic full reconciliation "
+	                        + "run.");
+	                lastReconcile = System.currentTimeMillis();
+	                stats = getJobMetricsCollector().reconcileMetrics();
+	            }
+	            else {
+	                stats = getJobMetricsCollector().collectMetrics();
+	            }
+	        }
+	        catch (EJBLookupException ele) {
+	            LOGGER.error("Unable to obtain a reference to [ "
+	                    + ele.getEJBName()
+	                    + " ].  Metrics collection operation will not be "
+	                    + "performed.");
+	        }
+	        catch (RuntimeException re) {
+	            // Includes EJBException raised by the container.
+	            LOGGER.error("Unexpected exception raised during scheduled "
+	                    + "metrics collection.  Error message [ "
+	                    + re.getMessage()
+	                    + " ].");
+	        }
+	        finally {
+	            running.set(false);
+	            reschedule(stats);
+	        }
+	        LOGGER.info("JobMetricsCollectorTimer complete at [ "
+	                + df.format(new Date(System.currentTimeMillis()))
+	                + " ].");
 	    }
-	    catch (EJBLookupException ele) {
-	        LOGGER.error("Unable to obtain a reference to [ "
-	                + ele.getEJBName()
-	                + " ].  Metrics collection operation will not be "
-	                + "performed.");
+	    else {
+	        LOGGER.info("Metrics collection run already executing on this "
+	                + "node.  Timeout ignored.");
 	    }
-	    
-	    LOGGER.info("JobMetricsCollectorTimer complete at [ "
-	                    + df.format(new Date(System.currentTimeMillis()))
-	                    + " ].");
+    }
+
+    /**
+     * Determine whether the reconciliation interval has elapsed since the 
+     * previous full reconciliation run.
+     *
+     * @return True if the next run should be a full reconciliation run.
+     */
+    private boolean isReconcileDue() {
+        int interval = CollectorConfig.getInstance().getReconcileInterval();
+        return (interval > 0) && 
+               (System.currentTimeMillis() - lastReconcile >= 
+                    interval * 60L * MILLIS_PER_MINUTE);
+    }
 
+    /**
+     * Schedule the run following the input run.
+     *
+     * @param stats The statistics for the completed run (null if the run
+     * could not be performed).
+     */
+    private synchronized void reschedule(CollectionRunStatistics stats) {
+        try {
+            if (stats != null) {
+                lastRunID = stats.getRunID();
+            }
+            currentInterval = getNextInterval(
+                    stats,
+                    CollectorConfig.getInstance().getBatchSize());
+            schedule(currentInterval * MILLIS_PER_MINUTE);
+        }
+        catch (RuntimeException re) {
+            LOGGER.error("Unable to schedule the next metrics collection "
+                    + "run.  Error message [ "
+                    + re.getMessage()
+                    + " ].");
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,241 @@
+package mil.nga.bundler.ejb;
+
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.ejb.jdbc.JDBCJobService;
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.JobSummary;
+import mil.nga.bundler.types.JobStateType;
+
+/**
+ * Unit of work used by the metrics collector.  Each task loads the summary
+ * information for a single job and, if the job has reached a terminal
+ * state, builds the associated metrics record.  Tasks may be executed
+ * directly by the calling thread or submitted to a container-managed
+ * executor.
+ *
+ * @author L. Craig Carpenter
+ */
+public class JobMetricsTask implements Callable<JobMetricsTask.Result> {
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JobMetricsTask.class);
+
+    /**
+     * The job ID to process.
+     */
+    private final String jobID;
+
+    /**
+     * Reference to the JDBCJobService session bean.
+     */
+    private final JDBCJobService jobService;
+
+    /**
+     * Constructor.
+     *
+     * @param jobService Reference to the JDBCJobService session bean.
+     * @param jobID The job ID to process.
+     */
+    public JobMetricsTask(JDBCJobService jobService, String jobID) {
+        this.jobService = jobService;
+        this.jobID      = jobID;
+    }
+
+    /**
+     * Calculate the compression percentage.
+     *
+     * @param totalSize The total size of the job.
+     * @param compressedSize The compressed size of the job.
+     * @return The amount of compression achieved.
+     */
+    private static double getCompressionPercentage(
+            long totalSize,
+            long compressedSize) {
+        double ratio = 0.0;
+        if (totalSize > 0) {
+            if (compressedSize > 0) {
+                ratio = (double)(totalSize - compressedSize) /
+                        (double)totalSize;
+            }
+        }
+        return ratio;
+    }
+
+    /**
+     * Calculate the amount of time in milliseconds that the target Job
+     * object required to complete.
+     *
+     * @param job The target Job.
+     * @return The elapsed time (in milliseconds)
+     */
+    private static long getElapsedTime(JobSummary job) {
+        long elapsedTime = 0;
+        if (job != null) {
+            elapsedTime = job.getEndTime() - job.getStartTime();
+        }
+        return elapsedTime;
+    }
+
+    /**
+     * Build the metrics for a target job.  The total compressed size is the
+     * summation of the compressed size of each individual archive which is
+     * calculated by the database when the job summary is loaded.
+     *
+     * @param job The target job summary.
+     * @return Metrics collected for the target job.
+     */
+    public static BundlerJobMetrics getJobMetrics(JobSummary job) {
+        return new BundlerJobMetrics.BundlerJobMetricsBuilder()
+                .archiveSize(job.getArchiveSize())
+                .archiveType(job.getArchiveType())
+                .compressionPercentage(getCompressionPercentage(
+                        job.getTotalSize(),
+                        job.getTotalCompressedSize()))
+                .elapsedTime(getElapsedTime(job))
+                .jobID(job.getJobID())
+                .jobState(job.getState())
+                .numArchives(job.getNumArchives())
+                .numArchivesComplete(job.getNumArchivesComplete())
+                .numFiles(job.getNumFiles())
+                .numFilesComplete(job.getNumFilesComplete())
+                .startTime(job.getStartTime())
+                .totalCompressedSize(job.getTotalCompressedSize())
+                .totalSize(job.getTotalSize())
+                .userName(job.getUserName())
+                .build();
+    }
+
+    /**
+     * Determine whether the input job is in a "completed" state.
+     *
+     * @param job The target job summary.
+     * @return True if the job has finished processing.
+     */
+    public static boolean isTerminal(JobSummary job) {
+        return (job.getState() == JobStateType.COMPLETE) ||
+               (job.getState() == JobStateType.ERROR) ||
+               (job.getState() == JobStateType.INVALID_REQUEST);
+    }
+
+    /**
+     * Load the target job and build the associated metrics record.
+     *
+     * @return The result of processing the job.  The metrics contained in
+     * the result will be null if the job could not be found or is not in a
+     * terminal state.
+     */
+    @Override
+    public Result call() {
+
+        long              compute = 0L;
+        BundlerJobMetrics metrics = null;
+        long              start   = System.currentTimeMillis();
+
+        JobSummary job = jobService.getJobSummary(jobID);
+        if (job != null) {
+            if (isTerminal(job)) {
+                long computeStart = System.currentTimeMillis();
+                metrics = getJobMetrics(job);
+                compute = System.currentTimeMillis() - computeStart;
+            }
+            else if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Job ID [ "
+                        + jobID
+                        + " ] is in state [ "
+                        + job.getState()
+                        + " ].  Metrics will not be collected.");
+            }
+        }
+        else {
+            LOGGER.warn("Unable to find a job matching job ID [ "
+                    + jobID
+                    + " ].  Job object returned was null.");
+        }
+        return new Result(
+                jobID,
+                metrics,
+                System.currentTimeMillis() - start,
+                compute);
+    }
+
+    /**
+     * Simple container object holding the output of a single task.
+     */
+    public static class Result {
+
+        private final long              computeTime;
+        private final long              latency;
+        private final String            jobID;
+        private final BundlerJobMetrics metrics;
+
+        /**
+         * Constructor.
+         *
+         * @param jobID The job ID processed.
+         * @param metrics The metrics record (may be null).
+         * @param latency Time required to process the job.
+         */
+        public Result(String jobID, BundlerJobMetrics metrics, long latency) {
+            this(jobID, metrics, latency, 0L);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param jobID The job ID processed.
+         * @param metrics The metrics record (may be null).
+         * @param latency Time required to process the job.
+         * @param computeTime The portion of the latency spent building the
+         * metrics record (the remainder was spent loading the job).
+         */
+        public Result(
+                String            jobID, 
+                BundlerJobMetrics metrics, 
+                long              latency, 
+                long              computeTime) {
+            this.jobID       = jobID;
+            this.metrics     = metrics;
+            this.latency     = latency;
+            this.computeTime = computeTime;
+        }
+
+        /**
+         * Getter method for the time spent building the metrics record.
+         * @return The compute time in milliseconds.
+         */
+        public long getComputeTime() {
+            return computeTime;
+        }
+
+        /**
+         * Getter method for the job ID processed.
+         * @return The job ID.
+         */
+        public String getJobID() {
+            return jobID;
+        }
+
+        /**
+         * Getter method for the time required to load and process the job.
+         * @return The latency in milliseconds.
+         */
+        public long getLatency() {
+            return latency;
+        }
+
+        /**
+         * Getter method for the metrics record built for the job.
+         * @return The metrics record, null if no record should be written.
+         */
+        public BundlerJobMetrics getMetrics() {
+            return metrics;
+        }
+    }
+}
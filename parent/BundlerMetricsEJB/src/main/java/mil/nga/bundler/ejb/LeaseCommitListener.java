@@ -0,0 +1,72 @@
+package mil.nga.bundler.ejb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import mil.nga.bundler.ejb.jdbc.JDBCLeaseService;
+
+/**
+ * Commit listener used to ensure that metrics records are only committed 
+ * while the collection run holds the cluster-wide collection lease.
+ *
+ * @author L. Craig Carpenter
+ */
+public class LeaseCommitListener extends RenewableCommitListener {
+
+    /**
+     * Reference to the JDBCLeaseService session bean.
+     */
+    private final JDBCLeaseService leaseService;
+
+    /**
+     * The name of the lease.
+     */
+    private final String name;
+
+    /**
+     * The ID of the run holding the lease.
+     */
+    private final String runID;
+
+    /**
+     * Constructor.
+     *
+     * @param leaseService Reference to the JDBCLeaseService bean.
+     * @param name The name of the lease.
+     * @param runID The ID of the run holding the lease.
+     * @param ttl The lease time-to-live in milliseconds.
+     */
+    public LeaseCommitListener(
+            JDBCLeaseService leaseService,
+            String           name,
+            String           runID,
+            long             ttl) {
+        super(ttl);
+        this.leaseService = leaseService;
+        this.name         = name;
+        this.runID        = runID;
+    }
+
+    @Override
+    protected boolean extend(Connection conn) throws SQLException {
+        return leaseService.renew(conn, name, runID, ttl);
+    }
+
+    @Override
+    protected boolean extend() {
+        return leaseService.renew(name, runID, ttl);
+    }
+
+    @Override
+    protected String getDescription() {
+        return "Lease [ " + name + " ] for run [ " + runID + " ]";
+    }
+
+    /**
+     * Getter method for the ID of the run holding the lease.
+     * @return The run ID.
+     */
+    public String getRunID() {
+        return runID;
+    }
+}
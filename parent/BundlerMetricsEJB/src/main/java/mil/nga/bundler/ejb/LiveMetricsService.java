@@ -0,0 +1,124 @@
+package mil.nga.bundler.ejb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.MetricsWindow;
+import mil.nga.bundler.stats.SlidingWindow;
+import mil.nga.bundler.types.JobStateType;
+
+/**
+ * In-memory live view of the jobs recently recorded by the collector over
+ * the last five minutes, hour and day.  The collector feeds each metrics
+ * record it inserts to this bean, and the status endpoints read from it,
+ * so they can be polled frequently without querying the database.
+ *
+ * Jobs are placed in the windows by the time they completed (i.e. their
+ * start time plus elapsed time) rather than the time they were collected,
+ * so historical jobs picked up by a full collection run do not appear as
+ * live activity.  The windows are local to each node and are empty after
+ * a restart.  Each node only sees the jobs its own collector inserted, so
+ * behind a load balancer successive polls may return different, partial
+ * views.  Every snapshot is labelled with the node it was taken on.
+ *
+ * @author L. Craig Carpenter
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class LiveMetricsService {
+
+    /**
+     * The live windows: 5 minutes of 5 second slots, 1 hour of 1 minute
+     * slots and 24 hours of 15 minute slots.
+     */
+    private final SlidingWindow[] windows = {
+            new SlidingWindow("5m",  5000L,   60),
+            new SlidingWindow("1h",  60000L,  60),
+            new SlidingWindow("24h", 900000L, 96) };
+
+    /**
+     * The name of this node (<code>server@host</code>), used to label the
+     * snapshots.
+     */
+    private final String node =
+            EJBClientUtilities.getInstance().getNodeName();
+
+    /**
+     * Default constructor.
+     */
+    public LiveMetricsService() { }
+
+    /**
+     * Add a single metrics record to each of the live windows.
+     *
+     * @param metrics The metrics record.
+     */
+    public void record(BundlerJobMetrics metrics) {
+        if (metrics != null) {
+            long    now       = System.currentTimeMillis();
+            long    completed = Math.min(
+                    metrics.getStartTime() + metrics.getElapsedTime(), now);
+            boolean error     =
+                    (metrics.getJobState() == JobStateType.ERROR);
+            for (SlidingWindow window : windows) {
+                if (completed > now - window.getLength()) {
+                    window.record(
+                            completed,
+                            metrics.getTotalSize(),
+                            metrics.getElapsedTime(),
+                            error);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a list of metrics records to each of the live windows.
+     *
+     * @param metrics The metrics records.
+     */
+    public void record(List<BundlerJobMetrics> metrics) {
+        if (metrics != null) {
+            for (BundlerJobMetrics record : metrics) {
+                record(record);
+            }
+        }
+    }
+
+    /**
+     * Take a snapshot of the named window.
+     *
+     * @param name The window name (5m, 1h or 24h).
+     * @return The snapshot, or null if no window has the input name.
+     */
+    public MetricsWindow getWindow(String name) {
+        MetricsWindow snapshot = null;
+        for (SlidingWindow window : windows) {
+            if (window.getName().equalsIgnoreCase(name)) {
+                snapshot = window.snapshot(System.currentTimeMillis(), node);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Take a snapshot of every window.
+     *
+     * @return The snapshots, shortest window first.
+     */
+    public List<MetricsWindow> getWindows() {
+        long                now       = System.currentTimeMillis();
+        List<MetricsWindow> snapshots = new ArrayList<MetricsWindow>();
+        for (SlidingWindow window : windows) {
+            snapshots.add(window.snapshot(now, node));
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,65 @@
+package mil.nga.bundler.ejb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import mil.nga.bundler.ejb.jdbc.JDBCPartitionService;
+import mil.nga.bundler.model.CollectionPartition;
+
+/**
+ * Commit listener used to ensure that metrics records are only committed 
+ * while this node holds the claim on the partition being processed.
+ *
+ * @author L. Craig Carpenter
+ */
+public class PartitionCommitListener extends RenewableCommitListener {
+
+    /**
+     * Reference to the JDBCPartitionService session bean.
+     */
+    private final JDBCPartitionService partitionService;
+
+    /**
+     * The claimed partition.
+     */
+    private final CollectionPartition partition;
+
+    /**
+     * Constructor.
+     *
+     * @param partitionService Reference to the JDBCPartitionService bean.
+     * @param partition The claimed partition.
+     * @param ttl The claim time-to-live in milliseconds.
+     */
+    public PartitionCommitListener(
+            JDBCPartitionService partitionService,
+            CollectionPartition  partition,
+            long                 ttl) {
+        super(ttl);
+        this.partitionService = partitionService;
+        this.partition        = partition;
+    }
+
+    @Override
+    protected boolean extend(Connection conn) throws SQLException {
+        return partitionService.renew(conn, partition, ttl);
+    }
+
+    @Override
+    protected boolean extend() {
+        return partitionService.renew(partition, ttl);
+    }
+
+    @Override
+    protected String getDescription() {
+        return "Claim on partition [ " + partition.getKey() + " ]";
+    }
+
+    /**
+     * Getter method for the claimed partition.
+     * @return The claimed partition.
+     */
+    public CollectionPartition getPartition() {
+        return partition;
+    }
+}
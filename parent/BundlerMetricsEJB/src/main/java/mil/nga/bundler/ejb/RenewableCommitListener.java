@@ -0,0 +1,136 @@
+package mil.nga.bundler.ejb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import mil.nga.bundler.ejb.exceptions.ClaimLostException;
+import mil.nga.bundler.ejb.interfaces.BatchCommitListenerI;
+import mil.nga.bundler.model.BundlerJobMetrics;
+
+/**
+ * Base class for commit listeners that ensure metrics records are only 
+ * committed while the collector holds a time-limited claim on the work 
+ * (i.e. the collection lease or a partition claim).  The claim is renewed
+ * in the same transaction as each batch.  If the claim has been taken over
+ * by another node (i.e. this node stalled for longer than the claim 
+ * time-to-live) the batch is rolled back and the collector stops at the
+ * next opportunity.  An optional delegate listener (e.g. the checkpoint 
+ * listener) is invoked once the claim has been verified.
+ *
+ * @author L. Craig Carpenter
+ */
+public abstract class RenewableCommitListener implements BatchCommitListenerI {
+
+    /**
+     * The claim time-to-live in milliseconds.
+     */
+    protected final long ttl;
+
+    /**
+     * Optional listener invoked after the claim has been verified.
+     */
+    private BatchCommitListenerI delegate = null;
+
+    /**
+     * Whether or not the claim is still held.
+     */
+    private volatile boolean held = true;
+
+    /**
+     * The time the claim was last renewed.
+     */
+    private volatile long lastRenewal = System.currentTimeMillis();
+
+    /**
+     * Constructor.
+     *
+     * @param ttl The claim time-to-live in milliseconds.
+     */
+    protected RenewableCommitListener(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Extend the claim using the connection (and transaction) supplied by
+     * the caller.
+     *
+     * @param conn Connection (with auto-commit disabled) owned by the caller.
+     * @return True if the claim is still held.
+     * @throws SQLException Thrown if the claim could not be updated.
+     */
+    protected abstract boolean extend(Connection conn) throws SQLException;
+
+    /**
+     * Extend the claim in its own transaction.
+     *
+     * @return True if the claim is still held.
+     */
+    protected abstract boolean extend();
+
+    /**
+     * Getter method for a description of the claim used in error messages.
+     *
+     * @return Description of the claim.
+     */
+    protected abstract String getDescription();
+
+    /**
+     * Verify and extend the claim before the batch is committed, then 
+     * invoke the delegate listener (if any).
+     * 
+     * @throws ClaimLostException Thrown if the claim is no longer held, 
+     * causing the batch to be rolled back.
+     * @throws SQLException Thrown if the claim could not be renewed.
+     */
+    @Override
+    public void beforeCommit(
+            Connection conn,
+            List<BundlerJobMetrics> committed) throws SQLException {
+        if ((!held) || (!extend(conn))) {
+            held = false;
+            throw new ClaimLostException(getDescription() 
+                    + " is no longer held.");
+        }
+        lastRenewal = System.currentTimeMillis();
+        if (delegate != null) {
+            delegate.beforeCommit(conn, committed);
+        }
+    }
+
+    /**
+     * Determine whether the claim is still held.
+     * @return True if the claim is held.
+     */
+    public boolean isHeld() {
+        return held;
+    }
+
+    /**
+     * Extend the claim if a third of the time-to-live has elapsed since it
+     * was last renewed.  This is called between units of work so the claim
+     * does not expire while the collector is loading jobs.  If the delegate
+     * listener is also renewable it is renewed as well.
+     *
+     * @return True if the claim is still held.
+     */
+    public boolean renew() {
+        long now = System.currentTimeMillis();
+        if ((held) && ((now - lastRenewal) >= (ttl / 3))) {
+            held        = extend();
+            lastRenewal = now;
+        }
+        if ((held) && (delegate instanceof RenewableCommitListener)) {
+            held = ((RenewableCommitListener)delegate).renew();
+        }
+        return held;
+    }
+
+    /**
+     * Setter method for the listener invoked after the claim is verified.
+     * @param value The delegate listener (may be null).
+     */
+    public void setDelegate(BatchCommitListenerI value) {
+        delegate = value;
+    }
+}
@@ -0,0 +1,446 @@
+package mil.nga.bundler.ejb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.ejb.exceptions.EJBLookupException;
+import mil.nga.bundler.ejb.jdbc.JDBCTopUserService;
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.MetricsTopUser;
+import mil.nga.bundler.stats.SpaceSaving;
+import mil.nga.bundler.types.TopUserMeasureType;
+
+/**
+ * Tracks the heaviest users by bytes bundled, job count and elapsed
+ * (bundling) time for the current and previous day using Space-Saving
+ * summaries with a fixed number of counters, so memory does not depend on
+ * the number of distinct users.  The collector feeds each metrics record
+ * it inserts to this bean, placing the job in the day it completed.  Jobs
+ * that completed before the previous day are ignored.
+ *
+ * Each node saves its summaries to <code>BUNDLER_METRICS_TOP_USER</code>
+ * every five minutes (and on shutdown), restores them after a restart, and
+ * merges the summaries saved by every node when a day is queried.  The
+ * database is never accessed while the bean monitor is held.
+ *
+ * @author L. Craig Carpenter
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class TopUserTracker {
+
+    /**
+     * The number of counters maintained per measure per day.  Any user
+     * accounting for more than 1/CAPACITY of the day's total is
+     * guaranteed to be tracked.
+     */
+    public static final int CAPACITY = 200;
+
+    /**
+     * Number of milliseconds in a day.
+     */
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            TopUserTracker.class);
+
+    /**
+     * Container-injected EJB reference.
+     */
+    @EJB
+    JDBCTopUserService topUserService;
+
+    /**
+     * The name of this node (<code>server@host</code>).  The host name 
+     * alone would let two servers on the same host overwrite each other's
+     * snapshots.
+     */
+    private final String hostName = 
+            EJBClientUtilities.getInstance().getNodeName();
+
+    /**
+     * The summaries (indexed by measure ordinal) by start of day.  Guarded
+     * by the bean monitor.
+     */
+    private final Map<Long, SpaceSaving[]> days = new TreeMap<Long, SpaceSaving[]>();
+
+    /**
+     * The days modified since the last save.  Guarded by the bean monitor.
+     */
+    private final Set<Long> dirty = new TreeSet<Long>();
+
+    /**
+     * Default constructor.
+     */
+    public TopUserTracker() { }
+
+    /**
+     * Private method used to obtain a reference to the target EJB.  The
+     * summaries are still maintained in memory if it cannot be obtained,
+     * so null is returned rather than an exception.
+     * @return Reference to the JDBCTopUserService EJB, or null.
+     */
+    private JDBCTopUserService getJDBCTopUserService() {
+
+        if (topUserService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCTopUserService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            try {
+                topUserService = EJBClientUtilities
+                        .getInstance()
+                        .getJDBCTopUserService();
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.warn("Unable to obtain a reference to [ "
+                        + ele.getEJBName()
+                        + " ].  Top user summaries will not be saved.");
+            }
+        }
+        return topUserService;
+    }
+
+    /**
+     * Add a list of metrics records to the summaries.  The summaries saved
+     * by this node are restored (outside the bean monitor) the first time
+     * a day is used.  The summaries are saved by <code>snapshot()</code>, 
+     * never by the caller's thread.
+     *
+     * @param metrics The metrics records.
+     */
+    public void record(List<BundlerJobMetrics> metrics) {
+        if (metrics != null) {
+            long      now    = System.currentTimeMillis();
+            long      oldest = getDayStart(now) - MILLIS_PER_DAY;
+            Set<Long> used   = new TreeSet<Long>();
+            for (BundlerJobMetrics record : metrics) {
+                if ((record != null) && (record.getUserName() != null)) {
+                    long day = getDay(record, now);
+                    if (day >= oldest) {
+                        used.add(day);
+                    }
+                }
+            }
+            restore(used);
+            synchronized (this) {
+                for (BundlerJobMetrics record : metrics) {
+                    if ((record != null) && (record.getUserName() != null)) {
+                        long day = getDay(record, now);
+                        if (day >= oldest) {
+                            SpaceSaving[] summaries = getSummaries(day);
+                            summaries[TopUserMeasureType.BYTES.ordinal()].add(
+                                    record.getUserName(),
+                                    record.getTotalSize());
+                            summaries[TopUserMeasureType.JOBS.ordinal()].add(
+                                    record.getUserName(),
+                                    1L);
+                            summaries[TopUserMeasureType.ELAPSED_TIME.ordinal()].add(
+                                    record.getUserName(),
+                                    record.getElapsedTime());
+                            dirty.add(day);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the heaviest users for the current day as seen by this node.
+     * This does not touch the database.
+     *
+     * @param measure The measure by which to rank the users.
+     * @param limit The maximum number of users to return.
+     * @return The heaviest users in descending order.
+     */
+    public synchronized List<MetricsTopUser> getLiveTopUsers(
+            TopUserMeasureType measure,
+            int                limit) {
+        long                 today     = getDayStart(System.currentTimeMillis());
+        List<MetricsTopUser> topUsers  = new ArrayList<MetricsTopUser>();
+        SpaceSaving[]        summaries = days.get(today);
+        if (summaries != null) {
+            topUsers = getRecords(
+                    today,
+                    measure,
+                    hostName,
+                    summaries[measure.ordinal()],
+                    limit);
+        }
+        return topUsers;
+    }
+
+    /**
+     * Get the heaviest users for the input day by merging the summaries
+     * saved by every node.  The summary held in memory is used in place of
+     * the saved summary of this node, if available.
+     *
+     * @param dayStart The start of the day.
+     * @param measure The measure by which to rank the users.
+     * @param limit The maximum number of users to return.
+     * @return The heaviest users in descending order.
+     */
+    public List<MetricsTopUser> getTopUsers(
+            long               dayStart,
+            TopUserMeasureType measure,
+            int                limit) {
+
+        Map<String, SpaceSaving> hosts   = new TreeMap<String, SpaceSaving>();
+        SpaceSaving              merged  = new SpaceSaving(CAPACITY);
+        JDBCTopUserService       service = getJDBCTopUserService();
+        boolean                  held    = false;
+
+        synchronized (this) {
+            SpaceSaving[] summaries = days.get(dayStart);
+            if (summaries != null) {
+                merged.merge(summaries[measure.ordinal()]);
+                held = true;
+            }
+        }
+        if (service != null) {
+            for (MetricsTopUser counter :
+                    service.getTopUsers(dayStart, measure, null)) {
+                if ((!held) || (!hostName.equals(counter.getHostName()))) {
+                    SpaceSaving summary = hosts.get(counter.getHostName());
+                    if (summary == null) {
+                        summary = new SpaceSaving(
+                                CAPACITY,
+                                counter.getTotal(),
+                                counter.getFloor());
+                        hosts.put(counter.getHostName(), summary);
+                    }
+                    summary.restore(
+                            counter.getUserName(),
+                            counter.getEstimate(),
+                            counter.getError());
+                }
+            }
+        }
+        for (SpaceSaving summary : hosts.values()) {
+            merged.merge(summary);
+        }
+        return getRecords(dayStart, measure, null, merged, limit);
+    }
+
+    /**
+     * Save the summaries modified since the last save and discard those
+     * older than the previous day.  Runs every five minutes on a 
+     * non-persistent schedule so the database work is never performed on
+     * the collector's thread.  The bean monitor is only held while the 
+     * summaries are copied.
+     */
+    @Schedule(minute="*/5", hour="*", persistent=false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void snapshot() {
+
+        Map<Long, List<MetricsTopUser>> pending =
+                new TreeMap<Long, List<MetricsTopUser>>();
+        long                            oldest  =
+                getDayStart(System.currentTimeMillis()) - MILLIS_PER_DAY;
+        JDBCTopUserService              service = getJDBCTopUserService();
+
+        synchronized (this) {
+            if (service != null) {
+                for (Long day : dirty) {
+                    List<MetricsTopUser> counters = new ArrayList<MetricsTopUser>();
+                    for (TopUserMeasureType measure : TopUserMeasureType.values()) {
+                        counters.addAll(getRecords(
+                                day,
+                                measure,
+                                hostName,
+                                days.get(day)[measure.ordinal()],
+                                CAPACITY));
+                    }
+                    pending.put(day, counters);
+                }
+                dirty.clear();
+            }
+            Iterator<Long> it = days.keySet().iterator();
+            while (it.hasNext()) {
+                if (it.next() < oldest) {
+                    it.remove();
+                }
+            }
+        }
+
+        for (Map.Entry<Long, List<MetricsTopUser>> entry : pending.entrySet()) {
+            if (!service.replace(entry.getKey(), hostName, entry.getValue())) {
+                synchronized (this) {
+                    if (days.containsKey(entry.getKey())) {
+                        dirty.add(entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Save the summaries before the bean is destroyed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+
+    /**
+     * Restore the summaries saved by this node (e.g. before a restart) for
+     * any of the input days not yet held in memory.  The database is read
+     * without holding the bean monitor, so readers and other writers are
+     * not blocked.  If two threads restore the same day, the first to 
+     * finish is kept.
+     *
+     * @param used The start of each day about to be used.
+     */
+    private void restore(Set<Long> used) {
+        for (Long day : used) {
+            boolean held;
+            synchronized (this) {
+                held = days.containsKey(day);
+            }
+            if (!held) {
+                SpaceSaving[] summaries = load(day);
+                synchronized (this) {
+                    if (!days.containsKey(day)) {
+                        days.put(day, summaries);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the summaries saved by this node for the input day.
+     *
+     * @param day The start of the day.
+     * @return The summaries indexed by measure ordinal (empty if none were
+     * saved or they could not be read).
+     */
+    private SpaceSaving[] load(long day) {
+        JDBCTopUserService service   = getJDBCTopUserService();
+        SpaceSaving[]      summaries = 
+                new SpaceSaving[TopUserMeasureType.values().length];
+        if (service != null) {
+            for (MetricsTopUser counter :
+                    service.getTopUsers(day, null, hostName)) {
+                int index = counter.getMeasure().ordinal();
+                if (summaries[index] == null) {
+                    summaries[index] = new SpaceSaving(
+                            CAPACITY,
+                            counter.getTotal(),
+                            counter.getFloor());
+                }
+                summaries[index].restore(
+                        counter.getUserName(),
+                        counter.getEstimate(),
+                        counter.getError());
+            }
+        }
+        for (int i = 0; i < summaries.length; i++) {
+            if (summaries[i] == null) {
+                summaries[i] = new SpaceSaving(CAPACITY);
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Get the summaries for the input day.  The day will normally have 
+     * been restored by <code>restore()</code>; empty summaries are created
+     * if it was discarded in the meantime.  The caller must hold the bean
+     * monitor.
+     *
+     * @param day The start of the day.
+     * @return The summaries indexed by measure ordinal.
+     */
+    private SpaceSaving[] getSummaries(long day) {
+        SpaceSaving[] summaries = days.get(day);
+        if (summaries == null) {
+            summaries = new SpaceSaving[TopUserMeasureType.values().length];
+            for (int i = 0; i < summaries.length; i++) {
+                summaries[i] = new SpaceSaving(CAPACITY);
+            }
+            days.put(day, summaries);
+        }
+        return summaries;
+    }
+
+    /**
+     * Calculate the day in which the input job completed.  Completion
+     * times in the future are treated as now.
+     *
+     * @param record The metrics record.
+     * @param now The current time.
+     * @return The start of the day.
+     */
+    private static long getDay(BundlerJobMetrics record, long now) {
+        return getDayStart(Math.min(
+                record.getStartTime() + record.getElapsedTime(),
+                now));
+    }
+
+    /**
+     * Convert the largest counters of a summary to records.
+     *
+     * @param day The start of the day.
+     * @param measure The measure.
+     * @param host The node name (null for merged summaries).
+     * @param summary The summary.
+     * @param limit The maximum number of records.
+     * @return The records in descending order of estimate.
+     */
+    private static List<MetricsTopUser> getRecords(
+            long               day,
+            TopUserMeasureType measure,
+            String             host,
+            SpaceSaving        summary,
+            int                limit) {
+        List<MetricsTopUser> records = new ArrayList<MetricsTopUser>();
+        for (SpaceSaving.Counter counter : summary.getTop(limit)) {
+            records.add(new MetricsTopUser.MetricsTopUserBuilder()
+                    .dayStart(day)
+                    .measure(measure)
+                    .hostName(host)
+                    .userName(counter.getKey())
+                    .estimate(counter.getCount())
+                    .error(counter.getError())
+                    .floor(summary.getFloor())
+                    .total(summary.getTotal())
+                    .build());
+        }
+        return records;
+    }
+
+    /**
+     * Calculate the start of the day (UTC) containing the input time.
+     *
+     * @param time Milliseconds since the epoch.
+     * @return The start of the day.
+     */
+    public static long getDayStart(long time) {
+        return Math.floorDiv(time, MILLIS_PER_DAY) * MILLIS_PER_DAY;
+    }
+}
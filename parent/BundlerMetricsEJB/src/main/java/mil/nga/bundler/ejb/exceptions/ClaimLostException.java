@@ -0,0 +1,24 @@
+package mil.nga.bundler.ejb.exceptions;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+
+/**
+ * Exception raised by a commit listener when the collector no longer holds
+ * the claim on its work (i.e. the collection lease, a partition claim or
+ * the backfill lease was taken over by another node).  The batch being 
+ * written is rolled back and the remaining records are not written, but 
+ * they are not failures: the node now holding the claim will process them.
+ * 
+ * @author L. Craig Carpenter
+ */
+public class ClaimLostException extends SQLException implements Serializable {
+
+    /** 
+     * Default constructor requiring a message String.
+     * @param msg Information identifying why the exception was raised.
+     */
+    public ClaimLostException(String msg) {
+        super(msg);
+    }
+}
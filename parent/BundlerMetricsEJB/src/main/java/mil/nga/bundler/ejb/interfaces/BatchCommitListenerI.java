@@ -0,0 +1,35 @@
+package mil.nga.bundler.ejb.interfaces;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import mil.nga.bundler.model.BundlerJobMetrics;
+
+/**
+ * Callback interface allowing callers of the batch insert operation to
+ * perform additional work inside the same transaction as the metrics
+ * records (e.g. advancing a checkpoint).  The callback is invoked
+ * immediately before each commit with the records that are about to be
+ * committed.
+ *
+ * @author L. Craig Carpenter
+ */
+public interface BatchCommitListenerI {
+
+    /**
+     * Invoked before the transaction containing the input records is
+     * committed.  Implementations must not commit or close the supplied
+     * connection.  If an exception is thrown the transaction is rolled back.
+     * If the exception is a <code>ClaimLostException</code> the write is 
+     * abandoned and the records are not reported as failures.
+     *
+     * @param conn The connection on which the records were inserted.
+     * @param committed The records about to be committed.
+     * @throws SQLException Thrown if the additional work fails.
+     */
+    public void beforeCommit(
+            Connection conn,
+            List<BundlerJobMetrics> committed) throws SQLException;
+
+}
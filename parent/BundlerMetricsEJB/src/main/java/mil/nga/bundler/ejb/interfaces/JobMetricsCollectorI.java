@@ -2,6 +2,8 @@ package mil.nga.bundler.ejb.interfaces;
 
 import javax.ejb.Remote;
 
+import mil.nga.bundler.model.CollectionRunStatistics;
+
 /**
  * Local interface implemented by the JobMetricsCollector session bean. 
  * 
@@ -12,7 +14,61 @@ public interface JobMetricsCollectorI {
  
     /**
      * Public entry point starting the metrics collection process.
+     * 
+     * @return Statistics associated with the collection run.
+     */
+    public CollectionRunStatistics collectMetrics();
+    
+    /**
+     * Collect the metrics for a single job.
+     * 
+     * @param jobID The ID of the job to process.
+     * @return True if a metrics record was written for the job.
+     */
+    public boolean collectMetrics(String jobID);
+    
+    /**
+     * Public entry point starting a full (non-incremental) metrics 
+     * collection run that processes every job without a metrics record.
+     * 
+     * @return Statistics associated with the collection run.
+     */
+    public CollectionRunStatistics reconcileMetrics();
+    
+    /**
+     * Public entry point refreshing (i.e. inserting or updating) the 
+     * metrics of every job that completed at or after the input time.
+     * 
+     * @param since Jobs with an END_TIME at or after this time are 
+     * processed.
+     * @return Statistics associated with the collection run.
+     */
+    public CollectionRunStatistics recollectMetrics(long since);
+    
+    /**
+     * Start a collection run in the background, returning immediately.
+     * 
+     * @param full True if a full reconciliation run should be performed.
+     * @return The ID assigned to the run.
+     */
+    public String startCollection(boolean full);
+    
+    /**
+     * Start a re-collection run in the background, returning immediately.
+     * 
+     * @param since Jobs with an END_TIME at or after this time are 
+     * processed.
+     * @return The ID assigned to the run.
+     */
+    public String startRecollection(long since);
+    
+    /**
+     * Retrieve the progress of a collection run started by 
+     * <code>startCollection()</code>.
+     * 
+     * @param runID The ID of the run.
+     * @return The run statistics, null if the run is not known.
      */
-    public void collectMetrics();
+    public CollectionRunStatistics getCollectionRun(String runID);
     
 }
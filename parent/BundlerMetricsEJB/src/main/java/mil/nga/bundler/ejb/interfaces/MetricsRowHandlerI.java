@@ -0,0 +1,27 @@
+package mil.nga.bundler.ejb.interfaces;
+
+import java.io.IOException;
+
+import mil.nga.bundler.model.BundlerJobMetrics;
+
+/**
+ * Callback interface allowing callers to consume job metrics records one 
+ * row at a time as they are read from the database, rather than having the
+ * entire result set buffered in memory (e.g. when streaming an export to 
+ * a client).
+ *
+ * @author L. Craig Carpenter
+ */
+public interface MetricsRowHandlerI {
+
+    /**
+     * Invoked once for each row read from the database, in result set 
+     * order.
+     *
+     * @param metrics The metrics record built from the current row.
+     * @throws IOException Thrown if the record cannot be consumed (e.g. the
+     * client has disconnected).  Processing of the result set stops.
+     */
+    public void handle(BundlerJobMetrics metrics) throws IOException;
+
+}
@@ -40,7 +40,7 @@ public class JDBCArchiveService {
     /**
      * Table used to extract the target archive information.
      */
-    private static final String TABLE_NAME = "ARCHIVE_JOBS";
+    public static final String TABLE_NAME = "ARCHIVE_JOBS";
     
     /**
      * Set up the logging system for use throughout the class
@@ -0,0 +1,219 @@
+package mil.nga.bundler.ejb.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.model.CollectionCheckpoint;
+
+/**
+ * Session bean providing methods for interfacing with the table containing
+ * the checkpoints maintained by the incremental metrics collector.
+ *
+ * This class is written assuming that the injected DataSource object is not
+ * handling the transactions on behalf of the application (i.e. non-JTA).  If
+ * this bean is deployed to a container with JTA enabled, the update
+ * functions will throw exceptions when attempting to manage the underlying
+ * transaction.
+ */
+@Stateless
+@LocalBean
+public class JDBCCheckpointService {
+
+    /**
+     * The target table name.
+     */
+    public static final String TABLE_NAME = "BUNDLER_METRICS_CHECKPOINT";
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JDBCCheckpointService.class);
+
+    /**
+     * Container-injected datasource object.
+     */
+    @Resource(mappedName="java:jboss/datasources/JobTracker")
+    DataSource datasource;
+
+    /**
+     * Default constructor.
+     */
+    public JDBCCheckpointService() { }
+
+    /**
+     * Retrieve the checkpoint with the input name.
+     *
+     * @param name The checkpoint name.
+     * @return The checkpoint, or null if the checkpoint does not exist (or
+     * could not be retrieved).
+     */
+    public CollectionCheckpoint getCheckpoint(String name) {
+
+        Connection           conn       = null;
+        CollectionCheckpoint checkpoint = null;
+        PreparedStatement    stmt       = null;
+        ResultSet            rs         = null;
+        long                 start      = System.currentTimeMillis();
+        String               sql        = "select CHECKPOINT_NAME, END_TIME, "
+                + "JOB_ID, LAST_UPDATE from "
+                + TABLE_NAME
+                + " where CHECKPOINT_NAME = ?";
+
+        if (datasource != null) {
+            if ((name != null) && (!name.isEmpty())) {
+                try {
+                    conn = datasource.getConnection();
+                    stmt = conn.prepareStatement(sql);
+                    stmt.setString(1, name);
+                    rs   = stmt.executeQuery();
+                    if (rs.next()) {
+                        checkpoint = new CollectionCheckpoint
+                                .CollectionCheckpointBuilder()
+                                    .name(rs.getString("CHECKPOINT_NAME"))
+                                    .endTime(rs.getLong("END_TIME"))
+                                    .jobID(rs.getString("JOB_ID"))
+                                    .lastUpdate(rs.getLong("LAST_UPDATE"))
+                                    .build();
+                    }
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to retrieve checkpoint [ "
+                            + name
+                            + " ] from table [ "
+                            + TABLE_NAME
+                            + " ].  Error message [ "
+                            + se.getMessage()
+                            + " ].");
+                }
+                finally {
+                    try {
+                        if (rs != null) { rs.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (conn != null) { conn.close(); }
+                    } catch (Exception e) {}
+                }
+            }
+            else {
+                LOGGER.warn("The input checkpoint name is null or empty.  "
+                        + "Unable to retrieve the checkpoint.");
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "A null checkpoint will be returned to the caller.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Checkpoint [ "
+                    + name
+                    + " ] selected in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Create or update the input checkpoint in its own transaction.
+     *
+     * @param checkpoint The checkpoint to save.
+     * @return True if the checkpoint was saved.
+     */
+    public boolean update(CollectionCheckpoint checkpoint) {
+
+        boolean    updated = false;
+        Connection conn    = null;
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                conn.setAutoCommit(false);
+                update(conn, checkpoint);
+                conn.commit();
+                updated = true;
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to update checkpoint [ "
+                        + (checkpoint == null ? "null" : checkpoint.getName())
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+            }
+            finally {
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The checkpoint will not be updated.");
+        }
+        return updated;
+    }
+
+    /**
+     * Create or update the input checkpoint using the connection supplied
+     * by the caller.  This method does not commit the transaction, allowing
+     * the checkpoint to be advanced atomically with the records it
+     * describes.
+     *
+     * @param conn Connection (with auto-commit disabled) owned by the caller.
+     * @param checkpoint The checkpoint to save.
+     * @throws SQLException Thrown if the checkpoint could not be saved.
+     */
+    public void update(
+            Connection conn,
+            CollectionCheckpoint checkpoint) throws SQLException {
+
+        PreparedStatement stmt = null;
+        String            sql  = "merge into "
+                + TABLE_NAME
+                + " c using (select ? CHECKPOINT_NAME, ? END_TIME, "
+                + "? JOB_ID, ? LAST_UPDATE from dual) s "
+                + "on (c.CHECKPOINT_NAME = s.CHECKPOINT_NAME) "
+                + "when matched then update set c.END_TIME = s.END_TIME, "
+                + "c.JOB_ID = s.JOB_ID, c.LAST_UPDATE = s.LAST_UPDATE "
+                + "when not matched then insert (CHECKPOINT_NAME, END_TIME, "
+                + "JOB_ID, LAST_UPDATE) values (s.CHECKPOINT_NAME, "
+                + "s.END_TIME, s.JOB_ID, s.LAST_UPDATE)";
+
+        if (checkpoint != null) {
+            try {
+                stmt = conn.prepareStatement(sql);
+                stmt.setString(1, checkpoint.getName());
+                stmt.setLong(  2, checkpoint.getEndTime());
+                stmt.setString(3, checkpoint.getJobID());
+                stmt.setLong(  4, checkpoint.getLastUpdate());
+                stmt.executeUpdate();
+            }
+            finally {
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Checkpoint advanced => [ "
+                        + checkpoint.toString()
+                        + " ]");
+            }
+        }
+    }
+}
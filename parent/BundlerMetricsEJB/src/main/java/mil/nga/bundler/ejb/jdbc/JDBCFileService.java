@@ -38,7 +38,7 @@ public class JDBCFileService {
     /**
      * Table used to extract the target archive information.
      */
-    private static final String TABLE_NAME = "FILE_ENTRY";
+    public static final String TABLE_NAME = "FILE_ENTRY";
     
     /**
      * Set up the logging system for use throughout the class
@@ -1,12 +1,23 @@
 package mil.nga.bundler.ejb.jdbc;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.annotation.Resource;
 import javax.ejb.LocalBean;
@@ -16,9 +27,16 @@ import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import mil.nga.bundler.CollectorConfig;
+import mil.nga.bundler.ejb.exceptions.ClaimLostException;
+import mil.nga.bundler.ejb.interfaces.BatchCommitListenerI;
+import mil.nga.bundler.ejb.interfaces.MetricsRowHandlerI;
+import mil.nga.bundler.interfaces.BundlerConstantsI;
 import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.MetricsPage;
 import mil.nga.bundler.types.ArchiveType;
 import mil.nga.bundler.types.JobStateType;
+import mil.nga.bundler.types.TimeBucketType;
 
 /**
  * Session bean providing methods for interfacing with the table containing
@@ -32,13 +50,76 @@ import mil.nga.bundler.types.JobStateType;
  */
 @Stateless
 @LocalBean
-public class JDBCJobMetricsService {
+public class JDBCJobMetricsService implements BundlerConstantsI {
 
     /**
      * The target table name.
      */
     public static final String TABLE_NAME = "BUNDLER_JOB_METRICS";
+
+    /**
+     * The number of rows the JDBC driver will retrieve per round trip when
+     * streaming potentially large result sets back from the database.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    
+    /**
+     * SQL used to select the metrics records.  Callers append the 
+     * <code>where</code> clause.
+     */
+    private static final String SELECT_SQL = "select ARCHIVE_SIZE, "
+            + "ARCHIVE_TYPE, ELAPSED_TIME, JOB_ID, JOB_STATE, NUM_ARCHIVES, "
+            + "NUM_ARCHIVES_COMPLETE, NUM_FILES, NUM_FILES_COMPLETE, "
+            + "START_TIME, TOTAL_COMPRESSED_SIZE, TOTAL_SIZE, USER_NAME "
+            + "from " 
+            + TABLE_NAME;
     
+    /**
+     * SQL used to insert a single metrics record.
+     */
+    private static final String INSERT_SQL = "insert into "
+            + TABLE_NAME 
+            + " (ARCHIVE_SIZE, ARCHIVE_TYPE, "
+            + "ELAPSED_TIME, JOB_ID, JOB_STATE, NUM_ARCHIVES, "
+            + "NUM_ARCHIVES_COMPLETE, NUM_FILES, NUM_FILES_COMPLETE, "
+            + "START_TIME, TOTAL_COMPRESSED_SIZE, TOTAL_SIZE, USER_NAME) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * SQL used to insert a single metrics record, or refresh the existing 
+     * record if one already exists for the job.  The parameters are bound 
+     * in the same order as <code>INSERT_SQL</code>.
+     */
+    private static final String UPSERT_SQL = "merge into "
+            + TABLE_NAME
+            + " m using (select ? ARCHIVE_SIZE, ? ARCHIVE_TYPE, "
+            + "? ELAPSED_TIME, ? JOB_ID, ? JOB_STATE, ? NUM_ARCHIVES, "
+            + "? NUM_ARCHIVES_COMPLETE, ? NUM_FILES, ? NUM_FILES_COMPLETE, "
+            + "? START_TIME, ? TOTAL_COMPRESSED_SIZE, ? TOTAL_SIZE, "
+            + "? USER_NAME from dual) s on (m.JOB_ID = s.JOB_ID) "
+            + "when matched then update set "
+            + "m.ARCHIVE_SIZE = s.ARCHIVE_SIZE, "
+            + "m.ARCHIVE_TYPE = s.ARCHIVE_TYPE, "
+            + "m.ELAPSED_TIME = s.ELAPSED_TIME, "
+            + "m.JOB_STATE = s.JOB_STATE, "
+            + "m.NUM_ARCHIVES = s.NUM_ARCHIVES, "
+            + "m.NUM_ARCHIVES_COMPLETE = s.NUM_ARCHIVES_COMPLETE, "
+            + "m.NUM_FILES = s.NUM_FILES, "
+            + "m.NUM_FILES_COMPLETE = s.NUM_FILES_COMPLETE, "
+            + "m.START_TIME = s.START_TIME, "
+            + "m.TOTAL_COMPRESSED_SIZE = s.TOTAL_COMPRESSED_SIZE, "
+            + "m.TOTAL_SIZE = s.TOTAL_SIZE, "
+            + "m.USER_NAME = s.USER_NAME "
+            + "when not matched then insert (ARCHIVE_SIZE, ARCHIVE_TYPE, "
+            + "ELAPSED_TIME, JOB_ID, JOB_STATE, NUM_ARCHIVES, "
+            + "NUM_ARCHIVES_COMPLETE, NUM_FILES, NUM_FILES_COMPLETE, "
+            + "START_TIME, TOTAL_COMPRESSED_SIZE, TOTAL_SIZE, USER_NAME) "
+            + "values (s.ARCHIVE_SIZE, s.ARCHIVE_TYPE, s.ELAPSED_TIME, "
+            + "s.JOB_ID, s.JOB_STATE, s.NUM_ARCHIVES, "
+            + "s.NUM_ARCHIVES_COMPLETE, s.NUM_FILES, s.NUM_FILES_COMPLETE, "
+            + "s.START_TIME, s.TOTAL_COMPRESSED_SIZE, s.TOTAL_SIZE, "
+            + "s.USER_NAME)";
+
     /**
      * Set up the logging system for use throughout the class
      */        
@@ -119,6 +200,112 @@ public class JDBCJobMetricsService {
         return jobIDs;
     }
     
+    /**
+     * Retrieve the list of job IDs that exist in the JOBS table, have 
+     * reached a terminal state, but do not yet have a corresponding record 
+     * in the metrics table.  Jobs that are still running, and jobs that
+     * previously failed to insert and are either waiting out their retry 
+     * delay or have been moved to the dead-letter state (see 
+     * <code>JDBCRetryService</code>), are filtered out
+     * by the database so they are never loaded by the collector.  The disjoint
+     * set is calculated by the database in a single anti-join query rather
+     * than testing each job ID individually, and the results are streamed
+     * back in chunks of <code>DEFAULT_FETCH_SIZE</code> rows.
+     *
+     * @return A list of job IDs that need a metrics record calculated.
+     */
+    public List<String> getPendingJobIDs() {
+        return getPendingJobIDs(0, 1);
+    }
+
+    /**
+     * Retrieve the list of pending job IDs (see 
+     * <code>getPendingJobIDs()</code>) that fall within a single hash 
+     * partition.  Jobs are assigned to one of <code>partitions</code> 
+     * buckets using <code>ORA_HASH(JOB_ID)</code> so that the candidate jobs
+     * can be shared between the nodes of the cluster without overlap.
+     *
+     * @param partition The partition to select (0 to partitions - 1).
+     * @param partitions The total number of partitions.  A value of 1 (or 
+     * less) selects every pending job.
+     * @return A list of job IDs in the partition that need a metrics record
+     * calculated.
+     */
+    public List<String> getPendingJobIDs(int partition, int partitions) {
+
+        Connection        conn   = null;
+        List<String>      jobIDs = new ArrayList<String>();
+        PreparedStatement stmt   = null;
+        ResultSet         rs     = null;
+        long              start  = System.currentTimeMillis();
+        String            sql    = "select j.JOB_ID from "
+                + JDBCJobService.TABLE_NAME
+                + " j where "
+                + JDBCJobService.TERMINAL_STATE_PREDICATE
+                + " and not exists (select 1 from "
+                + TABLE_NAME
+                + " m where m.JOB_ID = j.JOB_ID) and "
+                + JDBCRetryService.RETRY_EXCLUSION_PREDICATE;
+
+        if (partitions > 1) {
+            sql = sql + " and ora_hash(j.JOB_ID, ?) = ?";
+        }
+        if (datasource != null) {
+
+            try {
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                stmt.setLong(1, start);
+                if (partitions > 1) {
+                    stmt.setInt(2, partitions - 1);
+                    stmt.setInt(3, partition);
+                }
+                stmt.setFetchSize(DEFAULT_FETCH_SIZE);
+                rs   = stmt.executeQuery();
+                while (rs.next()) {
+                    jobIDs.add(rs.getString("JOB_ID"));
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to retrieve the list of job IDs that "
+                        + "do not exist in table [ "
+                        + TABLE_NAME
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+            }
+            finally {
+                try {
+                    if (rs != null) { rs.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + jobIDs.size()
+                    + " ] pending job IDs selected from partition [ "
+                    + partition
+                    + " / "
+                    + partitions
+                    + " ] in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return jobIDs;
+    }
+
     /**
      * See if a given job Id exists in the target data source.
      * @param jobID Job ID to test
@@ -175,15 +362,13 @@ public class JDBCJobMetricsService {
     }
     
     /**
-     * This method will return a list of all 
-     * <code>mil.nga.bundler.model.BundlerJobMetrics</code> objects currently 
-     * persisted in the back-end data store That fall between the input start 
-     * and end time.
+     * This method will return the 
+     * <code>mil.nga.bundler.model.BundlerJobMetrics</code> object persisted 
+     * in the back-end data store for the input job ID.
      * 
-     * @param startTime The "from" parameter 
-     * @param endTime The "to" parameter
-     * @return All of the job metrics records that with a start time that fall 
-     * in between the two input parameters.
+     * @param jobID The target job ID.
+     * @return The job metrics record, or null if the job does not have a
+     * metrics record.
      */
     public BundlerJobMetrics getJobMetrics(String jobID) {
         
@@ -192,13 +377,7 @@ public class JDBCJobMetricsService {
         PreparedStatement stmt    = null;
         ResultSet         rs      = null;
         long              start   = System.currentTimeMillis();
-        String             sql    = "select ARCHIVE_SIZE, ARCHIVE_TYPE, "
-                + "ELAPSED_TIME, JOB_ID, JOB_STATE, NUM_ARCHIVES, "
-                + "NUM_ARCHIVES_COMPLETE, NUM_FILES, NUM_FILES_COMPLETE, "
-                + "START_TIME, TOTAL_COMPRESSED_SIZE, TOTAL_SIZE, USER_NAME "
-                + " from " 
-                + TABLE_NAME
-                + "where JOB_ID =  ? ";
+        String            sql     = SELECT_SQL + " where JOB_ID = ?";
         
         if (datasource != null) {
             try {
@@ -209,24 +388,7 @@ public class JDBCJobMetricsService {
                 rs   = stmt.executeQuery();
                 
                 if (rs.next()) {
-                    
-                    metrics = new BundlerJobMetrics.BundlerJobMetricsBuilder()
-                            .archiveSize(rs.getLong("ARCHIVE_SIZE"))
-                            .archiveType(ArchiveType.valueOf(
-                                    rs.getString("ARCHIVE_TYPE")))
-                            .elapsedTime(rs.getLong("ELAPSED_TIME"))
-                            .jobID(rs.getString("JOB_ID"))
-                            .jobState(JobStateType.valueOf(
-                                    rs.getString("JOB_STATE")))
-                            .numArchives(rs.getInt("NUM_ARCHIVES"))
-                            .numArchivesComplete(rs.getInt("NUM_ARCHIVES_COMPLETE"))
-                            .numFiles(rs.getLong("NUM_FILES"))
-                            .numFilesComplete(rs.getLong("NUM_FILES_COMPLETE"))
-                            .startTime(rs.getLong("START_TIME"))
-                            .totalSize(rs.getLong("TOTAL_SIZE"))
-                            .totalCompressedSize(rs.getLong("TOTAL_COMPRESSED_SIZE"))
-                            .userName(rs.getString("USER_NAME"))
-                            .build();
+                    metrics = toJobMetrics(rs);
                 }
             }
             catch (SQLException se) {
@@ -268,31 +430,70 @@ public class JDBCJobMetricsService {
      * This method will return a list of all 
      * <code>mil.nga.bundler.model.BundlerJobMetrics</code> objects currently 
      * persisted in the back-end data store That fall between the input start 
-     * and end time.
+     * and end time.  The entire result is held in memory, so callers 
+     * exporting large ranges should use <code>streamJobMetricsByDate()</code>
+     * instead.
      * 
      * @param startTime The "from" parameter 
      * @param endTime The "to" parameter
      * @return All of the job metrics records that with a start time that fall 
-     * in between the two input parameters.
+     * in between the two input parameters.  The list will be empty if the
+     * records could not be read.
      */
     public List<BundlerJobMetrics> getJobMetricsByDate(
             long startTime, 
             long endTime) {
         
-        Connection              conn    = null;
-        List<BundlerJobMetrics> metrics = new ArrayList<BundlerJobMetrics>();
-        PreparedStatement       stmt    = null;
-        ResultSet               rs      = null;
-        long                    start   = System.currentTimeMillis();
-        String                  sql    = "select ARCHIVE_SIZE, ARCHIVE_TYPE, "
-                + "ELAPSED_TIME, JOB_ID, JOB_STATE, NUM_ARCHIVES, "
-                + "NUM_ARCHIVES_COMPLETE, NUM_FILES, NUM_FILES_COMPLETE, "
-                + "START_TIME, TOTAL_COMPRESSED_SIZE, TOTAL_SIZE, USER_NAME "
-                + " from " 
-                + TABLE_NAME
-                + "where START_TIME > ? "
-                + "and START_TIME < ? order by START_TIME desc";
+        final List<BundlerJobMetrics> metrics = 
+                new ArrayList<BundlerJobMetrics>();
         
+        try {
+            streamJobMetricsByDate(startTime, endTime, 
+                    new MetricsRowHandlerI() {
+                        @Override
+                        public void handle(BundlerJobMetrics record) {
+                            metrics.add(record);
+                        }
+                    });
+        }
+        catch (IOException ioe) {
+            // The handler above does not perform any I/O, so the records 
+            // could not be read.  Do not return a partial list.
+            metrics.clear();
+        }
+        return metrics;
+    }
+    
+    /**
+     * Pass each of the job metrics records with a start time that falls 
+     * between the input start and end time to the supplied handler as it 
+     * is read from the database.  Rows are fetched from the database in 
+     * chunks of <code>DEFAULT_FETCH_SIZE</code> and no more than one record
+     * is held by this method at a time, so the memory required is 
+     * independent of the size of the range.
+     * 
+     * @param startTime The "from" parameter 
+     * @param endTime The "to" parameter
+     * @param handler Callback invoked once for each record.
+     * @return The number of records passed to the handler.
+     * @throws IOException Thrown if the handler was unable to consume a 
+     * record, or if the records could not be read from the database (in 
+     * which case the handler may already have received some of them).  No
+     * further records are read.
+     */
+    public long streamJobMetricsByDate(
+            long               startTime, 
+            long               endTime, 
+            MetricsRowHandlerI handler) throws IOException {
+        
+        Connection        conn  = null;
+        long              count = 0L;
+        PreparedStatement stmt  = null;
+        ResultSet         rs    = null;
+        long              start = System.currentTimeMillis();
+        String            sql   = SELECT_SQL
+                + " where START_TIME > ? "
+                + "and START_TIME < ? order by START_TIME desc";
         
         // Ensure the startTime is earlier than the endTime before submitting
         // the query to the database.
@@ -317,37 +518,31 @@ public class JDBCJobMetricsService {
                 stmt = conn.prepareStatement(sql);
                 stmt.setLong(1, startTime);
                 stmt.setLong(2, endTime);
+                stmt.setFetchSize(DEFAULT_FETCH_SIZE);
                 rs   = stmt.executeQuery();
                 
                 while (rs.next()) {
-                    
-                    BundlerJobMetrics job = 
-                            new BundlerJobMetrics.BundlerJobMetricsBuilder()
-                            .archiveSize(rs.getLong("ARCHIVE_SIZE"))
-                            .archiveType(ArchiveType.valueOf(
-                                    rs.getString("ARCHIVE_TYPE")))
-                            .elapsedTime(rs.getLong("ELAPSED_TIME"))
-                            .jobID(rs.getString("JOB_ID"))
-                            .jobState(JobStateType.valueOf(
-                                    rs.getString("JOB_STATE")))
-                            .numArchives(rs.getInt("NUM_ARCHIVES"))
-                            .numArchivesComplete(rs.getInt("NUM_ARCHIVES_COMPLETE"))
-                            .numFiles(rs.getLong("NUM_FILES"))
-                            .numFilesComplete(rs.getLong("NUM_FILES_COMPLETE"))
-                            .startTime(rs.getLong("START_TIME"))
-                            .totalSize(rs.getLong("TOTAL_SIZE"))
-                            .totalCompressedSize(rs.getLong("TOTAL_COMPRESSED_SIZE"))
-                            .userName(rs.getString("USER_NAME"))
-                            .build();
-                    metrics.add(job);
+                    handler.handle(toJobMetrics(rs));
+                    count++;
                 }
             }
             catch (SQLException se) {
                 LOGGER.error("An unexpected SQLException was raised while "
-                        + "attempting to retrieve a list of job IDs from the "
-                        + "target data source.  Error message [ "
+                        + "attempting to stream the [ "
+                        + TABLE_NAME
+                        + " ] records between [ "
+                        + startTime
+                        + " ] and [ "
+                        + endTime
+                        + " ] after [ "
+                        + count
+                        + " ] records.  Error message [ "
                         + se.getMessage() 
                         + " ].");
+                throw new IOException("Unable to read the job metrics "
+                        + "records after [ "
+                        + count
+                        + " ] records.", se);
             }
             finally {
                 try { 
@@ -363,18 +558,256 @@ public class JDBCJobMetricsService {
         }
         else {
             LOGGER.warn("DataSource object not injected by the container.  "
-                    + "An empty List will be returned to the caller.");
+                    + "No records will be passed to the caller.");
+            throw new IOException("DataSource not available.");
         }
         
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("[ "
-                    + metrics.size() 
-                    + " ] job IDs selected in [ "
+                    + count 
+                    + " ] job metrics records selected in [ "
                     + (System.currentTimeMillis() - start) 
                     + " ] ms.");
         }
+        return count;
+    }
+    
+    /**
+     * Retrieve a single page of the metrics records for jobs started 
+     * within the input range, newest first.  Pages are located using 
+     * keyset pagination on (START_TIME, JOB_ID): the continuation token 
+     * identifies the last record of the previous page and the query seeks
+     * directly to the records that sort after it using the 
+     * (START_TIME, JOB_ID) index.  The cost of retrieving a page is 
+     * therefore the same regardless of how deep into the result set it 
+     * lies, and pages remain stable while new records are inserted.
+     * 
+     * @param startTime The start of the range (inclusive).
+     * @param endTime The end of the range (exclusive).
+     * @param token The continuation token returned with the previous page,
+     * or null to retrieve the first page.
+     * @param pageSize The maximum number of records in the page.
+     * @return The requested page.  The continuation token of the returned
+     * page will be null if there are no more records.  Null will be 
+     * returned if the input token is not valid.
+     */
+    public MetricsPage getJobMetricsPage(
+            long   startTime, 
+            long   endTime, 
+            String token, 
+            int    pageSize) {
         
-        return metrics;
+        Connection              conn      = null;
+        String                  jobID     = null;
+        long                    lastStart = 0L;
+        List<BundlerJobMetrics> metrics   = new ArrayList<BundlerJobMetrics>();
+        String                  nextToken = null;
+        PreparedStatement       stmt      = null;
+        ResultSet               rs        = null;
+        long                    start     = System.currentTimeMillis();
+        String                  sql       = "select * from ("
+                + SELECT_SQL
+                + " where START_TIME >= ? and START_TIME < ?";
+        
+        if ((token != null) && (!token.isEmpty())) {
+            try {
+                String position = new String(
+                        Base64.getUrlDecoder().decode(token.trim()), 
+                        StandardCharsets.UTF_8);
+                int    index    = position.indexOf(':');
+                lastStart = Long.parseLong(position.substring(0, index));
+                jobID     = position.substring(index + 1);
+            }
+            catch (RuntimeException re) {
+                LOGGER.warn("Invalid continuation token [ "
+                        + token
+                        + " ].");
+                return null;
+            }
+            sql = sql + " and (START_TIME < ? or "
+                    + "(START_TIME = ? and JOB_ID < ?))";
+        }
+        sql = sql + " order by START_TIME desc, JOB_ID desc) "
+                + "where rownum <= ?";
+        
+        if (datasource != null) {
+            try {
+                
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                int param = 1;
+                stmt.setLong(param++, startTime);
+                stmt.setLong(param++, endTime);
+                if (jobID != null) {
+                    stmt.setLong(  param++, lastStart);
+                    stmt.setLong(  param++, lastStart);
+                    stmt.setString(param++, jobID);
+                }
+                // Select one extra row to determine whether there is 
+                // another page.
+                stmt.setInt(param, pageSize + 1);
+                stmt.setFetchSize(Math.min(pageSize + 1, DEFAULT_FETCH_SIZE));
+                rs   = stmt.executeQuery();
+                
+                while (rs.next()) {
+                    if (metrics.size() < pageSize) {
+                        metrics.add(toJobMetrics(rs));
+                    }
+                    else {
+                        BundlerJobMetrics last = metrics.get(metrics.size() - 1);
+                        nextToken = encodePageToken(
+                                last.getStartTime() + ":" + last.getJobID());
+                    }
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to retrieve a page of [ "
+                        + TABLE_NAME
+                        + " ] records.  Error message [ "
+                        + se.getMessage() 
+                        + " ].");
+            }
+            finally {
+                try { 
+                    if (rs != null) { rs.close(); } 
+                } catch (Exception e) {}
+                try { 
+                    if (stmt != null) { stmt.close(); } 
+                } catch (Exception e) {}
+                try { 
+                    if (conn != null) { conn.close(); } 
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty page will be returned to the caller.");
+        }
+        
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Page of [ "
+                    + metrics.size() 
+                    + " ] job metrics records selected in [ "
+                    + (System.currentTimeMillis() - start) 
+                    + " ] ms.");
+        }
+        return new MetricsPage.MetricsPageBuilder()
+                .records(metrics)
+                .nextToken(nextToken)
+                .build();
+    }
+    
+    /**
+     * Encode the position of the last record in a page as an opaque, 
+     * URL-safe continuation token.  The token is decoded by 
+     * <code>getJobMetricsPage()</code>.
+     * 
+     * @param position The position (START_TIME:JOB_ID).
+     * @return The continuation token.
+     */
+    private static String encodePageToken(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Build a metrics record from the current row of a result set selected
+     * using <code>SELECT_SQL</code>.
+     * 
+     * @param rs The result set positioned on the target row.
+     * @return The metrics record.
+     * @throws SQLException Thrown if the row cannot be read.
+     */
+    private BundlerJobMetrics toJobMetrics(ResultSet rs) throws SQLException {
+        return new BundlerJobMetrics.BundlerJobMetricsBuilder()
+                .archiveSize(rs.getLong("ARCHIVE_SIZE"))
+                .archiveType(toArchiveType(rs.getString("ARCHIVE_TYPE")))
+                .elapsedTime(rs.getLong("ELAPSED_TIME"))
+                .jobID(rs.getString("JOB_ID"))
+                .jobState(toJobState(rs.getString("JOB_STATE")))
+                .numArchives(rs.getInt("NUM_ARCHIVES"))
+                .numArchivesComplete(rs.getInt("NUM_ARCHIVES_COMPLETE"))
+                .numFiles(rs.getLong("NUM_FILES"))
+                .numFilesComplete(rs.getLong("NUM_FILES_COMPLETE"))
+                .startTime(rs.getLong("START_TIME"))
+                .totalSize(rs.getLong("TOTAL_SIZE"))
+                .totalCompressedSize(rs.getLong("TOTAL_COMPRESSED_SIZE"))
+                .userName(rs.getString("USER_NAME"))
+                .build();
+    }
+    
+    /**
+     * Convert the ARCHIVE_TYPE column to its enumeration value.  Records 
+     * written by this class store the text of the enumeration value (e.g.
+     * "zip") while records written by hibernate store the name (e.g. 
+     * "ZIP"), so both are accepted.
+     * 
+     * @param value The column value.
+     * @return The matching archive type, or ZIP if the value is not 
+     * recognized.
+     */
+    static ArchiveType toArchiveType(String value) {
+        if (value != null) {
+            for (ArchiveType type : ArchiveType.values()) {
+                if ((type.name().equalsIgnoreCase(value.trim())) || 
+                        (type.getText().equalsIgnoreCase(value.trim()))) {
+                    return type;
+                }
+            }
+        }
+        LOGGER.warn("Unknown ARCHIVE_TYPE [ "
+                + value
+                + " ].  Defaulting to [ "
+                + ArchiveType.ZIP.getText()
+                + " ].");
+        return ArchiveType.ZIP;
+    }
+    
+    /**
+     * Convert the JOB_STATE column to its enumeration value.  Both the 
+     * name and the text of the enumeration value are accepted (see 
+     * <code>toArchiveType()</code>).
+     * 
+     * @param value The column value.
+     * @return The matching job state, or NOT_STARTED if the value is not 
+     * recognized.
+     */
+    static JobStateType toJobState(String value) {
+        JobStateType type = toJobState(value, null);
+        if (type == null) {
+            LOGGER.warn("Unknown JOB_STATE [ "
+                    + value
+                    + " ].  Defaulting to [ "
+                    + JobStateType.NOT_STARTED.getText()
+                    + " ].");
+            type = JobStateType.NOT_STARTED;
+        }
+        return type;
+    }
+    
+    /**
+     * Convert a job state (e.g. a column value or request parameter) to 
+     * its enumeration value.  Both the name and the text of the 
+     * enumeration value are accepted, ignoring case.
+     * 
+     * @param value The job state.
+     * @param defaultValue The value returned if the input is not 
+     * recognized (may be null).
+     * @return The matching job state, or <code>defaultValue</code>.
+     */
+    public static JobStateType toJobState(
+            String       value, 
+            JobStateType defaultValue) {
+        if (value != null) {
+            for (JobStateType type : JobStateType.values()) {
+                if ((type.name().equalsIgnoreCase(value.trim())) || 
+                        (type.getText().equalsIgnoreCase(value.trim()))) {
+                    return type;
+                }
+            }
+        }
+        return defaultValue;
     }
     
     /**
@@ -386,20 +819,7 @@ public class JDBCJobMetricsService {
         Connection        conn   = null;
         PreparedStatement stmt   = null;
         long              start  = System.currentTimeMillis();
-        String            sql    = "insert into "
-                + TABLE_NAME 
-                + " (ARCHIVE_SIZE, ARCHIVE_TYPE, "
-                + "ELAPSED_TIME, JOB_ID, JOB_STATE, NUM_ARCHIVES, "
-                + "NUM_ARCHIVES_COMPLETE, NUM_FILES, NUM_FILES_COMPLETE, "
-                + "START_TIME, TOTAL_COMPRESSED_SIZE, TOTAL_SIZE, USER_NAME) "
-                + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        String tempSQL = "update "
-        		+ TABLE_NAME
-        		+ " set ARCHIVE_SIZE = ?, ARCHIVE_TYPE = ?, ELAPSED_TIME = ?, "
-        		+ "JOB_ID = ?, JOB_STATE = ?, NUM_ARCHIVES = ?, "
-        		+ "NUM_ARCHIVES_COMPLETE = ?, NUM_FILES = ?, NUM_FILES_COMPLETE = ?, "
-        		+ "START_TIME = ?, TOTAL_COMPRESSED_SIZE = ?, "
-        		+ "TOTAL_SIZE = ?, USER_NAME = ? where JOB_ID = ? ";
+        String            sql    = INSERT_SQL;
         
         if (datasource != null) {
             if (metrics != null) {
@@ -413,21 +833,9 @@ public class JDBCJobMetricsService {
                     conn.setAutoCommit(false);
                     
                     stmt = conn.prepareStatement(sql);
-                    stmt.setLong(   1,  metrics.getArchiveSize());
-                    stmt.setString( 2,  metrics.getArchiveType().getText());
-                    stmt.setLong(   3,  metrics.getElapsedTime());
-                    stmt.setString( 4,  metrics.getJobID());
-                    stmt.setString( 5,  metrics.getJobState().getText());
-                    stmt.setInt(    6,  metrics.getNumArchives());
-                    stmt.setInt(    7,  metrics.getNumArchivesComplete());
-                    stmt.setLong(   8,  metrics.getNumFiles());
-                    stmt.setLong(   9,  metrics.getNumFilesComplete());
-                    stmt.setLong(   10, metrics.getStartTime());
-                    stmt.setLong(   11, metrics.getTotalCompressedSize());
-                    stmt.setLong(   12, metrics.getTotalSize());
-                    stmt.setString( 13, metrics.getUserName());
-                    //stmt.setString( 14, metrics.getJobID());
+                    setInsertParameters(stmt, metrics);
                     stmt.executeUpdate();
+                    updateRollups(conn, Collections.singletonList(metrics));
                     
                     // Note: If the container Datasource has jta=true this will throw
                     // an exception.
@@ -472,4 +880,608 @@ public class JDBCJobMetricsService {
                     + " ] ms.");
         }
     }
+    
+    /**
+     * Insert a list of job metrics records into the target data source using
+     * JDBC batching.  The batch size is read from the collector 
+     * configuration.
+     * 
+     * @param metrics List of job metrics records.
+     * @return Map of job ID to error message for each record that could not
+     * be inserted.  The map will be empty if all records were inserted.
+     * @see #insertAll(List, int)
+     */
+    public Map<String, String> insertAll(List<BundlerJobMetrics> metrics) {
+        return insertAll(metrics, CollectorConfig.getInstance().getBatchSize());
+    }
+    
+    /**
+     * Insert a list of job metrics records into the target data source.  The
+     * records are sent to the database in batches of (at most) 
+     * <code>batchSize</code> rows using a single connection, with one 
+     * commit per batch.  If a batch fails, it is rolled back and the rows in
+     * that batch are re-inserted individually so a single bad record does 
+     * not prevent the remaining records in the batch from being persisted.
+     * 
+     * @param metrics List of job metrics records.
+     * @param batchSize The maximum number of records per batch.
+     * @return Map of job ID to error message for each record that could not
+     * be inserted.  The map will be empty if all records were inserted.
+     */
+    public Map<String, String> insertAll(
+            List<BundlerJobMetrics> metrics, 
+            int batchSize) {
+        Map<String, String> failures = null;
+        try {
+            failures = insertAll(metrics, batchSize, null);
+        }
+        catch (ClaimLostException cle) {
+            // Not possible, there is no listener to raise it.
+            failures = new LinkedHashMap<String, String>();
+        }
+        return failures;
+    }
+    
+    /**
+     * Insert a list of job metrics records into the target data source.  
+     * This version of the method allows the caller to supply a listener 
+     * that is invoked immediately before each commit, which allows 
+     * additional work (e.g. advancing a checkpoint) to be performed 
+     * atomically with the records being committed.
+     * 
+     * @param metrics List of job metrics records.
+     * @param batchSize The maximum number of records per batch.
+     * @param listener Optional callback invoked before each commit (may be 
+     * null).
+     * @return Map of job ID to error message for each record that could not
+     * be inserted.  The map will be empty if all records were inserted.
+     * @throws ClaimLostException Thrown if the listener reports that the 
+     * caller no longer holds the claim on the work.  The batches committed
+     * before the claim was lost remain committed.
+     * @see #insertAll(List, int)
+     */
+    public Map<String, String> insertAll(
+            List<BundlerJobMetrics> metrics, 
+            int                     batchSize, 
+            BatchCommitListenerI    listener) throws ClaimLostException {
+        return write(metrics, batchSize, listener, INSERT_SQL, null);
+    }
+    
+    /**
+     * Insert or refresh a list of job metrics records using the configured
+     * batch size, then recalculate the rollup buckets they touched.
+     * 
+     * @param metrics List of job metrics records.
+     * @return Map of job ID to error message for each record that could not
+     * be written.  The map will be empty if all records were written.
+     * @see #upsertAll(List, int, BatchCommitListenerI, Set)
+     */
+    public Map<String, String> upsertAll(List<BundlerJobMetrics> metrics) {
+        Map<String, String> failures = null;
+        Set<Long>           hours    = new TreeSet<Long>();
+        try {
+            failures = upsertAll(
+                    metrics, 
+                    CollectorConfig.getInstance().getBatchSize(), 
+                    null,
+                    hours);
+        }
+        catch (ClaimLostException cle) {
+            // Not possible, there is no listener to raise it.
+            failures = new LinkedHashMap<String, String>();
+        }
+        refreshRollups(hours);
+        return failures;
+    }
+    
+    /**
+     * Insert or refresh a list of job metrics records.  Each record is 
+     * written with a MERGE statement so that jobs which already have a 
+     * metrics record are updated in place rather than rejected.  The 
+     * records are batched and committed in exactly the same way as 
+     * <code>insertAll()</code>.
+     * 
+     * The records may already have been counted in the rollups and 
+     * histograms, so they are not added to them.  Instead the hourly 
+     * bucket of each committed record is added to <code>hours</code>, and 
+     * the caller passes the buckets collected over the whole run (or 
+     * backfill slice) to <code>refreshRollups()</code> so each bucket is
+     * recalculated once rather than once per batch.
+     * 
+     * @param metrics List of job metrics records.
+     * @param batchSize The maximum number of records per batch.
+     * @param listener Optional callback invoked before each commit (may be 
+     * null).
+     * @param hours Set to which the start of the hourly bucket of each 
+     * committed record will be added.
+     * @return Map of job ID to error message for each record that could not
+     * be written.  The map will be empty if all records were written.
+     * @throws ClaimLostException Thrown if the listener reports that the 
+     * caller no longer holds the claim on the work.
+     */
+    public Map<String, String> upsertAll(
+            List<BundlerJobMetrics> metrics, 
+            int                     batchSize, 
+            BatchCommitListenerI    listener,
+            Set<Long>               hours) throws ClaimLostException {
+        return write(metrics, batchSize, listener, UPSERT_SQL, hours);
+    }
+    
+    /**
+     * Recalculate the rollups and histograms for the input hourly buckets
+     * (and the daily buckets containing them) from the raw records.  Each 
+     * day is recalculated and committed separately, so a long 
+     * recollection does not hold the rollup rows in a single transaction.
+     * A day that cannot be recalculated is logged and skipped; the rollups
+     * and histograms can be recreated later with the rebuild endpoints.
+     * 
+     * @param hours The start of each hourly bucket written by 
+     * <code>upsertAll()</code>.
+     * @return True if every bucket was recalculated.
+     */
+    public boolean refreshRollups(Set<Long> hours) {
+        
+        Connection            conn      = null;
+        Map<Long, Set<Long>>  days      = new TreeMap<Long, Set<Long>>();
+        boolean               refreshed = true;
+        long                  start     = System.currentTimeMillis();
+        
+        if (hours != null) {
+            for (Long hour : hours) {
+                Long      day     = JDBCMetricsRollupService.getBucketStart(
+                                        TimeBucketType.DAY, hour);
+                Set<Long> buckets = days.get(day);
+                if (buckets == null) {
+                    buckets = new TreeSet<Long>();
+                    days.put(day, buckets);
+                }
+                buckets.add(hour);
+            }
+        }
+        
+        if (datasource != null) {
+            if (!days.isEmpty()) {
+                try {
+                    conn = datasource.getConnection();
+                    
+                    // Note: If the container Datasource has jta=true this will throw
+                    // an exception.
+                    conn.setAutoCommit(false);
+                    
+                    for (Map.Entry<Long, Set<Long>> day : days.entrySet()) {
+                        try {
+                            JDBCMetricsRollupService.refresh(
+                                    conn, day.getValue());
+                        }
+                        catch (SQLException se) {
+                            conn.rollback();
+                            refreshed = false;
+                            LOGGER.warn("Unable to recalculate the [ "
+                                    + JDBCMetricsRollupService.TABLE_NAME
+                                    + " ] buckets for the day starting [ "
+                                    + day.getKey()
+                                    + " ].  The trend data will be "
+                                    + "incomplete until the rollups are "
+                                    + "rebuilt (/metrics/rollup/rebuild).  "
+                                    + "Error message [ "
+                                    + se.getMessage()
+                                    + " ].");
+                        }
+                        Savepoint savepoint = conn.setSavepoint();
+                        try {
+                            JDBCMetricsHistogramService.refresh(
+                                    conn, day.getValue());
+                        }
+                        catch (SQLException se) {
+                            conn.rollback(savepoint);
+                            refreshed = false;
+                            LOGGER.warn("Unable to recalculate the [ "
+                                    + JDBCMetricsHistogramService.TABLE_NAME
+                                    + " ] buckets for the day starting [ "
+                                    + day.getKey()
+                                    + " ].  The percentile estimates will "
+                                    + "be incomplete until the histograms "
+                                    + "are rebuilt "
+                                    + "(/metrics/percentiles/rebuild).  "
+                                    + "Error message [ "
+                                    + se.getMessage()
+                                    + " ].");
+                        }
+                        conn.commit();
+                    }
+                }
+                catch (SQLException se) {
+                    refreshed = false;
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to recalculate the [ "
+                            + JDBCMetricsRollupService.TABLE_NAME 
+                            + " ] buckets.  Error message [ "
+                            + se.getMessage() 
+                            + " ].");
+                }
+                finally {
+                    try { 
+                        if (conn != null) { conn.close(); } 
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            refreshed = false;
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The rollups will not be recalculated.");
+        }
+        
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Rollups for [ "
+                    + (hours == null ? 0 : hours.size())
+                    + " ] hourly buckets over [ "
+                    + days.size()
+                    + " ] days recalculated in [ "
+                    + (System.currentTimeMillis() - start) 
+                    + " ] ms.");
+        }
+        return refreshed;
+    }
+    
+    /**
+     * Write a list of job metrics records to the target data source using
+     * the input statement (either <code>INSERT_SQL</code> or 
+     * <code>UPSERT_SQL</code>).
+     * 
+     * @param metrics List of job metrics records.
+     * @param batchSize The maximum number of records per batch.
+     * @param listener Optional callback invoked before each commit (may be 
+     * null).
+     * @param sql The statement used to write each record.
+     * @param hours Set to which the hourly bucket of each committed record
+     * is added if the rollups are to be recalculated by the caller, or 
+     * null if the records are added to the rollups as they are committed.
+     * @return Map of job ID to error message for each record that could not
+     * be written.
+     * @throws ClaimLostException Thrown if the listener reports that the 
+     * caller no longer holds the claim on the work.  The remaining records
+     * are not written and are not reported as failures.
+     */
+    private Map<String, String> write(
+            List<BundlerJobMetrics> metrics, 
+            int                     batchSize, 
+            BatchCommitListenerI    listener,
+            String                  sql,
+            Set<Long>               hours) throws ClaimLostException {
+        
+        Set<String>         committed = new HashSet<String>();
+        Connection          conn      = null;
+        Map<String, String> failures  = new LinkedHashMap<String, String>();
+        PreparedStatement   stmt      = null;
+        long                start     = System.currentTimeMillis();
+        
+        if (batchSize < 1) {
+            batchSize = DEFAULT_METRICS_BATCH_SIZE;
+        }
+        
+        if (datasource != null) {
+            if ((metrics != null) && (!metrics.isEmpty())) {
+                
+                try { 
+                    
+                    conn = datasource.getConnection();
+                    
+                    // Note: If the container Datasource has jta=true this will throw
+                    // an exception.
+                    conn.setAutoCommit(false);
+                    
+                    stmt = conn.prepareStatement(sql);
+                    for (int i = 0; i < metrics.size(); i += batchSize) {
+                        insertBatch(
+                                conn, 
+                                stmt, 
+                                metrics.subList(
+                                        i, 
+                                        Math.min(i + batchSize, metrics.size())),
+                                listener,
+                                hours,
+                                committed,
+                                failures);
+                    }
+                }
+                catch (ClaimLostException cle) {
+                    LOGGER.warn("Batch insert of [ "
+                            + TABLE_NAME
+                            + " ] records abandoned after [ "
+                            + committed.size()
+                            + " ] records were committed.  Error message [ "
+                            + cle.getMessage()
+                            + " ].");
+                    throw cle;
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting the batch insert of [ "
+                            + TABLE_NAME 
+                            + " ] records.  Error message [ "
+                            + se.getMessage() 
+                            + " ].");
+                    // Only the records that were not committed before the
+                    // connection failed are reported.
+                    for (BundlerJobMetrics record : metrics) {
+                        if ((record != null) && 
+                                (!committed.contains(record.getJobID())) &&
+                                (!failures.containsKey(record.getJobID()))) {
+                            failures.put(record.getJobID(), se.getMessage());
+                        }
+                    }
+                }
+                finally {
+                    try { 
+                        if (stmt != null) { stmt.close(); } 
+                    } catch (Exception e) {}
+                    try { 
+                        if (conn != null) { conn.close(); } 
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "Batch insert will not be performed.");
+            if (metrics != null) {
+                for (BundlerJobMetrics record : metrics) {
+                    if (record != null) {
+                        failures.put(record.getJobID(), 
+                                "DataSource not available.");
+                    }
+                }
+            }
+        }
+        
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Batch insert of [ "
+                    + (metrics == null ? 0 : metrics.size())
+                    + " ] [ "
+                    + TABLE_NAME
+                    + " ] records with [ "
+                    + failures.size()
+                    + " ] failures completed in [ "
+                    + (System.currentTimeMillis() - start) 
+                    + " ] ms.");
+        }
+        return failures;
+    }
+    
+    /**
+     * Send a single batch of metrics records to the database and commit it.
+     * If the batch is rejected, the transaction is rolled back and each 
+     * record is re-inserted individually behind a savepoint so that the 
+     * failing record(s) can be identified.  The remaining records are then
+     * committed together.  A failure to maintain the rollups never fails
+     * the records themselves.
+     * 
+     * @param conn Connection with auto-commit disabled.
+     * @param stmt Statement prepared using <code>INSERT_SQL</code> or 
+     * <code>UPSERT_SQL</code>.
+     * @param batch The records to insert.
+     * @param listener Optional callback invoked before each commit.
+     * @param hours Set to which the hourly bucket of each committed record
+     * is added, or null if the records are to be added to the rollups 
+     * (i.e. they were written with <code>INSERT_SQL</code>).
+     * @param committed Set to which the job ID of each record committed 
+     * will be added.
+     * @param failures Map to which the job ID and error message of any
+     * records that could not be inserted will be added.
+     * @throws ClaimLostException Thrown if the listener reports that the 
+     * claim on the work was lost.  The batch is rolled back and is not 
+     * re-inserted individually.
+     * @throws SQLException Thrown if the transaction could not be rolled 
+     * back (i.e. the connection itself is no longer usable).
+     */
+    private void insertBatch(
+            Connection              conn, 
+            PreparedStatement       stmt, 
+            List<BundlerJobMetrics> batch, 
+            BatchCommitListenerI    listener,
+            Set<Long>               hours,
+            Set<String>             committed,
+            Map<String, String>     failures) throws SQLException {
+        
+        List<BundlerJobMetrics> records = new ArrayList<BundlerJobMetrics>();
+        try {
+            for (BundlerJobMetrics record : batch) {
+                if (record != null) {
+                    setInsertParameters(stmt, record);
+                    stmt.addBatch();
+                    records.add(record);
+                }
+            }
+            stmt.executeBatch();
+            if (hours == null) {
+                updateRollups(conn, records);
+            }
+            if (listener != null) {
+                listener.beforeCommit(conn, records);
+            }
+            conn.commit();
+            addCommitted(records, hours, committed);
+        }
+        catch (ClaimLostException cle) {
+            conn.rollback();
+            stmt.clearBatch();
+            throw cle;
+        }
+        catch (SQLException se) {
+            
+            LOGGER.warn("Batch insert of [ "
+                    + batch.size()
+                    + " ] [ "
+                    + TABLE_NAME 
+                    + " ] records failed.  Error message [ "
+                    + se.getMessage()
+                    + " ].  Records will be inserted individually.");
+            conn.rollback();
+            stmt.clearBatch();
+            
+            // Each record is inserted behind its own savepoint so a failing
+            // record can be rolled back on its own.  The rollups, the 
+            // listener and the commit then run once for the records that
+            // were inserted rather than once per record.
+            List<BundlerJobMetrics> inserted = 
+                    new ArrayList<BundlerJobMetrics>(records.size());
+            for (BundlerJobMetrics record : records) {
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    setInsertParameters(stmt, record);
+                    stmt.executeUpdate();
+                    inserted.add(record);
+                }
+                catch (SQLException rowException) {
+                    conn.rollback(savepoint);
+                    LOGGER.error("An unexpected SQLException was raised "
+                            + "while attempting to insert a new [ "
+                            + TABLE_NAME 
+                            + " ] object into the data store.  Error "
+                            + "message [ "
+                            + rowException.getMessage() 
+                            + " ].  Record => [ "
+                            + record.toString()
+                            + " ].");
+                    failures.put(
+                            record.getJobID(), 
+                            rowException.getMessage());
+                }
+            }
+            
+            if (!inserted.isEmpty()) {
+                try {
+                    if (hours == null) {
+                        updateRollups(conn, inserted);
+                    }
+                    if (listener != null) {
+                        listener.beforeCommit(conn, inserted);
+                    }
+                    conn.commit();
+                    addCommitted(inserted, hours, committed);
+                }
+                catch (ClaimLostException cle) {
+                    conn.rollback();
+                    throw cle;
+                }
+                catch (SQLException commitException) {
+                    conn.rollback();
+                    LOGGER.error("An unexpected SQLException was raised "
+                            + "while attempting to commit [ "
+                            + inserted.size()
+                            + " ] individually inserted [ "
+                            + TABLE_NAME 
+                            + " ] records.  Error message [ "
+                            + commitException.getMessage() 
+                            + " ].");
+                    for (BundlerJobMetrics record : inserted) {
+                        failures.put(
+                                record.getJobID(), 
+                                commitException.getMessage());
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Record the job ID (and, if requested, the hourly bucket) of each 
+     * record that was committed.
+     * 
+     * @param records The records that were committed.
+     * @param hours Set to which the hourly bucket of each record is added
+     * (may be null).
+     * @param committed Set to which the job ID of each record is added.
+     */
+    private void addCommitted(
+            List<BundlerJobMetrics> records, 
+            Set<Long>               hours,
+            Set<String>             committed) {
+        for (BundlerJobMetrics record : records) {
+            committed.add(record.getJobID());
+            if (hours != null) {
+                hours.add(JDBCMetricsRollupService.getBucketStart(
+                        TimeBucketType.HOUR, record.getStartTime()));
+            }
+        }
+    }
+    
+    /**
+     * Add the newly inserted records to the hourly and daily rollups and 
+     * histograms using the same connection, so they are committed (or 
+     * rolled back) with the records themselves.  The rollups and 
+     * histograms can both be rebuilt from the raw records, so each is 
+     * updated behind its own savepoint and a failure is logged rather 
+     * than failing the records.
+     * 
+     * @param conn Connection with auto-commit disabled.
+     * @param records The records that were inserted.
+     * @throws SQLException Thrown if a savepoint could not be set or 
+     * rolled back (i.e. the connection itself is no longer usable).
+     */
+    private void updateRollups(
+            Connection              conn, 
+            List<BundlerJobMetrics> records) throws SQLException {
+        
+        Savepoint savepoint = conn.setSavepoint();
+        try {
+            JDBCMetricsRollupService.add(conn, records);
+        }
+        catch (SQLException se) {
+            conn.rollback(savepoint);
+            LOGGER.warn("Unable to update the [ "
+                    + JDBCMetricsRollupService.TABLE_NAME
+                    + " ] table for [ "
+                    + records.size()
+                    + " ] records.  The trend data will be incomplete "
+                    + "until the rollups are rebuilt "
+                    + "(/metrics/rollup/rebuild).  Error message [ "
+                    + se.getMessage()
+                    + " ].");
+        }
+        
+        savepoint = conn.setSavepoint();
+        try {
+            JDBCMetricsHistogramService.add(conn, records);
+        }
+        catch (SQLException se) {
+            conn.rollback(savepoint);
+            LOGGER.warn("Unable to update the [ "
+                    + JDBCMetricsHistogramService.TABLE_NAME
+                    + " ] table for [ "
+                    + records.size()
+                    + " ] records.  The percentile estimates will be "
+                    + "incomplete until the histograms are rebuilt "
+                    + "(/metrics/percentiles/rebuild).  Error message [ "
+                    + se.getMessage()
+                    + " ].");
+        }
+    }
+    
+    /**
+     * Bind the fields of the input metrics record to a statement prepared 
+     * using <code>INSERT_SQL</code> or <code>UPSERT_SQL</code>.
+     * 
+     * @param stmt The prepared statement.
+     * @param metrics The metrics record to bind.
+     * @throws SQLException Thrown if the parameters cannot be set.
+     */
+    private void setInsertParameters(
+            PreparedStatement stmt, 
+            BundlerJobMetrics metrics) throws SQLException {
+        stmt.setLong(   1,  metrics.getArchiveSize());
+        stmt.setString( 2,  metrics.getArchiveType().getText());
+        stmt.setLong(   3,  metrics.getElapsedTime());
+        stmt.setString( 4,  metrics.getJobID());
+        stmt.setString( 5,  metrics.getJobState().getText());
+        stmt.setInt(    6,  metrics.getNumArchives());
+        stmt.setInt(    7,  metrics.getNumArchivesComplete());
+        stmt.setLong(   8,  metrics.getNumFiles());
+        stmt.setLong(   9,  metrics.getNumFilesComplete());
+        stmt.setLong(   10, metrics.getStartTime());
+        stmt.setLong(   11, metrics.getTotalCompressedSize());
+        stmt.setLong(   12, metrics.getTotalSize());
+        stmt.setString( 13, metrics.getUserName());
+    }
 }
@@ -5,7 +5,11 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Resource;
 import javax.ejb.EJB;
@@ -15,7 +19,10 @@ import javax.sql.DataSource;
 
 import mil.nga.bundler.ejb.EJBClientUtilities;
 import mil.nga.bundler.ejb.exceptions.EJBLookupException;
+import mil.nga.bundler.model.Archive;
+import mil.nga.bundler.model.FileEntry;
 import mil.nga.bundler.model.Job;
+import mil.nga.bundler.model.JobSummary;
 import mil.nga.bundler.types.ArchiveType;
 import mil.nga.bundler.types.JobStateType;
 
@@ -35,9 +42,115 @@ import org.slf4j.LoggerFactory;
 public class JDBCJobService {
 
     /**
-     * Table used to extract the target archive information.
+     * Table used to extract the target job information.
      */
-    private static final String TABLE_NAME = "JOBS";
+    public static final String TABLE_NAME = "JOBS";
+    
+    /**
+     * Select clause used to build the lightweight <code>JobSummary</code>
+     * projection.  The archive count and compressed size are calculated 
+     * with correlated sub-queries against the ARCHIVE_JOBS table so that 
+     * only the archives of the selected job(s) are aggregated.  The 
+     * projection is obtained in a single round trip without ever touching 
+     * the FILE_ENTRY table.
+     */
+    private static final String SUMMARY_SELECT = "select j.JOB_ID, "
+            + "j.ARCHIVE_SIZE, j.ARCHIVE_TYPE, j.END_TIME, j.NUM_ARCHIVES, "
+            + "j.NUM_ARCHIVES_COMPLETE, j.NUM_FILES, j.NUM_FILES_COMPLETE, "
+            + "j.START_TIME, j.JOB_STATE, j.TOTAL_SIZE, j.USER_NAME, "
+            + "(select count(*) from "
+            + JDBCArchiveService.TABLE_NAME
+            + " a where a.JOB_ID = j.JOB_ID) as ARCHIVE_COUNT, "
+            + "(select coalesce(sum(a.ARCHIVE_SIZE), 0) from "
+            + JDBCArchiveService.TABLE_NAME
+            + " a where a.JOB_ID = j.JOB_ID) as COMPRESSED_SIZE from "
+            + TABLE_NAME
+            + " j";
+    
+    /**
+     * The maximum number of bind variables placed in a single IN-list.  
+     * Oracle rejects IN-lists containing more than 1000 expressions.
+     */
+    public static final int MAX_IN_LIST_SIZE = 1000;
+    
+    /**
+     * JOBS columns (table alias <code>j</code>) prefixed with J_ to avoid 
+     * collisions with the columns of the child tables.
+     */
+    private static final String JOB_COLUMNS = 
+            "j.JOB_ID J_JOB_ID, j.ARCHIVE_SIZE J_ARCHIVE_SIZE, "
+            + "j.ARCHIVE_TYPE J_ARCHIVE_TYPE, j.END_TIME J_END_TIME, "
+            + "j.NUM_ARCHIVES J_NUM_ARCHIVES, "
+            + "j.NUM_ARCHIVES_COMPLETE J_NUM_ARCHIVES_COMPLETE, "
+            + "j.NUM_FILES J_NUM_FILES, "
+            + "j.NUM_FILES_COMPLETE J_NUM_FILES_COMPLETE, "
+            + "j.START_TIME J_START_TIME, j.JOB_STATE J_JOB_STATE, "
+            + "j.TOTAL_SIZE J_TOTAL_SIZE, "
+            + "j.TOTAL_SIZE_COMPLETE J_TOTAL_SIZE_COMPLETE, "
+            + "j.USER_NAME J_USER_NAME";
+    
+    /**
+     * ARCHIVE_JOBS columns (table alias <code>a</code>) prefixed with A_.
+     */
+    private static final String ARCHIVE_COLUMNS = 
+            "a.ID A_ID, a.ARCHIVE_FILE A_ARCHIVE_FILE, "
+            + "a.ARCHIVE_ID A_ARCHIVE_ID, a.ARCHIVE_STATE A_ARCHIVE_STATE, "
+            + "a.ARCHIVE_TYPE A_ARCHIVE_TYPE, a.ARCHIVE_URL A_ARCHIVE_URL, "
+            + "a.END_TIME A_END_TIME, a.HASH_FILE A_HASH_FILE, "
+            + "a.HASH_FILE_URL A_HASH_FILE_URL, a.HOST_NAME A_HOST_NAME, "
+            + "a.JOB_ID A_JOB_ID, a.NUM_FILES A_NUM_FILES, "
+            + "a.SERVER_NAME A_SERVER_NAME, a.ARCHIVE_SIZE A_ARCHIVE_SIZE, "
+            + "a.START_TIME A_START_TIME";
+    
+    /**
+     * FILE_ENTRY columns (table alias <code>f</code>) prefixed with F_.
+     */
+    private static final String FILE_COLUMNS = 
+            "f.ID F_ID, f.ARCHIVE_ID F_ARCHIVE_ID, "
+            + "f.ARCHIVE_ENTRY_PATH F_ARCHIVE_ENTRY_PATH, "
+            + "f.FILE_STATE F_FILE_STATE, f.JOB_ID F_JOB_ID, f.PATH F_PATH, "
+            + "f.FILE_SIZE F_FILE_SIZE";
+    
+    /**
+     * Select clause used to load an entire job tree (JOBS, ARCHIVE_JOBS and
+     * FILE_ENTRY) in a single query.  Outer joins are used so jobs without 
+     * archives, and archives without files, are still returned.
+     */
+    private static final String JOB_TREE_SELECT = "select "
+            + JOB_COLUMNS
+            + ", "
+            + ARCHIVE_COLUMNS
+            + ", "
+            + FILE_COLUMNS
+            + " from "
+            + TABLE_NAME
+            + " j left outer join "
+            + JDBCArchiveService.TABLE_NAME
+            + " a on a.JOB_ID = j.JOB_ID left outer join "
+            + JDBCFileService.TABLE_NAME
+            + " f on f.JOB_ID = a.JOB_ID and f.ARCHIVE_ID = a.ARCHIVE_ID";
+    
+    /**
+     * Order by clause used with <code>JOB_TREE_SELECT</code>.  The rows for
+     * each job, and each archive within a job, must be contiguous so the 
+     * object graph can be built in a single pass over the ResultSet.
+     */
+    private static final String JOB_TREE_ORDER_BY = 
+            " order by j.JOB_ID, a.ARCHIVE_ID, f.ID";
+    
+    /**
+     * Predicate restricting a query against the JOBS table (aliased as 
+     * <code>j</code>) to jobs that have reached a terminal state.  Jobs in 
+     * any other state are still being processed and must not have metrics
+     * calculated.
+     */
+    public static final String TERMINAL_STATE_PREDICATE = "j.JOB_STATE in ('"
+            + JobStateType.COMPLETE.name()
+            + "', '"
+            + JobStateType.ERROR.name()
+            + "', '"
+            + JobStateType.INVALID_REQUEST.name()
+            + "')";
     
     /**
      * Set up the logging system for use throughout the class
@@ -90,6 +203,191 @@ public class JDBCJobService {
         return jdbcArchiveService;
     }
     
+    /**
+     * Construct a <code>JobSummary</code> object from the current row of 
+     * a ResultSet generated using the <code>SUMMARY_SELECT</code> clause.
+     * 
+     * @param rs The ResultSet positioned on the target row.
+     * @return The populated JobSummary object.
+     * @throws SQLException Thrown if there are problems reading the row.
+     */
+    private JobSummary toJobSummary(ResultSet rs) throws SQLException {
+        return new JobSummary.JobSummaryBuilder()
+                .jobID(rs.getString("JOB_ID"))
+                .archiveSize(rs.getLong("ARCHIVE_SIZE"))
+                .archiveType(ArchiveType.valueOf(
+                        rs.getString("ARCHIVE_TYPE")))
+                .endTime(rs.getLong("END_TIME"))
+                .numArchives(rs.getInt("NUM_ARCHIVES"))
+                .numArchivesComplete(rs.getInt("NUM_ARCHIVES_COMPLETE"))
+                .numFiles(rs.getLong("NUM_FILES"))
+                .numFilesComplete(rs.getLong("NUM_FILES_COMPLETE"))
+                .startTime(rs.getLong("START_TIME"))
+                .jobState(JobStateType.valueOf(
+                        rs.getString("JOB_STATE")))
+                .totalSize(rs.getLong("TOTAL_SIZE"))
+                .userName(rs.getString("USER_NAME"))
+                .archiveCount(rs.getLong("ARCHIVE_COUNT"))
+                .totalCompressedSize(rs.getLong("COMPRESSED_SIZE"))
+                .build();
+    }
+    
+    /**
+     * Construct a <code>Job</code> object (without children) from the 
+     * current row of a ResultSet generated using the 
+     * <code>JOB_TREE_SELECT</code> clause.
+     * 
+     * @param rs The ResultSet positioned on the target row.
+     * @return The populated Job object.
+     * @throws SQLException Thrown if there are problems reading the row.
+     */
+    private Job toJob(ResultSet rs) throws SQLException {
+        Job job = new Job();
+        job.setJobID(rs.getString("J_JOB_ID"));
+        job.setArchiveSize(rs.getLong("J_ARCHIVE_SIZE"));
+        job.setArchiveType(ArchiveType.valueOf(
+                rs.getString("J_ARCHIVE_TYPE")));
+        job.setEndTime(rs.getLong("J_END_TIME"));
+        job.setNumArchives(rs.getInt("J_NUM_ARCHIVES"));
+        job.setNumArchivesComplete(rs.getInt("J_NUM_ARCHIVES_COMPLETE"));
+        job.setNumFiles(rs.getLong("J_NUM_FILES"));
+        job.setNumFilesComplete(rs.getLong("J_NUM_FILES_COMPLETE"));
+        job.setStartTime(rs.getLong("J_START_TIME"));
+        job.setState(JobStateType.valueOf(rs.getString("J_JOB_STATE")));
+        job.setTotalSize(rs.getLong("J_TOTAL_SIZE"));
+        job.setTotalSizeComplete(rs.getLong("J_TOTAL_SIZE_COMPLETE"));
+        job.setUserName(rs.getString("J_USER_NAME"));
+        job.setArchives(new ArrayList<Archive>());
+        return job;
+    }
+    
+    /**
+     * Construct an <code>Archive</code> object (without files) from the 
+     * current row of a ResultSet generated using the 
+     * <code>JOB_TREE_SELECT</code> clause.
+     * 
+     * @param rs The ResultSet positioned on the target row.
+     * @return The populated Archive object.
+     * @throws SQLException Thrown if there are problems reading the row.
+     */
+    private Archive toArchive(ResultSet rs) throws SQLException {
+        Archive archive = new Archive();
+        archive.setID(rs.getLong("A_ID"));
+        archive.setArchive(rs.getString("A_ARCHIVE_FILE"));
+        archive.setArchiveID(rs.getLong("A_ARCHIVE_ID"));
+        archive.setArchiveState(JobStateType.valueOf(
+                rs.getString("A_ARCHIVE_STATE")));
+        archive.setArchiveType(ArchiveType.valueOf(
+                rs.getString("A_ARCHIVE_TYPE")));
+        archive.setArchiveURL(rs.getString("A_ARCHIVE_URL"));
+        archive.setEndTime(rs.getLong("A_END_TIME"));
+        archive.setHash(rs.getString("A_HASH_FILE"));
+        archive.setHashURL(rs.getString("A_HASH_FILE_URL"));
+        archive.setHostName(rs.getString("A_HOST_NAME"));
+        archive.setJobID(rs.getString("A_JOB_ID"));
+        archive.setNumFiles(rs.getInt("A_NUM_FILES"));
+        archive.setServerName(rs.getString("A_SERVER_NAME"));
+        archive.setSize(rs.getLong("A_ARCHIVE_SIZE"));
+        archive.setStartTime(rs.getLong("A_START_TIME"));
+        archive.setFiles(new ArrayList<FileEntry>());
+        return archive;
+    }
+    
+    /**
+     * Construct a <code>FileEntry</code> object from the current row of a 
+     * ResultSet generated using the <code>JOB_TREE_SELECT</code> clause.
+     * 
+     * @param rs The ResultSet positioned on the target row.
+     * @return The populated FileEntry object.
+     * @throws SQLException Thrown if there are problems reading the row.
+     */
+    private FileEntry toFileEntry(ResultSet rs) throws SQLException {
+        FileEntry file = new FileEntry();
+        file.setID(rs.getLong("F_ID"));
+        file.setArchiveID(rs.getLong("F_ARCHIVE_ID"));
+        file.setEntryPath(rs.getString("F_ARCHIVE_ENTRY_PATH"));
+        file.setFileState(JobStateType.valueOf(
+                rs.getString("F_FILE_STATE")));
+        file.setJobID(rs.getString("F_JOB_ID"));
+        file.setFilePath(rs.getString("F_PATH"));
+        file.setSize(rs.getLong("F_FILE_SIZE"));
+        return file;
+    }
+    
+    /**
+     * Build a comma-separated list of bind variable placeholders for use in
+     * an IN-list.
+     * 
+     * @param count The number of placeholders required.
+     * @return The placeholder list (e.g. "?, ?, ?").
+     */
+    private static String getPlaceholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("?");
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Split the input job IDs into de-duplicated chunks no larger than 
+     * <code>MAX_IN_LIST_SIZE</code>.  Null and empty job IDs are discarded.
+     * 
+     * @param jobIDs The job IDs to split.
+     * @return The list of chunks.
+     */
+    private static List<List<String>> getChunks(Collection<String> jobIDs) {
+        List<List<String>> chunks = new ArrayList<List<String>>();
+        List<String>       chunk  = new ArrayList<String>();
+        for (String jobID : new LinkedHashSet<String>(jobIDs)) {
+            if ((jobID != null) && (!jobID.isEmpty())) {
+                chunk.add(jobID);
+                if (chunk.size() >= MAX_IN_LIST_SIZE) {
+                    chunks.add(chunk);
+                    chunk = new ArrayList<String>();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+    
+    /**
+     * Add the archive and file information contained in the current row of 
+     * a <code>JOB_TREE_SELECT</code> ResultSet to the input job.  Rows must
+     * be ordered by archive ID so that a new archive is only started when 
+     * the archive ID changes.
+     * 
+     * @param job The job currently being built.
+     * @param archive The archive currently being built (may be null).
+     * @param rs The ResultSet positioned on the target row.
+     * @return The archive currently being built.
+     * @throws SQLException Thrown if there are problems reading the row.
+     */
+    private Archive addJobTreeRow(
+            Job       job, 
+            Archive   archive, 
+            ResultSet rs) throws SQLException {
+        
+        long archiveID = rs.getLong("A_ARCHIVE_ID");
+        if (!rs.wasNull()) {
+            if ((archive == null) || (archive.getArchiveID() != archiveID)) {
+                archive = toArchive(rs);
+                job.addArchive(archive);
+            }
+            rs.getLong("F_ID");
+            if (!rs.wasNull()) {
+                archive.add(toFileEntry(rs));
+            }
+        }
+        return archive;
+    }
+    
     /**
      * Delete all information associated with the input jobID from the back-end
      * data store.
@@ -312,6 +610,81 @@ public class JDBCJobService {
         return jobIDs;
     }
     
+    /**
+     * Retrieve the IDs of the jobs in a terminal state that were started 
+     * within the input time range.  Unlike <code>getJobsByDate()</code> the
+     * range is half-open (i.e. START_TIME &gt;= startTime and 
+     * START_TIME &lt; endTime) so that adjacent ranges neither overlap nor
+     * leave gaps.  Only the JOB_ID column is selected.
+     * 
+     * @param startTime The "from" parameter (inclusive).
+     * @param endTime The "to" parameter (exclusive).
+     * @return A list of job IDs ordered by START_TIME and JOB_ID.
+     */
+    public List<String> getJobIDsByDate(long startTime, long endTime) {
+        
+        Connection        conn   = null;
+        List<String>      jobIDs = new ArrayList<String>();
+        PreparedStatement stmt   = null;
+        ResultSet         rs     = null;
+        long              start  = System.currentTimeMillis();
+        String            sql    = "select j.JOB_ID from " 
+                + TABLE_NAME
+                + " j where j.START_TIME >= ? and j.START_TIME < ? and "
+                + TERMINAL_STATE_PREDICATE
+                + " order by j.START_TIME, j.JOB_ID";
+        
+        if (datasource != null) {
+            
+            try {
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                stmt.setLong(1, startTime);
+                stmt.setLong(2, endTime);
+                stmt.setFetchSize(JDBCJobMetricsService.DEFAULT_FETCH_SIZE);
+                rs   = stmt.executeQuery();
+                while (rs.next()) {
+                    jobIDs.add(rs.getString("JOB_ID"));
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to retrieve the job IDs started "
+                        + "between [ "
+                        + startTime
+                        + " ] and [ "
+                        + endTime
+                        + " ].  Error message [ "
+                        + se.getMessage() 
+                        + " ].");
+            }
+            finally {
+                try { 
+                    if (rs != null) { rs.close(); } 
+                } catch (Exception e) {}
+                try { 
+                    if (stmt != null) { stmt.close(); } 
+                } catch (Exception e) {}
+                try { 
+                    if (conn != null) { conn.close(); } 
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+        
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + jobIDs.size() 
+                    + " ] job IDs selected in [ "
+                    + (System.currentTimeMillis() - start) 
+                    + " ] ms.");
+        }
+        return jobIDs;
+    }
+    
     /**
      * This method will return a list of all 
      * <code>mil.nga.bundler.model.Job</code> objects currently persisted in 
@@ -396,26 +769,26 @@ public class JDBCJobService {
     /**
      * Load the fully materialized Job from the data store.  The returned
      * Job object will contain fully populated child Archive and 
-     * child FileEntry lists. 
+     * child FileEntry lists.  The JOBS, ARCHIVE_JOBS and FILE_ENTRY tables
+     * are joined in a single ordered query, so the entire tree is loaded 
+     * with one round trip (and one pooled connection) regardless of the 
+     * number of archives in the job.
      * 
      * @param jobID The ID of the job to retrieve.
      * @return The fully materialized job.
      */
     public Job getMaterializedJob(String jobID) {
         
-        Connection        conn   = null;
-        Job               job    = new Job();
-        PreparedStatement stmt   = null;
-        ResultSet         rs     = null;
-        long              start  = System.currentTimeMillis();
-        String            sql    = "select JOB_ID, ARCHIVE_SIZE, "
-                + "ARCHIVE_TYPE, END_TIME, NUM_ARCHIVES, "
-                + "NUM_ARCHIVES_COMPLETE, NUM_FILES, NUM_FILES_COMPLETE, "
-                + "START_TIME, JOB_STATE, TOTAL_SIZE, TOTAL_SIZE_COMPLETE, "
-                + "USER_NAME from "
-                + TABLE_NAME 
-                + " where JOB_ID = ?";
-
+        Archive           archive = null;
+        Connection        conn    = null;
+        Job               job     = new Job();
+        PreparedStatement stmt    = null;
+        ResultSet         rs      = null;
+        int               rows    = 0;
+        long              start   = System.currentTimeMillis();
+        String            sql     = JOB_TREE_SELECT 
+                + " where j.JOB_ID = ?"
+                + JOB_TREE_ORDER_BY;
         
         if (datasource != null) {
             if ((jobID != null) && (!jobID.isEmpty())) {
@@ -424,45 +797,25 @@ public class JDBCJobService {
                     conn = datasource.getConnection();
                     stmt = conn.prepareStatement(sql);
                     stmt.setString(1, jobID);
+                    stmt.setFetchSize(JDBCJobMetricsService.DEFAULT_FETCH_SIZE);
                     rs   = stmt.executeQuery();
                     
-                    if (rs.next()) {
-                        
-                        job.setJobID(rs.getString("JOB_ID"));
-                        job.setArchiveSize(rs.getLong("ARCHIVE_SIZE"));
-                        job.setArchiveType(ArchiveType.valueOf(
-                                rs.getString("ARCHIVE_TYPE")));
-                        job.setEndTime(rs.getLong("END_TIME"));
-                        job.setNumArchives(rs.getInt("NUM_ARCHIVES"));
-                        job.setNumArchivesComplete(
-                                rs.getInt("NUM_ARCHIVES_COMPLETE"));
-                        job.setNumFiles(rs.getLong("NUM_FILES"));
-                        job.setNumFilesComplete(rs.getLong("NUM_FILES_COMPLETE"));
-                        job.setStartTime(rs.getLong("START_TIME"));
-                        job.setState(JobStateType.valueOf(
-                                rs.getString("JOB_STATE")));
-                        job.setTotalSize(rs.getLong("TOTAL_SIZE"));
-                        job.setTotalSizeComplete(rs.getLong("TOTAL_SIZE_COMPLETE"));
-                        job.setUserName(rs.getString("USER_NAME"));
-                        
-                        // Get the child archive data
-                        job.setArchives(
-                                getJDBCArchiveService().
-                                    getMaterializedArchives(
-                                        job.getJobID()));
+                    // Build the Job/Archive/FileEntry graph in a single 
+                    // pass over the joined rows.
+                    while (rs.next()) {
+                        if (rows == 0) {
+                            job = toJob(rs);
+                        }
+                        archive = addJobTreeRow(job, archive, rs);
+                        rows++;
                     }
                 }
-                catch (EJBLookupException ele) {
-                    LOGGER.error("Unable to obtain a reference to [ "
-                            + ele.getEJBName()
-                            + " ].  Delete of job [  "
-                            + jobID
-                            + " ] will not be performed.");
-                }
                 catch (SQLException se) {
                     LOGGER.error("An unexpected SQLException was raised while "
-                            + "attempting to retrieve a list of job IDs from the "
-                            + "target data source.  Error message [ "
+                            + "attempting to retrieve the materialized job "
+                            + "with job ID [ "
+                            + jobID
+                            + " ].  Error message [ "
                             + se.getMessage() 
                             + " ].");
                 }
@@ -492,11 +845,602 @@ public class JDBCJobService {
                     + jobID 
                     + " ] selected in [ "
                     + (System.currentTimeMillis() - start) 
-                    + " ] ms.");
+                    + " ] ms from [ "
+                    + rows
+                    + " ] rows.");
         }
         return job;
     }
     
+    /**
+     * Load the fully materialized Jobs associated with the input job IDs.
+     * The job IDs are processed in chunks of (at most) 
+     * <code>MAX_IN_LIST_SIZE</code> and each chunk is loaded with exactly 
+     * three IN-list queries (JOBS, ARCHIVE_JOBS and FILE_ENTRY) on a single
+     * connection.  The results are stitched together in memory using maps 
+     * keyed by job ID (and job ID/archive ID), so the number of queries 
+     * issued is proportional to the number of chunks rather than the 
+     * number of jobs and archives.
+     * 
+     * @param jobIDs The IDs of the jobs to retrieve.
+     * @return The fully materialized jobs, in the order the job IDs were 
+     * supplied.  Job IDs that do not exist are omitted.
+     */
+    public List<Job> getMaterializedJobs(Collection<String> jobIDs) {
+        
+        Connection        conn  = null;
+        List<Job>         jobs  = new ArrayList<Job>();
+        long              start = System.currentTimeMillis();
+        
+        if (datasource != null) {
+            if ((jobIDs != null) && (!jobIDs.isEmpty())) {
+                try {
+                    conn = datasource.getConnection();
+                    for (List<String> chunk : getChunks(jobIDs)) {
+                        jobs.addAll(getMaterializedJobs(conn, chunk));
+                    }
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to retrieve [ "
+                            + jobIDs.size()
+                            + " ] materialized jobs.  Error message [ "
+                            + se.getMessage() 
+                            + " ].");
+                }
+                finally {
+                    try { 
+                        if (conn != null) { conn.close(); } 
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+        
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + jobs.size()
+                    + " ] materialized jobs selected in [ "
+                    + (System.currentTimeMillis() - start) 
+                    + " ] ms.");
+        }
+        return jobs;
+    }
+    
+    /**
+     * Load a single chunk of materialized jobs using the supplied 
+     * connection.
+     * 
+     * @param conn The open database connection.
+     * @param chunk The job IDs to load (no more than 
+     * <code>MAX_IN_LIST_SIZE</code>).
+     * @return The materialized jobs, in the order of the input chunk.
+     * @throws SQLException Thrown if any of the queries fail.
+     */
+    private List<Job> getMaterializedJobs(
+            Connection   conn, 
+            List<String> chunk) throws SQLException {
+        
+        Map<String, Job>     jobMap     = new HashMap<String, Job>();
+        Map<String, Archive> archiveMap = new HashMap<String, Archive>();
+        List<Job>            jobs       = new ArrayList<Job>(chunk.size());
+        PreparedStatement    stmt       = null;
+        ResultSet            rs         = null;
+        String               inList     = getPlaceholders(chunk.size());
+        
+        try {
+            
+            // JOBS
+            stmt = conn.prepareStatement("select " 
+                    + JOB_COLUMNS
+                    + " from "
+                    + TABLE_NAME
+                    + " j where j.JOB_ID in ("
+                    + inList
+                    + ")");
+            setParameters(stmt, chunk);
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                Job job = toJob(rs);
+                jobMap.put(job.getJobID(), job);
+            }
+            rs.close();
+            stmt.close();
+            
+            // ARCHIVE_JOBS
+            stmt = conn.prepareStatement("select " 
+                    + ARCHIVE_COLUMNS
+                    + " from "
+                    + JDBCArchiveService.TABLE_NAME
+                    + " a where a.JOB_ID in ("
+                    + inList
+                    + ") order by a.JOB_ID, a.ARCHIVE_ID");
+            setParameters(stmt, chunk);
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                Archive archive = toArchive(rs);
+                Job     job     = jobMap.get(archive.getJobID());
+                if (job != null) {
+                    job.addArchive(archive);
+                    archiveMap.put(
+                            archive.getJobID() + ":" + archive.getArchiveID(), 
+                            archive);
+                }
+            }
+            rs.close();
+            stmt.close();
+            
+            // FILE_ENTRY
+            stmt = conn.prepareStatement("select " 
+                    + FILE_COLUMNS
+                    + " from "
+                    + JDBCFileService.TABLE_NAME
+                    + " f where f.JOB_ID in ("
+                    + inList
+                    + ") order by f.JOB_ID, f.ARCHIVE_ID, f.ID");
+            setParameters(stmt, chunk);
+            stmt.setFetchSize(JDBCJobMetricsService.DEFAULT_FETCH_SIZE);
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                FileEntry file    = toFileEntry(rs);
+                Archive   archive = archiveMap.get(
+                        file.getJobID() + ":" + file.getArchiveID());
+                if (archive != null) {
+                    archive.add(file);
+                }
+            }
+        }
+        finally {
+            try { 
+                if (rs != null) { rs.close(); } 
+            } catch (Exception e) {}
+            try { 
+                if (stmt != null) { stmt.close(); } 
+            } catch (Exception e) {}
+        }
+        
+        for (String jobID : chunk) {
+            Job job = jobMap.get(jobID);
+            if (job != null) {
+                jobs.add(job);
+            }
+        }
+        return jobs;
+    }
+    
+    /**
+     * Retrieve the <code>JobSummary</code> projections for the input job 
+     * IDs.  The job IDs are processed in chunks of (at most) 
+     * <code>MAX_IN_LIST_SIZE</code>, each of which is loaded with a single 
+     * IN-list query on a shared connection.
+     * 
+     * @param jobIDs The IDs of the jobs to retrieve.
+     * @return The job summaries, in the order the job IDs were supplied.  
+     * Job IDs that do not exist are omitted.
+     */
+    public List<JobSummary> getJobSummaries(Collection<String> jobIDs) {
+        
+        Connection        conn      = null;
+        List<JobSummary>  summaries = new ArrayList<JobSummary>();
+        PreparedStatement stmt      = null;
+        ResultSet         rs        = null;
+        long              start     = System.currentTimeMillis();
+        
+        if (datasource != null) {
+            if ((jobIDs != null) && (!jobIDs.isEmpty())) {
+                try {
+                    conn = datasource.getConnection();
+                    for (List<String> chunk : getChunks(jobIDs)) {
+                        
+                        Map<String, JobSummary> summaryMap = 
+                                new HashMap<String, JobSummary>();
+                        stmt = conn.prepareStatement(SUMMARY_SELECT 
+                                + " where j.JOB_ID in ("
+                                + getPlaceholders(chunk.size())
+                                + ")");
+                        setParameters(stmt, chunk);
+                        rs = stmt.executeQuery();
+                        while (rs.next()) {
+                            JobSummary summary = toJobSummary(rs);
+                            summaryMap.put(summary.getJobID(), summary);
+                        }
+                        rs.close();
+                        stmt.close();
+                        
+                        for (String jobID : chunk) {
+                            if (summaryMap.containsKey(jobID)) {
+                                summaries.add(summaryMap.get(jobID));
+                            }
+                        }
+                    }
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to retrieve [ "
+                            + jobIDs.size()
+                            + " ] job summaries.  Error message [ "
+                            + se.getMessage() 
+                            + " ].");
+                }
+                finally {
+                    try { 
+                        if (rs != null) { rs.close(); } 
+                    } catch (Exception e) {}
+                    try { 
+                        if (stmt != null) { stmt.close(); } 
+                    } catch (Exception e) {}
+                    try { 
+                        if (conn != null) { conn.close(); } 
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+        
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + summaries.size()
+                    + " ] job summaries selected in [ "
+                    + (System.currentTimeMillis() - start) 
+                    + " ] ms.");
+        }
+        return summaries;
+    }
+    
+    /**
+     * Bind the input values, in order, to the parameters of the input 
+     * statement.
+     * 
+     * @param stmt The prepared statement.
+     * @param values The values to bind.
+     * @throws SQLException Thrown if the parameters cannot be set.
+     */
+    private static void setParameters(
+            PreparedStatement stmt, 
+            List<String>      values) throws SQLException {
+        for (int i = 0; i < values.size(); i++) {
+            stmt.setString(i + 1, values.get(i));
+        }
+    }
+    
+    /**
+     * Retrieve the next page of completed jobs (i.e. jobs in a terminal 
+     * state) that sort after the input 
+     * checkpoint position in (END_TIME, JOB_ID) order and that do not yet
+     * have a metrics record.  The candidate JOB_IDs are selected with a 
+     * range scan over the (END_TIME, JOB_ID) index and the summary 
+     * information is only calculated for the rows in the page, so the cost 
+     * of the query is proportional to the amount of new work rather than 
+     * the size of the JOBS table.
+     * 
+     * @param endTime END_TIME of the last job processed.
+     * @param jobID JOB_ID of the last job processed.
+     * @param maxRows The maximum number of summaries to return.
+     * @return The next page of job summaries, ordered by END_TIME and JOB_ID.
+     * The list will be empty if there are no more jobs to process.
+     */
+    public List<JobSummary> getCompletedJobSummaries(
+            long   endTime, 
+            String jobID, 
+            int    maxRows) {
+        return getCompletedJobSummaries(endTime, jobID, maxRows, true);
+    }
+    
+    /**
+     * Retrieve the next page of completed jobs that sort after the input 
+     * position in (END_TIME, JOB_ID) order.  
+     * 
+     * @param endTime END_TIME of the last job processed.
+     * @param jobID JOB_ID of the last job processed.
+     * @param maxRows The maximum number of summaries to return.
+     * @param pendingOnly True if jobs that already have a metrics record 
+     * should be excluded.  False if every completed job should be returned
+     * (i.e. when existing metrics records are being refreshed).
+     * @return The next page of job summaries, ordered by END_TIME and JOB_ID.
+     * The list will be empty if there are no more jobs to process.
+     */
+    public List<JobSummary> getCompletedJobSummaries(
+            long    endTime, 
+            String  jobID, 
+            int     maxRows,
+            boolean pendingOnly) {
+        
+        Connection        conn      = null;
+        List<JobSummary>  summaries = new ArrayList<JobSummary>();
+        PreparedStatement stmt      = null;
+        ResultSet         rs        = null;
+        long              start     = System.currentTimeMillis();
+        String            sql       = SUMMARY_SELECT 
+                + " where j.JOB_ID in (select JOB_ID from (select j.JOB_ID "
+                + "from "
+                + TABLE_NAME
+                + " j where j.END_TIME > 0 and (j.END_TIME > ? or "
+                + "(j.END_TIME = ? and j.JOB_ID > ?)) and "
+                + TERMINAL_STATE_PREDICATE
+                + (pendingOnly ? " and not exists (select 1 from "
+                        + JDBCJobMetricsService.TABLE_NAME
+                        + " m where m.JOB_ID = j.JOB_ID)" : "")
+                + " order by j.END_TIME, j.JOB_ID) where rownum <= ?) "
+                + "order by j.END_TIME, j.JOB_ID";
+        
+        if (datasource != null) {
+            try {
+                
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                stmt.setLong(  1, endTime);
+                stmt.setLong(  2, endTime);
+                stmt.setString(3, (jobID == null ? "" : jobID));
+                stmt.setInt(   4, maxRows);
+                stmt.setFetchSize(
+                        Math.min(maxRows, JDBCJobMetricsService.DEFAULT_FETCH_SIZE));
+                rs   = stmt.executeQuery();
+                
+                while (rs.next()) {
+                    summaries.add(toJobSummary(rs));
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to retrieve the completed jobs after "
+                        + "END_TIME [ "
+                        + endTime
+                        + " ] and JOB_ID [ "
+                        + jobID
+                        + " ].  Error message [ "
+                        + se.getMessage() 
+                        + " ].");
+            }
+            finally {
+                try { 
+                    if (rs != null) { rs.close(); } 
+                } catch (Exception e) {}
+                try { 
+                    if (stmt != null) { stmt.close(); } 
+                } catch (Exception e) {}
+                try { 
+                    if (conn != null) { conn.close(); } 
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+        
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + summaries.size()
+                    + " ] completed job summaries selected in [ "
+                    + (System.currentTimeMillis() - start) 
+                    + " ] ms.");
+        }
+        return summaries;
+    }
+    
+    /**
+     * Retrieve the completed job (i.e. job in a terminal state) that sorts
+     * last in (END_TIME, JOB_ID) order among the jobs that completed at or
+     * before the input time, regardless of whether it has a metrics 
+     * record.  The job is located with a single descending probe of the 
+     * (END_TIME, JOB_ID) index.  Incremental collection uses this position
+     * to move its checkpoint past jobs whose metrics were written by 
+     * another path (e.g. the job-completion listener).
+     * 
+     * @param maxEndTime The latest END_TIME to consider.
+     * @return The summary of the last completed job, or null if there are
+     * no completed jobs (or the job could not be retrieved).
+     */
+    public JobSummary getLastCompletedJob(long maxEndTime) {
+        
+        Connection        conn    = null;
+        JobSummary        summary = null;
+        PreparedStatement stmt    = null;
+        ResultSet         rs      = null;
+        String            sql     = SUMMARY_SELECT 
+                + " where j.JOB_ID = (select JOB_ID from (select j.JOB_ID "
+                + "from "
+                + TABLE_NAME
+                + " j where j.END_TIME > 0 and j.END_TIME <= ? and "
+                + TERMINAL_STATE_PREDICATE
+                + " order by j.END_TIME desc, j.JOB_ID desc) "
+                + "where rownum <= 1)";
+        
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                stmt.setLong(1, maxEndTime);
+                rs   = stmt.executeQuery();
+                if (rs.next()) {
+                    summary = toJobSummary(rs);
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to retrieve the last completed job.  "
+                        + "Error message [ "
+                        + se.getMessage() 
+                        + " ].");
+            }
+            finally {
+                try { 
+                    if (rs != null) { rs.close(); } 
+                } catch (Exception e) {}
+                try { 
+                    if (stmt != null) { stmt.close(); } 
+                } catch (Exception e) {}
+                try { 
+                    if (conn != null) { conn.close(); } 
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "A null summary will be returned to the caller.");
+        }
+        return summary;
+    }
+    
+    /**
+     * Count the completed jobs that sort after the <code>from</code> 
+     * position and at or before the <code>to</code> position in 
+     * (END_TIME, JOB_ID) order that have neither a metrics record nor a 
+     * retry record (i.e. jobs that still need to be collected).
+     * 
+     * @param fromEndTime END_TIME of the start position (exclusive).
+     * @param fromJobID JOB_ID of the start position (exclusive).
+     * @param toEndTime END_TIME of the end position (inclusive).
+     * @param toJobID JOB_ID of the end position (inclusive).
+     * @return The number of uncollected jobs, or -1 if they could not be 
+     * counted.
+     */
+    public long countPendingCompletedJobs(
+            long   fromEndTime, 
+            String fromJobID, 
+            long   toEndTime, 
+            String toJobID) {
+        
+        Connection        conn  = null;
+        long              count = -1L;
+        PreparedStatement stmt  = null;
+        ResultSet         rs    = null;
+        String            sql   = "select count(*) from "
+                + TABLE_NAME
+                + " j where j.END_TIME > 0 and (j.END_TIME > ? or "
+                + "(j.END_TIME = ? and j.JOB_ID > ?)) and (j.END_TIME < ? or "
+                + "(j.END_TIME = ? and j.JOB_ID <= ?)) and "
+                + TERMINAL_STATE_PREDICATE
+                + " and not exists (select 1 from "
+                + JDBCJobMetricsService.TABLE_NAME
+                + " m where m.JOB_ID = j.JOB_ID) and not exists (select 1 "
+                + "from "
+                + JDBCRetryService.TABLE_NAME
+                + " r where r.JOB_ID = j.JOB_ID)";
+        
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                stmt.setLong(  1, fromEndTime);
+                stmt.setLong(  2, fromEndTime);
+                stmt.setString(3, (fromJobID == null ? "" : fromJobID));
+                stmt.setLong(  4, toEndTime);
+                stmt.setLong(  5, toEndTime);
+                stmt.setString(6, (toJobID == null ? "" : toJobID));
+                rs   = stmt.executeQuery();
+                if (rs.next()) {
+                    count = rs.getLong(1);
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to count the uncollected jobs after "
+                        + "END_TIME [ "
+                        + fromEndTime
+                        + " ] and JOB_ID [ "
+                        + fromJobID
+                        + " ].  Error message [ "
+                        + se.getMessage() 
+                        + " ].");
+            }
+            finally {
+                try { 
+                    if (rs != null) { rs.close(); } 
+                } catch (Exception e) {}
+                try { 
+                    if (stmt != null) { stmt.close(); } 
+                } catch (Exception e) {}
+                try { 
+                    if (conn != null) { conn.close(); } 
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The uncollected jobs cannot be counted.");
+        }
+        return count;
+    }
+    
+    /**
+     * Load the lightweight metrics projection of the target job.  The 
+     * returned object contains the JOBS information along with the 
+     * archive count and total compressed size aggregated from the 
+     * ARCHIVE_JOBS table.  Neither the individual archives nor the file 
+     * lists are loaded. 
+     * 
+     * @param jobID The ID of the job to retrieve.
+     * @return The job summary, or null if the job could not be found.
+     */
+    public JobSummary getJobSummary(String jobID) {
+        
+        Connection        conn    = null;
+        JobSummary        summary = null;
+        PreparedStatement stmt    = null;
+        ResultSet         rs      = null;
+        long              start   = System.currentTimeMillis();
+        String            sql     = SUMMARY_SELECT + " where j.JOB_ID = ?";
+        
+        if (datasource != null) {
+            if ((jobID != null) && (!jobID.isEmpty())) {
+                try {
+                    
+                    conn = datasource.getConnection();
+                    stmt = conn.prepareStatement(sql);
+                    stmt.setString(1, jobID);
+                    rs   = stmt.executeQuery();
+                    
+                    if (rs.next()) {
+                        summary = toJobSummary(rs);
+                    }
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to retrieve the summary of job ID [ "
+                            + jobID
+                            + " ].  Error message [ "
+                            + se.getMessage() 
+                            + " ].");
+                }
+                finally {
+                    try { 
+                        if (rs != null) { rs.close(); } 
+                    } catch (Exception e) {}
+                    try { 
+                        if (stmt != null) { stmt.close(); } 
+                    } catch (Exception e) {}
+                    try { 
+                        if (conn != null) { conn.close(); } 
+                    } catch (Exception e) {}
+                }
+            }
+            else {
+                LOGGER.warn("The input job ID is null or empty.  Unable to "
+                        + "retrieve the job summary.");
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "A null JobSummary will be returned to the caller.");
+        }
+        
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Summary of job ID [ "
+                    + jobID 
+                    + " ] selected in [ "
+                    + (System.currentTimeMillis() - start) 
+                    + " ] ms.");
+        }
+        return summary;
+    }
+    
     /**
      * This method will return a list of all 
      * <code>mil.nga.bundler.model.Job</code> objects currently persisted in 
@@ -0,0 +1,439 @@
+package mil.nga.bundler.ejb.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.model.CollectionLease;
+
+/**
+ * Session bean providing methods for interfacing with the table containing
+ * the lease used to ensure only one node in the cluster executes a metrics
+ * collection run at a time.  All lease times are calculated using the
+ * database clock so the nodes in the cluster do not need to agree on the
+ * current time.
+ *
+ * This class is written assuming that the injected DataSource object is not
+ * handling the transactions on behalf of the application (i.e. non-JTA).  If
+ * this bean is deployed to a container with JTA enabled, the update
+ * functions will throw exceptions when attempting to manage the underlying
+ * transaction.
+ */
+@Stateless
+@LocalBean
+public class JDBCLeaseService {
+
+    /**
+     * The target table name.
+     */
+    public static final String TABLE_NAME = "BUNDLER_METRICS_LEASE";
+
+    /**
+     * SQL expression calculating the current database time in milliseconds
+     * since the epoch (UTC).
+     */
+    public static final String DB_TIME = "round((cast(sys_extract_utc("
+            + "systimestamp) as date) - date '1970-01-01') * 86400000)";
+
+    /**
+     * SQL used to acquire the lease.  The lease row is created if it does
+     * not exist, and taken over if it has expired (or is already held by
+     * the requesting run).  If the lease is held by another run no rows are
+     * updated.
+     */
+    private static final String ACQUIRE_SQL = "merge into "
+            + TABLE_NAME
+            + " l using (select ? LEASE_NAME from dual) s "
+            + "on (l.LEASE_NAME = s.LEASE_NAME) "
+            + "when matched then update set l.RUN_ID = ?, l.OWNER = ?, "
+            + "l.ACQUIRED = " + DB_TIME + ", "
+            + "l.EXPIRES = " + DB_TIME + " + ? "
+            + "where l.EXPIRES < " + DB_TIME + " or l.RUN_ID = ? "
+            + "when not matched then insert (LEASE_NAME, RUN_ID, OWNER, "
+            + "ACQUIRED, EXPIRES) values (s.LEASE_NAME, ?, ?, "
+            + DB_TIME + ", " + DB_TIME + " + ?)";
+
+    /**
+     * SQL used to extend the lease.  The lease is only extended if it is
+     * still held by the requesting run.
+     */
+    private static final String RENEW_SQL = "update "
+            + TABLE_NAME
+            + " set EXPIRES = " + DB_TIME + " + ? "
+            + "where LEASE_NAME = ? and RUN_ID = ?";
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JDBCLeaseService.class);
+
+    /**
+     * Container-injected datasource object.
+     */
+    @Resource(mappedName="java:jboss/datasources/JobTracker")
+    DataSource datasource;
+
+    /**
+     * Default constructor.
+     */
+    public JDBCLeaseService() { }
+
+    /**
+     * Attempt to acquire the named lease on behalf of the input run.  The
+     * lease is acquired if it does not exist, has expired, or is already
+     * held by the input run.
+     *
+     * @param name The lease name.
+     * @param runID The ID of the run requesting the lease.
+     * @param owner The server on which the run is executing.
+     * @param ttl The time (in milliseconds) the lease is valid without
+     * renewal.
+     * @return True if the lease was acquired.
+     */
+    public boolean acquire(String name, String runID, String owner, long ttl) {
+
+        boolean           acquired = false;
+        Connection        conn     = null;
+        PreparedStatement stmt     = null;
+        long              start    = System.currentTimeMillis();
+
+        if (datasource != null) {
+            if ((name != null) && (runID != null)) {
+                try {
+                    conn = datasource.getConnection();
+                    conn.setAutoCommit(false);
+                    stmt = conn.prepareStatement(ACQUIRE_SQL);
+                    stmt.setString(1, name);
+                    stmt.setString(2, runID);
+                    stmt.setString(3, owner);
+                    stmt.setLong(  4, ttl);
+                    stmt.setString(5, runID);
+                    stmt.setString(6, runID);
+                    stmt.setString(7, owner);
+                    stmt.setLong(  8, ttl);
+                    acquired = (stmt.executeUpdate() > 0);
+                    conn.commit();
+                }
+                catch (SQLException se) {
+                    // A unique constraint violation here means another node
+                    // created the lease row first.
+                    LOGGER.warn("SQLException raised while attempting to "
+                            + "acquire lease [ "
+                            + name
+                            + " ] for run [ "
+                            + runID
+                            + " ].  The lease will be treated as held.  "
+                            + "Error message [ "
+                            + se.getMessage()
+                            + " ].");
+                    acquired = false;
+                }
+                finally {
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (conn != null) { conn.close(); }
+                    } catch (Exception e) {}
+                }
+            }
+            else {
+                LOGGER.warn("The input lease name or run ID is null.  "
+                        + "Unable to acquire the lease.");
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The lease will not be acquired.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Lease [ "
+                    + name
+                    + " ] acquired by run [ "
+                    + runID
+                    + " ] => [ "
+                    + acquired
+                    + " ] in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return acquired;
+    }
+
+    /**
+     * Acquire the named lease on behalf of the input run or, if another 
+     * run holds it, identify that run so the caller can join it.  This is
+     * shared by every entry point that starts (or joins) a leased run.
+     *
+     * @param name The lease name.
+     * @param runID The ID of the run requesting the lease.
+     * @param owner Identifies the node requesting the lease.
+     * @param ttl The lease time-to-live in milliseconds.
+     * @return The ID of the run holding the lease.  This will be the input
+     * run ID if the lease was acquired, the ID of the run holding the lease
+     * if it is held elsewhere, or null if the lease could not be acquired 
+     * and is not held (e.g. the database could not be reached).
+     */
+    public String acquireOrJoin(
+            String name, 
+            String runID, 
+            String owner, 
+            long   ttl) {
+
+        String holder = null;
+
+        if (acquire(name, runID, owner, ttl)) {
+            holder = runID;
+        }
+        else {
+            CollectionLease lease = getLease(name);
+            if (lease != null) {
+                holder = lease.getRunID();
+                LOGGER.info("Lease [ "
+                        + name
+                        + " ] is held by run [ "
+                        + holder
+                        + " ] on [ "
+                        + lease.getOwner()
+                        + " ].  Joining the existing run.");
+            }
+            else {
+                LOGGER.error("Unable to acquire lease [ "
+                        + name
+                        + " ].  Run [ "
+                        + runID
+                        + " ] will not be started.");
+            }
+        }
+        return holder;
+    }
+
+    /**
+     * Retrieve the lease with the input name if it is currently held (i.e.
+     * it has not expired or been released).  A released lease keeps the ID
+     * of the last run that held it, so expired leases are never returned.
+     *
+     * @param name The lease name.
+     * @return The lease, or null if the lease is not held (or could not be
+     * retrieved).
+     */
+    public CollectionLease getLease(String name) {
+
+        Connection        conn  = null;
+        CollectionLease   lease = null;
+        PreparedStatement stmt  = null;
+        ResultSet         rs    = null;
+        String            sql   = "select LEASE_NAME, RUN_ID, OWNER, "
+                + "ACQUIRED, EXPIRES from "
+                + TABLE_NAME
+                + " where LEASE_NAME = ? and EXPIRES > "
+                + DB_TIME;
+
+        if (datasource != null) {
+            if ((name != null) && (!name.isEmpty())) {
+                try {
+                    conn = datasource.getConnection();
+                    stmt = conn.prepareStatement(sql);
+                    stmt.setString(1, name);
+                    rs   = stmt.executeQuery();
+                    if (rs.next()) {
+                        lease = new CollectionLease.CollectionLeaseBuilder()
+                                    .name(rs.getString("LEASE_NAME"))
+                                    .runID(rs.getString("RUN_ID"))
+                                    .owner(rs.getString("OWNER"))
+                                    .acquired(rs.getLong("ACQUIRED"))
+                                    .expires(rs.getLong("EXPIRES"))
+                                    .build();
+                    }
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to retrieve lease [ "
+                            + name
+                            + " ] from table [ "
+                            + TABLE_NAME
+                            + " ].  Error message [ "
+                            + se.getMessage()
+                            + " ].");
+                }
+                finally {
+                    try {
+                        if (rs != null) { rs.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (conn != null) { conn.close(); }
+                    } catch (Exception e) {}
+                }
+            }
+            else {
+                LOGGER.warn("The input lease name is null or empty.  "
+                        + "Unable to retrieve the lease.");
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "A null lease will be returned to the caller.");
+        }
+        return lease;
+    }
+
+    /**
+     * Release the named lease if it is held by the input run.  The lease is
+     * released by expiring it immediately so that the next trigger (on any
+     * node) can acquire it without waiting for the time-to-live.
+     *
+     * @param name The lease name.
+     * @param runID The ID of the run holding the lease.
+     */
+    public void release(String name, String runID) {
+
+        Connection        conn = null;
+        PreparedStatement stmt = null;
+        String            sql  = "update "
+                + TABLE_NAME
+                + " set EXPIRES = 0 where LEASE_NAME = ? and RUN_ID = ?";
+
+        if (datasource != null) {
+            if ((name != null) && (runID != null)) {
+                try {
+                    conn = datasource.getConnection();
+                    conn.setAutoCommit(false);
+                    stmt = conn.prepareStatement(sql);
+                    stmt.setString(1, name);
+                    stmt.setString(2, runID);
+                    stmt.executeUpdate();
+                    conn.commit();
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to release lease [ "
+                            + name
+                            + " ] held by run [ "
+                            + runID
+                            + " ].  The lease will expire on its own.  "
+                            + "Error message [ "
+                            + se.getMessage()
+                            + " ].");
+                }
+                finally {
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (conn != null) { conn.close(); }
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The lease will not be released.");
+        }
+    }
+
+    /**
+     * Extend the named lease if it is still held by the input run.
+     *
+     * @param name The lease name.
+     * @param runID The ID of the run holding the lease.
+     * @param ttl The time (in milliseconds) the lease is valid without
+     * renewal.
+     * @return True if the lease was extended, false if it is no longer held
+     * by the input run (or could not be extended).
+     */
+    public boolean renew(String name, String runID, long ttl) {
+
+        boolean    renewed = false;
+        Connection conn    = null;
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                conn.setAutoCommit(false);
+                renewed = renew(conn, name, runID, ttl);
+                conn.commit();
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to renew lease [ "
+                        + name
+                        + " ] held by run [ "
+                        + runID
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+            }
+            finally {
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The lease will not be renewed.");
+        }
+        return renewed;
+    }
+
+    /**
+     * Extend the named lease using the connection supplied by the caller.
+     * This method does not commit the transaction, allowing the lease to be
+     * verified and extended atomically with the records written under it.
+     *
+     * @param conn Connection (with auto-commit disabled) owned by the caller.
+     * @param name The lease name.
+     * @param runID The ID of the run holding the lease.
+     * @param ttl The time (in milliseconds) the lease is valid without
+     * renewal.
+     * @return True if the lease was extended, false if it is no longer held
+     * by the input run.
+     * @throws SQLException Thrown if the lease could not be updated.
+     */
+    public boolean renew(
+            Connection conn,
+            String     name,
+            String     runID,
+            long       ttl) throws SQLException {
+
+        boolean           renewed = false;
+        PreparedStatement stmt    = null;
+
+        try {
+            stmt = conn.prepareStatement(RENEW_SQL);
+            stmt.setLong(  1, ttl);
+            stmt.setString(2, name);
+            stmt.setString(3, runID);
+            renewed = (stmt.executeUpdate() > 0);
+        }
+        finally {
+            try {
+                if (stmt != null) { stmt.close(); }
+            } catch (Exception e) {}
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Lease [ "
+                    + name
+                    + " ] renewed by run [ "
+                    + runID
+                    + " ] => [ "
+                    + renewed
+                    + " ].");
+        }
+        return renewed;
+    }
+}
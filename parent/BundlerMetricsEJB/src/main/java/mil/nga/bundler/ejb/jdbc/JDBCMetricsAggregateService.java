@@ -0,0 +1,333 @@
+package mil.nga.bundler.ejb.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.model.MetricsAggregate;
+import mil.nga.bundler.types.AggregateDimensionType;
+import mil.nga.bundler.types.MetricsMeasureType;
+import mil.nga.bundler.types.TimeBucketType;
+
+/**
+ * Session bean calculating aggregate statistics (count, sum, mean, min,
+ * max and percentiles) over the job metrics records.  The statistics are
+ * calculated by the database in a single GROUP BY query so only one row
+ * per group is returned to the caller regardless of the number of
+ * records aggregated.
+ *
+ * The user name, archive type and job state are normalized in the same
+ * way as the rollup keys (see <code>JDBCMetricsRollupService</code>), so
+ * the groups reported here match those of the rollups.
+ *
+ * The measure, dimensions and time bucket are supplied as enumeration
+ * values and each is mapped to a fixed SQL expression by this class, so no
+ * caller-supplied text is ever included in the generated statement.
+ */
+@Stateless
+@LocalBean
+public class JDBCMetricsAggregateService {
+
+    /**
+     * The maximum number of groups returned by a single query.
+     */
+    public static final int MAX_GROUPS = 10000;
+
+    /**
+     * Number of milliseconds in an hour, a day and a week.
+     */
+    static final long MILLIS_PER_HOUR = 3600000L;
+    static final long MILLIS_PER_DAY  = 86400000L;
+    static final long MILLIS_PER_WEEK = 604800000L;
+
+    /**
+     * Offset of the first Monday after the epoch (1970-01-05), used to
+     * align weekly buckets on Monday.
+     */
+    private static final long WEEK_OFFSET = 4L * MILLIS_PER_DAY;
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JDBCMetricsAggregateService.class);
+
+    /**
+     * Container-injected datasource object.
+     */
+    @Resource(mappedName="java:jboss/datasources/JobTracker")
+    DataSource datasource;
+
+    /**
+     * Default constructor.
+     */
+    public JDBCMetricsAggregateService() { }
+
+    /**
+     * Calculate the aggregate statistics of the input measure for the
+     * metrics records of jobs started within the input range.
+     *
+     * @param startTime The start of the range (inclusive).
+     * @param endTime The end of the range (exclusive).
+     * @param measure The value to aggregate.
+     * @param dimensions The dimensions to group by (may be empty).
+     * @param bucket The width of the time buckets to group by (may be
+     * null).
+     * @return One aggregate per group, ordered by time bucket and then by
+     * the dimension values.  At most <code>MAX_GROUPS</code> groups are
+     * returned.  Null will be returned if the statistics could not be
+     * calculated (as opposed to an empty list, which means no records 
+     * fell within the range).
+     */
+    public List<MetricsAggregate> getAggregates(
+            long                         startTime,
+            long                         endTime,
+            MetricsMeasureType           measure,
+            List<AggregateDimensionType> dimensions,
+            TimeBucketType               bucket) {
+
+        Connection             conn       = null;
+        List<MetricsAggregate> aggregates = new ArrayList<MetricsAggregate>();
+        PreparedStatement      stmt       = null;
+        ResultSet              rs         = null;
+        long                   start      = System.currentTimeMillis();
+        StringBuilder          groupBy    = new StringBuilder();
+
+        if (dimensions == null) {
+            dimensions = new ArrayList<AggregateDimensionType>();
+        }
+        for (AggregateDimensionType dimension : dimensions) {
+            groupBy.append(", ");
+            groupBy.append(getDimensionColumn(dimension));
+        }
+        String bucketExpr = getBucketExpression(bucket, "START_TIME");
+        String sql        = "select * from (select "
+                + bucketExpr
+                + " BUCKET"
+                + groupBy
+                + ", count(V) N, sum(V) S, avg(V) A, min(V) MN, max(V) MX, "
+                + "percentile_cont(0.5) within group (order by V) P50, "
+                + "percentile_cont(0.9) within group (order by V) P90, "
+                + "percentile_cont(0.95) within group (order by V) P95, "
+                + "percentile_cont(0.99) within group (order by V) P99, "
+                + "percentile_cont(0.999) within group (order by V) P999 "
+                + "from (select START_TIME, "
+                + JDBCMetricsRollupService.DIMENSION_COLUMNS
+                + ", "
+                + getMeasureExpression(measure)
+                + " V from "
+                + JDBCJobMetricsService.TABLE_NAME
+                + " where START_TIME >= ? and START_TIME < ?)"
+                + getGroupByClause(bucket, bucketExpr, groupBy.toString())
+                + " order by BUCKET"
+                + groupBy
+                + ") where rownum <= ?";
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                stmt.setLong(1, startTime);
+                stmt.setLong(2, endTime);
+                stmt.setInt( 3, MAX_GROUPS);
+                stmt.setFetchSize(JDBCJobMetricsService.DEFAULT_FETCH_SIZE);
+                rs   = stmt.executeQuery();
+                while (rs.next()) {
+                    MetricsAggregate.MetricsAggregateBuilder builder =
+                            new MetricsAggregate.MetricsAggregateBuilder()
+                                .measure(measure.getText())
+                                .bucket(rs.getLong("BUCKET"))
+                                .count(rs.getLong("N"))
+                                .sum(rs.getDouble("S"))
+                                .avg(rs.getDouble("A"))
+                                .min(rs.getDouble("MN"))
+                                .max(rs.getDouble("MX"))
+                                .p50(rs.getDouble("P50"))
+                                .p90(rs.getDouble("P90"))
+                                .p95(rs.getDouble("P95"))
+                                .p99(rs.getDouble("P99"))
+                                .p999(rs.getDouble("P999"));
+                    for (AggregateDimensionType dimension : dimensions) {
+                        builder.group(
+                                dimension.getText(),
+                                rs.getString(getDimensionColumn(dimension)));
+                    }
+                    aggregates.add(builder.build());
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to calculate the aggregate statistics "
+                        + "of [ "
+                        + measure.getText()
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+                aggregates = null;
+            }
+            finally {
+                try {
+                    if (rs != null) { rs.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "Null will be returned to the caller.");
+            aggregates = null;
+        }
+
+        if ((aggregates != null) && (LOGGER.isDebugEnabled())) {
+            LOGGER.debug("[ "
+                    + aggregates.size()
+                    + " ] aggregate groups calculated in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return aggregates;
+    }
+
+    /**
+     * Build the GROUP BY clause.  The clause is omitted entirely if 
+     * neither a time bucket nor any dimensions were requested, in which 
+     * case a single aggregate is calculated over the entire range.
+     *
+     * @param bucket The time bucket (may be null).
+     * @param bucketExpr The SQL expression calculating the bucket.
+     * @param dimensions The dimension columns, each preceded by a comma.
+     * @return The GROUP BY clause (or an empty String).
+     */
+    static String getGroupByClause(
+            TimeBucketType bucket, 
+            String         bucketExpr, 
+            String         dimensions) {
+        String clause = "";
+        if (bucket != null) {
+            clause = " group by " + bucketExpr + dimensions;
+        }
+        else if (!dimensions.isEmpty()) {
+            clause = " group by " + dimensions.substring(2);
+        }
+        return clause;
+    }
+
+    /**
+     * Map the input measure to the SQL expression calculating it.  The
+     * compression percentage is calculated in the same way as
+     * <code>JobMetricsTask</code> (i.e. as a fraction of the total size)
+     * but jobs with no output are excluded rather than counted as zero.
+     * The throughput is calculated in bytes per second and jobs with no
+     * elapsed time are excluded.
+     *
+     * @param measure The measure.
+     * @return The SQL expression.
+     */
+    private static String getMeasureExpression(MetricsMeasureType measure) {
+        String expression = null;
+        switch (measure) {
+            case TOTAL_SIZE:
+                expression = "TOTAL_SIZE";
+                break;
+            case TOTAL_COMPRESSED_SIZE:
+                expression = "TOTAL_COMPRESSED_SIZE";
+                break;
+            case COMPRESSION_PERCENTAGE:
+                expression = "case when TOTAL_SIZE > 0 and "
+                        + "TOTAL_COMPRESSED_SIZE > 0 then "
+                        + "(TOTAL_SIZE - TOTAL_COMPRESSED_SIZE) / TOTAL_SIZE "
+                        + "end";
+                break;
+            case THROUGHPUT:
+                expression = "case when ELAPSED_TIME > 0 and "
+                        + "TOTAL_SIZE > 0 then "
+                        + "TOTAL_SIZE * 1000 / ELAPSED_TIME "
+                        + "end";
+                break;
+            default:
+                expression = "ELAPSED_TIME";
+                break;
+        }
+        return expression;
+    }
+
+    /**
+     * Map the input dimension to the column it is grouped by.
+     *
+     * @param dimension The dimension.
+     * @return The column name.
+     */
+    static String getDimensionColumn(AggregateDimensionType dimension) {
+        String column = null;
+        switch (dimension) {
+            case ARCHIVE_TYPE:
+                column = "ARCHIVE_TYPE";
+                break;
+            case JOB_STATE:
+                column = "JOB_STATE";
+                break;
+            default:
+                column = "USER_NAME";
+                break;
+        }
+        return column;
+    }
+
+    /**
+     * Map the input time bucket to the SQL expression calculating the
+     * start of the bucket (in milliseconds since the epoch) from the
+     * input column.
+     *
+     * @param bucket The time bucket (may be null).
+     * @param column The column containing a time in milliseconds since
+     * the epoch.
+     * @return The SQL expression.  If no bucket was requested a constant
+     * zero is returned so every record falls into the same bucket.
+     */
+    static String getBucketExpression(TimeBucketType bucket, String column) {
+        String expression = "0";
+        if (bucket != null) {
+            switch (bucket) {
+                case HOUR:
+                    expression = "floor(" + column + " / "
+                            + MILLIS_PER_HOUR
+                            + ") * "
+                            + MILLIS_PER_HOUR;
+                    break;
+                case WEEK:
+                    expression = "floor((" + column + " - "
+                            + WEEK_OFFSET
+                            + ") / "
+                            + MILLIS_PER_WEEK
+                            + ") * "
+                            + MILLIS_PER_WEEK
+                            + " + "
+                            + WEEK_OFFSET;
+                    break;
+                default:
+                    expression = "floor(" + column + " / "
+                            + MILLIS_PER_DAY
+                            + ") * "
+                            + MILLIS_PER_DAY;
+                    break;
+            }
+        }
+        return expression;
+    }
+}
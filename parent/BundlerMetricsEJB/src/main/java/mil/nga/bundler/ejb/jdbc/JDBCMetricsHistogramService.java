@@ -0,0 +1,743 @@
+package mil.nga.bundler.ejb.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.MetricsAggregate;
+import mil.nga.bundler.model.MetricsHistogram;
+import mil.nga.bundler.stats.MergeableHistogram;
+import mil.nga.bundler.types.AggregateDimensionType;
+import mil.nga.bundler.types.MetricsMeasureType;
+import mil.nga.bundler.types.TimeBucketType;
+
+/**
+ * Session bean providing methods for interfacing with the table containing
+ * the hourly and daily histograms of job elapsed time and throughput,
+ * split by archive type and job state.
+ *
+ * The histograms are maintained by <code>JDBCJobMetricsService</code> in
+ * the same way as the rollups maintained by
+ * <code>JDBCMetricsRollupService</code>: new records are merged into the
+ * stored histograms (which are locked while they are updated, so the
+ * contributions of every node are combined), and refreshed records cause
+ * the affected buckets to be recalculated from the raw records.  A 
+ * histogram created concurrently by another node is detected by its 
+ * unique key violation and merged into instead.
+ *
+ * This class is written assuming that the injected DataSource object is not
+ * handling the transactions on behalf of the application (i.e. non-JTA).
+ */
+@Stateless
+@LocalBean
+public class JDBCMetricsHistogramService {
+
+    /**
+     * The target table name.
+     */
+    public static final String TABLE_NAME = "BUNDLER_METRICS_HISTOGRAM";
+
+    /**
+     * The measures for which histograms are maintained.
+     */
+    public static final MetricsMeasureType[] MEASURES = {
+            MetricsMeasureType.ELAPSED_TIME, MetricsMeasureType.THROUGHPUT };
+
+    /**
+     * SQL used to lock and read a single histogram.
+     */
+    private static final String SELECT_FOR_UPDATE_SQL = "select HISTOGRAM "
+            + "from "
+            + TABLE_NAME
+            + " where HISTOGRAM_KEY = ? for update";
+
+    /**
+     * SQL used to replace a single histogram.
+     */
+    private static final String UPDATE_SQL = "update "
+            + TABLE_NAME
+            + " set HISTOGRAM = ?, JOB_COUNT = ? where HISTOGRAM_KEY = ?";
+
+    /**
+     * SQL used to insert a single histogram.
+     */
+    private static final String INSERT_SQL = "insert into "
+            + TABLE_NAME
+            + " (HISTOGRAM_KEY, GRANULARITY, BUCKET_START, ARCHIVE_TYPE, "
+            + "JOB_STATE, MEASURE, JOB_COUNT, HISTOGRAM) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * SQL used to delete the histograms of a single granularity within a
+     * range of buckets.
+     */
+    private static final String DELETE_SQL = "delete from "
+            + TABLE_NAME
+            + " where GRANULARITY = ? and BUCKET_START >= ? "
+            + "and BUCKET_START < ?";
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JDBCMetricsHistogramService.class);
+
+    /**
+     * Container-injected datasource object.
+     */
+    @Resource(mappedName="java:jboss/datasources/JobTracker")
+    DataSource datasource;
+
+    /**
+     * Default constructor.
+     */
+    public JDBCMetricsHistogramService() { }
+
+    /**
+     * Calculate the percentiles of the input measure for the jobs started
+     * within the input range by merging the stored histograms.  Whole days
+     * within the range are read from the daily histograms and the
+     * remaining hours from the hourly histograms, so at most a few hundred
+     * histograms are merged per group regardless of the length of the
+     * range.
+     *
+     * @param startTime The start of the range (inclusive).  Hourly buckets
+     * starting before this time are excluded.
+     * @param endTime The end of the range (exclusive).  Hourly buckets
+     * starting at or after this time are excluded.
+     * @param measure The measure (ELAPSED_TIME or THROUGHPUT).
+     * @param dimensions The dimensions to group by (ARCHIVE_TYPE and/or
+     * JOB_STATE, may be empty).
+     * @return One aggregate per group, ordered by the dimension values.
+     * The list will be empty if the histograms could not be read.
+     */
+    public List<MetricsAggregate> getPercentiles(
+            long                         startTime,
+            long                         endTime,
+            MetricsMeasureType           measure,
+            List<AggregateDimensionType> dimensions) {
+
+        Connection                      conn       = null;
+        List<MetricsAggregate>          aggregates = new ArrayList<MetricsAggregate>();
+        Map<String, MergeableHistogram> groups     =
+                new TreeMap<String, MergeableHistogram>();
+        Map<String, ResultSetGroup>     values     =
+                new HashMap<String, ResultSetGroup>();
+        PreparedStatement               stmt       = null;
+        ResultSet                       rs         = null;
+        long                            start      = System.currentTimeMillis();
+        long                            dayStart   = Math.floorDiv(
+                startTime + JDBCMetricsAggregateService.MILLIS_PER_DAY - 1,
+                JDBCMetricsAggregateService.MILLIS_PER_DAY)
+                * JDBCMetricsAggregateService.MILLIS_PER_DAY;
+        long                            dayEnd     = Math.floorDiv(
+                endTime,
+                JDBCMetricsAggregateService.MILLIS_PER_DAY)
+                * JDBCMetricsAggregateService.MILLIS_PER_DAY;
+        String                          sql        = "select ARCHIVE_TYPE, "
+                + "JOB_STATE, HISTOGRAM from "
+                + TABLE_NAME
+                + " where MEASURE = ? and ((GRANULARITY = ? "
+                + "and BUCKET_START >= ? and BUCKET_START < ?) "
+                + "or (GRANULARITY = ? and ((BUCKET_START >= ? "
+                + "and BUCKET_START < ?) or (BUCKET_START >= ? "
+                + "and BUCKET_START < ?))))";
+
+        if (dimensions == null) {
+            dimensions = new ArrayList<AggregateDimensionType>();
+        }
+        if (dayStart >= dayEnd) {
+            // No whole days, so the entire range is read from the hourly
+            // histograms.
+            dayStart = endTime;
+            dayEnd   = endTime;
+        }
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                stmt.setString(1, measure.name());
+                stmt.setString(2, TimeBucketType.DAY.name());
+                stmt.setLong(  3, dayStart);
+                stmt.setLong(  4, dayEnd);
+                stmt.setString(5, TimeBucketType.HOUR.name());
+                stmt.setLong(  6, startTime);
+                stmt.setLong(  7, dayStart);
+                stmt.setLong(  8, dayEnd);
+                stmt.setLong(  9, endTime);
+                stmt.setFetchSize(JDBCJobMetricsService.DEFAULT_FETCH_SIZE);
+                rs   = stmt.executeQuery();
+                while (rs.next()) {
+                    ResultSetGroup group = new ResultSetGroup(
+                            dimensions.contains(
+                                    AggregateDimensionType.ARCHIVE_TYPE) ?
+                                            rs.getString("ARCHIVE_TYPE") : null,
+                            dimensions.contains(
+                                    AggregateDimensionType.JOB_STATE) ?
+                                            rs.getString("JOB_STATE") : null);
+                    try {
+                        MergeableHistogram histogram =
+                                MergeableHistogram.fromBytes(
+                                        rs.getBytes("HISTOGRAM"));
+                        MergeableHistogram merged = groups.get(group.key);
+                        if (merged == null) {
+                            groups.put(group.key, histogram);
+                            values.put(group.key, group);
+                        }
+                        else {
+                            merged.merge(histogram);
+                        }
+                    }
+                    catch (IllegalArgumentException iae) {
+                        LOGGER.warn("Skipping unreadable histogram.  "
+                                + "Error message [ "
+                                + iae.getMessage()
+                                + " ].");
+                    }
+                }
+                for (Map.Entry<String, MergeableHistogram> entry :
+                        groups.entrySet()) {
+                    MergeableHistogram histogram = entry.getValue();
+                    ResultSetGroup     group     = values.get(entry.getKey());
+                    MetricsAggregate.MetricsAggregateBuilder builder =
+                            new MetricsAggregate.MetricsAggregateBuilder()
+                                .measure(measure.getText())
+                                .count(histogram.getCount())
+                                .sum(histogram.getSum())
+                                .avg(histogram.getMean())
+                                .min(histogram.getMin())
+                                .max(histogram.getMax())
+                                .p50(histogram.getValueAtPercentile(0.5))
+                                .p90(histogram.getValueAtPercentile(0.9))
+                                .p95(histogram.getValueAtPercentile(0.95))
+                                .p99(histogram.getValueAtPercentile(0.99))
+                                .p999(histogram.getValueAtPercentile(0.999));
+                    for (AggregateDimensionType dimension : dimensions) {
+                        builder.group(
+                                dimension.getText(),
+                                dimension == AggregateDimensionType.ARCHIVE_TYPE ?
+                                        group.archiveType : group.jobState);
+                    }
+                    aggregates.add(builder.build());
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to read the [ "
+                        + TABLE_NAME
+                        + " ] histograms of [ "
+                        + measure.getText()
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+            }
+            finally {
+                try {
+                    if (rs != null) { rs.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + aggregates.size()
+                    + " ] percentile groups calculated from [ "
+                    + TABLE_NAME
+                    + " ] in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return aggregates;
+    }
+
+    /**
+     * Recreate the entire histogram table from the raw job metrics
+     * records.  The table is locked for the duration of the rebuild for
+     * the reasons described in <code>JDBCMetricsRollupService.rebuild()</code>.
+     *
+     * @return True if the histograms were rebuilt, false otherwise.
+     */
+    public boolean rebuild() {
+
+        Connection conn    = null;
+        boolean    rebuilt = false;
+        Statement  stmt    = null;
+        long       start   = System.currentTimeMillis();
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+
+                // Note: If the container Datasource has jta=true this will throw
+                // an exception.
+                conn.setAutoCommit(false);
+
+                stmt = conn.createStatement();
+                stmt.execute("lock table " + TABLE_NAME + " in exclusive mode");
+                stmt.executeUpdate("delete from " + TABLE_NAME);
+                for (TimeBucketType granularity :
+                        JDBCMetricsRollupService.GRANULARITIES) {
+                    populate(conn, granularity, Long.MIN_VALUE, Long.MAX_VALUE);
+                }
+                conn.commit();
+                rebuilt = true;
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to rebuild the [ "
+                        + TABLE_NAME
+                        + " ] table.  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+                try {
+                    if (conn != null) { conn.rollback(); }
+                } catch (Exception e) {}
+            }
+            finally {
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The histograms will not be rebuilt.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Rebuild of [ "
+                    + TABLE_NAME
+                    + " ] completed in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return rebuilt;
+    }
+
+    /**
+     * Merge newly inserted metrics records into the stored histograms.
+     * The records are combined into one histogram per key first, and the
+     * keys are applied in a fixed order so that concurrent collectors lock
+     * the stored histograms in the same order.  The caller is responsible
+     * for committing the connection.
+     *
+     * @param conn Connection with auto-commit disabled.
+     * @param records The metrics records that were inserted.
+     * @throws SQLException Thrown if the histograms could not be updated.
+     */
+    static void add(
+            Connection              conn,
+            List<BundlerJobMetrics> records) throws SQLException {
+
+        Map<String, MetricsHistogram.MetricsHistogramBuilder> builders   =
+                new TreeMap<String, MetricsHistogram.MetricsHistogramBuilder>();
+        Map<String, MergeableHistogram>                       histograms =
+                new HashMap<String, MergeableHistogram>();
+
+        for (BundlerJobMetrics record : records) {
+            for (TimeBucketType granularity :
+                    JDBCMetricsRollupService.GRANULARITIES) {
+                accumulate(
+                        builders,
+                        histograms,
+                        granularity,
+                        JDBCMetricsRollupService.getBucketStart(
+                                granularity, record.getStartTime()),
+                        record.getArchiveType().getText(),
+                        record.getJobState().getText(),
+                        record.getElapsedTime(),
+                        record.getTotalSize());
+            }
+        }
+        write(conn, builders, histograms, true);
+    }
+
+    /**
+     * Recalculate the histogram buckets containing the input hours from
+     * the raw records.  This is used when the records may already have
+     * been counted (i.e. they were refreshed rather than inserted).  The
+     * caller is responsible for committing the connection.
+     *
+     * @param conn Connection with auto-commit disabled.
+     * @param hours The start of each hourly bucket to recalculate.
+     * @throws SQLException Thrown if the histograms could not be updated.
+     */
+    static void refresh(
+            Connection conn,
+            Set<Long>  hours) throws SQLException {
+        for (TimeBucketType granularity :
+                JDBCMetricsRollupService.GRANULARITIES) {
+            Set<Long> buckets = new TreeSet<Long>();
+            for (Long hour : hours) {
+                buckets.add(JDBCMetricsRollupService.getBucketStart(
+                        granularity, hour));
+            }
+            for (Long bucket : buckets) {
+                long end = bucket
+                        + JDBCMetricsRollupService.getBucketWidth(granularity);
+                PreparedStatement stmt = null;
+                try {
+                    stmt = conn.prepareStatement(DELETE_SQL);
+                    stmt.setString(1, granularity.name());
+                    stmt.setLong(  2, bucket);
+                    stmt.setLong(  3, end);
+                    stmt.executeUpdate();
+                }
+                finally {
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                }
+                populate(conn, granularity, bucket, end);
+            }
+        }
+    }
+
+    /**
+     * Calculate the histograms of the input granularity for the raw
+     * records started within the input range and insert them.  The raw
+     * records are read in start time order and the histograms are written
+     * each time a bucket is completed, so only one bucket is held in memory
+     * at a time.  The caller must have already deleted any existing
+     * histograms within the range.
+     *
+     * @param conn Connection with auto-commit disabled.
+     * @param granularity The granularity to calculate.
+     * @param startTime The start of the range (inclusive).
+     * @param endTime The end of the range (exclusive).
+     * @throws SQLException Thrown if the histograms could not be inserted.
+     */
+    private static void populate(
+            Connection     conn,
+            TimeBucketType granularity,
+            long           startTime,
+            long           endTime) throws SQLException {
+
+        Map<String, MetricsHistogram.MetricsHistogramBuilder> builders   =
+                new TreeMap<String, MetricsHistogram.MetricsHistogramBuilder>();
+        Map<String, MergeableHistogram>                       histograms =
+                new HashMap<String, MergeableHistogram>();
+        long              current = Long.MIN_VALUE;
+        PreparedStatement stmt    = null;
+        ResultSet         rs      = null;
+        String            sql     = "select START_TIME, ARCHIVE_TYPE, "
+                + "JOB_STATE, ELAPSED_TIME, TOTAL_SIZE from "
+                + JDBCJobMetricsService.TABLE_NAME
+                + " where START_TIME >= ? and START_TIME < ? "
+                + "order by START_TIME";
+
+        try {
+            stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, startTime);
+            stmt.setLong(2, endTime);
+            stmt.setFetchSize(JDBCJobMetricsService.DEFAULT_FETCH_SIZE);
+            rs   = stmt.executeQuery();
+            while (rs.next()) {
+                long bucket = JDBCMetricsRollupService.getBucketStart(
+                        granularity, rs.getLong("START_TIME"));
+                if (bucket != current) {
+                    write(conn, builders, histograms, false);
+                    current = bucket;
+                }
+                accumulate(
+                        builders,
+                        histograms,
+                        granularity,
+                        bucket,
+                        JDBCJobMetricsService.toArchiveType(
+                                rs.getString("ARCHIVE_TYPE")).getText(),
+                        JDBCJobMetricsService.toJobState(
+                                rs.getString("JOB_STATE")).getText(),
+                        rs.getLong("ELAPSED_TIME"),
+                        rs.getLong("TOTAL_SIZE"));
+            }
+            write(conn, builders, histograms, false);
+        }
+        finally {
+            try {
+                if (rs != null) { rs.close(); }
+            } catch (Exception e) {}
+            try {
+                if (stmt != null) { stmt.close(); }
+            } catch (Exception e) {}
+        }
+    }
+
+    /**
+     * Record the measures of a single job in the histograms of its key.
+     * The throughput (bytes per second) is only recorded for jobs with a
+     * non-zero elapsed time and total size.
+     *
+     * @param builders The histogram metadata by key.
+     * @param histograms The histograms by key.
+     * @param granularity The granularity of the bucket.
+     * @param bucket The start of the bucket.
+     * @param archiveType The archive type (text value).
+     * @param jobState The job state (text value).
+     * @param elapsedTime The elapsed time of the job.
+     * @param totalSize The total size of the job.
+     */
+    private static void accumulate(
+            Map<String, MetricsHistogram.MetricsHistogramBuilder> builders,
+            Map<String, MergeableHistogram>                       histograms,
+            TimeBucketType granularity,
+            long           bucket,
+            String         archiveType,
+            String         jobState,
+            long           elapsedTime,
+            long           totalSize) {
+        for (MetricsMeasureType measure : MEASURES) {
+            long value = elapsedTime;
+            if (measure == MetricsMeasureType.THROUGHPUT) {
+                value = ((elapsedTime > 0) && (totalSize > 0)) ?
+                        (totalSize * 1000L) / elapsedTime : -1L;
+            }
+            if (value >= 0) {
+                String key = MetricsHistogram.getKey(
+                        granularity, bucket, archiveType, jobState, measure);
+                MergeableHistogram histogram = histograms.get(key);
+                if (histogram == null) {
+                    histogram = new MergeableHistogram();
+                    histograms.put(key, histogram);
+                    builders.put(key,
+                            new MetricsHistogram.MetricsHistogramBuilder()
+                                .granularity(granularity)
+                                .bucket(bucket)
+                                .archiveType(archiveType)
+                                .jobState(jobState)
+                                .measure(measure));
+                }
+                histogram.record(value);
+            }
+        }
+    }
+
+    /**
+     * Write the accumulated histograms and clear the input maps.
+     *
+     * @param conn Connection with auto-commit disabled.
+     * @param builders The histogram metadata by key.
+     * @param histograms The histograms by key.
+     * @param merge True if the histograms should be merged into any
+     * existing histograms with the same key, false if they are known not to
+     * exist.
+     * @throws SQLException Thrown if the histograms could not be written.
+     */
+    private static void write(
+            Connection                                            conn,
+            Map<String, MetricsHistogram.MetricsHistogramBuilder> builders,
+            Map<String, MergeableHistogram>                       histograms,
+            boolean                                               merge)
+                    throws SQLException {
+
+        PreparedStatement insert = null;
+        PreparedStatement select = null;
+        PreparedStatement update = null;
+
+        if (!builders.isEmpty()) {
+            try {
+                insert = conn.prepareStatement(INSERT_SQL);
+                if (merge) {
+                    select = conn.prepareStatement(SELECT_FOR_UPDATE_SQL);
+                    update = conn.prepareStatement(UPDATE_SQL);
+                }
+                for (Map.Entry<String, MetricsHistogram.MetricsHistogramBuilder>
+                        entry : builders.entrySet()) {
+                    MergeableHistogram histogram = histograms.get(entry.getKey());
+                    boolean            exists    = merge && 
+                            lockAndMerge(select, entry.getKey(), histogram);
+                    MetricsHistogram record = entry.getValue()
+                            .histogram(histogram.toBytes())
+                            .jobCount(histogram.getCount())
+                            .build();
+                    if (exists) {
+                        setUpdateParameters(update, record);
+                        update.executeUpdate();
+                    }
+                    else if (!merge) {
+                        setInsertParameters(insert, record);
+                        insert.addBatch();
+                    }
+                    else {
+                        // Another collector may create the same histogram
+                        // between the select and the insert.  If so, the 
+                        // insert is rolled back and the (now existing) 
+                        // histogram is locked, merged and updated instead.
+                        Savepoint savepoint = conn.setSavepoint();
+                        try {
+                            setInsertParameters(insert, record);
+                            insert.executeUpdate();
+                        }
+                        catch (SQLException se) {
+                            if (!JDBCMetricsRollupService.isUniqueViolation(se)) {
+                                throw se;
+                            }
+                            conn.rollback(savepoint);
+                            if (!lockAndMerge(select, entry.getKey(), histogram)) {
+                                throw se;
+                            }
+                            record = entry.getValue()
+                                    .histogram(histogram.toBytes())
+                                    .jobCount(histogram.getCount())
+                                    .build();
+                            setUpdateParameters(update, record);
+                            update.executeUpdate();
+                        }
+                    }
+                }
+                if (!merge) {
+                    insert.executeBatch();
+                }
+            }
+            finally {
+                try {
+                    if (insert != null) { insert.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (select != null) { select.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (update != null) { update.close(); }
+                } catch (Exception e) {}
+            }
+            builders.clear();
+            histograms.clear();
+        }
+    }
+
+    /**
+     * Lock the stored histogram with the input key (if any) and merge it 
+     * into the input histogram.
+     *
+     * @param select Statement prepared using 
+     * <code>SELECT_FOR_UPDATE_SQL</code>.
+     * @param key The histogram key.
+     * @param histogram The histogram into which the stored histogram will
+     * be merged.
+     * @return True if a stored histogram exists.
+     * @throws SQLException Thrown if the histogram could not be read.
+     */
+    private static boolean lockAndMerge(
+            PreparedStatement  select,
+            String             key,
+            MergeableHistogram histogram) throws SQLException {
+
+        boolean exists = false;
+        select.setString(1, key);
+        ResultSet rs = select.executeQuery();
+        try {
+            if (rs.next()) {
+                exists = true;
+                histogram.merge(MergeableHistogram.fromBytes(
+                        rs.getBytes("HISTOGRAM")));
+            }
+        }
+        catch (IllegalArgumentException iae) {
+            LOGGER.warn("Replacing unreadable histogram [ "
+                    + key
+                    + " ].  Error message [ "
+                    + iae.getMessage()
+                    + " ].");
+        }
+        finally {
+            try {
+                rs.close();
+            } catch (Exception e) {}
+        }
+        return exists;
+    }
+
+    /**
+     * Bind the fields of the input histogram to a statement prepared using
+     * <code>INSERT_SQL</code>.
+     *
+     * @param stmt The prepared statement.
+     * @param record The histogram to bind.
+     * @throws SQLException Thrown if the parameters cannot be set.
+     */
+    private static void setInsertParameters(
+            PreparedStatement stmt,
+            MetricsHistogram  record) throws SQLException {
+        stmt.setString(1, record.getKey());
+        stmt.setString(2, record.getGranularity().name());
+        stmt.setLong(  3, record.getBucket());
+        stmt.setString(4, record.getArchiveType());
+        stmt.setString(5, record.getJobState());
+        stmt.setString(6, record.getMeasure().name());
+        stmt.setLong(  7, record.getJobCount());
+        stmt.setBytes( 8, record.getHistogram());
+    }
+
+    /**
+     * Bind the fields of the input histogram to a statement prepared using
+     * <code>UPDATE_SQL</code>.
+     *
+     * @param stmt The prepared statement.
+     * @param record The histogram to bind.
+     * @throws SQLException Thrown if the parameters cannot be set.
+     */
+    private static void setUpdateParameters(
+            PreparedStatement stmt,
+            MetricsHistogram  record) throws SQLException {
+        stmt.setBytes( 1, record.getHistogram());
+        stmt.setLong(  2, record.getJobCount());
+        stmt.setString(3, record.getKey());
+    }
+
+    /**
+     * The dimension values identifying a single group of merged
+     * histograms.
+     */
+    private static final class ResultSetGroup {
+
+        private final String archiveType;
+        private final String jobState;
+        private final String key;
+
+        /**
+         * Constructor.
+         *
+         * @param archiveType The archive type (null if not grouped by
+         * archive type).
+         * @param jobState The job state (null if not grouped by job state).
+         */
+        private ResultSetGroup(String archiveType, String jobState) {
+            this.archiveType = archiveType;
+            this.jobState    = jobState;
+            this.key         = archiveType + ":" + jobState;
+        }
+    }
+}
@@ -0,0 +1,728 @@
+package mil.nga.bundler.ejb.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.MetricsRollup;
+import mil.nga.bundler.model.MetricsRollupKey;
+import mil.nga.bundler.types.AggregateDimensionType;
+import mil.nga.bundler.types.TimeBucketType;
+
+/**
+ * Session bean providing methods for interfacing with the table containing
+ * the hourly and daily rollups of the job metrics records.
+ *
+ * The rollup rows are maintained by <code>JDBCJobMetricsService</code>
+ * using the static methods of this class, which operate on the caller's
+ * connection so the rollups are committed (or rolled back) together with
+ * the raw records.  Newly inserted records are added to the existing
+ * rollup rows.  Records that may already have been counted (i.e. records
+ * written by a recollection or a backfill) are not added; instead the
+ * buckets they touched are recalculated from the raw records once the
+ * run (or backfill slice) has written them.
+ *
+ * This class is written assuming that the injected DataSource object is not
+ * handling the transactions on behalf of the application (i.e. non-JTA).
+ */
+@Stateless
+@LocalBean
+public class JDBCMetricsRollupService {
+
+    /**
+     * The target table name.
+     */
+    public static final String TABLE_NAME = "BUNDLER_METRICS_ROLLUP";
+
+    /**
+     * The maximum number of rows returned by a single trend query.
+     */
+    public static final int MAX_ROWS = 10000;
+
+    /**
+     * Value stored for any key column that is null in the raw record.  The
+     * key columns form the primary key so they cannot be null.
+     */
+    private static final String UNKNOWN = "unknown";
+
+    /**
+     * Select list normalizing the USER_NAME, ARCHIVE_TYPE and JOB_STATE 
+     * columns of the raw records to the values used as rollup keys (e.g. 
+     * GZIP and gzip are both reported as gz).  Shared with 
+     * <code>JDBCMetricsAggregateService</code> so both report the same 
+     * groups.
+     */
+    static final String DIMENSION_COLUMNS = "nvl(USER_NAME, '"
+            + UNKNOWN
+            + "') USER_NAME, "
+            + "decode(upper(ARCHIVE_TYPE), 'GZIP', 'gz', 'BZIP2', 'bz2', "
+            + "nvl(lower(ARCHIVE_TYPE), '"
+            + UNKNOWN
+            + "')) ARCHIVE_TYPE, nvl(lower(JOB_STATE), '"
+            + UNKNOWN
+            + "') JOB_STATE";
+
+    /**
+     * The granularities maintained in the rollup table.
+     */
+    static final TimeBucketType[] GRANULARITIES = {
+            TimeBucketType.HOUR, TimeBucketType.DAY };
+
+    /**
+     * SQL used to add the contribution of a set of new metrics records to
+     * a single rollup row (creating the row if it does not exist).  The
+     * minimum and maximum compression percentage are only combined if
+     * both sides include at least one job that produced output.
+     */
+    private static final String MERGE_SQL = "merge into "
+            + TABLE_NAME
+            + " r using (select ? GRANULARITY, ? BUCKET_START, ? USER_NAME, "
+            + "? ARCHIVE_TYPE, ? JOB_STATE, ? JOB_COUNT, ? ELAPSED_TIME_SUM, "
+            + "? ELAPSED_TIME_MIN, ? ELAPSED_TIME_MAX, ? TOTAL_SIZE_SUM, "
+            + "? TOTAL_SIZE_MIN, ? TOTAL_SIZE_MAX, ? COMPRESSED_SIZE_SUM, "
+            + "? COMPRESSED_SIZE_MIN, ? COMPRESSED_SIZE_MAX, "
+            + "? COMPRESSION_COUNT, ? COMPRESSION_SUM, ? COMPRESSION_MIN, "
+            + "? COMPRESSION_MAX from dual) s on ("
+            + "r.GRANULARITY = s.GRANULARITY and "
+            + "r.BUCKET_START = s.BUCKET_START and "
+            + "r.USER_NAME = s.USER_NAME and "
+            + "r.ARCHIVE_TYPE = s.ARCHIVE_TYPE and "
+            + "r.JOB_STATE = s.JOB_STATE) "
+            + "when matched then update set "
+            + "r.JOB_COUNT = r.JOB_COUNT + s.JOB_COUNT, "
+            + "r.ELAPSED_TIME_SUM = r.ELAPSED_TIME_SUM + s.ELAPSED_TIME_SUM, "
+            + "r.ELAPSED_TIME_MIN = least(r.ELAPSED_TIME_MIN, s.ELAPSED_TIME_MIN), "
+            + "r.ELAPSED_TIME_MAX = greatest(r.ELAPSED_TIME_MAX, s.ELAPSED_TIME_MAX), "
+            + "r.TOTAL_SIZE_SUM = r.TOTAL_SIZE_SUM + s.TOTAL_SIZE_SUM, "
+            + "r.TOTAL_SIZE_MIN = least(r.TOTAL_SIZE_MIN, s.TOTAL_SIZE_MIN), "
+            + "r.TOTAL_SIZE_MAX = greatest(r.TOTAL_SIZE_MAX, s.TOTAL_SIZE_MAX), "
+            + "r.COMPRESSED_SIZE_SUM = r.COMPRESSED_SIZE_SUM + s.COMPRESSED_SIZE_SUM, "
+            + "r.COMPRESSED_SIZE_MIN = least(r.COMPRESSED_SIZE_MIN, s.COMPRESSED_SIZE_MIN), "
+            + "r.COMPRESSED_SIZE_MAX = greatest(r.COMPRESSED_SIZE_MAX, s.COMPRESSED_SIZE_MAX), "
+            + "r.COMPRESSION_COUNT = r.COMPRESSION_COUNT + s.COMPRESSION_COUNT, "
+            + "r.COMPRESSION_SUM = r.COMPRESSION_SUM + s.COMPRESSION_SUM, "
+            + "r.COMPRESSION_MIN = case when r.COMPRESSION_COUNT = 0 "
+            + "then s.COMPRESSION_MIN when s.COMPRESSION_COUNT = 0 "
+            + "then r.COMPRESSION_MIN "
+            + "else least(r.COMPRESSION_MIN, s.COMPRESSION_MIN) end, "
+            + "r.COMPRESSION_MAX = case when r.COMPRESSION_COUNT = 0 "
+            + "then s.COMPRESSION_MAX when s.COMPRESSION_COUNT = 0 "
+            + "then r.COMPRESSION_MAX "
+            + "else greatest(r.COMPRESSION_MAX, s.COMPRESSION_MAX) end "
+            + "when not matched then insert (GRANULARITY, BUCKET_START, "
+            + "USER_NAME, ARCHIVE_TYPE, JOB_STATE, JOB_COUNT, "
+            + "ELAPSED_TIME_SUM, ELAPSED_TIME_MIN, ELAPSED_TIME_MAX, "
+            + "TOTAL_SIZE_SUM, TOTAL_SIZE_MIN, TOTAL_SIZE_MAX, "
+            + "COMPRESSED_SIZE_SUM, COMPRESSED_SIZE_MIN, COMPRESSED_SIZE_MAX, "
+            + "COMPRESSION_COUNT, COMPRESSION_SUM, COMPRESSION_MIN, "
+            + "COMPRESSION_MAX) values (s.GRANULARITY, s.BUCKET_START, "
+            + "s.USER_NAME, s.ARCHIVE_TYPE, s.JOB_STATE, s.JOB_COUNT, "
+            + "s.ELAPSED_TIME_SUM, s.ELAPSED_TIME_MIN, s.ELAPSED_TIME_MAX, "
+            + "s.TOTAL_SIZE_SUM, s.TOTAL_SIZE_MIN, s.TOTAL_SIZE_MAX, "
+            + "s.COMPRESSED_SIZE_SUM, s.COMPRESSED_SIZE_MIN, "
+            + "s.COMPRESSED_SIZE_MAX, s.COMPRESSION_COUNT, s.COMPRESSION_SUM, "
+            + "s.COMPRESSION_MIN, s.COMPRESSION_MAX)";
+
+    /**
+     * The maximum number of times the MERGE is attempted when another 
+     * collector creates the same rollup row concurrently.
+     */
+    private static final int MAX_MERGE_ATTEMPTS = 3;
+
+    /**
+     * Oracle error code raised on a unique key violation (ORA-00001).
+     */
+    private static final int ORA_UNIQUE_VIOLATION = 1;
+
+    /**
+     * SQLState raised on an integrity constraint violation.
+     */
+    private static final String UNIQUE_VIOLATION_STATE = "23000";
+
+    /**
+     * SQL used to delete the rollup rows of a single granularity within a
+     * range of buckets.
+     */
+    private static final String DELETE_SQL = "delete from "
+            + TABLE_NAME
+            + " where GRANULARITY = ? and BUCKET_START >= ? "
+            + "and BUCKET_START < ?";
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JDBCMetricsRollupService.class);
+
+    /**
+     * Container-injected datasource object.
+     */
+    @Resource(mappedName="java:jboss/datasources/JobTracker")
+    DataSource datasource;
+
+    /**
+     * Default constructor.
+     */
+    public JDBCMetricsRollupService() { }
+
+    /**
+     * Calculate trend data from the rollup table.  Hourly buckets are
+     * answered from the hourly rollup rows, while daily and weekly buckets
+     * (and queries with no bucket) are answered from the daily rollup
+     * rows, so the number of rows read depends on the length of the range
+     * rather than on the number of jobs.
+     *
+     * @param startTime The start of the range (inclusive).  Rollup buckets
+     * starting before this time are excluded.
+     * @param endTime The end of the range (exclusive).  Rollup buckets
+     * starting at or after this time are excluded.
+     * @param bucket The width of the time buckets to group by (may be
+     * null).
+     * @param dimensions The dimensions to group by (may be empty).  The
+     * dimensions that were not requested are null in the returned rows.
+     * @return One rollup per group, ordered by time bucket and then by the
+     * dimension values.  At most <code>MAX_ROWS</code> rows are returned.
+     * The list will be empty if the rollups could not be read.
+     */
+    public List<MetricsRollup> getRollups(
+            long                         startTime,
+            long                         endTime,
+            TimeBucketType               bucket,
+            List<AggregateDimensionType> dimensions) {
+
+        Connection          conn    = null;
+        List<MetricsRollup> rollups = new ArrayList<MetricsRollup>();
+        PreparedStatement   stmt    = null;
+        ResultSet           rs      = null;
+        long                start   = System.currentTimeMillis();
+        StringBuilder       groupBy = new StringBuilder();
+        TimeBucketType      source  = (bucket == TimeBucketType.HOUR) ?
+                TimeBucketType.HOUR : TimeBucketType.DAY;
+
+        if (dimensions == null) {
+            dimensions = new ArrayList<AggregateDimensionType>();
+        }
+        for (AggregateDimensionType dimension : dimensions) {
+            groupBy.append(", ");
+            groupBy.append(
+                    JDBCMetricsAggregateService.getDimensionColumn(dimension));
+        }
+        String bucketExpr = JDBCMetricsAggregateService.getBucketExpression(
+                bucket, "BUCKET_START");
+        String sql        = "select * from (select "
+                + bucketExpr
+                + " BUCKET"
+                + groupBy
+                + ", sum(JOB_COUNT) JOB_COUNT, "
+                + "sum(ELAPSED_TIME_SUM) ELAPSED_TIME_SUM, "
+                + "min(ELAPSED_TIME_MIN) ELAPSED_TIME_MIN, "
+                + "max(ELAPSED_TIME_MAX) ELAPSED_TIME_MAX, "
+                + "sum(TOTAL_SIZE_SUM) TOTAL_SIZE_SUM, "
+                + "min(TOTAL_SIZE_MIN) TOTAL_SIZE_MIN, "
+                + "max(TOTAL_SIZE_MAX) TOTAL_SIZE_MAX, "
+                + "sum(COMPRESSED_SIZE_SUM) COMPRESSED_SIZE_SUM, "
+                + "min(COMPRESSED_SIZE_MIN) COMPRESSED_SIZE_MIN, "
+                + "max(COMPRESSED_SIZE_MAX) COMPRESSED_SIZE_MAX, "
+                + "sum(COMPRESSION_COUNT) COMPRESSION_COUNT, "
+                + "sum(COMPRESSION_SUM) COMPRESSION_SUM, "
+                + "nvl(min(case when COMPRESSION_COUNT > 0 "
+                + "then COMPRESSION_MIN end), 0) COMPRESSION_MIN, "
+                + "nvl(max(case when COMPRESSION_COUNT > 0 "
+                + "then COMPRESSION_MAX end), 0) COMPRESSION_MAX "
+                + "from "
+                + TABLE_NAME
+                + " where GRANULARITY = ? and BUCKET_START >= ? "
+                + "and BUCKET_START < ?"
+                + JDBCMetricsAggregateService.getGroupByClause(
+                        bucket, bucketExpr, groupBy.toString())
+                + " order by BUCKET"
+                + groupBy
+                + ") where rownum <= ?";
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                stmt.setString(1, source.name());
+                stmt.setLong(  2, startTime);
+                stmt.setLong(  3, endTime);
+                stmt.setInt(   4, MAX_ROWS);
+                stmt.setFetchSize(JDBCJobMetricsService.DEFAULT_FETCH_SIZE);
+                rs   = stmt.executeQuery();
+                while (rs.next()) {
+                    MetricsRollup.MetricsRollupBuilder builder =
+                            new MetricsRollup.MetricsRollupBuilder()
+                                .granularity(bucket == null ? source : bucket)
+                                .bucket(rs.getLong("BUCKET"))
+                                .jobCount(rs.getLong("JOB_COUNT"))
+                                .elapsedTimeSum(rs.getLong("ELAPSED_TIME_SUM"))
+                                .elapsedTimeMin(rs.getLong("ELAPSED_TIME_MIN"))
+                                .elapsedTimeMax(rs.getLong("ELAPSED_TIME_MAX"))
+                                .totalSizeSum(rs.getLong("TOTAL_SIZE_SUM"))
+                                .totalSizeMin(rs.getLong("TOTAL_SIZE_MIN"))
+                                .totalSizeMax(rs.getLong("TOTAL_SIZE_MAX"))
+                                .compressedSizeSum(rs.getLong("COMPRESSED_SIZE_SUM"))
+                                .compressedSizeMin(rs.getLong("COMPRESSED_SIZE_MIN"))
+                                .compressedSizeMax(rs.getLong("COMPRESSED_SIZE_MAX"))
+                                .compressionCount(rs.getLong("COMPRESSION_COUNT"))
+                                .compressionSum(rs.getDouble("COMPRESSION_SUM"))
+                                .compressionMin(rs.getDouble("COMPRESSION_MIN"))
+                                .compressionMax(rs.getDouble("COMPRESSION_MAX"));
+                    for (AggregateDimensionType dimension : dimensions) {
+                        String value = rs.getString(
+                                JDBCMetricsAggregateService.getDimensionColumn(
+                                        dimension));
+                        switch (dimension) {
+                            case ARCHIVE_TYPE:
+                                builder.archiveType(value);
+                                break;
+                            case JOB_STATE:
+                                builder.jobState(value);
+                                break;
+                            default:
+                                builder.userName(value);
+                                break;
+                        }
+                    }
+                    rollups.add(builder.build());
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to read the [ "
+                        + TABLE_NAME
+                        + " ] trend data.  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+            }
+            finally {
+                try {
+                    if (rs != null) { rs.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + rollups.size()
+                    + " ] trend rows calculated from [ "
+                    + TABLE_NAME
+                    + " ] in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return rollups;
+    }
+
+    /**
+     * Recreate the entire rollup table from the raw job metrics records.
+     * The rollup table is locked for the duration of the rebuild so any
+     * collector transaction that is adding to the rollups either commits
+     * before the rebuild reads the raw records or waits until the rebuild
+     * has been committed.
+     *
+     * @return True if the rollups were rebuilt, false otherwise.
+     */
+    public boolean rebuild() {
+
+        Connection conn    = null;
+        boolean    rebuilt = false;
+        Statement  stmt    = null;
+        long       start   = System.currentTimeMillis();
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+
+                // Note: If the container Datasource has jta=true this will throw
+                // an exception.
+                conn.setAutoCommit(false);
+
+                stmt = conn.createStatement();
+                stmt.execute("lock table " + TABLE_NAME + " in exclusive mode");
+                stmt.executeUpdate("delete from " + TABLE_NAME);
+                for (TimeBucketType granularity : GRANULARITIES) {
+                    populate(conn, granularity, Long.MIN_VALUE, Long.MAX_VALUE);
+                }
+                conn.commit();
+                rebuilt = true;
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to rebuild the [ "
+                        + TABLE_NAME
+                        + " ] table.  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+                try {
+                    if (conn != null) { conn.rollback(); }
+                } catch (Exception e) {}
+            }
+            finally {
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The rollups will not be rebuilt.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Rebuild of [ "
+                    + TABLE_NAME
+                    + " ] completed in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return rebuilt;
+    }
+
+    /**
+     * Add the contribution of newly inserted metrics records to the rollup
+     * table.  The records are combined by rollup key first, so one MERGE is
+     * executed per distinct key rather than one per record, and the keys
+     * are applied in a fixed order so that concurrent collectors lock the
+     * rollup rows in the same order.  The caller is responsible for
+     * committing the connection.
+     *
+     * @param conn Connection with auto-commit disabled.
+     * @param records The metrics records that were inserted.
+     * @throws SQLException Thrown if the rollup rows could not be updated.
+     */
+    static void add(
+            Connection              conn,
+            List<BundlerJobMetrics> records) throws SQLException {
+
+        PreparedStatement               stmt   = null;
+        Map<MetricsRollupKey, long[]>   totals = 
+                new TreeMap<MetricsRollupKey, long[]>();
+        Map<MetricsRollupKey, double[]> ratios = 
+                new TreeMap<MetricsRollupKey, double[]>();
+
+        for (BundlerJobMetrics record : records) {
+            for (TimeBucketType granularity : GRANULARITIES) {
+                accumulate(
+                        totals, 
+                        ratios, 
+                        getKey(granularity, record), 
+                        record);
+            }
+        }
+
+        // Two collectors adding to a rollup row that does not yet exist may
+        // both take the "not matched" branch of the MERGE, in which case 
+        // the second fails with a unique key violation.  The row exists by
+        // then, so only the MERGE is rolled back (to a savepoint) and 
+        // retried; the caller's raw records are not affected.
+        for (int attempt = 1; ; attempt++) {
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                stmt = conn.prepareStatement(MERGE_SQL);
+                for (Map.Entry<MetricsRollupKey, long[]> entry : totals.entrySet()) {
+                    MetricsRollupKey key   = entry.getKey();
+                    long[]           total = entry.getValue();
+                    double[]         ratio = ratios.get(key);
+                    stmt.setString(1, key.getGranularity().name());
+                    stmt.setLong(  2, key.getBucket());
+                    stmt.setString(3, key.getUserName());
+                    stmt.setString(4, key.getArchiveType());
+                    stmt.setString(5, key.getJobState());
+                    for (int i = 0; i < total.length; i++) {
+                        stmt.setLong(6 + i, total[i]);
+                    }
+                    for (int i = 0; i < ratio.length; i++) {
+                        stmt.setDouble(6 + total.length + i, ratio[i]);
+                    }
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                return;
+            }
+            catch (SQLException se) {
+                if ((!isUniqueViolation(se)) || (attempt >= MAX_MERGE_ATTEMPTS)) {
+                    throw se;
+                }
+                LOGGER.info("Rollup row created concurrently by another "
+                        + "collector.  Retrying the MERGE (attempt [ "
+                        + (attempt + 1)
+                        + " ] of [ "
+                        + MAX_MERGE_ATTEMPTS
+                        + " ]).");
+                conn.rollback(savepoint);
+            }
+            finally {
+                try { 
+                    if (stmt != null) { stmt.close(); } 
+                } catch (Exception e) {}
+                stmt = null;
+            }
+        }
+    }
+
+    /**
+     * Determine whether the input exception reports a unique key 
+     * violation (i.e. ORA-00001).
+     *
+     * @param se The exception raised by the database.
+     * @return True if the exception is a unique key violation.
+     */
+    static boolean isUniqueViolation(SQLException se) {
+        return (se.getErrorCode() == ORA_UNIQUE_VIOLATION) || 
+                (UNIQUE_VIOLATION_STATE.equals(se.getSQLState()));
+    }
+
+    /**
+     * Recalculate the rollup buckets containing the input hours from the
+     * raw records.  This is used when the records may already have been
+     * counted (i.e. they were refreshed rather than inserted).  Each
+     * hourly bucket and each daily bucket containing one of the hours is
+     * recalculated once.  The caller is responsible for committing the
+     * connection.
+     *
+     * @param conn Connection with auto-commit disabled.
+     * @param hours The start of each hourly bucket to recalculate.
+     * @throws SQLException Thrown if the rollup rows could not be updated.
+     */
+    static void refresh(
+            Connection conn,
+            Set<Long>  hours) throws SQLException {
+        for (TimeBucketType granularity : GRANULARITIES) {
+            Set<Long> buckets = new TreeSet<Long>();
+            for (Long hour : hours) {
+                buckets.add(getBucketStart(granularity, hour));
+            }
+            for (Long bucket : buckets) {
+                long              end  = bucket + getBucketWidth(granularity);
+                PreparedStatement stmt = null;
+                try {
+                    stmt = conn.prepareStatement(DELETE_SQL);
+                    stmt.setString(1, granularity.name());
+                    stmt.setLong(  2, bucket);
+                    stmt.setLong(  3, end);
+                    stmt.executeUpdate();
+                }
+                finally {
+                    try { 
+                        if (stmt != null) { stmt.close(); } 
+                    } catch (Exception e) {}
+                }
+                populate(conn, granularity, bucket, end);
+            }
+        }
+    }
+
+    /**
+     * Calculate the rollup rows of the input granularity for the raw
+     * records started within the input range and insert them into the
+     * rollup table.  The caller must have already deleted any existing
+     * rollup rows within the range.
+     *
+     * @param conn Connection with auto-commit disabled.
+     * @param granularity The granularity to calculate.
+     * @param startTime The start of the range (inclusive).
+     * @param endTime The end of the range (exclusive).
+     * @throws SQLException Thrown if the rollup rows could not be inserted.
+     */
+    private static void populate(
+            Connection     conn,
+            TimeBucketType granularity,
+            long           startTime,
+            long           endTime) throws SQLException {
+
+        String sql = "insert into "
+                + TABLE_NAME
+                + " (GRANULARITY, BUCKET_START, USER_NAME, ARCHIVE_TYPE, "
+                + "JOB_STATE, JOB_COUNT, ELAPSED_TIME_SUM, ELAPSED_TIME_MIN, "
+                + "ELAPSED_TIME_MAX, TOTAL_SIZE_SUM, TOTAL_SIZE_MIN, "
+                + "TOTAL_SIZE_MAX, COMPRESSED_SIZE_SUM, COMPRESSED_SIZE_MIN, "
+                + "COMPRESSED_SIZE_MAX, COMPRESSION_COUNT, COMPRESSION_SUM, "
+                + "COMPRESSION_MIN, COMPRESSION_MAX) "
+                + "select ?, BUCKET_START, USER_NAME, ARCHIVE_TYPE, JOB_STATE, "
+                + "count(*), sum(ELAPSED_TIME), min(ELAPSED_TIME), "
+                + "max(ELAPSED_TIME), sum(TOTAL_SIZE), min(TOTAL_SIZE), "
+                + "max(TOTAL_SIZE), sum(TOTAL_COMPRESSED_SIZE), "
+                + "min(TOTAL_COMPRESSED_SIZE), max(TOTAL_COMPRESSED_SIZE), "
+                + "count(C), nvl(sum(C), 0), nvl(min(C), 0), nvl(max(C), 0) "
+                + "from (select "
+                + JDBCMetricsAggregateService.getBucketExpression(
+                        granularity, "START_TIME")
+                + " BUCKET_START, "
+                + DIMENSION_COLUMNS
+                + ", ELAPSED_TIME, TOTAL_SIZE, "
+                + "TOTAL_COMPRESSED_SIZE, case when TOTAL_SIZE > 0 and "
+                + "TOTAL_COMPRESSED_SIZE > 0 then "
+                + "(TOTAL_SIZE - TOTAL_COMPRESSED_SIZE) / TOTAL_SIZE end C "
+                + "from "
+                + JDBCJobMetricsService.TABLE_NAME
+                + " where START_TIME >= ? and START_TIME < ?) "
+                + "group by BUCKET_START, USER_NAME, ARCHIVE_TYPE, JOB_STATE";
+
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(sql);
+            stmt.setString(1, granularity.name());
+            stmt.setLong(  2, startTime);
+            stmt.setLong(  3, endTime);
+            int rows = stmt.executeUpdate();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("[ "
+                        + rows
+                        + " ] [ "
+                        + granularity.name()
+                        + " ] rollup rows calculated for range [ "
+                        + startTime
+                        + " - "
+                        + endTime
+                        + " ].");
+            }
+        }
+        finally {
+            try { 
+                if (stmt != null) { stmt.close(); } 
+            } catch (Exception e) {}
+        }
+    }
+
+    /**
+     * Add a single metrics record to the running totals of the input key.
+     * The totals are held in the order the values are bound to
+     * <code>MERGE_SQL</code>: job count, then the sum, minimum and maximum
+     * of the elapsed time, total size and compressed size, then the
+     * compression count.  The ratios hold the sum, minimum and maximum of
+     * the compression percentage.
+     *
+     * @param totals The running totals by key.
+     * @param ratios The running compression percentages by key.
+     * @param key The rollup key of the record.
+     * @param record The metrics record.
+     */
+    private static void accumulate(
+            Map<MetricsRollupKey, long[]>   totals,
+            Map<MetricsRollupKey, double[]> ratios,
+            MetricsRollupKey                key,
+            BundlerJobMetrics               record) {
+
+        long[]   total = totals.get(key);
+        double[] ratio = ratios.get(key);
+        long[]   value = {
+                record.getElapsedTime(),
+                record.getTotalSize(),
+                record.getTotalCompressedSize() };
+
+        if (total == null) {
+            total = new long[11];
+            ratio = new double[3];
+            for (int i = 0; i < value.length; i++) {
+                total[2 + (i * 3)] = value[i];
+                total[3 + (i * 3)] = value[i];
+            }
+            totals.put(key, total);
+            ratios.put(key, ratio);
+        }
+        total[0]++;
+        for (int i = 0; i < value.length; i++) {
+            total[1 + (i * 3)] += value[i];
+            total[2 + (i * 3)]  = Math.min(total[2 + (i * 3)], value[i]);
+            total[3 + (i * 3)]  = Math.max(total[3 + (i * 3)], value[i]);
+        }
+        if ((record.getTotalSize() > 0) &&
+                (record.getTotalCompressedSize() > 0)) {
+            double compression =
+                    (double)(record.getTotalSize() -
+                            record.getTotalCompressedSize()) /
+                    (double)record.getTotalSize();
+            if (total[10] == 0) {
+                ratio[1] = compression;
+                ratio[2] = compression;
+            }
+            total[10]++;
+            ratio[0] += compression;
+            ratio[1]  = Math.min(ratio[1], compression);
+            ratio[2]  = Math.max(ratio[2], compression);
+        }
+    }
+
+    /**
+     * Construct the rollup key of a metrics record.  The archive type and
+     * job state are stored using their text values, and null key values
+     * are replaced with <code>UNKNOWN</code>, matching the values
+     * calculated by <code>populate()</code>.
+     *
+     * @param granularity The granularity of the rollup.
+     * @param record The metrics record.
+     * @return The rollup key.
+     */
+    private static MetricsRollupKey getKey(
+            TimeBucketType    granularity,
+            BundlerJobMetrics record) {
+        String userName = record.getUserName();
+        if ((userName == null) || (userName.isEmpty())) {
+            userName = UNKNOWN;
+        }
+        return new MetricsRollupKey(
+                granularity,
+                getBucketStart(granularity, record.getStartTime()),
+                userName,
+                record.getArchiveType() == null ?
+                        UNKNOWN : record.getArchiveType().getText(),
+                record.getJobState() == null ?
+                        UNKNOWN : record.getJobState().getText());
+    }
+
+    /**
+     * Calculate the start of the bucket containing the input time.
+     *
+     * @param granularity The granularity (HOUR or DAY).
+     * @param time Time in milliseconds since the epoch.
+     * @return The start of the bucket.
+     */
+    static long getBucketStart(TimeBucketType granularity, long time) {
+        long width = getBucketWidth(granularity);
+        return Math.floorDiv(time, width) * width;
+    }
+
+    /**
+     * Get the width of the input granularity.
+     *
+     * @param granularity The granularity (HOUR or DAY).
+     * @return The width of the bucket in milliseconds.
+     */
+    static long getBucketWidth(TimeBucketType granularity) {
+        return (granularity == TimeBucketType.HOUR) ?
+                JDBCMetricsAggregateService.MILLIS_PER_HOUR :
+                JDBCMetricsAggregateService.MILLIS_PER_DAY;
+    }
+}
@@ -0,0 +1,473 @@
+package mil.nga.bundler.ejb.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.model.CollectionPartition;
+import mil.nga.bundler.types.PartitionStateType;
+
+/**
+ * Session bean providing methods for interfacing with the table containing
+ * the partition claims of cluster-wide metrics collection runs.  A 
+ * partition is claimed with a conditional update so that exactly one node
+ * wins each partition.  Claims expire (according to the database clock) if 
+ * they are not renewed, allowing other nodes to steal the partitions of a
+ * node that dies.
+ *
+ * This class is written assuming that the injected DataSource object is not
+ * handling the transactions on behalf of the application (i.e. non-JTA).  If
+ * this bean is deployed to a container with JTA enabled, the update
+ * functions will throw exceptions when attempting to manage the underlying
+ * transaction.
+ */
+@Stateless
+@LocalBean
+public class JDBCPartitionService {
+
+    /**
+     * The target table name.
+     */
+    public static final String TABLE_NAME = "BUNDLER_METRICS_PARTITION";
+
+    /**
+     * SQL used to claim a single partition.  The update only succeeds if the
+     * partition is still pending, or the previous claim has expired.
+     */
+    private static final String CLAIM_SQL = "update "
+            + TABLE_NAME
+            + " set PARTITION_STATE = ?, OWNER = ?, EXPIRES = "
+            + JDBCLeaseService.DB_TIME + " + ? "
+            + "where PARTITION_KEY = ? and (PARTITION_STATE = ? or "
+            + "(PARTITION_STATE = ? and EXPIRES < "
+            + JDBCLeaseService.DB_TIME + "))";
+
+    /**
+     * SQL used to extend a claim.  The claim is only extended if it is still
+     * held by the requesting node.
+     */
+    private static final String RENEW_SQL = "update "
+            + TABLE_NAME
+            + " set EXPIRES = " + JDBCLeaseService.DB_TIME + " + ? "
+            + "where PARTITION_KEY = ? and OWNER = ? and PARTITION_STATE = ?";
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JDBCPartitionService.class);
+
+    /**
+     * Container-injected datasource object.
+     */
+    @Resource(mappedName="java:jboss/datasources/JobTracker")
+    DataSource datasource;
+
+    /**
+     * Default constructor.
+     */
+    public JDBCPartitionService() { }
+
+    /**
+     * Claim one of the available partitions of the input run on behalf of
+     * the input owner.  Pending partitions are claimed first, after which 
+     * partitions whose claim has expired are stolen.
+     *
+     * @param runID The run ID.
+     * @param owner Unique identifier of the claimant.
+     * @param ttl The time (in milliseconds) the claim is valid without
+     * renewal.
+     * @return The claimed partition, or null if no partitions are 
+     * available.
+     */
+    public CollectionPartition claim(String runID, String owner, long ttl) {
+
+        Connection          conn      = null;
+        CollectionPartition claimed   = null;
+        PreparedStatement   stmt      = null;
+        PreparedStatement   claimStmt = null;
+        ResultSet           rs        = null;
+        String              sql       = "select PARTITION_ID, NUM_PARTITIONS, "
+                + "PARTITION_STATE from "
+                + TABLE_NAME
+                + " where RUN_ID = ? and (PARTITION_STATE = ? or "
+                + "(PARTITION_STATE = ? and EXPIRES < "
+                + JDBCLeaseService.DB_TIME
+                + ")) order by case when PARTITION_STATE = ? then 0 "
+                + "else 1 end, PARTITION_ID";
+
+        if (datasource != null) {
+            if ((runID != null) && (owner != null)) {
+                try {
+                    conn = datasource.getConnection();
+                    conn.setAutoCommit(false);
+                    stmt = conn.prepareStatement(sql);
+                    stmt.setString(1, runID);
+                    stmt.setString(2, PartitionStateType.PENDING.name());
+                    stmt.setString(3, PartitionStateType.CLAIMED.name());
+                    stmt.setString(4, PartitionStateType.PENDING.name());
+                    rs = stmt.executeQuery();
+                    claimStmt = conn.prepareStatement(CLAIM_SQL);
+                    while ((claimed == null) && (rs.next())) {
+                        int partition = rs.getInt("PARTITION_ID");
+                        claimStmt.setString(1, PartitionStateType.CLAIMED.name());
+                        claimStmt.setString(2, owner);
+                        claimStmt.setLong(  3, ttl);
+                        claimStmt.setString(4, 
+                                CollectionPartition.getKey(runID, partition));
+                        claimStmt.setString(5, PartitionStateType.PENDING.name());
+                        claimStmt.setString(6, PartitionStateType.CLAIMED.name());
+                        if (claimStmt.executeUpdate() > 0) {
+                            conn.commit();
+                            claimed = new CollectionPartition
+                                    .CollectionPartitionBuilder()
+                                        .runID(runID)
+                                        .partition(partition)
+                                        .partitions(rs.getInt("NUM_PARTITIONS"))
+                                        .owner(owner)
+                                        .state(PartitionStateType.CLAIMED)
+                                        .build();
+                        }
+                    }
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to claim a partition of run [ "
+                            + runID
+                            + " ].  Error message [ "
+                            + se.getMessage()
+                            + " ].");
+                }
+                finally {
+                    try {
+                        if (rs != null) { rs.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (claimStmt != null) { claimStmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (conn != null) { conn.close(); }
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "A null partition will be returned to the caller.");
+        }
+
+        if ((claimed != null) && (LOGGER.isDebugEnabled())) {
+            LOGGER.debug("Partition claimed => [ "
+                    + claimed.toString()
+                    + " ]");
+        }
+        return claimed;
+    }
+
+    /**
+     * Mark the input partition as complete.  The partition is only updated
+     * if it is still held by the input owner.
+     *
+     * @param partition The claimed partition.
+     * @param jobsProcessed The number of jobs processed from the partition.
+     * @return True if the partition was marked complete.
+     */
+    public boolean complete(CollectionPartition partition, long jobsProcessed) {
+
+        boolean           completed = false;
+        Connection        conn      = null;
+        PreparedStatement stmt      = null;
+        String            sql       = "update "
+                + TABLE_NAME
+                + " set PARTITION_STATE = ?, JOBS_PROCESSED = ? "
+                + "where PARTITION_KEY = ? and OWNER = ? and "
+                + "PARTITION_STATE = ?";
+
+        if (datasource != null) {
+            if (partition != null) {
+                try {
+                    conn = datasource.getConnection();
+                    conn.setAutoCommit(false);
+                    stmt = conn.prepareStatement(sql);
+                    stmt.setString(1, PartitionStateType.COMPLETE.name());
+                    stmt.setLong(  2, jobsProcessed);
+                    stmt.setString(3, partition.getKey());
+                    stmt.setString(4, partition.getOwner());
+                    stmt.setString(5, PartitionStateType.CLAIMED.name());
+                    completed = (stmt.executeUpdate() > 0);
+                    conn.commit();
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to complete partition [ "
+                            + partition.getKey()
+                            + " ].  Error message [ "
+                            + se.getMessage()
+                            + " ].");
+                }
+                finally {
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (conn != null) { conn.close(); }
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The partition will not be marked complete.");
+        }
+        return completed;
+    }
+
+    /**
+     * Create the partition records for a new run.  Any partition records 
+     * left over from previous runs are removed.  The caller must hold the 
+     * collection lease.
+     *
+     * @param runID The run ID.
+     * @param partitions The number of partitions.
+     * @return True if the partitions were created.
+     */
+    public boolean create(String runID, int partitions) {
+
+        boolean           created    = false;
+        Connection        conn       = null;
+        PreparedStatement deleteStmt = null;
+        PreparedStatement stmt       = null;
+        long              start      = System.currentTimeMillis();
+        String            deleteSQL  = "delete from "
+                + TABLE_NAME
+                + " where RUN_ID <> ?";
+        String            sql        = "insert into "
+                + TABLE_NAME
+                + " (PARTITION_KEY, RUN_ID, PARTITION_ID, NUM_PARTITIONS, "
+                + "PARTITION_STATE, OWNER, EXPIRES, JOBS_PROCESSED) "
+                + "values (?, ?, ?, ?, ?, ?, 0, 0)";
+
+        if (datasource != null) {
+            if ((runID != null) && (partitions > 0)) {
+                try {
+                    conn = datasource.getConnection();
+                    conn.setAutoCommit(false);
+                    deleteStmt = conn.prepareStatement(deleteSQL);
+                    deleteStmt.setString(1, runID);
+                    deleteStmt.executeUpdate();
+                    stmt = conn.prepareStatement(sql);
+                    for (int i = 0; i < partitions; i++) {
+                        stmt.setString(1, CollectionPartition.getKey(runID, i));
+                        stmt.setString(2, runID);
+                        stmt.setInt(   3, i);
+                        stmt.setInt(   4, partitions);
+                        stmt.setString(5, PartitionStateType.PENDING.name());
+                        stmt.setString(6, "");
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    conn.commit();
+                    created = true;
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to create [ "
+                            + partitions
+                            + " ] partitions for run [ "
+                            + runID
+                            + " ].  Error message [ "
+                            + se.getMessage()
+                            + " ].");
+                    try { conn.rollback(); } catch (Exception e) {}
+                }
+                finally {
+                    try {
+                        if (deleteStmt != null) { deleteStmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (conn != null) { conn.close(); }
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "Partitions will not be created.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + partitions
+                    + " ] partitions created for run [ "
+                    + runID
+                    + " ] in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return created;
+    }
+
+    /**
+     * Retrieve the partition records associated with the input run.
+     *
+     * @param runID The run ID.
+     * @return The partitions of the run, ordered by partition number.  The
+     * list will be empty if the run is not partitioned.
+     */
+    public List<CollectionPartition> getPartitions(String runID) {
+
+        Connection                conn       = null;
+        List<CollectionPartition> partitions = new ArrayList<CollectionPartition>();
+        PreparedStatement         stmt       = null;
+        ResultSet                 rs         = null;
+        String                    sql        = "select RUN_ID, PARTITION_ID, "
+                + "NUM_PARTITIONS, PARTITION_STATE, OWNER, EXPIRES, "
+                + "JOBS_PROCESSED from "
+                + TABLE_NAME
+                + " where RUN_ID = ? order by PARTITION_ID";
+
+        if (datasource != null) {
+            if (runID != null) {
+                try {
+                    conn = datasource.getConnection();
+                    stmt = conn.prepareStatement(sql);
+                    stmt.setString(1, runID);
+                    rs   = stmt.executeQuery();
+                    while (rs.next()) {
+                        partitions.add(new CollectionPartition
+                                .CollectionPartitionBuilder()
+                                    .runID(rs.getString("RUN_ID"))
+                                    .partition(rs.getInt("PARTITION_ID"))
+                                    .partitions(rs.getInt("NUM_PARTITIONS"))
+                                    .state(PartitionStateType.valueOf(
+                                            rs.getString("PARTITION_STATE")))
+                                    .owner(rs.getString("OWNER"))
+                                    .expires(rs.getLong("EXPIRES"))
+                                    .jobsProcessed(rs.getLong("JOBS_PROCESSED"))
+                                    .build());
+                    }
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to retrieve the partitions of run [ "
+                            + runID
+                            + " ].  Error message [ "
+                            + se.getMessage()
+                            + " ].");
+                }
+                finally {
+                    try {
+                        if (rs != null) { rs.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (conn != null) { conn.close(); }
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+        return partitions;
+    }
+
+    /**
+     * Extend the claim on the input partition.
+     *
+     * @param partition The claimed partition.
+     * @param ttl The time (in milliseconds) the claim is valid without
+     * renewal.
+     * @return True if the claim was extended, false if it is no longer held
+     * (or could not be extended).
+     */
+    public boolean renew(CollectionPartition partition, long ttl) {
+
+        boolean    renewed = false;
+        Connection conn    = null;
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                conn.setAutoCommit(false);
+                renewed = renew(conn, partition, ttl);
+                conn.commit();
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to renew the claim on partition [ "
+                        + partition.getKey()
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+            }
+            finally {
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The partition claim will not be renewed.");
+        }
+        return renewed;
+    }
+
+    /**
+     * Extend the claim on the input partition using the connection supplied
+     * by the caller.  This method does not commit the transaction, allowing
+     * the claim to be verified and extended atomically with the records 
+     * written under it.
+     *
+     * @param conn Connection (with auto-commit disabled) owned by the caller.
+     * @param partition The claimed partition.
+     * @param ttl The time (in milliseconds) the claim is valid without
+     * renewal.
+     * @return True if the claim was extended, false if it is no longer held.
+     * @throws SQLException Thrown if the claim could not be updated.
+     */
+    public boolean renew(
+            Connection          conn,
+            CollectionPartition partition,
+            long                ttl) throws SQLException {
+
+        boolean           renewed = false;
+        PreparedStatement stmt    = null;
+
+        try {
+            stmt = conn.prepareStatement(RENEW_SQL);
+            stmt.setLong(  1, ttl);
+            stmt.setString(2, partition.getKey());
+            stmt.setString(3, partition.getOwner());
+            stmt.setString(4, PartitionStateType.CLAIMED.name());
+            renewed = (stmt.executeUpdate() > 0);
+        }
+        finally {
+            try {
+                if (stmt != null) { stmt.close(); }
+            } catch (Exception e) {}
+        }
+        return renewed;
+    }
+}
@@ -0,0 +1,462 @@
+package mil.nga.bundler.ejb.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.model.MetricsRetry;
+import mil.nga.bundler.types.RetryStateType;
+
+/**
+ * Session bean providing methods for interfacing with the table tracking
+ * jobs whose metrics record could not be written.  Each failure pushes the
+ * next attempt for the job further into the future (the delay doubles
+ * after each failure) and once the maximum number of attempts has been
+ * reached the job is moved to the dead-letter state.  Full collection runs
+ * exclude jobs that are backing off or dead (see
+ * <code>RETRY_EXCLUSION_PREDICATE</code>) so a job that cannot be written
+ * is no longer reloaded on every run.  Incremental runs never revisit a
+ * job once their checkpoint has passed it, so they explicitly retry the 
+ * jobs whose retry delay has expired (see <code>getDueJobIDs()</code>).
+ *
+ * This class is written assuming that the injected DataSource object is not
+ * handling the transactions on behalf of the application (i.e. non-JTA).  If
+ * this bean is deployed to a container with JTA enabled, the update
+ * functions will throw exceptions when attempting to manage the underlying
+ * transaction.
+ */
+@Stateless
+@LocalBean
+public class JDBCRetryService {
+
+    /**
+     * The target table name.
+     */
+    public static final String TABLE_NAME = "BUNDLER_METRICS_RETRY";
+
+    /**
+     * Predicate restricting a query against the JOBS table (aliased as
+     * <code>j</code>) to jobs that are not waiting out a retry delay and
+     * have not been moved to the dead-letter state.  The predicate
+     * requires a single bind parameter: the current time.
+     */
+    public static final String RETRY_EXCLUSION_PREDICATE = "not exists "
+            + "(select 1 from "
+            + TABLE_NAME
+            + " r where r.JOB_ID = j.JOB_ID and (r.RETRY_STATE = '"
+            + RetryStateType.DEAD.name()
+            + "' or r.NEXT_ATTEMPT > ?))";
+
+    /**
+     * The maximum length of the stored error message.
+     */
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    /**
+     * Number of milliseconds in a minute.
+     */
+    private static final long MILLIS_PER_MINUTE = 60000L;
+
+    /**
+     * The columns of the target table, in the order used by the select
+     * statement.
+     */
+    private static final String COLUMNS = "JOB_ID, ATTEMPTS, FIRST_FAILURE, "
+            + "LAST_ATTEMPT, LAST_ERROR, NEXT_ATTEMPT, RETRY_STATE";
+
+    /**
+     * Statement recording a single failure.  New jobs are inserted with
+     * one attempt.  For existing jobs the attempt count is incremented
+     * and the delay before the next attempt is doubled (note that the
+     * right-hand side of each assignment sees the values prior to the
+     * update).
+     */
+    private static final String FAILURE_SQL = "merge into "
+            + TABLE_NAME
+            + " r using (select ? JOB_ID, ? LAST_ERROR, ? NOW from dual) s "
+            + "on (r.JOB_ID = s.JOB_ID) "
+            + "when matched then update set "
+            + "r.ATTEMPTS = r.ATTEMPTS + 1, "
+            + "r.LAST_ATTEMPT = s.NOW, "
+            + "r.LAST_ERROR = s.LAST_ERROR, "
+            + "r.NEXT_ATTEMPT = s.NOW + least(? * power(2, r.ATTEMPTS), ?), "
+            + "r.RETRY_STATE = case when r.ATTEMPTS + 1 >= ? then '"
+            + RetryStateType.DEAD.name()
+            + "' else '"
+            + RetryStateType.RETRY.name()
+            + "' end "
+            + "when not matched then insert ("
+            + COLUMNS
+            + ") values (s.JOB_ID, 1, s.NOW, s.NOW, s.LAST_ERROR, "
+            + "s.NOW + least(?, ?), case when ? <= 1 then '"
+            + RetryStateType.DEAD.name()
+            + "' else '"
+            + RetryStateType.RETRY.name()
+            + "' end)";
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JDBCRetryService.class);
+
+    /**
+     * Container-injected datasource object.
+     */
+    @Resource(mappedName="java:jboss/datasources/JobTracker")
+    DataSource datasource;
+
+    /**
+     * Default constructor.
+     */
+    public JDBCRetryService() { }
+
+    /**
+     * Retrieve the jobs in the input retry state, ordered by the number of
+     * failed attempts (most first).
+     *
+     * @param state The retry state to select.  If null, jobs in every
+     * state are returned.
+     * @param maxRows The maximum number of jobs to return.
+     * @return The selected retry records.  The list will be empty if the
+     * records could not be retrieved.
+     */
+    public List<MetricsRetry> getRetries(RetryStateType state, int maxRows) {
+
+        Connection         conn    = null;
+        List<MetricsRetry> retries = new ArrayList<MetricsRetry>();
+        PreparedStatement  stmt    = null;
+        ResultSet          rs      = null;
+        long               start   = System.currentTimeMillis();
+        String             sql     = "select * from (select "
+                + COLUMNS
+                + " from "
+                + TABLE_NAME
+                + (state == null ? "" : " where RETRY_STATE = ?")
+                + " order by ATTEMPTS desc, LAST_ATTEMPT desc) "
+                + "where rownum <= ?";
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                if (state == null) {
+                    stmt.setInt(1, maxRows);
+                }
+                else {
+                    stmt.setString(1, state.name());
+                    stmt.setInt(   2, maxRows);
+                }
+                rs   = stmt.executeQuery();
+                while (rs.next()) {
+                    retries.add(new MetricsRetry.MetricsRetryBuilder()
+                                .jobID(rs.getString("JOB_ID"))
+                                .attempts(rs.getInt("ATTEMPTS"))
+                                .firstFailure(rs.getLong("FIRST_FAILURE"))
+                                .lastAttempt(rs.getLong("LAST_ATTEMPT"))
+                                .lastError(rs.getString("LAST_ERROR"))
+                                .nextAttempt(rs.getLong("NEXT_ATTEMPT"))
+                                .state(RetryStateType.valueOf(
+                                        rs.getString("RETRY_STATE")))
+                                .build());
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to retrieve the failed jobs from "
+                        + "table [ "
+                        + TABLE_NAME
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+            }
+            finally {
+                try {
+                    if (rs != null) { rs.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + retries.size()
+                    + " ] failed jobs selected in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return retries;
+    }
+
+    /**
+     * Retrieve the jobs that are waiting to be retried and whose retry 
+     * delay has expired, oldest first.  Jobs that have since been given a
+     * metrics record (e.g. by a re-collection run) are excluded.
+     *
+     * @param now The current time.
+     * @return The IDs of the jobs due to be retried.  The list will be 
+     * empty if there are none or they could not be retrieved.
+     */
+    public List<String> getDueJobIDs(long now) {
+
+        Connection        conn   = null;
+        List<String>      jobIDs = new ArrayList<String>();
+        PreparedStatement stmt   = null;
+        ResultSet         rs     = null;
+        String            sql    = "select r.JOB_ID from "
+                + TABLE_NAME
+                + " r where r.RETRY_STATE = '"
+                + RetryStateType.RETRY.name()
+                + "' and r.NEXT_ATTEMPT <= ? and not exists (select 1 from "
+                + JDBCJobMetricsService.TABLE_NAME
+                + " m where m.JOB_ID = r.JOB_ID) order by r.NEXT_ATTEMPT";
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                stmt.setLong(1, now);
+                stmt.setFetchSize(JDBCJobMetricsService.DEFAULT_FETCH_SIZE);
+                rs   = stmt.executeQuery();
+                while (rs.next()) {
+                    jobIDs.add(rs.getString("JOB_ID"));
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to retrieve the jobs due to be "
+                        + "retried from table [ "
+                        + TABLE_NAME
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+            }
+            finally {
+                try {
+                    if (rs != null) { rs.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+        return jobIDs;
+    }
+
+    /**
+     * Remove the retry records for jobs that now have a metrics record
+     * (i.e. jobs that were written successfully on a later attempt, or by
+     * a re-collection run).
+     *
+     * @return The number of records removed.
+     */
+    public int purgeResolved() {
+
+        Connection        conn    = null;
+        int               deleted = 0;
+        PreparedStatement stmt    = null;
+        String            sql     = "delete from "
+                + TABLE_NAME
+                + " r where exists (select 1 from "
+                + JDBCJobMetricsService.TABLE_NAME
+                + " m where m.JOB_ID = r.JOB_ID)";
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                conn.setAutoCommit(false);
+                stmt = conn.prepareStatement(sql);
+                deleted = stmt.executeUpdate();
+                conn.commit();
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to purge resolved records from table [ "
+                        + TABLE_NAME
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+            }
+            finally {
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "Resolved retry records will not be purged.");
+        }
+
+        if ((deleted > 0) && (LOGGER.isDebugEnabled())) {
+            LOGGER.debug("[ "
+                    + deleted
+                    + " ] resolved retry records purged.");
+        }
+        return deleted;
+    }
+
+    /**
+     * Record a failed attempt to write the metrics record for each of the
+     * input jobs.  All failures are recorded in a single transaction.
+     *
+     * @param failures Map of job ID to the error message raised.
+     * @param baseDelay The delay (in minutes) before the first retry.
+     * @param maxDelay The upper bound (in minutes) of the retry delay.
+     * @param maxAttempts The number of failed attempts after which a job
+     * is moved to the dead-letter state.
+     */
+    public void recordFailures(
+            Map<String, String> failures,
+            int                 baseDelay,
+            int                 maxDelay,
+            int                 maxAttempts) {
+
+        Connection        conn = null;
+        PreparedStatement stmt = null;
+        long              now  = System.currentTimeMillis();
+        long              base = baseDelay * MILLIS_PER_MINUTE;
+        long              max  = maxDelay * MILLIS_PER_MINUTE;
+
+        if (datasource != null) {
+            if ((failures != null) && (!failures.isEmpty())) {
+                try {
+                    conn = datasource.getConnection();
+                    conn.setAutoCommit(false);
+                    stmt = conn.prepareStatement(FAILURE_SQL);
+                    for (Map.Entry<String, String> failure : failures.entrySet()) {
+                        String error = failure.getValue() == null ?
+                                "" : failure.getValue();
+                        if (error.length() > MAX_ERROR_LENGTH) {
+                            error = error.substring(0, MAX_ERROR_LENGTH);
+                        }
+                        stmt.setString(1, failure.getKey());
+                        stmt.setString(2, error);
+                        stmt.setLong(  3, now);
+                        stmt.setLong(  4, base);
+                        stmt.setLong(  5, max);
+                        stmt.setInt(   6, maxAttempts);
+                        stmt.setLong(  7, base);
+                        stmt.setLong(  8, max);
+                        stmt.setInt(   9, maxAttempts);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    conn.commit();
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to record [ "
+                            + failures.size()
+                            + " ] failed jobs in table [ "
+                            + TABLE_NAME
+                            + " ].  Error message [ "
+                            + se.getMessage()
+                            + " ].");
+                    try {
+                        if (conn != null) { conn.rollback(); }
+                    } catch (Exception e) {}
+                }
+                finally {
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (conn != null) { conn.close(); }
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "Failed jobs will not be recorded.");
+        }
+    }
+
+    /**
+     * Remove the retry record for a single job so that it is reconsidered
+     * by the next collection run.  Used by operators to release a job from
+     * the dead-letter state once the underlying problem has been fixed.
+     *
+     * @param jobID The target job ID.
+     * @return True if a retry record was removed.
+     */
+    public boolean reset(String jobID) {
+
+        Connection        conn    = null;
+        int               deleted = 0;
+        PreparedStatement stmt    = null;
+        String            sql     = "delete from "
+                + TABLE_NAME
+                + " where JOB_ID = ?";
+
+        if (datasource != null) {
+            if ((jobID != null) && (!jobID.isEmpty())) {
+                try {
+                    conn = datasource.getConnection();
+                    conn.setAutoCommit(false);
+                    stmt = conn.prepareStatement(sql);
+                    stmt.setString(1, jobID);
+                    deleted = stmt.executeUpdate();
+                    conn.commit();
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to reset job ID [ "
+                            + jobID
+                            + " ] in table [ "
+                            + TABLE_NAME
+                            + " ].  Error message [ "
+                            + se.getMessage()
+                            + " ].");
+                }
+                finally {
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (conn != null) { conn.close(); }
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "Job ID [ "
+                    + jobID
+                    + " ] will not be reset.");
+        }
+        return (deleted > 0);
+    }
+}
@@ -0,0 +1,216 @@
+package mil.nga.bundler.ejb.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.model.CollectionRunHistory;
+import mil.nga.bundler.types.CollectionRunStateType;
+
+/**
+ * Session bean providing methods for interfacing with the table containing
+ * the history of the metrics collection runs.
+ *
+ * This class is written assuming that the injected DataSource object is not
+ * handling the transactions on behalf of the application (i.e. non-JTA).  If
+ * this bean is deployed to a container with JTA enabled, the update
+ * functions will throw exceptions when attempting to manage the underlying
+ * transaction.
+ */
+@Stateless
+@LocalBean
+public class JDBCRunHistoryService {
+
+    /**
+     * The target table name.
+     */
+    public static final String TABLE_NAME = "BUNDLER_METRICS_RUN_HISTORY";
+
+    /**
+     * The columns of the target table, in the order used by both the
+     * insert and select statements.
+     */
+    private static final String COLUMNS = "RUN_ID, RUN_MODE, RUN_STATE, "
+            + "OWNER, START_TIME, END_TIME, CONCURRENCY, DISCOVERY_TIME, "
+            + "LOAD_TIME, COMPUTE_TIME, INSERT_TIME, JOBS_SCANNED, "
+            + "JOBS_PROCESSED, JOBS_SKIPPED, ROWS_INSERTED, ROWS_FAILED, "
+            + "MAX_JOB_LATENCY";
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JDBCRunHistoryService.class);
+
+    /**
+     * Container-injected datasource object.
+     */
+    @Resource(mappedName="java:jboss/datasources/JobTracker")
+    DataSource datasource;
+
+    /**
+     * Default constructor.
+     */
+    public JDBCRunHistoryService() { }
+
+    /**
+     * Retrieve the most recent collection runs.
+     *
+     * @param maxRows The maximum number of runs to return.
+     * @return The most recent runs ordered by START_TIME (newest first).
+     * The list will be empty if the runs could not be retrieved.
+     */
+    public List<CollectionRunHistory> getRuns(int maxRows) {
+
+        Connection                 conn  = null;
+        List<CollectionRunHistory> runs  = new ArrayList<CollectionRunHistory>();
+        PreparedStatement          stmt  = null;
+        ResultSet                  rs    = null;
+        long                       start = System.currentTimeMillis();
+        String                     sql   = "select * from (select "
+                + COLUMNS
+                + " from "
+                + TABLE_NAME
+                + " order by START_TIME desc) where rownum <= ?";
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                stmt.setInt(1, maxRows);
+                rs   = stmt.executeQuery();
+                while (rs.next()) {
+                    runs.add(new CollectionRunHistory.CollectionRunHistoryBuilder()
+                                .runID(rs.getString("RUN_ID"))
+                                .mode(rs.getString("RUN_MODE"))
+                                .state(CollectionRunStateType.valueOf(
+                                        rs.getString("RUN_STATE")))
+                                .owner(rs.getString("OWNER"))
+                                .startTime(rs.getLong("START_TIME"))
+                                .endTime(rs.getLong("END_TIME"))
+                                .concurrency(rs.getInt("CONCURRENCY"))
+                                .discoveryTime(rs.getLong("DISCOVERY_TIME"))
+                                .loadTime(rs.getLong("LOAD_TIME"))
+                                .computeTime(rs.getLong("COMPUTE_TIME"))
+                                .insertTime(rs.getLong("INSERT_TIME"))
+                                .jobsScanned(rs.getLong("JOBS_SCANNED"))
+                                .jobsProcessed(rs.getLong("JOBS_PROCESSED"))
+                                .jobsSkipped(rs.getLong("JOBS_SKIPPED"))
+                                .rowsInserted(rs.getLong("ROWS_INSERTED"))
+                                .rowsFailed(rs.getLong("ROWS_FAILED"))
+                                .maxJobLatency(rs.getLong("MAX_JOB_LATENCY"))
+                                .build());
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to retrieve the collection run history "
+                        + "from table [ "
+                        + TABLE_NAME
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+            }
+            finally {
+                try {
+                    if (rs != null) { rs.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + runs.size()
+                    + " ] collection runs selected in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return runs;
+    }
+
+    /**
+     * Insert the history record for a completed collection run.
+     *
+     * @param run The history record to insert.
+     */
+    public void insert(CollectionRunHistory run) {
+
+        Connection        conn = null;
+        PreparedStatement stmt = null;
+        String            sql  = "insert into "
+                + TABLE_NAME
+                + " ("
+                + COLUMNS
+                + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        if (datasource != null) {
+            if (run != null) {
+                try {
+                    conn = datasource.getConnection();
+                    conn.setAutoCommit(false);
+                    stmt = conn.prepareStatement(sql);
+                    stmt.setString(1,  run.getRunID());
+                    stmt.setString(2,  run.getMode());
+                    stmt.setString(3,  run.getState().name());
+                    stmt.setString(4,  run.getOwner());
+                    stmt.setLong(  5,  run.getStartTime());
+                    stmt.setLong(  6,  run.getEndTime());
+                    stmt.setInt(   7,  run.getConcurrency());
+                    stmt.setLong(  8,  run.getDiscoveryTime());
+                    stmt.setLong(  9,  run.getLoadTime());
+                    stmt.setLong(  10, run.getComputeTime());
+                    stmt.setLong(  11, run.getInsertTime());
+                    stmt.setLong(  12, run.getJobsScanned());
+                    stmt.setLong(  13, run.getJobsProcessed());
+                    stmt.setLong(  14, run.getJobsSkipped());
+                    stmt.setLong(  15, run.getRowsInserted());
+                    stmt.setLong(  16, run.getRowsFailed());
+                    stmt.setLong(  17, run.getMaxJobLatency());
+                    stmt.executeUpdate();
+                    conn.commit();
+                }
+                catch (SQLException se) {
+                    LOGGER.error("An unexpected SQLException was raised while "
+                            + "attempting to insert the history of run [ "
+                            + run.getRunID()
+                            + " ].  Error message [ "
+                            + se.getMessage()
+                            + " ].");
+                }
+                finally {
+                    try {
+                        if (stmt != null) { stmt.close(); }
+                    } catch (Exception e) {}
+                    try {
+                        if (conn != null) { conn.close(); }
+                    } catch (Exception e) {}
+                }
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The run history will not be recorded.");
+        }
+    }
+}
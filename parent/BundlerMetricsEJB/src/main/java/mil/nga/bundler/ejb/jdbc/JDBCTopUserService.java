@@ -0,0 +1,270 @@
+package mil.nga.bundler.ejb.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import mil.nga.bundler.model.MetricsTopUser;
+import mil.nga.bundler.types.TopUserMeasureType;
+
+/**
+ * Session bean providing methods for interfacing with the table containing
+ * the daily heavy-hitter summaries saved by each node.
+ *
+ * This class is written assuming that the injected DataSource object is not
+ * handling the transactions on behalf of the application (i.e. non-JTA).
+ */
+@Stateless
+@LocalBean
+public class JDBCTopUserService {
+
+    /**
+     * The target table name.
+     */
+    public static final String TABLE_NAME = "BUNDLER_METRICS_TOP_USER";
+
+    /**
+     * SQL used to delete the counters saved by a single node for a single
+     * day.
+     */
+    private static final String DELETE_SQL = "delete from "
+            + TABLE_NAME
+            + " where DAY_START = ? and HOST_NAME = ?";
+
+    /**
+     * SQL used to insert a single counter.
+     */
+    private static final String INSERT_SQL = "insert into "
+            + TABLE_NAME
+            + " (TOP_USER_KEY, DAY_START, MEASURE, HOST_NAME, USER_NAME, "
+            + "ESTIMATE, ESTIMATE_ERROR, FLOOR_VALUE, MEASURE_TOTAL) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Set up the logging system for use throughout the class
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            JDBCTopUserService.class);
+
+    /**
+     * Container-injected datasource object.
+     */
+    @Resource(mappedName="java:jboss/datasources/JobTracker")
+    DataSource datasource;
+
+    /**
+     * Default constructor.
+     */
+    public JDBCTopUserService() { }
+
+    /**
+     * Retrieve the counters saved for the input day.
+     *
+     * @param dayStart The start of the day.
+     * @param measure The measure (null for all measures).
+     * @param hostName The node (null for all nodes).
+     * @return The saved counters.  The list will be empty if none exist or
+     * they could not be read.
+     */
+    public List<MetricsTopUser> getTopUsers(
+            long               dayStart,
+            TopUserMeasureType measure,
+            String             hostName) {
+
+        Connection           conn     = null;
+        List<MetricsTopUser> counters = new ArrayList<MetricsTopUser>();
+        PreparedStatement    stmt     = null;
+        ResultSet            rs       = null;
+        long                 start    = System.currentTimeMillis();
+        String               sql      = "select DAY_START, MEASURE, "
+                + "HOST_NAME, USER_NAME, ESTIMATE, ESTIMATE_ERROR, "
+                + "FLOOR_VALUE, MEASURE_TOTAL from "
+                + TABLE_NAME
+                + " where DAY_START = ?"
+                + (measure == null ? "" : " and MEASURE = ?")
+                + (hostName == null ? "" : " and HOST_NAME = ?");
+
+        if (datasource != null) {
+            try {
+                int index = 1;
+                conn = datasource.getConnection();
+                stmt = conn.prepareStatement(sql);
+                stmt.setLong(index++, dayStart);
+                if (measure != null) {
+                    stmt.setString(index++, measure.name());
+                }
+                if (hostName != null) {
+                    stmt.setString(index++, hostName);
+                }
+                stmt.setFetchSize(JDBCJobMetricsService.DEFAULT_FETCH_SIZE);
+                rs   = stmt.executeQuery();
+                while (rs.next()) {
+                    try {
+                        counters.add(new MetricsTopUser.MetricsTopUserBuilder()
+                                .dayStart(rs.getLong("DAY_START"))
+                                .measure(TopUserMeasureType.valueOf(
+                                        rs.getString("MEASURE")))
+                                .hostName(rs.getString("HOST_NAME"))
+                                .userName(rs.getString("USER_NAME"))
+                                .estimate(rs.getLong("ESTIMATE"))
+                                .error(rs.getLong("ESTIMATE_ERROR"))
+                                .floor(rs.getLong("FLOOR_VALUE"))
+                                .total(rs.getLong("MEASURE_TOTAL"))
+                                .build());
+                    }
+                    catch (IllegalArgumentException iae) {
+                        // IllegalStateException is a subclass.
+                        LOGGER.warn("Skipping invalid [ "
+                                + TABLE_NAME
+                                + " ] record.  Error message [ "
+                                + iae.getMessage()
+                                + " ].");
+                    }
+                }
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to retrieve the [ "
+                        + TABLE_NAME
+                        + " ] records for day [ "
+                        + dayStart
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+            }
+            finally {
+                try {
+                    if (rs != null) { rs.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (stmt != null) { stmt.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "An empty List will be returned to the caller.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + counters.size()
+                    + " ] [ "
+                    + TABLE_NAME
+                    + " ] records retrieved in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return counters;
+    }
+
+    /**
+     * Replace the counters saved by a single node for a single day in one
+     * transaction.
+     *
+     * @param dayStart The start of the day.
+     * @param hostName The node.
+     * @param counters The counters to save.
+     * @return True if the counters were saved, false otherwise.
+     */
+    public boolean replace(
+            long                 dayStart,
+            String               hostName,
+            List<MetricsTopUser> counters) {
+
+        Connection        conn   = null;
+        PreparedStatement delete = null;
+        PreparedStatement insert = null;
+        boolean           saved  = false;
+        long              start  = System.currentTimeMillis();
+
+        if (datasource != null) {
+            try {
+                conn = datasource.getConnection();
+
+                // Note: If the container Datasource has jta=true this will throw
+                // an exception.
+                conn.setAutoCommit(false);
+
+                delete = conn.prepareStatement(DELETE_SQL);
+                delete.setLong(  1, dayStart);
+                delete.setString(2, hostName);
+                delete.executeUpdate();
+
+                insert = conn.prepareStatement(INSERT_SQL);
+                for (MetricsTopUser counter : counters) {
+                    insert.setString(1, counter.getKey());
+                    insert.setLong(  2, counter.getDayStart());
+                    insert.setString(3, counter.getMeasure().name());
+                    insert.setString(4, counter.getHostName());
+                    insert.setString(5, counter.getUserName());
+                    insert.setLong(  6, counter.getEstimate());
+                    insert.setLong(  7, counter.getError());
+                    insert.setLong(  8, counter.getFloor());
+                    insert.setLong(  9, counter.getTotal());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                conn.commit();
+                saved = true;
+            }
+            catch (SQLException se) {
+                LOGGER.error("An unexpected SQLException was raised while "
+                        + "attempting to save the [ "
+                        + TABLE_NAME
+                        + " ] records for day [ "
+                        + dayStart
+                        + " ] and host [ "
+                        + hostName
+                        + " ].  Error message [ "
+                        + se.getMessage()
+                        + " ].");
+                try {
+                    if (conn != null) { conn.rollback(); }
+                } catch (Exception e) {}
+            }
+            finally {
+                try {
+                    if (insert != null) { insert.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (delete != null) { delete.close(); }
+                } catch (Exception e) {}
+                try {
+                    if (conn != null) { conn.close(); }
+                } catch (Exception e) {}
+            }
+        }
+        else {
+            LOGGER.warn("DataSource object not injected by the container.  "
+                    + "The [ "
+                    + TABLE_NAME
+                    + " ] records will not be saved.");
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("[ "
+                    + counters.size()
+                    + " ] [ "
+                    + TABLE_NAME
+                    + " ] records saved in [ "
+                    + (System.currentTimeMillis() - start)
+                    + " ] ms.");
+        }
+        return saved;
+    }
+}
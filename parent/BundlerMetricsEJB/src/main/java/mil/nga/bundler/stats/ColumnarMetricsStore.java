@@ -0,0 +1,530 @@
+package mil.nga.bundler.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.MetricsAggregate;
+import mil.nga.bundler.types.AggregateDimensionType;
+import mil.nga.bundler.types.ArchiveType;
+import mil.nga.bundler.types.JobStateType;
+import mil.nga.bundler.types.MetricsMeasureType;
+import mil.nga.bundler.types.TimeBucketType;
+
+/**
+ * Append-only, column-oriented copy of the job metrics records supporting
+ * fast filtered aggregation without creating an object per record.  The
+ * sizes, times and counts are held in primitive arrays, the user name is
+ * dictionary-encoded as an int and the archive type and job state are held
+ * as byte ordinals, so each record requires roughly 70 bytes of heap.
+ *
+ * Records are stored in fixed-size chunks so the store grows without
+ * copying the existing records.  A single writer (appends are
+ * synchronized) may run concurrently with any number of readers: each
+ * value is written before the (volatile) size is incremented, and readers
+ * only scan up to the size observed when the scan starts.
+ *
+ * Aggregates match those calculated by
+ * <code>JDBCMetricsAggregateService</code> except that the percentiles are
+ * taken from a <code>MergeableHistogram</code> and are therefore accurate
+ * to within about 1.6%.
+ *
+ * @author L. Craig Carpenter
+ */
+public class ColumnarMetricsStore {
+
+    /**
+     * Number of records per chunk (a power of two).
+     */
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Number of milliseconds in an hour, a day and a week, and the offset
+     * of the first Monday after the epoch used to align weekly buckets.
+     */
+    private static final long MILLIS_PER_HOUR = 3600000L;
+    private static final long MILLIS_PER_DAY  = 86400000L;
+    private static final long MILLIS_PER_WEEK = 604800000L;
+    private static final long WEEK_OFFSET     = 4L * MILLIS_PER_DAY;
+
+    /**
+     * Scale applied to the compression percentage (a fraction) so it can
+     * be recorded in the histogram.
+     */
+    private static final double FRACTION_SCALE = 1000000.0;
+
+    private static final ArchiveType[]  ARCHIVE_TYPES = ArchiveType.values();
+    private static final JobStateType[] JOB_STATES    = JobStateType.values();
+
+    /**
+     * The user dictionary.  Written only while holding the monitor.
+     */
+    private final Map<String, Integer> userCodes = new HashMap<String, Integer>();
+    private volatile String[]          users     = new String[0];
+
+    /**
+     * The chunks and the number of records.  Written only while holding
+     * the monitor.
+     */
+    private volatile Chunk[]           chunks    = new Chunk[0];
+    private volatile int               size      = 0;
+
+    /**
+     * Default constructor creating an empty store.
+     */
+    public ColumnarMetricsStore() { }
+
+    /**
+     * Append a single metrics record.
+     *
+     * @param metrics The metrics record.
+     */
+    public synchronized void append(BundlerJobMetrics metrics) {
+        if (metrics != null) {
+            int index = size;
+            if ((index & CHUNK_MASK) == 0) {
+                Chunk[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+                grown[chunks.length] = new Chunk();
+                chunks = grown;
+            }
+            Chunk chunk = chunks[index >>> CHUNK_BITS];
+            int   row   = index & CHUNK_MASK;
+            chunk.startTime[row]           = metrics.getStartTime();
+            chunk.minStart                 = Math.min(chunk.minStart, metrics.getStartTime());
+            chunk.maxStart                 = Math.max(chunk.maxStart, metrics.getStartTime());
+            chunk.elapsedTime[row]         = metrics.getElapsedTime();
+            chunk.totalSize[row]           = metrics.getTotalSize();
+            chunk.totalCompressedSize[row] = metrics.getTotalCompressedSize();
+            chunk.archiveSize[row]         = metrics.getArchiveSize();
+            chunk.numArchives[row]         = metrics.getNumArchives();
+            chunk.numArchivesComplete[row] = metrics.getNumArchivesComplete();
+            chunk.numFiles[row]            = metrics.getNumFiles();
+            chunk.numFilesComplete[row]    = metrics.getNumFilesComplete();
+            chunk.user[row]                = getUserCode(metrics.getUserName());
+            chunk.archiveType[row]         = (byte)(metrics.getArchiveType() == null ?
+                    -1 : metrics.getArchiveType().ordinal());
+            chunk.jobState[row]            = (byte)(metrics.getJobState() == null ?
+                    -1 : metrics.getJobState().ordinal());
+            size = index + 1;
+        }
+    }
+
+    /**
+     * Getter method for the number of records held.
+     * @return The number of records.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter method for the number of distinct users held.
+     * @return The number of users.
+     */
+    public int getUserCount() {
+        return users.length;
+    }
+
+    /**
+     * Estimate the heap used by the columns (excluding the user names).
+     * @return The estimated heap in bytes.
+     */
+    public long getHeapBytes() {
+        return (long)chunks.length * CHUNK_SIZE * Chunk.BYTES_PER_ROW
+                + (long)users.length * 4L;
+    }
+
+    /**
+     * Calculate the aggregate statistics of the input measure for the
+     * records of jobs started within the input range that match the input
+     * filters.
+     *
+     * @param startTime The start of the range (inclusive).
+     * @param endTime The end of the range (exclusive).
+     * @param userName Only include this user (null for all users).
+     * @param archiveType Only include this archive type (null for all).
+     * @param jobState Only include this job state (null for all).
+     * @param measure The value to aggregate.
+     * @param dimensions The dimensions to group by (may be empty).
+     * @param bucket The width of the time buckets to group by (may be
+     * null).
+     * @param maxGroups The maximum number of groups returned.
+     * @return One aggregate per group, ordered by time bucket and then by
+     * the dimension values.
+     */
+    public List<MetricsAggregate> aggregate(
+            long                         startTime,
+            long                         endTime,
+            String                       userName,
+            ArchiveType                  archiveType,
+            JobStateType                 jobState,
+            MetricsMeasureType           measure,
+            List<AggregateDimensionType> dimensions,
+            TimeBucketType               bucket,
+            int                          maxGroups) {
+
+        // Read the size before the columns and dictionary so that every
+        // record below the size is fully visible.
+        int                    count     = size;
+        Chunk[]                columns   = chunks;
+        String[]               names     = users;
+        Map<Long, Accumulator> groups    = new HashMap<Long, Accumulator>();
+        Accumulator            last      = null;
+        boolean                byUser    = false;
+        boolean                byType    = false;
+        boolean                byState   = false;
+        boolean                fraction  =
+                (measure == MetricsMeasureType.COMPRESSION_PERCENTAGE);
+        int                    userCode  = -1;
+        int                    typeCode  = (archiveType == null) ?
+                -1 : archiveType.ordinal();
+        int                    stateCode = (jobState == null) ?
+                -1 : jobState.ordinal();
+
+        if (dimensions != null) {
+            byUser  = dimensions.contains(AggregateDimensionType.USER_NAME);
+            byType  = dimensions.contains(AggregateDimensionType.ARCHIVE_TYPE);
+            byState = dimensions.contains(AggregateDimensionType.JOB_STATE);
+        }
+        if (userName != null) {
+            synchronized (this) {
+                Integer code = userCodes.get(userName);
+                if (code == null) {
+                    // No records for the requested user.
+                    count = 0;
+                }
+                else {
+                    userCode = code;
+                }
+            }
+        }
+
+        for (int c = 0; (c << CHUNK_BITS) < count; c++) {
+            Chunk chunk = columns[c];
+            int   rows  = Math.min(CHUNK_SIZE, count - (c << CHUNK_BITS));
+            // Skip chunks holding no records in the requested range.
+            if ((chunk.maxStart < startTime) || (chunk.minStart >= endTime)) {
+                continue;
+            }
+            for (int i = 0; i < rows; i++) {
+                long start = chunk.startTime[i];
+                if ((start >= startTime) && (start < endTime) &&
+                        ((userCode < 0) || (chunk.user[i] == userCode)) &&
+                        ((typeCode < 0) || (chunk.archiveType[i] == typeCode)) &&
+                        ((stateCode < 0) || (chunk.jobState[i] == stateCode))) {
+                    double value = getValue(measure, chunk, i);
+                    if (!Double.isNaN(value)) {
+                        long b = getBucketStart(bucket, start);
+                        int  u = byUser  ? chunk.user[i]        : -1;
+                        int  t = byType  ? chunk.archiveType[i] : -1;
+                        int  s = byState ? chunk.jobState[i]    : -1;
+                        // Consecutive records usually fall in the same
+                        // group, so check the previous group first.
+                        if ((last == null) || (!last.matches(b, u, t, s))) {
+                            last = findGroup(groups, b, u, t, s);
+                        }
+                        last.add(value, fraction ?
+                                Math.round(value * FRACTION_SCALE) : (long)value);
+                    }
+                }
+            }
+        }
+
+        return toAggregates(groups, names, measure, dimensions, maxGroups);
+    }
+
+    /**
+     * Look up (or create) the accumulator of a group.  Groups are keyed on
+     * a hash of the bucket and dimension codes and chained on collisions.
+     *
+     * @param groups The groups by hash.
+     * @param bucket The start of the time bucket.
+     * @param user The user code (-1 if not grouped by user).
+     * @param type The archive type ordinal (-1 if not grouped by type).
+     * @param state The job state ordinal (-1 if not grouped by state).
+     * @return The accumulator of the group.
+     */
+    private static Accumulator findGroup(
+            Map<Long, Accumulator> groups,
+            long                   bucket,
+            int                    user,
+            int                    type,
+            int                    state) {
+        long        key  = (((((bucket * 31L) + user) * 31L) + type) * 31L) + state;
+        Accumulator head = groups.get(key);
+        for (Accumulator a = head; a != null; a = a.next) {
+            if (a.matches(bucket, user, type, state)) {
+                return a;
+            }
+        }
+        Accumulator created = new Accumulator(bucket, user, type, state);
+        created.next = head;
+        groups.put(key, created);
+        return created;
+    }
+
+    /**
+     * Convert the accumulated groups to aggregates ordered by bucket and
+     * then by the dimension values.
+     *
+     * @param groups The groups by hash.
+     * @param names The user dictionary.
+     * @param measure The measure aggregated.
+     * @param dimensions The dimensions grouped by.
+     * @param maxGroups The maximum number of groups returned.
+     * @return The aggregates.
+     */
+    private static List<MetricsAggregate> toAggregates(
+            Map<Long, Accumulator>       groups,
+            final String[]               names,
+            MetricsMeasureType           measure,
+            List<AggregateDimensionType> dimensions,
+            int                          maxGroups) {
+
+        final double           scale      =
+                (measure == MetricsMeasureType.COMPRESSION_PERCENTAGE) ?
+                        FRACTION_SCALE : 1.0;
+        List<Accumulator>      all        = new ArrayList<Accumulator>();
+        List<MetricsAggregate> aggregates = new ArrayList<MetricsAggregate>();
+
+        for (Accumulator head : groups.values()) {
+            for (Accumulator a = head; a != null; a = a.next) {
+                all.add(a);
+            }
+        }
+        Collections.sort(all, new Comparator<Accumulator>() {
+            @Override
+            public int compare(Accumulator a, Accumulator b) {
+                int result = Long.compare(a.bucket, b.bucket);
+                if (result == 0) {
+                    result = compareText(getUserName(names, a.user), getUserName(names, b.user));
+                }
+                if (result == 0) {
+                    result = compareText(getArchiveType(a.type), getArchiveType(b.type));
+                }
+                if (result == 0) {
+                    result = compareText(getJobState(a.state), getJobState(b.state));
+                }
+                return result;
+            }
+        });
+
+        for (Accumulator a : all.subList(0, Math.min(maxGroups, all.size()))) {
+            MetricsAggregate.MetricsAggregateBuilder builder =
+                    new MetricsAggregate.MetricsAggregateBuilder()
+                        .measure(measure.getText())
+                        .bucket(a.bucket)
+                        .count(a.count)
+                        .sum(a.sum)
+                        .avg(a.sum / a.count)
+                        .min(a.min)
+                        .max(a.max)
+                        .p50(a.histogram.getValueAtPercentile(0.5) / scale)
+                        .p90(a.histogram.getValueAtPercentile(0.9) / scale)
+                        .p95(a.histogram.getValueAtPercentile(0.95) / scale)
+                        .p99(a.histogram.getValueAtPercentile(0.99) / scale)
+                        .p999(a.histogram.getValueAtPercentile(0.999) / scale);
+            if (dimensions != null) {
+                for (AggregateDimensionType dimension : dimensions) {
+                    switch (dimension) {
+                        case ARCHIVE_TYPE:
+                            builder.group(dimension.getText(), getArchiveType(a.type));
+                            break;
+                        case JOB_STATE:
+                            builder.group(dimension.getText(), getJobState(a.state));
+                            break;
+                        default:
+                            builder.group(dimension.getText(), getUserName(names, a.user));
+                            break;
+                    }
+                }
+            }
+            aggregates.add(builder.build());
+        }
+        return aggregates;
+    }
+
+    /**
+     * Calculate the value of the input measure for a single record, in
+     * the same way as <code>JDBCMetricsAggregateService</code>.
+     *
+     * @param measure The measure.
+     * @param chunk The chunk holding the record.
+     * @param i The index of the record within the chunk.
+     * @return The value, or NaN if the record is excluded from the
+     * measure.
+     */
+    private static double getValue(MetricsMeasureType measure, Chunk chunk, int i) {
+        double value;
+        switch (measure) {
+            case TOTAL_SIZE:
+                value = chunk.totalSize[i];
+                break;
+            case TOTAL_COMPRESSED_SIZE:
+                value = chunk.totalCompressedSize[i];
+                break;
+            case COMPRESSION_PERCENTAGE:
+                value = ((chunk.totalSize[i] > 0) && (chunk.totalCompressedSize[i] > 0)) ?
+                        (double)(chunk.totalSize[i] - chunk.totalCompressedSize[i])
+                                / (double)chunk.totalSize[i] :
+                        Double.NaN;
+                break;
+            case THROUGHPUT:
+                value = ((chunk.elapsedTime[i] > 0) && (chunk.totalSize[i] > 0)) ?
+                        (double)((chunk.totalSize[i] * 1000L) / chunk.elapsedTime[i]) :
+                        Double.NaN;
+                break;
+            default:
+                value = chunk.elapsedTime[i];
+                break;
+        }
+        return value;
+    }
+
+    /**
+     * Calculate the start of the time bucket containing the input time.
+     *
+     * @param bucket The bucket width (null for a single bucket).
+     * @param time Milliseconds since the epoch.
+     * @return The start of the bucket (0 if no bucket was requested).
+     */
+    static long getBucketStart(TimeBucketType bucket, long time) {
+        long start = 0L;
+        if (bucket != null) {
+            switch (bucket) {
+                case HOUR:
+                    start = Math.floorDiv(time, MILLIS_PER_HOUR) * MILLIS_PER_HOUR;
+                    break;
+                case WEEK:
+                    start = (Math.floorDiv(time - WEEK_OFFSET, MILLIS_PER_WEEK)
+                            * MILLIS_PER_WEEK) + WEEK_OFFSET;
+                    break;
+                default:
+                    start = Math.floorDiv(time, MILLIS_PER_DAY) * MILLIS_PER_DAY;
+                    break;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Map a user name to its dictionary code, adding it if required.  The
+     * caller must hold the monitor.
+     *
+     * @param userName The user name.
+     * @return The code (-1 for a null user name).
+     */
+    private int getUserCode(String userName) {
+        int code = -1;
+        if (userName != null) {
+            Integer existing = userCodes.get(userName);
+            if (existing == null) {
+                String[] grown = Arrays.copyOf(users, users.length + 1);
+                grown[users.length] = userName;
+                existing = users.length;
+                userCodes.put(userName, existing);
+                users = grown;
+            }
+            code = existing;
+        }
+        return code;
+    }
+
+    /**
+     * Decode a dimension value (null if the code is -1).
+     */
+    private static String getUserName(String[] names, int code) {
+        return (code >= 0) ? names[code] : null;
+    }
+
+    private static String getArchiveType(int code) {
+        return (code >= 0) ? ARCHIVE_TYPES[code].getText() : null;
+    }
+
+    private static String getJobState(int code) {
+        return (code >= 0) ? JOB_STATES[code].getText() : null;
+    }
+
+    /**
+     * Compare two dimension values, ordering null first.
+     */
+    private static int compareText(String a, String b) {
+        if (a == null) {
+            return (b == null) ? 0 : -1;
+        }
+        return (b == null) ? 1 : a.compareTo(b);
+    }
+
+    /**
+     * A fixed-size block of records, one array per column.
+     */
+    private static final class Chunk {
+
+        /**
+         * Bytes of heap per record across all of the columns.
+         */
+        private static final int BYTES_PER_ROW = (7 * 8) + (3 * 4) + 2;
+
+        private final long[] startTime           = new long[CHUNK_SIZE];
+        private final long[] elapsedTime         = new long[CHUNK_SIZE];
+        private final long[] totalSize           = new long[CHUNK_SIZE];
+        private final long[] totalCompressedSize = new long[CHUNK_SIZE];
+        private final long[] archiveSize         = new long[CHUNK_SIZE];
+        private final long[] numFiles            = new long[CHUNK_SIZE];
+        private final long[] numFilesComplete    = new long[CHUNK_SIZE];
+        private final int[]  numArchives         = new int[CHUNK_SIZE];
+        private final int[]  numArchivesComplete = new int[CHUNK_SIZE];
+        private final int[]  user                = new int[CHUNK_SIZE];
+        private final byte[] archiveType         = new byte[CHUNK_SIZE];
+        private final byte[] jobState            = new byte[CHUNK_SIZE];
+
+        // Range of the start times held, updated before the size is
+        // published so readers never see a range narrower than the rows.
+        private volatile long minStart = Long.MAX_VALUE;
+        private volatile long maxStart = Long.MIN_VALUE;
+    }
+
+    /**
+     * The running statistics of a single group.
+     */
+    private static final class Accumulator {
+
+        private final long               bucket;
+        private final int                user;
+        private final int                type;
+        private final int                state;
+        private final MergeableHistogram histogram = new MergeableHistogram();
+        private long                     count     = 0L;
+        private double                   max       = Double.NEGATIVE_INFINITY;
+        private double                   min       = Double.POSITIVE_INFINITY;
+        private double                   sum       = 0.0;
+        private Accumulator              next;
+
+        private Accumulator(long bucket, int user, int type, int state) {
+            this.bucket = bucket;
+            this.user   = user;
+            this.type   = type;
+            this.state  = state;
+        }
+
+        private boolean matches(long bucket, int user, int type, int state) {
+            return (this.bucket == bucket) && (this.user == user) &&
+                    (this.type == type) && (this.state == state);
+        }
+
+        private void add(double value, long recorded) {
+            count++;
+            sum += value;
+            min  = Math.min(min, value);
+            max  = Math.max(max, value);
+            histogram.record(recorded);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package mil.nga.bundler.stats;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * High-dynamic-range histogram of non-negative long values.  Values below
+ * <code>SUB_BUCKETS</code> are counted exactly; larger values are counted
+ * in <code>SUB_BUCKETS / 2</code> linear buckets per power of two, so every
+ * recorded value is represented to within 1/64 (about 1.6%) of its actual
+ * value across the full range of a long.  The count, sum, minimum and
+ * maximum are tracked exactly.
+ *
+ * Histograms are mergeable: adding one histogram to another produces the
+ * same result as recording both sets of values in a single histogram, so
+ * histograms held per time bucket, per group or per node can be combined
+ * to answer percentile queries over any union of them.  The serialized
+ * form only contains the non-empty buckets (as variable-length integers),
+ * so it remains compact regardless of the range of values recorded.
+ *
+ * This class is not thread-safe.
+ *
+ * @author L. Craig Carpenter
+ */
+public class MergeableHistogram {
+
+    /**
+     * Version of the serialized form.
+     */
+    private static final byte VERSION = 1;
+
+    /**
+     * Number of bits of precision retained for each value.
+     */
+    private static final int PRECISION_BITS = 7;
+
+    /**
+     * Number of values counted exactly (and the width, in buckets, of the
+     * first two powers of two).
+     */
+    private static final int SUB_BUCKETS = 1 << PRECISION_BITS;
+
+    /**
+     * Number of buckets per power of two above <code>SUB_BUCKETS</code>.
+     */
+    private static final int HALF_BUCKETS = SUB_BUCKETS / 2;
+
+    /**
+     * Number of buckets required to hold any long value.
+     */
+    private static final int MAX_BUCKETS = getIndex(Long.MAX_VALUE) + 1;
+
+    private long[] counts = new long[SUB_BUCKETS];
+    private long   count  = 0L;
+    private long   max    = 0L;
+    private long   min    = Long.MAX_VALUE;
+    private long   sum    = 0L;
+
+    /**
+     * Default constructor creating an empty histogram.
+     */
+    public MergeableHistogram() { }
+
+    /**
+     * Record a single value.  Negative values are ignored.
+     *
+     * @param value The value to record.
+     */
+    public void record(long value) {
+        if (value >= 0) {
+            int index = getIndex(value);
+            if (index >= counts.length) {
+                counts = Arrays.copyOf(
+                        counts,
+                        Math.min(
+                                MAX_BUCKETS,
+                                Math.max(index + 1, counts.length + (counts.length >> 1))));
+            }
+            counts[index]++;
+            count++;
+            sum += value;
+            min  = Math.min(min, value);
+            max  = Math.max(max, value);
+        }
+    }
+
+    /**
+     * Add the values of another histogram to this histogram.
+     *
+     * @param other The histogram to merge (may be null).
+     */
+    public void merge(MergeableHistogram other) {
+        if ((other != null) && (other.count > 0)) {
+            if (other.counts.length > counts.length) {
+                counts = Arrays.copyOf(counts, other.counts.length);
+            }
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            count += other.count;
+            sum   += other.sum;
+            min    = Math.min(min, other.min);
+            max    = Math.max(max, other.max);
+        }
+    }
+
+    /**
+     * Getter method for the number of values recorded.
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Getter method for the largest value recorded.
+     * @return The maximum (0 if the histogram is empty).
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Getter method for the mean of the values recorded.
+     * @return The mean (0 if the histogram is empty).
+     */
+    public double getMean() {
+        return (count > 0) ? ((double)sum / (double)count) : 0.0;
+    }
+
+    /**
+     * Getter method for the smallest value recorded.
+     * @return The minimum (0 if the histogram is empty).
+     */
+    public long getMin() {
+        return (count > 0) ? min : 0L;
+    }
+
+    /**
+     * Getter method for the sum of the values recorded.
+     * @return The sum.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Calculate the value at the input percentile.  The largest value that
+     * maps to the same bucket as the percentile is reported, clamped to the
+     * observed minimum and maximum.
+     *
+     * @param percentile The percentile (0.0 - 1.0).
+     * @return The value at the percentile (0 if the histogram is empty).
+     */
+    public long getValueAtPercentile(double percentile) {
+        long value = 0L;
+        if (count > 0) {
+            long target = Math.max(1L, (long)Math.ceil(percentile * count));
+            long seen   = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    value = Math.max(min, Math.min(getUpperBound(i), max));
+                    break;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Serialize the histogram.  The format is a version byte followed by
+     * the count, sum, minimum, maximum, number of non-empty buckets and a
+     * (gap, count) pair for each non-empty bucket, all encoded as unsigned
+     * variable-length integers.
+     *
+     * @return The serialized histogram.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out      = new ByteArrayOutputStream();
+        int                   nonEmpty = 0;
+        for (long bucket : counts) {
+            if (bucket > 0) {
+                nonEmpty++;
+            }
+        }
+        out.write(VERSION);
+        writeVarLong(out, count);
+        writeVarLong(out, sum);
+        writeVarLong(out, getMin());
+        writeVarLong(out, max);
+        writeVarLong(out, nonEmpty);
+        int previous = -1;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                writeVarLong(out, i - previous);
+                writeVarLong(out, counts[i]);
+                previous = i;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reconstruct a histogram from its serialized form.
+     *
+     * @param bytes The output of <code>toBytes()</code>.
+     * @return The histogram.
+     * @throws IllegalArgumentException Thrown if the input is not a
+     * serialized histogram.
+     */
+    public static MergeableHistogram fromBytes(byte[] bytes)
+            throws IllegalArgumentException {
+        MergeableHistogram histogram = new MergeableHistogram();
+        if ((bytes == null) || (bytes.length == 0) || (bytes[0] != VERSION)) {
+            throw new IllegalArgumentException("Invalid serialized "
+                    + "histogram.  Unsupported version.");
+        }
+        try {
+            ByteBuffer buffer   = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+            histogram.count     = readVarLong(buffer);
+            histogram.sum       = readVarLong(buffer);
+            histogram.min       = readVarLong(buffer);
+            histogram.max       = readVarLong(buffer);
+            long       nonEmpty = readVarLong(buffer);
+            int        index    = -1;
+            for (long i = 0; i < nonEmpty; i++) {
+                index += (int)readVarLong(buffer);
+                if ((index < 0) || (index >= MAX_BUCKETS)) {
+                    throw new IllegalArgumentException("Bucket index [ "
+                            + index
+                            + " ] out of range.");
+                }
+                if (index >= histogram.counts.length) {
+                    histogram.counts = Arrays.copyOf(
+                            histogram.counts,
+                            Math.min(
+                                    MAX_BUCKETS,
+                                    Math.max(index + 1, histogram.counts.length * 2)));
+                }
+                histogram.counts[index] = readVarLong(buffer);
+            }
+            if (histogram.count == 0) {
+                histogram.min = Long.MAX_VALUE;
+            }
+        }
+        catch (RuntimeException re) {
+            throw new IllegalArgumentException("Invalid serialized "
+                    + "histogram.  Error message [ "
+                    + re.getMessage()
+                    + " ].");
+        }
+        return histogram;
+    }
+
+    /**
+     * Map a value to its bucket.
+     *
+     * @param value The (non-negative) value.
+     * @return The bucket index.
+     */
+    static int getIndex(long value) {
+        int index = (int)value;
+        if (value >= SUB_BUCKETS) {
+            int shift = (63 - Long.numberOfLeadingZeros(value))
+                    - (PRECISION_BITS - 1);
+            index = SUB_BUCKETS
+                    + ((shift - 1) * HALF_BUCKETS)
+                    + (int)((value >>> shift) - HALF_BUCKETS);
+        }
+        return index;
+    }
+
+    /**
+     * Calculate the largest value that maps to the input bucket.
+     *
+     * @param index The bucket index.
+     * @return The upper bound of the bucket.
+     */
+    static long getUpperBound(int index) {
+        long bound = index;
+        if (index >= SUB_BUCKETS) {
+            int  shift    = ((index - SUB_BUCKETS) / HALF_BUCKETS) + 1;
+            long mantissa = ((index - SUB_BUCKETS) % HALF_BUCKETS)
+                    + HALF_BUCKETS;
+            // For the last bucket the shift overflows to Long.MIN_VALUE, 
+            // so subtracting one yields Long.MAX_VALUE.
+            bound = ((mantissa + 1) << shift) - 1;
+        }
+        return bound;
+    }
+
+    /**
+     * Write an unsigned variable-length integer (7 bits per byte, low
+     * order first).
+     *
+     * @param out The output stream.
+     * @param value The value to write.
+     */
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int)value);
+    }
+
+    /**
+     * Read an unsigned variable-length integer written by
+     * <code>writeVarLong()</code>.
+     *
+     * @param buffer The input buffer.
+     * @return The value.
+     */
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0L;
+        int  shift = 0;
+        byte b;
+        do {
+            b      = buffer.get();
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,353 @@
+package mil.nga.bundler.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import mil.nga.bundler.model.MetricsWindow;
+
+/**
+ * Sliding window of job statistics implemented as a ring buffer
+ * of fixed-width time slots.  Each slot holds the job count, error count,
+ * bytes bundled, total and maximum elapsed time, and a log-scale histogram
+ * of the elapsed time for the jobs completed during that slot.  A slot is
+ * recycled the first time a job is recorded in a later period that maps
+ * to the same position, so memory is fixed at construction and each
+ * update is O(1).
+ *
+ * All state is held in <code>AtomicLongArray</code>s and updated with
+ * atomic increments and compare-and-set operations.  Each slot also has a
+ * read/write lock: updates and snapshots share the read lock, so they
+ * never block each other, while recycling a slot takes the write lock.
+ * An update is therefore never lost to (or counted against the wrong
+ * period by) the recycling of its slot.  Snapshots are consistent per 
+ * slot but not across slots, which is acceptable for the monitoring views
+ * this class supports.
+ *
+ * @author L. Craig Carpenter
+ */
+public class SlidingWindow {
+
+    /**
+     * Offsets of the counters held for each slot.
+     */
+    private static final int JOBS        = 0;
+    private static final int ERRORS      = 1;
+    private static final int BYTES       = 2;
+    private static final int ELAPSED     = 3;
+    private static final int MAX_ELAPSED = 4;
+    private static final int FIELDS      = 5;
+
+    /**
+     * Number of histogram buckets per power of two.  Each bucket covers at
+     * most 25% of its lower bound, which bounds the error of the reported
+     * percentiles.
+     */
+    private static final int SUB_BUCKETS = 4;
+
+    /**
+     * The largest power of two tracked by the histogram.  Elapsed times
+     * beyond 2^40 ms (roughly 35 years) are counted in the last bucket.
+     */
+    private static final int MAX_EXPONENT = 40;
+
+    /**
+     * The number of histogram buckets per slot.
+     */
+    static final int BUCKETS = SUB_BUCKETS * (MAX_EXPONENT - 1);
+
+    private final String          name;
+    private final long            slotWidth;
+    private final int             slots;
+    private final AtomicLongArray epochs;
+    private final AtomicLongArray counters;
+    private final AtomicLongArray histogram;
+    private final ReadWriteLock[] locks;
+
+    /**
+     * Constructor allocating the ring buffer.
+     *
+     * @param name The name of the window (e.g. 5m).
+     * @param slotWidth The width of each slot in milliseconds.
+     * @param slots The number of slots.  The window covers the current
+     * (partial) slot and the <code>slots - 1</code> slots before it.
+     */
+    public SlidingWindow(String name, long slotWidth, int slots) {
+        this.name      = name;
+        this.slotWidth = slotWidth;
+        this.slots     = slots;
+        epochs         = new AtomicLongArray(slots);
+        counters       = new AtomicLongArray(slots * FIELDS);
+        histogram      = new AtomicLongArray(slots * BUCKETS);
+        locks          = new ReadWriteLock[slots];
+        for (int i = 0; i < slots; i++) {
+            epochs.set(i, Long.MIN_VALUE);
+            locks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Getter method for the name of the window.
+     * @return The window name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter method for the length of time covered by the window.
+     * @return The length of the window in milliseconds.
+     */
+    public long getLength() {
+        return slotWidth * slots;
+    }
+
+    /**
+     * Record a single completed job.  Jobs completed before the start of
+     * the window are ignored.
+     *
+     * @param time The time at which the job completed.
+     * @param totalSize The number of bytes bundled.
+     * @param elapsedTime The elapsed time of the job.
+     * @param error True if the job ended in error.
+     */
+    public void record(
+            long    time,
+            long    totalSize,
+            long    elapsedTime,
+            boolean error) {
+
+        long epoch = Math.floorDiv(time, slotWidth);
+        int  slot  = (int)Math.floorMod(epoch, (long)slots);
+
+        while (true) {
+            long current = epochs.get(slot);
+            if (current > epoch) {
+                // The slot has already been recycled for a later period.
+                return;
+            }
+            if (current < epoch) {
+                recycle(slot, epoch);
+            }
+            else {
+                Lock lock = locks[slot].readLock();
+                lock.lock();
+                try {
+                    // Re-check now the slot cannot be recycled.
+                    if (epochs.get(slot) == epoch) {
+                        add(slot, totalSize, elapsedTime, error);
+                        return;
+                    }
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Combine the slots falling within the window ending at the input time.
+     *
+     * @param now The end of the window.
+     * @return Snapshot of the window.
+     */
+    public MetricsWindow snapshot(long now) {
+        return snapshot(now, null);
+    }
+
+    /**
+     * Combine the slots falling within the window ending at the input time.
+     *
+     * @param now The end of the window.
+     * @param node The name of the node taking the snapshot.
+     * @return Snapshot of the window.
+     */
+    public MetricsWindow snapshot(long now, String node) {
+
+        long   nowEpoch = Math.floorDiv(now, slotWidth);
+        long   oldest   = nowEpoch - slots + 1;
+        long[] totals   = new long[FIELDS];
+        long[] combined = new long[BUCKETS];
+
+        for (int slot = 0; slot < slots; slot++) {
+            Lock lock = locks[slot].readLock();
+            lock.lock();
+            try {
+                long epoch = epochs.get(slot);
+                if ((epoch >= oldest) && (epoch <= nowEpoch)) {
+                    int base = slot * FIELDS;
+                    for (int i = 0; i < MAX_ELAPSED; i++) {
+                        totals[i] += counters.get(base + i);
+                    }
+                    totals[MAX_ELAPSED] = Math.max(
+                            totals[MAX_ELAPSED],
+                            counters.get(base + MAX_ELAPSED));
+                    for (int i = 0; i < BUCKETS; i++) {
+                        combined[i] += histogram.get((slot * BUCKETS) + i);
+                    }
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        return new MetricsWindow.MetricsWindowBuilder()
+                .name(name)
+                .node(node)
+                .start(oldest * slotWidth)
+                .end(now)
+                .jobs(totals[JOBS])
+                .errors(totals[ERRORS])
+                .totalSize(totals[BYTES])
+                .elapsedTime(totals[ELAPSED])
+                .maxElapsedTime(totals[MAX_ELAPSED])
+                .p50(getPercentile(combined, totals[JOBS], 0.50, totals[MAX_ELAPSED]))
+                .p90(getPercentile(combined, totals[JOBS], 0.90, totals[MAX_ELAPSED]))
+                .p99(getPercentile(combined, totals[JOBS], 0.99, totals[MAX_ELAPSED]))
+                .build();
+    }
+
+    /**
+     * Add a single completed job to the counters of the input slot.  The 
+     * caller must hold the read lock of the slot.
+     *
+     * @param slot The slot.
+     * @param totalSize The number of bytes bundled.
+     * @param elapsedTime The elapsed time of the job.
+     * @param error True if the job ended in error.
+     */
+    private void add(
+            int     slot,
+            long    totalSize,
+            long    elapsedTime,
+            boolean error) {
+
+        int base = slot * FIELDS;
+        counters.incrementAndGet(base + JOBS);
+        if (error) {
+            counters.incrementAndGet(base + ERRORS);
+        }
+        counters.addAndGet(base + BYTES, totalSize);
+        counters.addAndGet(base + ELAPSED, elapsedTime);
+        long max = counters.get(base + MAX_ELAPSED);
+        while ((elapsedTime > max) &&
+                (!counters.compareAndSet(base + MAX_ELAPSED, max, elapsedTime))) {
+            max = counters.get(base + MAX_ELAPSED);
+        }
+        histogram.incrementAndGet((slot * BUCKETS) + getBucket(elapsedTime));
+    }
+
+    /**
+     * Recycle the input slot for a later period (unless another thread 
+     * has already recycled it for the same or a later period).  The write
+     * lock is held while the counters are reset, so no update or snapshot
+     * can observe the slot part way through.
+     *
+     * @param slot The slot to recycle.
+     * @param epoch The period the slot will hold.
+     */
+    private void recycle(int slot, long epoch) {
+        Lock lock = locks[slot].writeLock();
+        lock.lock();
+        try {
+            if (epochs.get(slot) < epoch) {
+                clear(slot);
+                epochs.set(slot, epoch);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reset the counters of the input slot.  The caller must hold the 
+     * write lock of the slot.
+     *
+     * @param slot The slot to clear.
+     */
+    private void clear(int slot) {
+        for (int i = 0; i < FIELDS; i++) {
+            counters.set((slot * FIELDS) + i, 0L);
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram.set((slot * BUCKETS) + i, 0L);
+        }
+    }
+
+    /**
+     * Calculate the approximate percentile from a combined histogram.  The
+     * upper bound of the bucket containing the percentile is reported,
+     * capped at the observed maximum.
+     *
+     * @param buckets The combined histogram.
+     * @param count The number of values in the histogram.
+     * @param percentile The percentile (0.0 - 1.0).
+     * @param max The maximum observed value.
+     * @return The approximate percentile (0 if the histogram is empty).
+     */
+    private static long getPercentile(
+            long[] buckets,
+            long   count,
+            double percentile,
+            long   max) {
+        long value = 0L;
+        if (count > 0) {
+            long target = (long)Math.ceil(percentile * count);
+            long seen   = 0L;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    value = Math.min(getUpperBound(i), max);
+                    break;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Map a value to its histogram bucket.  Values below
+     * <code>SUB_BUCKETS</code> have a bucket each; larger values are
+     * divided into <code>SUB_BUCKETS</code> buckets per power of two.
+     *
+     * @param value The value.
+     * @return The bucket index.
+     */
+    static int getBucket(long value) {
+        int bucket = 0;
+        if (value >= SUB_BUCKETS) {
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent >= MAX_EXPONENT) {
+                bucket = BUCKETS - 1;
+            }
+            else {
+                int sub = (int)((value >>> (exponent - 2)) & (SUB_BUCKETS - 1));
+                bucket  = SUB_BUCKETS + ((exponent - 2) * SUB_BUCKETS) + sub;
+            }
+        }
+        else if (value > 0) {
+            bucket = (int)value;
+        }
+        return bucket;
+    }
+
+    /**
+     * Calculate the largest value mapped to the input bucket.
+     *
+     * @param bucket The bucket index.
+     * @return The upper bound of the bucket.
+     */
+    static long getUpperBound(int bucket) {
+        long bound = bucket;
+        if (bucket >= SUB_BUCKETS) {
+            int exponent = ((bucket - SUB_BUCKETS) / SUB_BUCKETS) + 2;
+            int sub      = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+            bound = ((long)(SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+        }
+        return bound;
+    }
+}
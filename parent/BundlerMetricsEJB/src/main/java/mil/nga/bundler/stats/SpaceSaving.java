@@ -0,0 +1,259 @@
+package mil.nga.bundler.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Weighted Space-Saving summary identifying the keys with the largest
+ * total weight in a stream using a fixed number of counters.  When a key
+ * that is not tracked arrives and every counter is in use, the counter
+ * with the smallest estimate is reassigned to the new key and the
+ * smallest estimate is recorded as the error of the new counter.
+ *
+ * For every tracked key the estimate is an upper bound on its actual
+ * weight and the estimate minus the error is a lower bound.  Untracked
+ * keys have a weight no greater than the floor, and every key whose
+ * weight exceeds <code>total / capacity</code> is guaranteed to be
+ * tracked.  Memory is proportional to the capacity regardless of the
+ * number of distinct keys.
+ *
+ * Summaries may be merged (e.g. those maintained by different nodes)
+ * with the same guarantees.  This class is not thread-safe.
+ *
+ * @author L. Craig Carpenter
+ */
+public class SpaceSaving {
+
+    /**
+     * Orders the counters by ascending estimate, then key.
+     */
+    private static final Comparator<Counter> ORDER = new Comparator<Counter>() {
+        @Override
+        public int compare(Counter a, Counter b) {
+            int result = Long.compare(a.count, b.count);
+            return (result != 0) ? result : a.key.compareTo(b.key);
+        }
+    };
+
+    private final int                  capacity;
+    private final Map<String, Counter> counters;
+    private final TreeSet<Counter>     ordered  = new TreeSet<Counter>(ORDER);
+    private long                       floor    = 0L;
+    private long                       total    = 0L;
+
+    /**
+     * Constructor creating an empty summary.
+     *
+     * @param capacity The maximum number of counters.
+     * @throws IllegalArgumentException Thrown if the capacity is not
+     * positive.
+     */
+    public SpaceSaving(int capacity) throws IllegalArgumentException {
+        this(capacity, 0L, 0L);
+    }
+
+    /**
+     * Constructor used to restore a saved summary.  The saved counters are
+     * added with <code>restore()</code>.
+     *
+     * @param capacity The maximum number of counters.
+     * @param total The saved total weight.
+     * @param floor The saved floor.
+     * @throws IllegalArgumentException Thrown if the capacity is not
+     * positive.
+     */
+    public SpaceSaving(int capacity, long total, long floor)
+            throws IllegalArgumentException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity [ "
+                    + capacity
+                    + " ].");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<String, Counter>(capacity * 2);
+        this.total    = total;
+        this.floor    = floor;
+    }
+
+    /**
+     * Add weight to the input key.  Null keys and non-positive weights are
+     * ignored.
+     *
+     * @param key The key.
+     * @param weight The weight to add.
+     */
+    public void add(String key, long weight) {
+        if ((key != null) && (weight > 0)) {
+            Counter counter = counters.get(key);
+            total += weight;
+            if (counter != null) {
+                ordered.remove(counter);
+                counter.count += weight;
+            }
+            else {
+                long base = getFloor();
+                if (counters.size() >= capacity) {
+                    counters.remove(ordered.pollFirst().key);
+                }
+                counter = new Counter(key, base + weight, base);
+                counters.put(key, counter);
+            }
+            ordered.add(counter);
+        }
+    }
+
+    /**
+     * Restore a saved counter.  Counters beyond the capacity are ignored.
+     *
+     * @param key The key.
+     * @param count The saved estimate.
+     * @param error The saved error.
+     */
+    public void restore(String key, long count, long error) {
+        if ((key != null) &&
+                (!counters.containsKey(key)) &&
+                (counters.size() < capacity)) {
+            Counter counter = new Counter(key, count, error);
+            counters.put(key, counter);
+            ordered.add(counter);
+        }
+    }
+
+    /**
+     * Merge another summary into this summary.  Keys tracked by only one
+     * of the summaries are charged the floor of the other, and only the
+     * <code>capacity</code> largest merged counters are retained.
+     *
+     * @param other The summary to merge (may be null).
+     */
+    public void merge(SpaceSaving other) {
+        if (other != null) {
+            long          thisFloor  = getFloor();
+            long          otherFloor = other.getFloor();
+            List<Counter> merged     = new ArrayList<Counter>();
+            for (Counter counter : counters.values()) {
+                Counter match = other.counters.get(counter.key);
+                merged.add(new Counter(
+                        counter.key,
+                        counter.count + (match == null ? otherFloor : match.count),
+                        counter.error + (match == null ? otherFloor : match.error)));
+            }
+            for (Counter match : other.counters.values()) {
+                if (!counters.containsKey(match.key)) {
+                    merged.add(new Counter(
+                            match.key,
+                            match.count + thisFloor,
+                            match.error + thisFloor));
+                }
+            }
+            Collections.sort(merged, Collections.reverseOrder(ORDER));
+            counters.clear();
+            ordered.clear();
+            for (Counter counter : merged.subList(
+                    0, Math.min(capacity, merged.size()))) {
+                counters.put(counter.key, counter);
+                ordered.add(counter);
+            }
+            floor  = thisFloor + otherFloor;
+            total += other.total;
+        }
+    }
+
+    /**
+     * Getter method for the maximum number of counters.
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Getter method for the upper bound on the weight of any key that is
+     * not tracked.
+     * @return The floor.
+     */
+    public long getFloor() {
+        long value = floor;
+        if (counters.size() >= capacity) {
+            value = Math.max(value, ordered.first().count);
+        }
+        return value;
+    }
+
+    /**
+     * Getter method for the total weight added.
+     * @return The total weight.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the counters with the largest estimates.
+     *
+     * @param limit The maximum number of counters to return.
+     * @return The counters in descending order of estimate.
+     */
+    public List<Counter> getTop(int limit) {
+        List<Counter>     top = new ArrayList<Counter>();
+        Iterator<Counter> it  = ordered.descendingIterator();
+        while (it.hasNext() && (top.size() < limit)) {
+            Counter counter = it.next();
+            top.add(new Counter(counter.key, counter.count, counter.error));
+        }
+        return top;
+    }
+
+    /**
+     * A single tracked key.
+     */
+    public static final class Counter {
+
+        private final String key;
+        private long         count;
+        private final long   error;
+
+        /**
+         * Constructor.
+         *
+         * @param key The key.
+         * @param count The estimate.
+         * @param error The maximum overestimate.
+         */
+        private Counter(String key, long count, long error) {
+            this.key   = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        /**
+         * Getter method for the estimate.
+         * @return The estimate (an upper bound on the actual weight).
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Getter method for the maximum overestimate.
+         * @return The error.
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * Getter method for the key.
+         * @return The key.
+         */
+        public String getKey() {
+            return key;
+        }
+    }
+}
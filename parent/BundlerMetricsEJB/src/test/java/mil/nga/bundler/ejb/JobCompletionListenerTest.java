@@ -0,0 +1,307 @@
+package mil.nga.bundler.ejb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+import javax.jms.TopicSubscriber;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mil.nga.bundler.ejb.interfaces.JobMetricsCollectorI;
+import mil.nga.bundler.ejb.jdbc.JDBCJobMetricsService;
+import mil.nga.bundler.ejb.jdbc.JDBCJobService;
+import mil.nga.bundler.interfaces.BundlerConstantsI;
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.CollectionRunStatistics;
+import mil.nga.bundler.model.JobSummary;
+import mil.nga.bundler.types.ArchiveType;
+import mil.nga.bundler.types.JobStateType;
+
+/**
+ * Exercises <code>JobCompletionListener</code> against an embedded,
+ * non-persistent ActiveMQ broker.  The listener is registered on a durable
+ * subscription to the job-completion topic (standing in for the shared 
+ * durable subscription the container creates, which the embedded broker's 
+ * JMS 1.1 client does not support) and each supported notification 
+ * format is published to the topic.  The last tests drive a real 
+ * <code>JobMetricsCollector</code>, backed by stubbed JDBC services, 
+ * through the topic.
+ */
+public class JobCompletionListenerTest {
+
+    /**
+     * How long to wait for a notification to be delivered.
+     */
+    private static final long TIMEOUT = 5000L;
+
+    private BrokerService      broker;
+    private Connection         connection;
+    private Session            session;
+    private MessageProducer       producer;
+    private RecordingCollector    collector;
+    private JobCompletionListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+
+        broker = new BrokerService();
+        broker.setBrokerName("metrics-test");
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.start();
+
+        ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory(
+                "vm://metrics-test?create=false");
+        connection = factory.createConnection();
+        connection.setClientID(BundlerConstantsI.METRICS_SUBSCRIPTION_NAME);
+
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Topic topic = session.createTopic(
+                BundlerConstantsI.JOB_COMPLETION_TOPIC);
+
+        collector = new RecordingCollector();
+        listener = new JobCompletionListener();
+        listener.metricsCollector = collector;
+
+        Session subscriberSession = connection.createSession(
+                false, Session.AUTO_ACKNOWLEDGE);
+        TopicSubscriber subscriber = subscriberSession.createDurableSubscriber(
+                topic, BundlerConstantsI.METRICS_SUBSCRIPTION_NAME);
+        subscriber.setMessageListener(listener);
+
+        producer = session.createProducer(topic);
+        connection.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (connection != null) {
+            connection.close();
+        }
+        if (broker != null) {
+            broker.stop();
+            broker.waitUntilStopped();
+        }
+    }
+
+    @Test
+    public void testJobIDProperty() throws Exception {
+        Message message = session.createMessage();
+        message.setStringProperty("job_id", "JOB-1");
+        producer.send(message);
+        assertEquals("JOB-1", collector.next());
+    }
+
+    @Test
+    public void testUpperCaseJobIDProperty() throws Exception {
+        TextMessage message = session.createTextMessage("ignored");
+        message.setStringProperty("JOB_ID", " JOB-2 ");
+        producer.send(message);
+        assertEquals("JOB-2", collector.next());
+    }
+
+    @Test
+    public void testMapMessage() throws Exception {
+        MapMessage message = session.createMapMessage();
+        message.setString("job_id", "JOB-3");
+        producer.send(message);
+        assertEquals("JOB-3", collector.next());
+    }
+
+    @Test
+    public void testJSONBody() throws Exception {
+        producer.send(session.createTextMessage(
+                "{ \"state\" : \"COMPLETE\", \"JOB_ID\" : \"JOB-4\" }"));
+        assertEquals("JOB-4", collector.next());
+    }
+
+    @Test
+    public void testPlainTextBody() throws Exception {
+        producer.send(session.createTextMessage("JOB-5\n"));
+        assertEquals("JOB-5", collector.next());
+    }
+
+    @Test
+    public void testUnidentifiedNotificationIgnored() throws Exception {
+        producer.send(session.createTextMessage("{ \"state\" : \"COMPLETE\" }"));
+        producer.send(session.createTextMessage("   "));
+        producer.send(session.createTextMessage("JOB-6"));
+        // Notifications are delivered in order, so the ones without a
+        // job ID were ignored if the next one collected is JOB-6.
+        assertEquals("JOB-6", collector.next());
+        assertNull(collector.jobIDs.poll(200L, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testCollectorWritesMetrics() throws Exception {
+        long                  now     = System.currentTimeMillis();
+        StubJobMetricsService metrics = new StubJobMetricsService();
+        LiveMetricsService    live    = new LiveMetricsService();
+        StubJobService        jobs    = new StubJobService();
+        jobs.summary = new JobSummary.JobSummaryBuilder()
+                .jobID("JOB-7")
+                .userName("alice")
+                .archiveType(ArchiveType.ZIP)
+                .jobState(JobStateType.COMPLETE)
+                .startTime(now - 2000L)
+                .endTime(now - 500L)
+                .totalSize(4000L)
+                .totalCompressedSize(1000L)
+                .build();
+        listener.metricsCollector = getCollector(jobs, metrics, live);
+
+        producer.send(session.createTextMessage(
+                "{ \"job_id\" : \"JOB-7\" }"));
+
+        BundlerJobMetrics record = metrics.next();
+        assertEquals("JOB-7",               record.getJobID());
+        assertEquals(JobStateType.COMPLETE, record.getJobState());
+        assertEquals(1500L,                 record.getElapsedTime());
+        assertEquals(0.75, record.getCompressionPercentage(), 0.0);
+        // The live windows are fed once the insert returns.
+        assertNull(metrics.inserted.poll(200L, TimeUnit.MILLISECONDS));
+        assertEquals(1L, live.getWindow("5m").getJobs());
+    }
+
+    @Test
+    public void testCollectorSkipsCollectedJob() throws Exception {
+        StubJobMetricsService metrics = new StubJobMetricsService();
+        LiveMetricsService    live    = new LiveMetricsService();
+        StubJobService        jobs    = new StubJobService();
+        metrics.existing = "JOB-8";
+        jobs.summary     = new JobSummary.JobSummaryBuilder()
+                .jobID("JOB-9")
+                .jobState(JobStateType.IN_PROGRESS)
+                .startTime(System.currentTimeMillis())
+                .build();
+        listener.metricsCollector = getCollector(jobs, metrics, live);
+
+        // JOB-8 already has a metrics record and JOB-9 has not completed.
+        producer.send(session.createTextMessage("JOB-8"));
+        producer.send(session.createTextMessage("JOB-9"));
+
+        assertEquals("JOB-9", jobs.requested.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNull(metrics.inserted.poll(200L, TimeUnit.MILLISECONDS));
+        assertEquals(0L, live.getWindow("5m").getJobs());
+    }
+
+    /**
+     * Build a collector backed by the input services.
+     */
+    private static JobMetricsCollector getCollector(
+            JDBCJobService        jobs,
+            JDBCJobMetricsService metrics,
+            LiveMetricsService    live) {
+        JobMetricsCollector collector = new JobMetricsCollector();
+        collector.jobService     = jobs;
+        collector.metricsService = metrics;
+        collector.liveMetrics    = live;
+        return collector;
+    }
+
+    /**
+     * Job service stub returning a single job summary.
+     */
+    private static final class StubJobService extends JDBCJobService {
+
+        private final BlockingQueue<String> requested =
+                new LinkedBlockingQueue<String>();
+
+        private JobSummary summary;
+
+        @Override
+        public JobSummary getJobSummary(String jobID) {
+            requested.add(jobID);
+            return ((summary != null) && (summary.getJobID().equals(jobID))) ?
+                    summary : null;
+        }
+    }
+
+    /**
+     * Metrics service stub recording the metrics records it is asked to
+     * insert.
+     */
+    private static final class StubJobMetricsService
+            extends JDBCJobMetricsService {
+
+        private final BlockingQueue<BundlerJobMetrics> inserted =
+                new LinkedBlockingQueue<BundlerJobMetrics>();
+
+        private String existing;
+
+        BundlerJobMetrics next() throws InterruptedException {
+            return inserted.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public boolean jobIDExists(String jobID) {
+            return jobID.equals(existing);
+        }
+
+        @Override
+        public Map<String, String> insertAll(List<BundlerJobMetrics> metrics) {
+            inserted.addAll(metrics);
+            return new LinkedHashMap<String, String>();
+        }
+    }
+
+    /**
+     * Collector stub that records the job IDs it is asked to collect.
+     */
+    private static final class RecordingCollector
+            implements JobMetricsCollectorI {
+
+        private final BlockingQueue<String> jobIDs =
+                new LinkedBlockingQueue<String>();
+
+        String next() throws InterruptedException {
+            return jobIDs.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public boolean collectMetrics(String jobID) {
+            jobIDs.add(jobID);
+            return true;
+        }
+
+        @Override
+        public CollectionRunStatistics collectMetrics() { return null; }
+
+        @Override
+        public CollectionRunStatistics reconcileMetrics() { return null; }
+
+        @Override
+        public CollectionRunStatistics recollectMetrics(long since) {
+            return null;
+        }
+
+        @Override
+        public String startCollection(boolean full) { return null; }
+
+        @Override
+        public String startRecollection(long since) { return null; }
+
+        @Override
+        public CollectionRunStatistics getCollectionRun(String runID) {
+            return null;
+        }
+    }
+}
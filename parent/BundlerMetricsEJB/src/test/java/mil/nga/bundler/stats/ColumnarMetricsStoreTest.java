@@ -0,0 +1,214 @@
+package mil.nga.bundler.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.MetricsAggregate;
+import mil.nga.bundler.types.AggregateDimensionType;
+import mil.nga.bundler.types.ArchiveType;
+import mil.nga.bundler.types.JobStateType;
+import mil.nga.bundler.types.MetricsMeasureType;
+import mil.nga.bundler.types.TimeBucketType;
+
+public class ColumnarMetricsStoreTest {
+
+    private static final long HOUR = 3600000L;
+    private static final long DAY  = 24L * HOUR;
+
+    @Test
+    public void testEmptyStore() {
+        ColumnarMetricsStore store = new ColumnarMetricsStore();
+        assertEquals(0, store.size());
+        assertEquals(0, store.getUserCount());
+        assertTrue(aggregate(store, MetricsMeasureType.ELAPSED_TIME).isEmpty());
+    }
+
+    @Test
+    public void testTotals() {
+        ColumnarMetricsStore store = new ColumnarMetricsStore();
+        store.append(record("1", "alice", ArchiveType.ZIP,  JobStateType.COMPLETE, 1000L, 10L, 100L, 50L));
+        store.append(record("2", "bob",   ArchiveType.TAR,  JobStateType.COMPLETE, 2000L, 30L, 300L, 0L));
+        store.append(record("3", "alice", ArchiveType.GZIP, JobStateType.ERROR,    3000L, 20L, 200L, 150L));
+        store.append(null);
+        assertEquals(3, store.size());
+        assertEquals(2, store.getUserCount());
+
+        List<MetricsAggregate> aggregates = aggregate(store, MetricsMeasureType.ELAPSED_TIME);
+        assertEquals(1, aggregates.size());
+        MetricsAggregate total = aggregates.get(0);
+        assertEquals(3L,   total.getCount());
+        assertEquals(60.0, total.getSum(), 0.0);
+        assertEquals(20.0, total.getAvg(), 0.0);
+        assertEquals(10.0, total.getMin(), 0.0);
+        assertEquals(30.0, total.getMax(), 0.0);
+        assertEquals(20.0, total.getP50(), 0.0);
+    }
+
+    @Test
+    public void testMeasuresExcludeUndefinedValues() {
+        ColumnarMetricsStore store = new ColumnarMetricsStore();
+        store.append(record("1", "alice", ArchiveType.ZIP, JobStateType.COMPLETE, 1000L, 10L, 1000L, 250L));
+        // No compressed output and no elapsed time.
+        store.append(record("2", "alice", ArchiveType.ZIP, JobStateType.COMPLETE, 2000L, 0L,  1000L, 0L));
+
+        MetricsAggregate compression = aggregate(
+                store, MetricsMeasureType.COMPRESSION_PERCENTAGE).get(0);
+        assertEquals(1L,   compression.getCount());
+        assertEquals(0.75, compression.getAvg(), 0.0);
+        assertEquals(0.75, compression.getP50(), 0.75 / 64.0);
+
+        MetricsAggregate throughput = aggregate(
+                store, MetricsMeasureType.THROUGHPUT).get(0);
+        assertEquals(1L,       throughput.getCount());
+        assertEquals(100000.0, throughput.getAvg(), 0.0);
+
+        assertEquals(2000.0, aggregate(
+                store, MetricsMeasureType.TOTAL_SIZE).get(0).getSum(), 0.0);
+    }
+
+    @Test
+    public void testFilters() {
+        ColumnarMetricsStore store = new ColumnarMetricsStore();
+        store.append(record("1", "alice", ArchiveType.ZIP, JobStateType.COMPLETE, 1000L, 10L, 100L, 50L));
+        store.append(record("2", "bob",   ArchiveType.ZIP, JobStateType.ERROR,    2000L, 20L, 100L, 50L));
+        store.append(record("3", "alice", ArchiveType.TAR, JobStateType.COMPLETE, 3000L, 30L, 100L, 50L));
+
+        assertEquals(2L, count(store, 0L, 10000L, "alice", null, null));
+        assertEquals(1L, count(store, 0L, 10000L, "alice", ArchiveType.TAR, null));
+        assertEquals(1L, count(store, 0L, 10000L, null, null, JobStateType.ERROR));
+        assertEquals(0L, count(store, 0L, 10000L, "carol", null, null));
+        // The end of the range is exclusive.
+        assertEquals(2L, count(store, 1000L, 3000L, null, null, null));
+    }
+
+    @Test
+    public void testGroupsAreOrdered() {
+        ColumnarMetricsStore store = new ColumnarMetricsStore();
+        long day = 10L * DAY;
+        store.append(record("1", "bob",   ArchiveType.ZIP, JobStateType.COMPLETE, day + DAY,  10L, 1L, 1L));
+        store.append(record("2", "bob",   ArchiveType.ZIP, JobStateType.COMPLETE, day + HOUR, 10L, 1L, 1L));
+        store.append(record("3", "alice", ArchiveType.TAR, JobStateType.COMPLETE, day + 2L,   10L, 1L, 1L));
+        store.append(record("4", "alice", ArchiveType.ZIP, JobStateType.COMPLETE, day + 3L,   10L, 1L, 1L));
+        store.append(record("5", null,    ArchiveType.ZIP, JobStateType.COMPLETE, day + 4L,   10L, 1L, 1L));
+
+        List<MetricsAggregate> aggregates = store.aggregate(
+                0L, Long.MAX_VALUE, null, null, null,
+                MetricsMeasureType.ELAPSED_TIME,
+                Arrays.asList(AggregateDimensionType.USER_NAME),
+                TimeBucketType.DAY,
+                100);
+        assertEquals(4, aggregates.size());
+        assertGroup(aggregates.get(0), day,       "user", null,    1L);
+        assertGroup(aggregates.get(1), day,       "user", "alice", 2L);
+        assertGroup(aggregates.get(2), day,       "user", "bob",   1L);
+        assertGroup(aggregates.get(3), day + DAY, "user", "bob",   1L);
+
+        aggregates = store.aggregate(
+                0L, Long.MAX_VALUE, "alice", null, null,
+                MetricsMeasureType.ELAPSED_TIME,
+                Arrays.asList(AggregateDimensionType.ARCHIVE_TYPE),
+                null,
+                1);
+        assertEquals(1, aggregates.size());
+        assertGroup(aggregates.get(0), 0L, "archive_type", "tar", 1L);
+    }
+
+    @Test
+    public void testBucketStart() {
+        long time = (20L * DAY) + (5L * HOUR) + 17L;
+        assertEquals(0L, ColumnarMetricsStore.getBucketStart(null, time));
+        assertEquals((20L * DAY) + (5L * HOUR),
+                ColumnarMetricsStore.getBucketStart(TimeBucketType.HOUR, time));
+        assertEquals(20L * DAY,
+                ColumnarMetricsStore.getBucketStart(TimeBucketType.DAY, time));
+        // 1970-01-19 was a Monday.
+        assertEquals(18L * DAY,
+                ColumnarMetricsStore.getBucketStart(TimeBucketType.WEEK, time));
+        assertEquals(-3L * DAY,
+                ColumnarMetricsStore.getBucketStart(TimeBucketType.WEEK, 0L));
+    }
+
+    /**
+     * Enough records to fill more than one chunk, with the start times of
+     * each chunk disjoint, so ranges falling entirely within one chunk
+     * exercise the chunk skipping.
+     */
+    @Test
+    public void testMultipleChunks() {
+        ColumnarMetricsStore store   = new ColumnarMetricsStore();
+        int                  records = 150000;
+        for (int i = 0; i < records; i++) {
+            store.append(record(
+                    Integer.toString(i), "user" + (i % 10), ArchiveType.ZIP,
+                    JobStateType.COMPLETE, i * 1000L, i % 100, 1L, 1L));
+        }
+        assertEquals(records, store.size());
+        assertEquals(10, store.getUserCount());
+
+        assertEquals((long)records, count(store, 0L, Long.MAX_VALUE, null, null, null));
+        assertEquals(1000L, count(store, 100000000L, 101000000L, null, null, null));
+        assertEquals(100L,  count(store, 100000000L, 101000000L, "user3", null, null));
+        assertEquals(0L,    count(store, -1000L, 0L, null, null, null));
+    }
+
+    private static BundlerJobMetrics record(
+            String       jobID,
+            String       userName,
+            ArchiveType  archiveType,
+            JobStateType jobState,
+            long         startTime,
+            long         elapsedTime,
+            long         totalSize,
+            long         totalCompressedSize) {
+        return new BundlerJobMetrics.BundlerJobMetricsBuilder()
+                .jobID(jobID)
+                .userName(userName)
+                .archiveType(archiveType)
+                .jobState(jobState)
+                .startTime(startTime)
+                .elapsedTime(elapsedTime)
+                .totalSize(totalSize)
+                .totalCompressedSize(totalCompressedSize)
+                .build();
+    }
+
+    private static List<MetricsAggregate> aggregate(
+            ColumnarMetricsStore store,
+            MetricsMeasureType   measure) {
+        return store.aggregate(
+                0L, Long.MAX_VALUE, null, null, null, measure,
+                Collections.<AggregateDimensionType>emptyList(), null, 100);
+    }
+
+    private static long count(
+            ColumnarMetricsStore store,
+            long                 startTime,
+            long                 endTime,
+            String               userName,
+            ArchiveType          archiveType,
+            JobStateType         jobState) {
+        List<MetricsAggregate> aggregates = store.aggregate(
+                startTime, endTime, userName, archiveType, jobState,
+                MetricsMeasureType.ELAPSED_TIME,
+                null, null, 100);
+        return aggregates.isEmpty() ? 0L : aggregates.get(0).getCount();
+    }
+
+    private static void assertGroup(
+            MetricsAggregate aggregate,
+            long             bucket,
+            String           dimension,
+            String           value,
+            long             count) {
+        assertEquals(bucket, aggregate.getBucket());
+        assertEquals(value,  aggregate.getGroups().get(dimension));
+        assertEquals(count,  aggregate.getCount());
+    }
+}
@@ -0,0 +1,144 @@
+package mil.nga.bundler.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MergeableHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        MergeableHistogram histogram = new MergeableHistogram();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getMin());
+        assertEquals(0L, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+        assertEquals(0L, histogram.getValueAtPercentile(0.5));
+
+        MergeableHistogram copy = MergeableHistogram.fromBytes(
+                histogram.toBytes());
+        assertEquals(0L, copy.getCount());
+        copy.record(7L);
+        assertEquals(7L, copy.getMin());
+    }
+
+    @Test
+    public void testNegativeValuesIgnored() {
+        MergeableHistogram histogram = new MergeableHistogram();
+        histogram.record(-1L);
+        histogram.record(5L);
+        assertEquals(1L, histogram.getCount());
+        assertEquals(5L, histogram.getSum());
+    }
+
+    @Test
+    public void testSmallValuesExact() {
+        MergeableHistogram histogram = new MergeableHistogram();
+        for (long value = 1L; value <= 100L; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100L,  histogram.getCount());
+        assertEquals(5050L, histogram.getSum());
+        assertEquals(1L,    histogram.getMin());
+        assertEquals(100L,  histogram.getMax());
+        assertEquals(50.5,  histogram.getMean(), 0.0);
+        assertEquals(50L,   histogram.getValueAtPercentile(0.50));
+        assertEquals(90L,   histogram.getValueAtPercentile(0.90));
+        assertEquals(1L,    histogram.getValueAtPercentile(0.0));
+        assertEquals(100L,  histogram.getValueAtPercentile(1.0));
+    }
+
+    @Test
+    public void testRelativeError() {
+        for (long value = 1L; value > 0; value = (value * 3L) + 1L) {
+            MergeableHistogram histogram = new MergeableHistogram();
+            histogram.record(0L);
+            histogram.record(value);
+            histogram.record(Long.MAX_VALUE);
+            long reported = histogram.getValueAtPercentile(0.5);
+            assertTrue("Value [ " + value + " ] reported as [ " + reported + " ].",
+                    (reported >= value) &&
+                    (reported - value <= value / 64L));
+        }
+    }
+
+    @Test
+    public void testMergeMatchesSingleHistogram() {
+        Random               random = new Random(42L);
+        MergeableHistogram   all    = new MergeableHistogram();
+        MergeableHistogram[] parts  = new MergeableHistogram[4];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new MergeableHistogram();
+        }
+        for (int i = 0; i < 10000; i++) {
+            // Spread the values over many orders of magnitude.
+            long value = (long)Math.pow(10.0, random.nextDouble() * 12.0);
+            all.record(value);
+            parts[i % parts.length].record(value);
+        }
+
+        MergeableHistogram merged = new MergeableHistogram();
+        for (MergeableHistogram part : parts) {
+            merged.merge(part);
+        }
+        merged.merge(null);
+        merged.merge(new MergeableHistogram());
+
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getSum(),   merged.getSum());
+        assertEquals(all.getMin(),   merged.getMin());
+        assertEquals(all.getMax(),   merged.getMax());
+        for (double p : new double[] { 0.01, 0.5, 0.9, 0.99, 0.999 }) {
+            assertEquals(all.getValueAtPercentile(p),
+                    merged.getValueAtPercentile(p));
+        }
+        assertArrayEquals(all.toBytes(), merged.toBytes());
+    }
+
+    @Test
+    public void testSerializationRoundTrip() {
+        MergeableHistogram histogram = new MergeableHistogram();
+        histogram.record(0L);
+        histogram.record(3L);
+        histogram.record(1000000L);
+        histogram.record(Long.MAX_VALUE / 2L);
+
+        byte[]             bytes = histogram.toBytes();
+        MergeableHistogram copy  = MergeableHistogram.fromBytes(bytes);
+        assertEquals(histogram.getCount(), copy.getCount());
+        assertEquals(histogram.getSum(),   copy.getSum());
+        assertEquals(histogram.getMin(),   copy.getMin());
+        assertEquals(histogram.getMax(),   copy.getMax());
+        assertEquals(histogram.getValueAtPercentile(0.75),
+                copy.getValueAtPercentile(0.75));
+        assertArrayEquals(bytes, copy.toBytes());
+    }
+
+    @Test
+    public void testInvalidBytesRejected() {
+        byte[] valid = new MergeableHistogram().toBytes();
+        MergeableHistogram histogram = new MergeableHistogram();
+        histogram.record(12345L);
+        byte[] truncated = histogram.toBytes();
+        truncated = Arrays.copyOf(truncated, truncated.length - 1);
+
+        byte[] badVersion = valid.clone();
+        badVersion[0] = (byte)(badVersion[0] + 1);
+
+        for (byte[] bytes : new byte[][] { null, new byte[0], badVersion, truncated }) {
+            try {
+                MergeableHistogram.fromBytes(bytes);
+                fail("Expected IllegalArgumentException.");
+            }
+            catch (IllegalArgumentException iae) {
+                // Expected.
+            }
+        }
+    }
+}
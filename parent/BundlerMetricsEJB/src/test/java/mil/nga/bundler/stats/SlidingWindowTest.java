@@ -0,0 +1,164 @@
+package mil.nga.bundler.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import mil.nga.bundler.model.MetricsWindow;
+
+public class SlidingWindowTest {
+
+    private static final long WIDTH = 1000L;
+    private static final int  SLOTS = 10;
+
+    @Test
+    public void testEmptyWindow() {
+        MetricsWindow window = new SlidingWindow("10s", WIDTH, SLOTS)
+                .snapshot(50000L);
+        assertEquals(0L, window.getJobs());
+        assertEquals(0L, window.getP50());
+        assertEquals(41000L, window.getStart());
+        assertEquals(50000L, window.getEnd());
+    }
+
+    @Test
+    public void testSnapshotLabelledWithNode() {
+        SlidingWindow sliding = new SlidingWindow("10s", WIDTH, SLOTS);
+        assertEquals("server@host",
+                sliding.snapshot(50000L, "server@host").getNode());
+    }
+
+    @Test
+    public void testTotals() {
+        SlidingWindow sliding = new SlidingWindow("10s", WIDTH, SLOTS);
+        sliding.record(45000L, 100L, 10L, false);
+        sliding.record(46500L, 200L, 30L, true);
+        sliding.record(50999L, 300L, 20L, false);
+
+        MetricsWindow window = sliding.snapshot(50999L);
+        assertEquals(3L,   window.getJobs());
+        assertEquals(1L,   window.getErrors());
+        assertEquals(600L, window.getTotalSize());
+        assertEquals(60L,  window.getElapsedTime());
+        assertEquals(30L,  window.getMaxElapsedTime());
+    }
+
+    @Test
+    public void testSlotsLeaveTheWindow() {
+        SlidingWindow sliding = new SlidingWindow("10s", WIDTH, SLOTS);
+        sliding.record(40999L, 1L, 1L, false);
+        sliding.record(41000L, 1L, 1L, false);
+        sliding.record(50000L, 1L, 1L, false);
+
+        assertEquals(2L, sliding.snapshot(50000L).getJobs());
+        assertEquals(1L, sliding.snapshot(51000L).getJobs());
+        assertEquals(0L, sliding.snapshot(60000L).getJobs());
+    }
+
+    @Test
+    public void testRecycledSlot() {
+        SlidingWindow sliding = new SlidingWindow("10s", WIDTH, SLOTS);
+        sliding.record(1500L, 10L, 10L, true);
+        // Same slot, one full window later.
+        sliding.record(11500L, 20L, 5L, false);
+        // Late arrival for the period the slot no longer holds.
+        sliding.record(1600L, 10L, 10L, true);
+
+        MetricsWindow window = sliding.snapshot(11500L);
+        assertEquals(1L,  window.getJobs());
+        assertEquals(0L,  window.getErrors());
+        assertEquals(20L, window.getTotalSize());
+        assertEquals(5L,  window.getMaxElapsedTime());
+    }
+
+    @Test
+    public void testPercentiles() {
+        SlidingWindow sliding = new SlidingWindow("10s", WIDTH, SLOTS);
+        for (long elapsed = 1L; elapsed <= 1000L; elapsed++) {
+            sliding.record(5000L, 0L, elapsed, false);
+        }
+        MetricsWindow window = sliding.snapshot(5000L);
+        assertWithin(500L, window.getP50());
+        assertWithin(900L, window.getP90());
+        assertWithin(990L, window.getP99());
+        assertTrue(window.getP99() <= window.getMaxElapsedTime());
+    }
+
+    @Test
+    public void testBucketBounds() {
+        long previous = -1L;
+        for (int bucket = 0; bucket < SlidingWindow.BUCKETS - 1; bucket++) {
+            long bound = SlidingWindow.getUpperBound(bucket);
+            assertTrue(bound > previous);
+            assertEquals(bucket, SlidingWindow.getBucket(bound));
+            assertEquals(bucket + 1, SlidingWindow.getBucket(bound + 1));
+            previous = bound;
+        }
+        assertEquals(SlidingWindow.BUCKETS - 1,
+                SlidingWindow.getBucket(Long.MAX_VALUE));
+    }
+
+    /**
+     * Half of the threads record jobs for a period that shares its slot
+     * with the period the other half record jobs for.  Whichever order the
+     * updates and the recycling of the slot happen in, the later period
+     * must end up with exactly the jobs recorded for it.  The slot is only
+     * recycled once per window, so the race is repeated over many rounds.
+     */
+    @Test
+    public void testConcurrentRecycling() throws Exception {
+
+        final int threads = 4;
+        final int jobs    = 500;
+
+        for (int round = 0; round < 500; round++) {
+
+            final SlidingWindow  sliding = new SlidingWindow("10s", WIDTH, SLOTS);
+            final CountDownLatch start   = new CountDownLatch(1);
+            List<Thread>         workers = new ArrayList<Thread>();
+
+            for (int i = 0; i < threads; i++) {
+                final long time = (i % 2 == 0) ? 3000L : 13000L;
+                Thread worker = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        }
+                        catch (InterruptedException ie) {
+                            return;
+                        }
+                        for (int j = 0; j < jobs; j++) {
+                            sliding.record(time, 1L, 1L, false);
+                        }
+                    }
+                };
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            MetricsWindow window = sliding.snapshot(13000L);
+            assertEquals((threads / 2) * (long)jobs, window.getJobs());
+            assertEquals((threads / 2) * (long)jobs, window.getTotalSize());
+        }
+    }
+
+    /**
+     * The reported percentile is the upper bound of its bucket, which is
+     * at most 25% above the exact value.
+     */
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("Expected approximately [ " + expected
+                + " ] but was [ " + actual + " ].",
+                (actual >= expected) && (actual <= expected * 1.25));
+    }
+}
@@ -0,0 +1,158 @@
+package mil.nga.bundler.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SpaceSavingTest {
+
+    private static final int CAPACITY = 20;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new SpaceSaving(0);
+    }
+
+    @Test
+    public void testInvalidInputIgnored() {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        summary.add(null, 10L);
+        summary.add("a", 0L);
+        summary.add("a", -5L);
+        assertEquals(0L, summary.getTotal());
+        assertTrue(summary.getTop(CAPACITY).isEmpty());
+    }
+
+    @Test
+    public void testExactBelowCapacity() {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        for (int i = 1; i <= 10; i++) {
+            summary.add("user" + i, i);
+            summary.add("user" + i, i);
+        }
+        List<SpaceSaving.Counter> top = summary.getTop(3);
+        assertEquals(3, top.size());
+        assertEquals("user10", top.get(0).getKey());
+        assertEquals(20L,      top.get(0).getCount());
+        assertEquals(0L,       top.get(0).getError());
+        assertEquals("user9",  top.get(1).getKey());
+        assertEquals("user8",  top.get(2).getKey());
+        assertEquals(110L,     summary.getTotal());
+        assertEquals(0L,       summary.getFloor());
+    }
+
+    @Test
+    public void testGuarantees() {
+        Map<String, Long> actual  = new HashMap<String, Long>();
+        SpaceSaving       summary = new SpaceSaving(CAPACITY);
+        feed(summary, actual, new Random(1L), 20000);
+        assertGuarantees(summary, actual);
+    }
+
+    @Test
+    public void testMergeGuarantees() {
+        Map<String, Long> actual = new HashMap<String, Long>();
+        SpaceSaving       first  = new SpaceSaving(CAPACITY);
+        SpaceSaving       second = new SpaceSaving(CAPACITY);
+        feed(first,  actual, new Random(2L), 10000);
+        feed(second, actual, new Random(3L), 10000);
+        first.merge(second);
+        first.merge(null);
+        assertGuarantees(first, actual);
+    }
+
+    @Test
+    public void testRestore() {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        feed(summary, new HashMap<String, Long>(), new Random(4L), 5000);
+
+        SpaceSaving restored = new SpaceSaving(
+                CAPACITY, summary.getTotal(), summary.getFloor());
+        for (SpaceSaving.Counter counter : summary.getTop(CAPACITY)) {
+            restored.restore(
+                    counter.getKey(), counter.getCount(), counter.getError());
+        }
+        // Counters beyond the capacity are ignored.
+        restored.restore("extra", 1L, 0L);
+
+        assertEquals(summary.getTotal(), restored.getTotal());
+        assertEquals(summary.getFloor(), restored.getFloor());
+        List<SpaceSaving.Counter> expected = summary.getTop(CAPACITY);
+        List<SpaceSaving.Counter> found    = restored.getTop(CAPACITY);
+        assertEquals(expected.size(), found.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getKey(),   found.get(i).getKey());
+            assertEquals(expected.get(i).getCount(), found.get(i).getCount());
+            assertEquals(expected.get(i).getError(), found.get(i).getError());
+        }
+    }
+
+    /**
+     * Add a skewed stream to the summary: a handful of heavy users and a
+     * long tail of light ones.
+     */
+    private static void feed(
+            SpaceSaving       summary,
+            Map<String, Long> actual,
+            Random            random,
+            int               records) {
+        for (int i = 0; i < records; i++) {
+            String key;
+            long   weight;
+            if (random.nextInt(4) == 0) {
+                key    = "heavy" + random.nextInt(5);
+                weight = 100L + random.nextInt(100);
+            }
+            else {
+                key    = "light" + random.nextInt(2000);
+                weight = 1L + random.nextInt(10);
+            }
+            summary.add(key, weight);
+            Long total = actual.get(key);
+            actual.put(key, (total == null ? 0L : total) + weight);
+        }
+    }
+
+    /**
+     * Check the Space-Saving guarantees against the actual weights.
+     */
+    private static void assertGuarantees(
+            SpaceSaving       summary,
+            Map<String, Long> actual) {
+
+        long total = 0L;
+        for (long weight : actual.values()) {
+            total += weight;
+        }
+        assertEquals(total, summary.getTotal());
+
+        Map<String, SpaceSaving.Counter> tracked =
+                new HashMap<String, SpaceSaving.Counter>();
+        for (SpaceSaving.Counter counter : summary.getTop(CAPACITY)) {
+            tracked.put(counter.getKey(), counter);
+        }
+        assertTrue(tracked.size() <= CAPACITY);
+
+        for (Map.Entry<String, Long> entry : actual.entrySet()) {
+            SpaceSaving.Counter counter = tracked.get(entry.getKey());
+            if (counter != null) {
+                assertTrue(entry.getKey(), entry.getValue() <= counter.getCount());
+                assertTrue(entry.getKey(),
+                        entry.getValue() >= counter.getCount() - counter.getError());
+            }
+            else {
+                assertTrue(entry.getKey(), entry.getValue() <= summary.getFloor());
+                assertTrue(entry.getKey(), entry.getValue() <= total / CAPACITY);
+            }
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(tracked.containsKey("heavy" + i));
+        }
+    }
+}
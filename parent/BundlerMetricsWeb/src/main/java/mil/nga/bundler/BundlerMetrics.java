@@ -1,26 +1,74 @@
 package mil.nga.bundler;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
 import javax.ejb.EJB;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import mil.nga.bundler.model.BundlerJobMetrics;
+import mil.nga.bundler.model.CollectionRunHistory;
+import mil.nga.bundler.model.CollectionRunStatistics;
+import mil.nga.bundler.model.CollectionSchedule;
 import mil.nga.bundler.model.Job;
+import mil.nga.bundler.model.MetricsAggregate;
+import mil.nga.bundler.model.MetricsPage;
+import mil.nga.bundler.model.MetricsRetry;
+import mil.nga.bundler.model.MetricsRollup;
+import mil.nga.bundler.model.MetricsTopUser;
+import mil.nga.bundler.model.MetricsWindow;
+import mil.nga.bundler.ejb.ColumnarMetricsService;
 import mil.nga.bundler.ejb.EJBClientUtilities;
+import mil.nga.bundler.ejb.JobMetricsBackfill;
+import mil.nga.bundler.ejb.JobMetricsCollectorTimer;
+import mil.nga.bundler.ejb.LiveMetricsService;
+import mil.nga.bundler.ejb.TopUserTracker;
 import mil.nga.bundler.ejb.exceptions.EJBLookupException;
 import mil.nga.bundler.ejb.interfaces.JobMetricsCollectorI;
+import mil.nga.bundler.ejb.interfaces.MetricsRowHandlerI;
+import mil.nga.bundler.ejb.jdbc.JDBCJobMetricsService;
 import mil.nga.bundler.ejb.jdbc.JDBCJobService;
+import mil.nga.bundler.ejb.jdbc.JDBCMetricsAggregateService;
+import mil.nga.bundler.ejb.jdbc.JDBCMetricsHistogramService;
+import mil.nga.bundler.ejb.jdbc.JDBCMetricsRollupService;
+import mil.nga.bundler.ejb.jdbc.JDBCRetryService;
+import mil.nga.bundler.ejb.jdbc.JDBCRunHistoryService;
+import mil.nga.bundler.exceptions.UnknownArchiveTypeException;
+import mil.nga.bundler.types.AggregateDimensionType;
+import mil.nga.bundler.types.ArchiveType;
+import mil.nga.bundler.types.CollectionModeType;
+import mil.nga.bundler.types.JobStateType;
+import mil.nga.bundler.types.MetricsMeasureType;
+import mil.nga.bundler.types.RetryStateType;
+import mil.nga.bundler.types.TimeBucketType;
+import mil.nga.bundler.types.TopUserMeasureType;
 import mil.nga.util.HostNameUtils;
 
 /**
@@ -43,6 +91,42 @@ public class BundlerMetrics {
      */
     public static final String APPLICATION_NAME = "BundlerMetrics";
     
+    /**
+     * Default and maximum number of runs returned by 
+     * <code>/collectionRuns</code>.
+     */
+    private static final int DEFAULT_HISTORY_LIMIT = 20;
+    private static final int MAX_HISTORY_LIMIT     = 1000;
+    
+    /**
+     * Default and maximum number of failed jobs returned by 
+     * <code>/retries</code>.
+     */
+    private static final int DEFAULT_RETRY_LIMIT = 100;
+    private static final int MAX_RETRY_LIMIT     = 10000;
+    
+    /**
+     * Default and maximum number of records returned by 
+     * <code>/metrics/page</code>.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE     = 1000;
+    
+    /**
+     * Output formats supported by <code>/metrics</code>.
+     */
+    private static final String FORMAT_CSV    = "csv";
+    private static final String FORMAT_NDJSON = "ndjson";
+    
+    /**
+     * Column header written by <code>/metrics</code> when CSV output is
+     * requested.
+     */
+    private static final String CSV_HEADER = "JOB_ID,USER_NAME,JOB_STATE,"
+            + "ARCHIVE_TYPE,START_TIME,ELAPSED_TIME,NUM_ARCHIVES,"
+            + "NUM_ARCHIVES_COMPLETE,NUM_FILES,NUM_FILES_COMPLETE,"
+            + "TOTAL_SIZE,TOTAL_COMPRESSED_SIZE,ARCHIVE_SIZE";
+    
     /**
      * Container-injected EJB reference.
      */
@@ -55,6 +139,272 @@ public class BundlerMetrics {
     @EJB
     JDBCJobService jobService;
     
+    /**
+     * Container-injected EJB reference
+     */
+    @EJB
+    JDBCJobMetricsService metricsService;
+    
+    /**
+     * Container-injected EJB reference
+     */
+    @EJB
+    JDBCMetricsAggregateService aggregateService;
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * 
+     * @return Reference to the JDBCMetricsAggregateService EJB.
+     */
+    private JDBCMetricsAggregateService getAggregateService() 
+            throws EJBLookupException {
+        if (aggregateService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCMetricsAggregateService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            aggregateService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCMetricsAggregateService();
+        }
+        return aggregateService;
+    }
+    
+    /**
+     * Container-injected EJB reference
+     */
+    @EJB
+    JDBCMetricsRollupService rollupService;
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * 
+     * @return Reference to the JDBCMetricsRollupService EJB.
+     */
+    private JDBCMetricsRollupService getRollupService() 
+            throws EJBLookupException {
+        if (rollupService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCMetricsRollupService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            rollupService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCMetricsRollupService();
+        }
+        return rollupService;
+    }
+    
+    /**
+     * Container-injected EJB reference
+     */
+    @EJB
+    JDBCMetricsHistogramService histogramService;
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * 
+     * @return Reference to the JDBCMetricsHistogramService EJB.
+     */
+    private JDBCMetricsHistogramService getHistogramService() 
+            throws EJBLookupException {
+        if (histogramService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCMetricsHistogramService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            histogramService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCMetricsHistogramService();
+        }
+        return histogramService;
+    }
+    
+    /**
+     * Container-injected EJB reference
+     */
+    @EJB
+    LiveMetricsService liveMetrics;
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * 
+     * @return Reference to the LiveMetricsService EJB.
+     */
+    private LiveMetricsService getLiveMetricsService() 
+            throws EJBLookupException {
+        if (liveMetrics == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + LiveMetricsService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            liveMetrics = EJBClientUtilities
+                    .getInstance()
+                    .getLiveMetricsService();
+        }
+        return liveMetrics;
+    }
+    
+    /**
+     * Container-injected EJB reference
+     */
+    @EJB
+    TopUserTracker topUsers;
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * 
+     * @return Reference to the TopUserTracker EJB.
+     */
+    private TopUserTracker getTopUserTracker() 
+            throws EJBLookupException {
+        if (topUsers == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + TopUserTracker.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            topUsers = EJBClientUtilities
+                    .getInstance()
+                    .getTopUserTracker();
+        }
+        return topUsers;
+    }
+    
+    /**
+     * Container-injected EJB reference
+     */
+    @EJB
+    ColumnarMetricsService columnarStore;
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * 
+     * @return Reference to the ColumnarMetricsService EJB.
+     */
+    private ColumnarMetricsService getColumnarMetricsService() 
+            throws EJBLookupException {
+        if (columnarStore == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + ColumnarMetricsService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            columnarStore = EJBClientUtilities
+                    .getInstance()
+                    .getColumnarMetricsService();
+        }
+        return columnarStore;
+    }
+    
+    /**
+     * Container-injected EJB reference
+     */
+    @EJB
+    JobMetricsBackfill backfillService;
+    
+    /**
+     * Container-injected EJB reference
+     */
+    @EJB
+    JobMetricsCollectorTimer timerService;
+    
+    /**
+     * Container-injected EJB reference
+     */
+    @EJB
+    JDBCRunHistoryService historyService;
+    
+    /**
+     * Container-injected EJB reference
+     */
+    @EJB
+    JDBCRetryService retryService;
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * 
+     * @return Reference to the JDBCRetryService EJB.
+     */
+    private JDBCRetryService getRetryService() 
+            throws EJBLookupException {
+        if (retryService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCRetryService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            retryService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCRetryService();
+        }
+        return retryService;
+    }
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * 
+     * @return Reference to the JDBCRunHistoryService EJB.
+     */
+    private JDBCRunHistoryService getRunHistoryService() 
+            throws EJBLookupException {
+        if (historyService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCRunHistoryService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            historyService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCRunHistoryService();
+        }
+        return historyService;
+    }
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * 
+     * @return Reference to the JobMetricsCollectorTimer EJB.
+     */
+    private JobMetricsCollectorTimer getJobMetricsCollectorTimer() 
+            throws EJBLookupException {
+        if (timerService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JobMetricsCollectorTimer.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            timerService = EJBClientUtilities
+                    .getInstance()
+                    .getJobMetricsCollectorTimer();
+        }
+        return timerService;
+    }
+    
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * 
+     * @return Reference to the JobMetricsBackfill EJB.
+     */
+    private JobMetricsBackfill getJobMetricsBackfill() 
+            throws EJBLookupException {
+        if (backfillService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JobMetricsBackfill.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            backfillService = EJBClientUtilities
+                    .getInstance()
+                    .getJobMetricsBackfill();
+        }
+        return backfillService;
+    }
+    
     /**
      * Private method used to obtain a reference to the target EJB.  
      * 
@@ -95,6 +445,26 @@ public class BundlerMetrics {
         return jobService;
     }
     
+    /**
+     * Private method used to obtain a reference to the target EJB.  
+     * 
+     * @return Reference to the JDBCJobMetricsService EJB.
+     */
+    private JDBCJobMetricsService getJobMetricsService() 
+            throws EJBLookupException {
+        if (metricsService == null) {
+            LOGGER.warn("Application container failed to inject the "
+                    + "reference to [ "
+                    + JDBCJobMetricsService.class.getName()
+                    + " ].  Attempting to "
+                    + "look it up via JNDI.");
+            metricsService = EJBClientUtilities
+                    .getInstance()
+                    .getJDBCJobMetricsService();
+        }
+        return metricsService;
+    }
+    
     /**
      * Simple method used to determine whether or not the 
      * application is responding to requests.
@@ -118,23 +488,1332 @@ public class BundlerMetrics {
     
     /**
      * Simple method allowing clients to manually start the metrics 
-     * collection process from a browser.
+     * collection process from a browser.  By default the collection run is
+     * incremental (if enabled).  Supplying <code>mode=full</code> forces a 
+     * full reconciliation run.  Supplying <code>mode=recollect</code> with
+     * <code>since=yyyy-MM-dd</code> (or milliseconds since the epoch) 
+     * refreshes the metrics of every job completed at or after that time.
+     * The run executes in the background and the ID assigned to the run is 
+     * returned immediately.  Progress may be monitored via 
+     * <code>/collectionRuns/{id}</code>.
      */
     @GET
     @Path("/startMetricsCollection")
-    public Response startCleanup() {
+    public Response startCleanup(
+            @QueryParam("mode")  String mode,
+            @QueryParam("since") String since) {
+        String result = "Unable to start metrics collection.";
+        Status status = Status.INTERNAL_SERVER_ERROR;
         try {
         	LOGGER.info("Metrics collection started manually.");
-            getJobMetricsCollector().collectMetrics();
+            String runID = null;
+            if (CollectionModeType.RECOLLECT.getText().equalsIgnoreCase(mode)) {
+                long time = parseTime(since);
+                if (time >= 0) {
+                    runID = getJobMetricsCollector().startRecollection(time);
+                }
+                else {
+                    result = "Invalid value for parameter since [ "
+                            + since
+                            + " ].  Expected yyyy-MM-dd or milliseconds "
+                            + "since the epoch.";
+                    status = Status.BAD_REQUEST;
+                }
+            }
+            else {
+                runID = getJobMetricsCollector().startCollection(
+                        CollectionModeType.FULL.getText().equalsIgnoreCase(mode));
+            }
+            if (runID != null) {
+                result = runID;
+                status = Status.ACCEPTED;
+            }
         }
         catch (EJBLookupException ele) {
             LOGGER.error("Unexpected EJBLookupException raised while "
                     + "attempting to look up EJB [ "
                     + ele.getEJBName()
                     + " ].");
-            Response.status(Status.NOT_FOUND).build();
         }
-        return Response.status(Status.OK).entity("Done!").build();
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Start a historical backfill of the metrics records for the jobs 
+     * started between the <code>start</code> (inclusive) and 
+     * <code>end</code> (exclusive) parameters.  Both parameters may be 
+     * supplied as yyyy-MM-dd or milliseconds since the epoch.  If a 
+     * previous backfill of the same range failed, the backfill resumes 
+     * after the last completed slice.  The ID assigned to the backfill is 
+     * returned immediately and progress may be monitored via 
+     * <code>/collectionRuns/{id}</code>.
+     */
+    @GET
+    @Path("/backfill")
+    public Response startBackfill(
+            @QueryParam("start") String start,
+            @QueryParam("end")   String end) {
+        String result = "Unable to start backfill.";
+        Status status = Status.INTERNAL_SERVER_ERROR;
+        long   from   = parseTime(start);
+        long   to     = parseTime(end);
+        if ((from >= 0) && (to > from)) {
+            try {
+                LOGGER.info("Backfill of range [ "
+                        + from
+                        + " - "
+                        + to
+                        + " ] started manually.");
+                String runID = getJobMetricsBackfill().startBackfill(from, to);
+                if (runID != null) {
+                    result = runID;
+                    status = Status.ACCEPTED;
+                }
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].");
+            }
+        }
+        else {
+            result = "Invalid backfill range [ "
+                    + start
+                    + " - "
+                    + end
+                    + " ].  Expected yyyy-MM-dd or milliseconds since the "
+                    + "epoch with start before end.";
+            status = Status.BAD_REQUEST;
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Export the metrics records for the jobs started between the 
+     * <code>start</code> and <code>end</code> parameters (yyyy-MM-dd or 
+     * milliseconds since the epoch, <code>end</code> defaults to now).  The
+     * records are written to the client as they are read from the 
+     * database, one JSON object per line (<code>format=ndjson</code>, the 
+     * default) or as CSV (<code>format=csv</code>), so the memory required
+     * does not depend on the size of the range.  If the records cannot be
+     * read the export fails (with a 500 if nothing has been sent yet, 
+     * otherwise by aborting the response) rather than ending early.
+     */
+    @GET
+    @Path("/metrics")
+    public Response getMetrics(
+            @QueryParam("start")  String start,
+            @QueryParam("end")    String end,
+            @QueryParam("format") String format) {
+        
+        final long    from     = parseTime(start);
+        final long    to       = ((end == null) || (end.trim().isEmpty())) ?
+                System.currentTimeMillis() : parseTime(end);
+        final boolean csv      = FORMAT_CSV.equalsIgnoreCase(format);
+        Response      response = Response.status(Status.INTERNAL_SERVER_ERROR)
+                .entity("Unable to export metrics.")
+                .build();
+        
+        if ((format != null) && (!csv) && 
+                (!FORMAT_NDJSON.equalsIgnoreCase(format))) {
+            response = Response.status(Status.BAD_REQUEST)
+                    .entity("Invalid value for parameter format [ "
+                            + format
+                            + " ].  Expected ndjson or csv.")
+                    .build();
+        }
+        else if ((from < 0) || (to <= from)) {
+            response = Response.status(Status.BAD_REQUEST)
+                    .entity("Invalid range [ "
+                            + start
+                            + " - "
+                            + end
+                            + " ].  Expected yyyy-MM-dd or milliseconds "
+                            + "since the epoch with start before end.")
+                    .build();
+        }
+        else {
+            try {
+                final JDBCJobMetricsService service = getJobMetricsService();
+                StreamingOutput stream = new StreamingOutput() {
+                    @Override
+                    public void write(OutputStream output) throws IOException {
+                        final Writer writer = new BufferedWriter(
+                                new OutputStreamWriter(
+                                        output, StandardCharsets.UTF_8));
+                        final ObjectMapper mapper = new ObjectMapper();
+                        if (csv) {
+                            writer.write(CSV_HEADER);
+                            writer.write("\n");
+                        }
+                        long count = service.streamJobMetricsByDate(from, to, 
+                                new MetricsRowHandlerI() {
+                                    @Override
+                                    public void handle(BundlerJobMetrics metrics) 
+                                            throws IOException {
+                                        if (csv) {
+                                            writeCSV(writer, metrics);
+                                        }
+                                        else {
+                                            writer.write(mapper
+                                                    .writeValueAsString(metrics));
+                                        }
+                                        writer.write("\n");
+                                    }
+                                });
+                        writer.flush();
+                        if (LOGGER.isDebugEnabled()) {
+                            LOGGER.debug("[ "
+                                    + count
+                                    + " ] metrics records exported.");
+                        }
+                    }
+                };
+                response = Response.ok(stream, 
+                        csv ? "text/csv" : "application/x-ndjson").build();
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].");
+            }
+        }
+        return response;
+    }
+    
+    /**
+     * Return a single page of the metrics records for the jobs started 
+     * between the <code>start</code> (inclusive, defaults to the epoch) and
+     * <code>end</code> (exclusive, defaults to now) parameters, newest 
+     * first.  The number of records is controlled by the 
+     * <code>limit</code> parameter (default 100, maximum 1000).  The 
+     * response contains a <code>nextToken</code> which is supplied as the
+     * <code>token</code> parameter (along with the same range) to retrieve
+     * the following page.  The token is null on the last page.
+     */
+    @GET
+    @Path("/metrics/page")
+    @Produces("application/json")
+    public Response getMetricsPage(
+            @QueryParam("start") String  start,
+            @QueryParam("end")   String  end,
+            @QueryParam("limit") Integer limit,
+            @QueryParam("token") String  token) {
+        
+        String result = "";
+        Status status = Status.INTERNAL_SERVER_ERROR;
+        int    max    = DEFAULT_PAGE_SIZE;
+        long   from   = ((start == null) || (start.trim().isEmpty())) ?
+                0L : parseTime(start);
+        long   to     = ((end == null) || (end.trim().isEmpty())) ?
+                System.currentTimeMillis() : parseTime(end);
+        
+        if ((limit != null) && (limit.intValue() > 0)) {
+            max = Math.min(limit.intValue(), MAX_PAGE_SIZE);
+        }
+        if ((from >= 0) && (to > from)) {
+            try {
+                MetricsPage page = getJobMetricsService().getJobMetricsPage(
+                        from, to, token, max);
+                if (page != null) {
+                    ObjectMapper mapper = new ObjectMapper();
+                    result = mapper.writeValueAsString(page);
+                    status = Status.OK;
+                }
+                else {
+                    result = "Invalid value for parameter token [ "
+                            + token
+                            + " ].";
+                    status = Status.BAD_REQUEST;
+                }
+            }
+            catch (JsonProcessingException jpe) {
+                LOGGER.error("JsonProcessingException raised while "
+                        + "serializing a page of metrics records.  "
+                        + "Error => [ "
+                        + jpe.getMessage()
+                        + " ].");
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].");
+            }
+        }
+        else {
+            result = "Invalid range [ "
+                    + start
+                    + " - "
+                    + end
+                    + " ].  Expected yyyy-MM-dd or milliseconds since the "
+                    + "epoch with start before end.";
+            status = Status.BAD_REQUEST;
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Return aggregate statistics (count, sum, avg, min, max and the 50th,
+     * 90th, 95th, 99th and 99.9th percentiles) calculated by the database for the 
+     * jobs started between the <code>start</code> (inclusive, defaults to 
+     * the epoch) and <code>end</code> (exclusive, defaults to now) 
+     * parameters.  The <code>measure</code> parameter selects the value 
+     * aggregated (elapsed_time (default), total_size, 
+     * total_compressed_size, compression_percentage or throughput).  The 
+     * <code>groupBy</code> parameter is a comma-separated list of 
+     * dimensions (user, archive_type, job_state) and the 
+     * <code>bucket</code> parameter (hour, day or week) groups the jobs by
+     * START_TIME.
+     */
+    @GET
+    @Path("/metrics/aggregate")
+    @Produces("application/json")
+    public Response getMetricsAggregate(
+            @QueryParam("start")   String start,
+            @QueryParam("end")     String end,
+            @QueryParam("measure") String measure,
+            @QueryParam("groupBy") String groupBy,
+            @QueryParam("bucket")  String bucket) {
+        
+        String                       result      = "";
+        Status                       status      = Status.BAD_REQUEST;
+        List<AggregateDimensionType> dimensions  = 
+                new ArrayList<AggregateDimensionType>();
+        MetricsMeasureType           measureType = 
+                MetricsMeasureType.ELAPSED_TIME;
+        TimeBucketType               bucketType  = null;
+        long                         from        = 
+                ((start == null) || (start.trim().isEmpty())) ?
+                        0L : parseTime(start);
+        long                         to          = 
+                ((end == null) || (end.trim().isEmpty())) ?
+                        System.currentTimeMillis() : parseTime(end);
+        
+        if ((measure != null) && (!measure.trim().isEmpty())) {
+            measureType = MetricsMeasureType.fromString(measure);
+            if (measureType == null) {
+                result = "Invalid value for parameter measure [ "
+                        + measure
+                        + " ].";
+            }
+        }
+        if ((bucket != null) && (!bucket.trim().isEmpty())) {
+            bucketType = TimeBucketType.fromString(bucket);
+            if (bucketType == null) {
+                result = "Invalid value for parameter bucket [ "
+                        + bucket
+                        + " ].";
+            }
+        }
+        if (groupBy != null) {
+            for (String value : groupBy.split(",")) {
+                if (!value.trim().isEmpty()) {
+                    AggregateDimensionType dimension = 
+                            AggregateDimensionType.fromString(value);
+                    if (dimension == null) {
+                        result = "Invalid value for parameter groupBy [ "
+                                + value
+                                + " ].";
+                    }
+                    else if (!dimensions.contains(dimension)) {
+                        dimensions.add(dimension);
+                    }
+                }
+            }
+        }
+        if ((from < 0) || (to <= from)) {
+            result = "Invalid range [ "
+                    + start
+                    + " - "
+                    + end
+                    + " ].  Expected yyyy-MM-dd or milliseconds since the "
+                    + "epoch with start before end.";
+        }
+        
+        if (result.isEmpty()) {
+            status = Status.INTERNAL_SERVER_ERROR;
+            try {
+                List<MetricsAggregate> aggregates = 
+                        getAggregateService().getAggregates(
+                                from, to, measureType, dimensions, bucketType);
+                if (aggregates != null) {
+                    ObjectMapper mapper = new ObjectMapper();
+                    result = mapper.writeValueAsString(aggregates);
+                    status = Status.OK;
+                }
+                else {
+                    result = "Unable to calculate the aggregate statistics.";
+                }
+            }
+            catch (JsonProcessingException jpe) {
+                LOGGER.error("JsonProcessingException raised while "
+                        + "serializing the aggregate statistics.  "
+                        + "Error => [ "
+                        + jpe.getMessage()
+                        + " ].");
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].");
+            }
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Report the live job statistics held in memory for the last five 
+     * minutes, hour and day.  The statistics are maintained by the 
+     * collector on this node and never touch the database, so this 
+     * endpoint is suitable for frequent polling by status pages.  They 
+     * only cover the jobs this node collected: behind the load balancer 
+     * each request may be answered by a different node, so every window 
+     * reports the node it came from (<code>server@host</code>).
+     * 
+     * @param window Optional window name (5m, 1h or 24h).  If not supplied
+     * every window is returned.
+     * @return JSON representation of the requested window(s).
+     */
+    @GET
+    @Path("/metrics/live")
+    @Produces("application/json")
+    public Response getLiveMetrics(@QueryParam("window") String window) {
+        
+        String result = "";
+        Status status = Status.INTERNAL_SERVER_ERROR;
+        
+        try {
+            ObjectMapper mapper = new ObjectMapper();
+            if ((window == null) || (window.trim().isEmpty())) {
+                result = mapper.writeValueAsString(
+                        getLiveMetricsService().getWindows());
+                status = Status.OK;
+            }
+            else {
+                MetricsWindow snapshot = 
+                        getLiveMetricsService().getWindow(window.trim());
+                if (snapshot != null) {
+                    result = mapper.writeValueAsString(snapshot);
+                    status = Status.OK;
+                }
+                else {
+                    result = "Invalid value for parameter window [ "
+                            + window
+                            + " ].";
+                    status = Status.BAD_REQUEST;
+                }
+            }
+        }
+        catch (JsonProcessingException jpe) {
+            LOGGER.error("JsonProcessingException raised while "
+                    + "serializing the live metrics.  "
+                    + "Error => [ "
+                    + jpe.getMessage()
+                    + " ].");
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unexpected EJBLookupException raised while "
+                    + "attempting to look up EJB [ "
+                    + ele.getEJBName()
+                    + " ].");
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Report the heaviest users by bytes bundled, job count or elapsed 
+     * time.  Without the <code>day</code> parameter the current day as 
+     * seen by this node is returned from memory.  With it, the summaries 
+     * saved by every node for that day are merged.  The estimates are 
+     * upper bounds; estimate minus error is a lower bound.
+     * 
+     * @param measure The measure (bytes (default), jobs or elapsed_time).
+     * @param day Optional day (yyyy-MM-dd or epoch milliseconds).
+     * @param limit The maximum number of users (default 10).
+     * @return JSON array of the heaviest users in descending order.
+     */
+    @GET
+    @Path("/metrics/topUsers")
+    @Produces("application/json")
+    public Response getTopUsers(
+            @QueryParam("measure") String measure,
+            @QueryParam("day")     String day,
+            @QueryParam("limit")   String limit) {
+        
+        String             result      = "";
+        Status             status      = Status.BAD_REQUEST;
+        TopUserMeasureType measureType = TopUserMeasureType.BYTES;
+        int                count       = 10;
+        long               dayStart    = -1L;
+        
+        if ((measure != null) && (!measure.trim().isEmpty())) {
+            measureType = TopUserMeasureType.fromString(measure);
+            if (measureType == null) {
+                result = "Invalid value for parameter measure [ "
+                        + measure
+                        + " ].  Expected bytes, jobs or elapsed_time.";
+            }
+        }
+        if ((limit != null) && (!limit.trim().isEmpty())) {
+            try {
+                count = Integer.parseInt(limit.trim());
+            }
+            catch (NumberFormatException nfe) {
+                count = -1;
+            }
+            if ((count < 1) || (count > TopUserTracker.CAPACITY)) {
+                result = "Invalid value for parameter limit [ "
+                        + limit
+                        + " ].  Expected 1 - "
+                        + TopUserTracker.CAPACITY
+                        + ".";
+            }
+        }
+        if ((day != null) && (!day.trim().isEmpty())) {
+            long time = parseTime(day);
+            if (time < 0) {
+                result = "Invalid value for parameter day [ "
+                        + day
+                        + " ].  Expected yyyy-MM-dd or milliseconds since "
+                        + "the epoch.";
+            }
+            else {
+                dayStart = TopUserTracker.getDayStart(time);
+            }
+        }
+        
+        if (result.isEmpty()) {
+            status = Status.INTERNAL_SERVER_ERROR;
+            try {
+                List<MetricsTopUser> users = (dayStart < 0) ?
+                        getTopUserTracker().getLiveTopUsers(measureType, count) :
+                        getTopUserTracker().getTopUsers(dayStart, measureType, count);
+                ObjectMapper mapper = new ObjectMapper();
+                result = mapper.writeValueAsString(users);
+                status = Status.OK;
+            }
+            catch (JsonProcessingException jpe) {
+                LOGGER.error("JsonProcessingException raised while "
+                        + "serializing the top users.  "
+                        + "Error => [ "
+                        + jpe.getMessage()
+                        + " ].");
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].");
+            }
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Calculate trend data from the pre-aggregated hourly and daily 
+     * rollups.  Unlike <code>/metrics/aggregate</code> the rollups do not
+     * support percentiles, but the number of rows read depends only on the
+     * length of the range so multi-year trends remain inexpensive.
+     * 
+     * @param start The start of the range (epoch milliseconds or 
+     * yyyy-MM-dd).  Defaults to the epoch.
+     * @param end The end of the range (epoch milliseconds or yyyy-MM-dd).
+     * Defaults to the current time.
+     * @param groupBy Comma-separated list of dimensions to group by (user,
+     * archive_type, job_state).
+     * @param bucket Width of the time buckets (hour, day or week).  If not
+     * supplied a single row is calculated per group over the entire range.
+     * @return JSON array of rollup rows.
+     */
+    @GET
+    @Path("/metrics/rollup")
+    @Produces("application/json")
+    public Response getMetricsRollup(
+            @QueryParam("start")   String start,
+            @QueryParam("end")     String end,
+            @QueryParam("groupBy") String groupBy,
+            @QueryParam("bucket")  String bucket) {
+        
+        String                       result     = "";
+        Status                       status     = Status.BAD_REQUEST;
+        List<AggregateDimensionType> dimensions = 
+                new ArrayList<AggregateDimensionType>();
+        TimeBucketType               bucketType = null;
+        long                         from       = 
+                ((start == null) || (start.trim().isEmpty())) ?
+                        0L : parseTime(start);
+        long                         to         = 
+                ((end == null) || (end.trim().isEmpty())) ?
+                        System.currentTimeMillis() : parseTime(end);
+        
+        if ((bucket != null) && (!bucket.trim().isEmpty())) {
+            bucketType = TimeBucketType.fromString(bucket);
+            if (bucketType == null) {
+                result = "Invalid value for parameter bucket [ "
+                        + bucket
+                        + " ].";
+            }
+        }
+        if (groupBy != null) {
+            for (String value : groupBy.split(",")) {
+                if (!value.trim().isEmpty()) {
+                    AggregateDimensionType dimension = 
+                            AggregateDimensionType.fromString(value);
+                    if (dimension == null) {
+                        result = "Invalid value for parameter groupBy [ "
+                                + value
+                                + " ].";
+                    }
+                    else if (!dimensions.contains(dimension)) {
+                        dimensions.add(dimension);
+                    }
+                }
+            }
+        }
+        if ((from < 0) || (to <= from)) {
+            result = "Invalid range [ "
+                    + start
+                    + " - "
+                    + end
+                    + " ].  Expected yyyy-MM-dd or milliseconds since the "
+                    + "epoch with start before end.";
+        }
+        
+        if (result.isEmpty()) {
+            status = Status.INTERNAL_SERVER_ERROR;
+            try {
+                List<MetricsRollup> rollups = 
+                        getRollupService().getRollups(
+                                from, to, bucketType, dimensions);
+                ObjectMapper mapper = new ObjectMapper();
+                result = mapper.writeValueAsString(rollups);
+                status = Status.OK;
+            }
+            catch (JsonProcessingException jpe) {
+                LOGGER.error("JsonProcessingException raised while "
+                        + "serializing the rollup trend data.  "
+                        + "Error => [ "
+                        + jpe.getMessage()
+                        + " ].");
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].");
+            }
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Recreate the hourly and daily rollups from the raw job metrics 
+     * records.  This is only required if the rollup table was created 
+     * after metrics were already being collected, if the raw records 
+     * were modified outside of the application, or if the collector logged
+     * that it was unable to update the rollups.  The rollup table is 
+     * locked exclusively while it is rebuilt, so this is a POST.
+     * 
+     * @return Status message.
+     */
+    @POST
+    @Path("/metrics/rollup/rebuild")
+    public Response rebuildRollups() {
+        
+        String result = "Unable to rebuild the metrics rollups.";
+        Status status = Status.INTERNAL_SERVER_ERROR;
+        
+        try {
+            if (getRollupService().rebuild()) {
+                LOGGER.info("Metrics rollups rebuilt by operator.");
+                result = "Metrics rollups rebuilt.";
+                status = Status.OK;
+            }
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unexpected EJBLookupException raised while "
+                    + "attempting to look up EJB [ "
+                    + ele.getEJBName()
+                    + " ].");
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Calculate the percentiles of job elapsed time or throughput by 
+     * merging the stored hourly and daily histograms.  Unlike 
+     * <code>/metrics/aggregate</code> the raw records are not read, so 
+     * percentiles over long ranges remain inexpensive.  The percentiles are
+     * accurate to within about 1.6% of the actual value.
+     * 
+     * @param start The start of the range (epoch milliseconds or 
+     * yyyy-MM-dd).  Defaults to the epoch.
+     * @param end The end of the range (epoch milliseconds or yyyy-MM-dd).
+     * Defaults to the current time.
+     * @param measure The measure (elapsed_time (default, milliseconds) or 
+     * throughput (bytes per second)).
+     * @param groupBy Comma-separated list of dimensions to group by 
+     * (archive_type, job_state).
+     * @return JSON array of aggregate statistics, one per group.
+     */
+    @GET
+    @Path("/metrics/percentiles")
+    @Produces("application/json")
+    public Response getMetricsPercentiles(
+            @QueryParam("start")   String start,
+            @QueryParam("end")     String end,
+            @QueryParam("measure") String measure,
+            @QueryParam("groupBy") String groupBy) {
+        
+        String                       result      = "";
+        Status                       status      = Status.BAD_REQUEST;
+        List<AggregateDimensionType> dimensions  = 
+                new ArrayList<AggregateDimensionType>();
+        MetricsMeasureType           measureType = 
+                MetricsMeasureType.ELAPSED_TIME;
+        long                         from        = 
+                ((start == null) || (start.trim().isEmpty())) ?
+                        0L : parseTime(start);
+        long                         to          = 
+                ((end == null) || (end.trim().isEmpty())) ?
+                        System.currentTimeMillis() : parseTime(end);
+        
+        if ((measure != null) && (!measure.trim().isEmpty())) {
+            measureType = MetricsMeasureType.fromString(measure);
+            if ((measureType != MetricsMeasureType.ELAPSED_TIME) && 
+                    (measureType != MetricsMeasureType.THROUGHPUT)) {
+                result = "Invalid value for parameter measure [ "
+                        + measure
+                        + " ].  Expected elapsed_time or throughput.";
+            }
+        }
+        if (groupBy != null) {
+            for (String value : groupBy.split(",")) {
+                if (!value.trim().isEmpty()) {
+                    AggregateDimensionType dimension = 
+                            AggregateDimensionType.fromString(value);
+                    if ((dimension == null) || 
+                            (dimension == AggregateDimensionType.USER_NAME)) {
+                        result = "Invalid value for parameter groupBy [ "
+                                + value
+                                + " ].  Expected archive_type or job_state.";
+                    }
+                    else if (!dimensions.contains(dimension)) {
+                        dimensions.add(dimension);
+                    }
+                }
+            }
+        }
+        if ((from < 0) || (to <= from)) {
+            result = "Invalid range [ "
+                    + start
+                    + " - "
+                    + end
+                    + " ].  Expected yyyy-MM-dd or milliseconds since the "
+                    + "epoch with start before end.";
+        }
+        
+        if (result.isEmpty()) {
+            status = Status.INTERNAL_SERVER_ERROR;
+            try {
+                List<MetricsAggregate> aggregates = 
+                        getHistogramService().getPercentiles(
+                                from, to, measureType, dimensions);
+                ObjectMapper mapper = new ObjectMapper();
+                result = mapper.writeValueAsString(aggregates);
+                status = Status.OK;
+            }
+            catch (JsonProcessingException jpe) {
+                LOGGER.error("JsonProcessingException raised while "
+                        + "serializing the percentiles.  "
+                        + "Error => [ "
+                        + jpe.getMessage()
+                        + " ].");
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].");
+            }
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Recreate the hourly and daily histograms from the raw job metrics 
+     * records.  This is only required if the histogram table was created 
+     * after metrics were already being collected, or if the collector 
+     * logged that it was unable to update the histograms.  The histogram 
+     * table is locked exclusively while it is rebuilt, so this is a POST.
+     * 
+     * @return Status message.
+     */
+    @POST
+    @Path("/metrics/percentiles/rebuild")
+    public Response rebuildHistograms() {
+        
+        String result = "Unable to rebuild the metrics histograms.";
+        Status status = Status.INTERNAL_SERVER_ERROR;
+        
+        try {
+            if (getHistogramService().rebuild()) {
+                LOGGER.info("Metrics histograms rebuilt by operator.");
+                result = "Metrics histograms rebuilt.";
+                status = Status.OK;
+            }
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unexpected EJBLookupException raised while "
+                    + "attempting to look up EJB [ "
+                    + ele.getEJBName()
+                    + " ].");
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Calculate aggregate statistics from the in-memory columnar store 
+     * rather than the database.  The parameters match those of 
+     * <code>/metrics/aggregate</code>, with optional <code>user</code>, 
+     * <code>archiveType</code> and <code>jobState</code> filters.  The 
+     * percentiles are accurate to within about 1.6%.  The store must be 
+     * enabled (<code>bundler.metrics.columnar_store</code>).  It is loaded
+     * in the background on first use, and 503 is returned until the load 
+     * completes.  The store is local to the node answering the request: 
+     * records written by other nodes are included once the store is 
+     * reloaded (see <code>bundler.metrics.columnar_reload_interval</code>).
+     * 
+     * @return JSON array of aggregate statistics.
+     */
+    @GET
+    @Path("/metrics/scan")
+    @Produces("application/json")
+    public Response getMetricsScan(
+            @QueryParam("start")       String start,
+            @QueryParam("end")         String end,
+            @QueryParam("measure")     String measure,
+            @QueryParam("groupBy")     String groupBy,
+            @QueryParam("bucket")      String bucket,
+            @QueryParam("user")        String user,
+            @QueryParam("archiveType") String archiveType,
+            @QueryParam("jobState")    String jobState) {
+        
+        String                       result      = "";
+        Status                       status      = Status.BAD_REQUEST;
+        List<AggregateDimensionType> dimensions  = 
+                new ArrayList<AggregateDimensionType>();
+        MetricsMeasureType           measureType = 
+                MetricsMeasureType.ELAPSED_TIME;
+        TimeBucketType               bucketType  = null;
+        ArchiveType                  type        = null;
+        JobStateType                 state       = null;
+        long                         from        = 
+                ((start == null) || (start.trim().isEmpty())) ?
+                        0L : parseTime(start);
+        long                         to          = 
+                ((end == null) || (end.trim().isEmpty())) ?
+                        System.currentTimeMillis() : parseTime(end);
+        
+        if ((measure != null) && (!measure.trim().isEmpty())) {
+            measureType = MetricsMeasureType.fromString(measure);
+            if (measureType == null) {
+                result = "Invalid value for parameter measure [ "
+                        + measure
+                        + " ].";
+            }
+        }
+        if ((bucket != null) && (!bucket.trim().isEmpty())) {
+            bucketType = TimeBucketType.fromString(bucket);
+            if (bucketType == null) {
+                result = "Invalid value for parameter bucket [ "
+                        + bucket
+                        + " ].";
+            }
+        }
+        if (groupBy != null) {
+            for (String value : groupBy.split(",")) {
+                if (!value.trim().isEmpty()) {
+                    AggregateDimensionType dimension = 
+                            AggregateDimensionType.fromString(value);
+                    if (dimension == null) {
+                        result = "Invalid value for parameter groupBy [ "
+                                + value
+                                + " ].";
+                    }
+                    else if (!dimensions.contains(dimension)) {
+                        dimensions.add(dimension);
+                    }
+                }
+            }
+        }
+        if ((archiveType != null) && (!archiveType.trim().isEmpty())) {
+            try {
+                type = ArchiveType.fromString(archiveType);
+            }
+            catch (UnknownArchiveTypeException uate) {
+                result = "Invalid value for parameter archiveType [ "
+                        + archiveType
+                        + " ].";
+            }
+        }
+        if ((jobState != null) && (!jobState.trim().isEmpty())) {
+            state = JDBCJobMetricsService.toJobState(jobState, null);
+            if (state == null) {
+                result = "Invalid value for parameter jobState [ "
+                        + jobState
+                        + " ].";
+            }
+        }
+        if ((from < 0) || (to <= from)) {
+            result = "Invalid range [ "
+                    + start
+                    + " - "
+                    + end
+                    + " ].  Expected yyyy-MM-dd or milliseconds since the "
+                    + "epoch with start before end.";
+        }
+        
+        if (result.isEmpty()) {
+            status = Status.INTERNAL_SERVER_ERROR;
+            try {
+                ColumnarMetricsService service    = getColumnarMetricsService();
+                List<MetricsAggregate> aggregates = service.aggregate(
+                        from, 
+                        to, 
+                        ((user == null) || (user.trim().isEmpty())) ? 
+                                null : user.trim(), 
+                        type, 
+                        state, 
+                        measureType, 
+                        dimensions, 
+                        bucketType);
+                if (aggregates != null) {
+                    ObjectMapper mapper = new ObjectMapper();
+                    result = mapper.writeValueAsString(aggregates);
+                    status = Status.OK;
+                }
+                else {
+                    result = service.isEnabled() ? 
+                            "The columnar store is loading.  Retry later." :
+                            "The columnar store is not enabled.";
+                    status = Status.SERVICE_UNAVAILABLE;
+                }
+            }
+            catch (JsonProcessingException jpe) {
+                LOGGER.error("JsonProcessingException raised while "
+                        + "serializing the scan results.  "
+                        + "Error => [ "
+                        + jpe.getMessage()
+                        + " ].");
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].");
+            }
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Load (or reload) the in-memory columnar store of the node answering
+     * the request from the database.  The store is reloaded automatically
+     * after records are refreshed and once it reaches the reload interval,
+     * so this is only needed to pick up other changes immediately.  The 
+     * existing store continues to serve queries until the load completes.
+     * 
+     * @return Status message.
+     */
+    @GET
+    @Path("/metrics/scan/load")
+    public Response loadColumnarStore() {
+        
+        String result = "Unable to load the columnar store.";
+        Status status = Status.INTERNAL_SERVER_ERROR;
+        
+        try {
+            long count = getColumnarMetricsService().load();
+            if (count >= 0) {
+                LOGGER.info("Columnar store loaded by operator.");
+                result = "Columnar store loaded with [ "
+                        + count
+                        + " ] records.";
+                status = Status.OK;
+            }
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unexpected EJBLookupException raised while "
+                    + "attempting to look up EJB [ "
+                    + ele.getEJBName()
+                    + " ].");
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Write a single metrics record as a line of CSV (without the line 
+     * terminator).  The columns match <code>CSV_HEADER</code>.
+     * 
+     * @param writer The target writer.
+     * @param metrics The metrics record.
+     * @throws IOException Thrown if the record cannot be written.
+     */
+    private static void writeCSV(Writer writer, BundlerJobMetrics metrics) 
+            throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(escapeCSV(metrics.getJobID())).append(',');
+        sb.append(escapeCSV(metrics.getUserName())).append(',');
+        sb.append(metrics.getJobState().name()).append(',');
+        sb.append(metrics.getArchiveType().name()).append(',');
+        sb.append(metrics.getStartTime()).append(',');
+        sb.append(metrics.getElapsedTime()).append(',');
+        sb.append(metrics.getNumArchives()).append(',');
+        sb.append(metrics.getNumArchivesComplete()).append(',');
+        sb.append(metrics.getNumFiles()).append(',');
+        sb.append(metrics.getNumFilesComplete()).append(',');
+        sb.append(metrics.getTotalSize()).append(',');
+        sb.append(metrics.getTotalCompressedSize()).append(',');
+        sb.append(metrics.getArchiveSize());
+        writer.write(sb.toString());
+    }
+    
+    /**
+     * Quote a free-text CSV field if it contains a delimiter, quote or 
+     * line break.
+     * 
+     * @param value The field value.
+     * @return The escaped value.
+     */
+    private static String escapeCSV(String value) {
+        String escaped = (value == null ? "" : value);
+        if ((escaped.indexOf(',') >= 0) || (escaped.indexOf('"') >= 0) || 
+                (escaped.indexOf('\n') >= 0) || (escaped.indexOf('\r') >= 0)) {
+            escaped = "\"" + escaped.replace("\"", "\"\"") + "\"";
+        }
+        return escaped;
+    }
+    
+    /**
+     * Report the metrics collection schedule on the node servicing the 
+     * request.  Each node runs its own timer, so behind the load balancer
+     * successive requests may describe different nodes; the response 
+     * includes the node it came from (<code>server@host</code>).
+     * 
+     * @return JSON representation of the schedule.
+     */
+    @GET
+    @Path("/schedule")
+    @Produces("application/json")
+    public Response getSchedule() {
+        
+        String result = "";
+        Status status = Status.INTERNAL_SERVER_ERROR;
+        
+        try {
+            ObjectMapper mapper = new ObjectMapper();
+            result = mapper.writeValueAsString(
+                    getJobMetricsCollectorTimer().getSchedule());
+            status = Status.OK;
+        }
+        catch (JsonProcessingException jpe) {
+            LOGGER.error("JsonProcessingException raised while "
+                    + "serializing the collection schedule.  Error => [ "
+                    + jpe.getMessage()
+                    + " ].");
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unexpected EJBLookupException raised while "
+                    + "attempting to look up EJB [ "
+                    + ele.getEJBName()
+                    + " ].");
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Change the metrics collection schedule on the node servicing the 
+     * request.  Supplying <code>interval</code> (in minutes) and/or 
+     * <code>adaptive</code> (true/false) changes the schedule immediately.
+     * 
+     * The change is per-node and transient: it only applies to the node 
+     * that receives the request (identified in the response), the other 
+     * nodes keep their current schedules, and the node reverts to the 
+     * values in <code>bundler.properties</code> when the application 
+     * restarts.  Permanent or cluster-wide changes must be made in the 
+     * properties file.
+     * 
+     * @param interval The interval between runs in minutes.
+     * @param adaptive True if the interval should adapt to the backlog.
+     * @return JSON representation of the updated schedule.
+     */
+    @PUT
+    @Path("/schedule")
+    @Produces("application/json")
+    public Response setSchedule(
+            @QueryParam("interval") Integer interval,
+            @QueryParam("adaptive") String  adaptive) {
+        
+        String result = "";
+        Status status = Status.INTERNAL_SERVER_ERROR;
+        
+        if ((interval == null) && (adaptive == null)) {
+            result = "At least one of the parameters interval or adaptive "
+                    + "must be supplied.";
+            status = Status.BAD_REQUEST;
+        }
+        else {
+            try {
+                CollectionSchedule schedule = 
+                        getJobMetricsCollectorTimer().setSchedule(
+                                (interval == null ? 0 : interval.intValue()),
+                                (adaptive == null ? 
+                                        null : Boolean.valueOf(adaptive)));
+                ObjectMapper mapper = new ObjectMapper();
+                result = mapper.writeValueAsString(schedule);
+                status = Status.OK;
+            }
+            catch (JsonProcessingException jpe) {
+                LOGGER.error("JsonProcessingException raised while "
+                        + "serializing the collection schedule.  Error => [ "
+                        + jpe.getMessage()
+                        + " ].");
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].");
+            }
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Convert the input time parameter to milliseconds since the epoch.  
+     * The parameter may be supplied either as a date (yyyy-MM-dd, UTC) or
+     * as a number of milliseconds.
+     * 
+     * @param value The time parameter.
+     * @return The time in milliseconds, or -1 if the parameter is missing
+     * or could not be parsed.
+     */
+    private long parseTime(String value) {
+        long time = -1L;
+        if ((value != null) && (!value.trim().isEmpty())) {
+            try {
+                time = Long.parseLong(value.trim());
+            }
+            catch (NumberFormatException nfe) {
+                try {
+                    SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+                    df.setLenient(false);
+                    df.setTimeZone(TimeZone.getTimeZone("UTC"));
+                    time = df.parse(value.trim()).getTime();
+                }
+                catch (ParseException pe) {
+                    LOGGER.warn("Unable to parse time parameter [ "
+                            + value
+                            + " ].");
+                }
+            }
+        }
+        return time;
+    }
+    
+    /**
+     * Return the history of the most recent collection runs (newest first)
+     * including the time spent in each stage of each run.  The number of 
+     * runs returned is controlled by the <code>limit</code> parameter 
+     * (default 20, maximum 1000).
+     */
+    @GET
+    @Path("/collectionRuns")
+    @Produces("application/json")
+    public Response getCollectionRuns(@QueryParam("limit") Integer limit) {
+        
+        String result = "";
+        Status status = Status.INTERNAL_SERVER_ERROR;
+        int    max    = DEFAULT_HISTORY_LIMIT;
+        
+        if ((limit != null) && (limit.intValue() > 0)) {
+            max = Math.min(limit.intValue(), MAX_HISTORY_LIMIT);
+        }
+        try {
+            List<CollectionRunHistory> runs = 
+                    getRunHistoryService().getRuns(max);
+            ObjectMapper mapper = new ObjectMapper();
+            result = mapper.writeValueAsString(runs);
+            status = Status.OK;
+        }
+        catch (JsonProcessingException jpe) {
+            LOGGER.error("JsonProcessingException raised while "
+                    + "serializing the collection run history.  Error => [ "
+                    + jpe.getMessage()
+                    + " ].");
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unexpected EJBLookupException raised while "
+                    + "attempting to look up EJB [ "
+                    + ele.getEJBName()
+                    + " ].");
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Return the jobs whose metrics record could not be written, most 
+     * failed attempts first.  The <code>state</code> parameter restricts 
+     * the response to jobs awaiting a retry (<code>retry</code>) or jobs 
+     * that have been abandoned (<code>dead</code>).  The number of jobs 
+     * returned is controlled by the <code>limit</code> parameter (default 
+     * 100, maximum 10000).
+     */
+    @GET
+    @Path("/retries")
+    @Produces("application/json")
+    public Response getRetries(
+            @QueryParam("state") String  state,
+            @QueryParam("limit") Integer limit) {
+        
+        String         result    = "";
+        Status         status    = Status.INTERNAL_SERVER_ERROR;
+        RetryStateType stateType = null;
+        int            max       = DEFAULT_RETRY_LIMIT;
+        
+        if ((limit != null) && (limit.intValue() > 0)) {
+            max = Math.min(limit.intValue(), MAX_RETRY_LIMIT);
+        }
+        if ((state != null) && (!state.isEmpty())) {
+            for (RetryStateType type : RetryStateType.values()) {
+                if (type.getText().equalsIgnoreCase(state)) {
+                    stateType = type;
+                }
+            }
+        }
+        if ((stateType == null) && (state != null) && (!state.isEmpty())) {
+            result = "Invalid value for parameter state [ "
+                    + state
+                    + " ].  Expected retry or dead.";
+            status = Status.BAD_REQUEST;
+        }
+        else {
+            try {
+                List<MetricsRetry> retries = 
+                        getRetryService().getRetries(stateType, max);
+                ObjectMapper mapper = new ObjectMapper();
+                result = mapper.writeValueAsString(retries);
+                status = Status.OK;
+            }
+            catch (JsonProcessingException jpe) {
+                LOGGER.error("JsonProcessingException raised while "
+                        + "serializing the failed jobs.  Error => [ "
+                        + jpe.getMessage()
+                        + " ].");
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].");
+            }
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Remove a failed job from the retry store (e.g. after the cause of 
+     * the failure has been fixed) so that it is reconsidered by the next 
+     * full collection run.
+     */
+    @GET
+    @Path("/retries/reset")
+    public Response resetRetry(@QueryParam("jobID") String jobID) {
+        
+        String result = "Unable to reset job ID [ " + jobID + " ].";
+        Status status = Status.INTERNAL_SERVER_ERROR;
+        
+        if ((jobID == null) || (jobID.isEmpty())) {
+            result = "Parameter jobID is required.";
+            status = Status.BAD_REQUEST;
+        }
+        else {
+            try {
+                if (getRetryService().reset(jobID)) {
+                    LOGGER.info("Job ID [ "
+                            + jobID
+                            + " ] reset by operator.");
+                    result = "Job ID [ " + jobID + " ] reset.";
+                    status = Status.OK;
+                }
+                else {
+                    result = "Job ID [ " + jobID + " ] not found.";
+                    status = Status.NOT_FOUND;
+                }
+            }
+            catch (EJBLookupException ele) {
+                LOGGER.error("Unexpected EJBLookupException raised while "
+                        + "attempting to look up EJB [ "
+                        + ele.getEJBName()
+                        + " ].");
+            }
+        }
+        return Response.status(status).entity(result).build();
+    }
+    
+    /**
+     * Report the progress of a collection run started via 
+     * <code>/startMetricsCollection</code>.  The response contains the 
+     * number of jobs discovered and processed, rows inserted and failed, 
+     * the elapsed time, and the insert rate.
+     */
+    @GET
+    @Path("/collectionRuns/{id}")
+    @Produces("application/json")
+    public Response getCollectionRun(@PathParam("id") String runID) {
+        
+        String result = "";
+        Status status = Status.NOT_FOUND;
+        
+        try {
+            CollectionRunStatistics stats = 
+                    getJobMetricsCollector().getCollectionRun(runID);
+            if (stats != null) {
+                try {
+                    ObjectMapper mapper = new ObjectMapper();
+                    result = mapper.writeValueAsString(stats);
+                    status = Status.OK;
+                }
+                catch (JsonProcessingException jpe) {
+                    LOGGER.error("JsonProcessingException raised while "
+                            + "serializing collection run [ "
+                            + runID
+                            + " ].  Error => [ "
+                            + jpe.getMessage()
+                            + " ].");
+                    status = Status.INTERNAL_SERVER_ERROR;
+                }
+            }
+            else {
+                result = "{\"error\":\"Unable to find collection run "
+                        + "matching id [ " 
+                        + runID
+                        + " ].\"}";
+            }
+        }
+        catch (EJBLookupException ele) {
+            LOGGER.error("Unexpected EJBLookupException raised while "
+                    + "attempting to look up EJB [ "
+                    + ele.getEJBName()
+                    + " ].");
+            status = Status.INTERNAL_SERVER_ERROR;
+        }
+        return Response.status(status).entity(result).build();
     }
     
     /**